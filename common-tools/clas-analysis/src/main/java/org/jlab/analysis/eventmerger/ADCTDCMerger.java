@@ -5,9 +5,7 @@
  */
 package org.jlab.analysis.eventmerger;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
 import org.jlab.detector.base.DetectorType;
 import org.jlab.io.base.DataBank;
 import org.jlab.io.base.DataEvent;
@@ -27,6 +25,8 @@ public class ADCTDCMerger {
     private boolean suppressDoubleHits = true;
     private String[] detectors;
     private EventMergerConstants constants = new EventMergerConstants();
+    private HitList hits = new HitList();
+    private int[] merged = new int[256];
             
     public ADCTDCMerger() {
         detectors = new String[]{"DC","FTOF"};
@@ -40,77 +40,6 @@ public class ADCTDCMerger {
         printDetectors();
     }
     
-    /**
-     * Reads  ADC bank and returns corresponding information
-     * 
-     * @param detector: detector identifier string
-     * @param bankDGTZ: selected DataBank
-     * @return 
-     */
-    public List<ADC> ADCbank(String detector,DataBank bankDGTZ) {
-        List<ADC> adcStore   = new ArrayList<ADC>();
-        
-        for (int i = 0; i < bankDGTZ.rows(); i++) {
-            ADC adcData = null;
-            byte sector     = bankDGTZ.getByte("sector", i);
-            byte layer      = bankDGTZ.getByte("layer", i);
-            short component = bankDGTZ.getShort("component", i);
-            byte order      = bankDGTZ.getByte("order", i);
-            int adc         = bankDGTZ.getInt("ADC", i);
-            float time      = bankDGTZ.getFloat("time", i);
-            short ped       = bankDGTZ.getShort("ped", i);
-            
-            if(adc<=0) 
-                if(!detector.equals(DetectorType.BST.getName()) && !detector.equals(DetectorType.BMT.getName())) 
-                    continue;
-            
-            if(detector.equals(DetectorType.BST.getName())) {
-                long timestamp = (int)bankDGTZ.getLong("timestamp", i);
-                adcData = new ADC(sector,layer,component,order,adc,time,ped,timestamp);
-            }
-            else if(detector.equals(DetectorType.BMT.getName()) || 
-                    detector.equals(DetectorType.FMT.getName()) || 
-                    detector.equals(DetectorType.FTTRK.getName())) {
-                long timestamp = (int)bankDGTZ.getLong("timestamp", i);
-                int  integral   = bankDGTZ.getInt("integral", i);
-                adcData = new ADC(sector,layer,component,order,adc,time,ped,timestamp,integral);
-            }
-            else if(detector.equals(DetectorType.BAND.getName())) {
-                int  amplitude   = bankDGTZ.getInt("amplitude", i);
-                adcData = new ADC(sector,layer,component,order,adc,time,ped,amplitude);
-            }
-            else {
-                adcData = new ADC(sector,layer,component,order,adc,time,ped);
-            }
-            adcStore.add(adcData);
-        }
-        if(debug) System.out.println("Reading bank " + detector + "::adc with " + bankDGTZ.rows() + ", collected " + adcStore.size() + " hits");
-        
-        return adcStore;
-    }
-     
-    /**
-     * Read TDC bank and return corresponding information
-     * 
-     * @param bankDGTZ: selected DataBank
-     * @param offset:   offset to be applied to TDC values to compensate for jitter  
-     * @return
-     */
-    public List<TDC> TDCbank(DataBank bankDGTZ, int offset) {
-        List<TDC> tdcStore   = new ArrayList<TDC>();
-        for (int i = 0; i < bankDGTZ.rows(); i++) {
-            byte sector     = bankDGTZ.getByte("sector", i);
-            byte layer      = bankDGTZ.getByte("layer", i);
-            short component = bankDGTZ.getShort("component", i);
-            byte order      = bankDGTZ.getByte("order", i);
-            int tdc         = bankDGTZ.getInt("TDC", i);
-            if(tdc<=0) continue;
-            TDC tdcData = new TDC(sector,layer,component,order,tdc+offset);
-            tdcStore.add(tdcData);
-        }
-        return tdcStore;
-    }
-    
     /**
      * Merge TDC banks for data (signal) and background events for selected detector
      * In case of multiple hit on same detector element, only first hit in time is kept 
@@ -138,38 +67,25 @@ public class ADCTDCMerger {
             bank = bg.getBank(TDCString);
         }  
         else if(event.hasBank(TDCString)==true && bg.hasBank(TDCString)==true) {
-            List<TDC> bgTDCs  = TDCbank(bg.getBank(TDCString), offset);
-            List<TDC> TDCs    = TDCbank(event.getBank(TDCString), 0);
-
-            List<TDC> allTDCs = new ArrayList<TDC>();
-            for(TDC tdc : TDCs)   allTDCs.add(tdc);
-            for(TDC tdc : bgTDCs) allTDCs.add(tdc);
-            Collections.sort(allTDCs);
+            hits.reset();
+            hits.addTDCs(event.getBank(TDCString), 0);
+            hits.addTDCs(bg.getBank(TDCString), offset);
+            hits.sort(true);
             
-            List<TDC> mergedTDCs = new ArrayList<TDC>();
-            for(int i = 0; i < allTDCs.size(); i++) {
-                TDC tdc = allTDCs.get(i);
-                if(mergedTDCs.size()==0) {
+            int nmerged = 0;
+            for(int i = 0; i < hits.size(); i++) {
+                int tdc = hits.getSorted(i);
+                if(nmerged==0 || !hits.equalTo(tdc, merged[nmerged-1]) || !suppressDoubleHits) {
                     if(debug) {
                         System.out.println("Keeping TDC " + i);
-                        tdc.show();
+                        hits.showTDC(tdc);
                     }
-                    mergedTDCs.add(tdc);
+                    merged = addMerged(merged, nmerged++, tdc);
                 }
                 else {
-                    TDC tdcOld = mergedTDCs.get(mergedTDCs.size()-1);
-                    if(!tdc.equalTo(tdcOld) || !suppressDoubleHits) {
-                        if(debug) {
-                            System.out.println("Keeping TDC " + i);
-                            tdc.show();
-                        }
-                        mergedTDCs.add(tdc);
-                    }
-                    else {
-                        if(debug) {
-                            System.out.println("\tSkipping TDC " + i +"\t");
-                            tdc.show();
-                        }
+                    if(debug) {
+                        System.out.println("\tSkipping TDC " + i +"\t");
+                        hits.showTDC(tdc);
                     }
                 }
             } 
@@ -178,14 +94,7 @@ public class ADCTDCMerger {
                 HipoDataEvent de = (HipoDataEvent) event;
                 de.removeBank(TDCString);
             }
-            bank = event.createBank(TDCString, mergedTDCs.size());
-            for (int i = 0; i < mergedTDCs.size(); i++) {
-                bank.setByte("sector",     i, mergedTDCs.get(i).getSector());
-                bank.setByte("layer",      i, mergedTDCs.get(i).getLayer());
-                bank.setShort("component", i, mergedTDCs.get(i).getComponent());
-                bank.setInt("TDC",         i, mergedTDCs.get(i).getTdc());
-                bank.setByte("order",      i, mergedTDCs.get(i).getOrder());
-            }
+            bank = createTDCBank(event, TDCString, nmerged);
         }
         return bank;
     }
@@ -224,87 +133,63 @@ public class ADCTDCMerger {
         }  
         // if both physics and primary background events have the detector bank, then proceed with merging
         else if(event.hasBank(TDCString)==true && bg1.hasBank(TDCString)==true) {
-            List<TDC> bgTDCs  = TDCbank(bg1.getBank(TDCString), offset1);
+            hits.reset();
+            hits.addTDCs(event.getBank(TDCString), 0);
+            hits.addTDCs(bg1.getBank(TDCString), offset1);
             // if secondary background event has the relevant detector bank, add the hits shifted in time
             if(bg2.hasBank(TDCString)) {
-                List<TDC> bg2TDCs  = TDCbank(bg2.getBank(TDCString), offset2);
-                for(TDC tdc : bg2TDCs) {
-                    int value  = tdc.getTdc();
-                    int layer  = tdc.getLayer();
-                    int comp   = tdc.getComponent();
-                    int offset = constants.getInt(run, Det, EventMergerEnum.READOUT_WINDOW, 0, layer, comp);
-                    tdc.setTdc(value-offset);
-                    bgTDCs.add(tdc);
+                int first = hits.size();
+                hits.addTDCs(bg2.getBank(TDCString), offset2);
+                for(int tdc = first; tdc < hits.size(); tdc++) {
+                    int offset = constants.getInt(run, Det, EventMergerEnum.READOUT_WINDOW, 0, hits.getLayer(tdc), hits.getComponent(tdc));
+                    hits.setTdc(tdc, hits.getTdc(tdc)-offset);
                 }
             }
-            List<TDC> TDCs    = TDCbank(event.getBank(TDCString), 0);
-
-            List<TDC> allTDCs = new ArrayList<TDC>();
-            for(TDC tdc : TDCs)   allTDCs.add(tdc);
-            for(TDC tdc : bgTDCs) allTDCs.add(tdc);
-            Collections.sort(allTDCs);
+            hits.sort(true);
             
-            List<TDC> mergedTDCs = new ArrayList<TDC>();
-            for(int i = 0; i < allTDCs.size(); i++) {
-                TDC tdc = allTDCs.get(i);
-                if(mergedTDCs.size()==0) {
+            int nmerged = 0;
+            for(int i = 0; i < hits.size(); i++) {
+                int tdc = hits.getSorted(i);
+                if(nmerged==0 || !hits.equalTo(tdc, merged[nmerged-1]) || !suppressDoubleHits) {
                     if(debug) {
                         System.out.println("Keeping TDC " + i);
-                        tdc.show();
+                        hits.showTDC(tdc);
                     }
-                    mergedTDCs.add(tdc);
+                    merged = addMerged(merged, nmerged++, tdc);
                 }
                 else {
-                    TDC tdcOld = mergedTDCs.get(mergedTDCs.size()-1);
-                    if(!tdc.equalTo(tdcOld) || !suppressDoubleHits) {
+                    int tdcOld = merged[nmerged-1];
+                    double delta = constants.getInt(run, Det, EventMergerEnum.READOUT_HOLDOFF, 0, hits.getLayer(tdc), hits.getComponent(tdc))
+                                 / constants.getDouble(Det, EventMergerEnum.TDC_CONV);
+                    if(hits.getTdc(tdc)-hits.getTdc(tdcOld)<delta) {
                         if(debug) {
-                            System.out.println("Keeping TDC " + i);
-                            tdc.show();
-                        }
-                        mergedTDCs.add(tdc);
+                            System.out.println("\tSkipping TDC " + i +"\t");
+                            hits.showTDC(tdc);
+                        }                            
                     }
                     else {
-                        double delta = constants.getInt(run, Det, EventMergerEnum.READOUT_HOLDOFF, 0, tdc.getLayer(), tdc.getComponent())
-                                     / constants.getDouble(Det, EventMergerEnum.TDC_CONV);
-                         if(tdc.getTdc()-tdcOld.getTdc()<delta) {
-                            if(debug) {
-                                System.out.println("\tSkipping TDC " + i +"\t");
-                                tdc.show();
-                            }                            
-                        }
-                        else {
-                            if(debug) {
-                                System.out.println("Keeping TDC " + i);
-                                tdc.show();
-                            }
-                            mergedTDCs.add(tdc);
+                        if(debug) {
+                            System.out.println("Keeping TDC " + i);
+                            hits.showTDC(tdc);
                         }
+                        merged = addMerged(merged, nmerged++, tdc);
                     }
                 }
             } 
                 
-            List<TDC> filteredTDCs = new ArrayList<TDC>();
-            for(int i = 0; i < mergedTDCs.size(); i++) {
-                TDC tdc = mergedTDCs.get(i);
-                int value = tdc.getTdc();
-                int layer  = tdc.getLayer();
-                int comp   = tdc.getComponent();
-                if(value>0 && value<constants.getInt(run, Det, EventMergerEnum.READOUT_WINDOW, 0, layer, comp)) {
-                    filteredTDCs.add(tdc);
+            int nfiltered = 0;
+            for(int i = 0; i < nmerged; i++) {
+                int tdc = merged[i];
+                int value = hits.getTdc(tdc);
+                if(value>0 && value<constants.getInt(run, Det, EventMergerEnum.READOUT_WINDOW, 0, hits.getLayer(tdc), hits.getComponent(tdc))) {
+                    merged[nfiltered++] = tdc;
                 }
             }
             if(event.hasBank(TDCString)) { 
                 HipoDataEvent de = (HipoDataEvent) event;
                 de.removeBank(TDCString);
             }
-            bank = event.createBank(TDCString, filteredTDCs.size());
-            for (int i = 0; i < filteredTDCs.size(); i++) {
-                bank.setByte("sector",     i, filteredTDCs.get(i).getSector());
-                bank.setByte("layer",      i, filteredTDCs.get(i).getLayer());
-                bank.setShort("component", i, filteredTDCs.get(i).getComponent());
-                bank.setInt("TDC",         i, filteredTDCs.get(i).getTdc());
-                bank.setByte("order",      i, filteredTDCs.get(i).getOrder());
-            }
+            bank = createTDCBank(event, TDCString, nfiltered);
         }
         return bank;
     }
@@ -334,38 +219,33 @@ public class ADCTDCMerger {
             bank = bg.getBank(ADCString);
         }  
         else if(event.hasBank(ADCString)==true && bg.hasBank(ADCString)==true) {
-            List<ADC> bgADCs  = ADCbank(detector,bg.getBank(ADCString));
-            List<ADC> ADCs    = ADCbank(detector,event.getBank(ADCString));
-
-            List<ADC> allADCs = new ArrayList<ADC>();
-            for(ADC adc : ADCs)   allADCs.add(adc);
-            for(ADC adc : bgADCs) allADCs.add(adc);
-            Collections.sort(allADCs);
+            hits.reset();
+            hits.addADCs(detector, event.getBank(ADCString));
+            hits.addADCs(detector, bg.getBank(ADCString));
+            hits.sort(false);
             
-            List<ADC> mergedADCs = new ArrayList<>();
-
-            for(int i = 0; i < allADCs.size(); i++) {
-                ADC adc = allADCs.get(i);
-                if(mergedADCs.isEmpty()) {
+            int nmerged = 0;
+            for(int i = 0; i < hits.size(); i++) {
+                int adc = hits.getSorted(i);
+                if(nmerged==0) {
                     if(debug) {
                         System.out.println("\tSkipping ADC " + i +"\t");
-                        adc.show();
+                        hits.showADC(adc);
                     }
-                    mergedADCs.add(adc);
+                    merged = addMerged(merged, nmerged++, adc);
                 }
                 else {
-                    ADC adcOld = mergedADCs.get(mergedADCs.size()-1);
-                    if(!adc.equalTo(adcOld)) {
+                    if(!hits.equalTo(adc, merged[nmerged-1])) {
                         if(debug) {
                             System.out.println("Keeping ADC " + i);
-                            adc.show();
+                            hits.showADC(adc);
                         }
-                        mergedADCs.add(adc);
+                        merged = addMerged(merged, nmerged++, adc);
                     }
                     else {
                         if(debug) {
                             System.out.println("\tSkipping ADC " + i +"\t");
-                            adc.show();
+                            hits.showADC(adc);
                         }
                     }
                 }
@@ -376,26 +256,27 @@ public class ADCTDCMerger {
                 de.removeBank(ADCString);
             }
 
-            bank = event.createBank(ADCString, mergedADCs.size());
+            bank = event.createBank(ADCString, nmerged);
 
-            for (int i = 0; i < mergedADCs.size(); i++) {
-                bank.setByte("sector",     i, mergedADCs.get(i).getSector());
-                bank.setByte("layer",      i, mergedADCs.get(i).getLayer());
-                bank.setShort("component", i, mergedADCs.get(i).getComponent());
-                bank.setInt("ADC",         i, mergedADCs.get(i).getAdc()); 
-                bank.setByte("order",      i, mergedADCs.get(i).getOrder());
-                bank.setFloat("time",      i, mergedADCs.get(i).getTime());
-                bank.setShort("ped",       i, mergedADCs.get(i).getPedestal());
+            for (int i = 0; i < nmerged; i++) {
+                int adc = merged[i];
+                bank.setByte("sector",     i, hits.getSector(adc));
+                bank.setByte("layer",      i, hits.getLayer(adc));
+                bank.setShort("component", i, hits.getComponent(adc));
+                bank.setInt("ADC",         i, hits.getAdc(adc)); 
+                bank.setByte("order",      i, hits.getOrder(adc));
+                bank.setFloat("time",      i, hits.getTime(adc));
+                bank.setShort("ped",       i, hits.getPedestal(adc));
 
                 if(detector==DetectorType.BST.getName()) {
-                    bank.setLong("timestamp", i, mergedADCs.get(i).getTimestamp());
+                    bank.setLong("timestamp", i, hits.getTimestamp(adc));
                 }
                 if(detector == DetectorType.BMT.getName() || detector==DetectorType.FMT.getName() || detector==DetectorType.FTTRK.getName()) {
-                    bank.setLong("timestamp", i, mergedADCs.get(i).getTimestamp());
-                    bank.setInt("integral",   i, mergedADCs.get(i).getIntegral());
+                    bank.setLong("timestamp", i, hits.getTimestamp(adc));
+                    bank.setInt("integral",   i, hits.getIntegral(adc));
                 }
                 if(detector == DetectorType.BAND.getName()) {
-                    bank.setInt("amplitude",  1, mergedADCs.get(i).getAmplitude());
+                    bank.setInt("amplitude",  1, hits.getAmplitude(adc));
                 }
             } 
         }
@@ -403,6 +284,25 @@ public class ADCTDCMerger {
         return bank;
     }
     
+    private DataBank createTDCBank(DataEvent event, String TDCString, int nhits) {
+        DataBank bank = event.createBank(TDCString, nhits);
+        for (int i = 0; i < nhits; i++) {
+            int tdc = merged[i];
+            bank.setByte("sector",     i, hits.getSector(tdc));
+            bank.setByte("layer",      i, hits.getLayer(tdc));
+            bank.setShort("component", i, hits.getComponent(tdc));
+            bank.setInt("TDC",         i, hits.getTdc(tdc));
+            bank.setByte("order",      i, hits.getOrder(tdc));
+        }
+        return bank;
+    }
+    
+    private static int[] addMerged(int[] list, int size, int hit) {
+        if(size==list.length) list = Arrays.copyOf(list, 2*size);
+        list[size] = hit;
+        return list;
+    }
+    
     private int getTDCOffset(String detector, DataEvent event, DataEvent bg) {
         int offset = getJitterCorrection(event, detector)
                    - getJitterCorrection(bg, detector);
@@ -462,201 +362,4 @@ public class ADCTDCMerger {
         }
     }
     
-    private class ADC implements Comparable<ADC> {
-        private byte sector;
-        private byte layer;
-        private short component;
-        private byte order;
-        private int adc;
-        private float time;
-        private short pedestal;
-        private long timestamp;
-        private int integral;
-        private int amplitude;
-        
-        public ADC(byte sector, byte layer, short component, byte order, int adc, float time, short ped) {
-            this.sector    = sector;
-            this.layer     = layer;
-            this.component = component;
-            this.order     = order;
-            this.adc       = adc;
-            this.time      = time;
-            this.pedestal  = ped;            
-        }
-        
-        public ADC(byte sector, byte layer, short component, byte order, int adc, float time, short ped, int amplitude) {
-            this.sector    = sector;
-            this.layer     = layer;
-            this.component = component;
-            this.order     = order;
-            this.adc       = adc;
-            this.time      = time;
-            this.pedestal  = ped;   
-            this.amplitude = amplitude;
-        }
-        
-        public ADC(byte sector, byte layer, short component, byte order, int adc, float time, short ped, long timestamp) {
-            this.sector    = sector;
-            this.layer     = layer;
-            this.component = component;
-            this.order     = order;
-            this.adc       = adc;
-            this.time      = time;
-            this.pedestal  = ped;            
-            this.timestamp = timestamp;
-        }
-        
-        public ADC(byte sector, byte layer, short component, byte order, int adc, float time, short ped, long timestamp, int integral) {
-            this.sector    = sector;
-            this.layer     = layer;
-            this.component = component;
-            this.order     = order;
-            this.adc       = adc;
-            this.time      = time;
-            this.pedestal  = ped;            
-            this.timestamp = timestamp;
-            this.integral  = integral;
-        }  
-
-        public byte getSector() {
-            return sector;
-        }
-
-        public byte getLayer() {
-            return layer;
-        }
-
-        public short getComponent() {
-            return component;
-        }
-
-        public byte getOrder() {
-            return order;
-        }
-
-        public int getAdc() {
-            return adc;
-        }
-
-        public float getTime() {
-            return time;
-        }
-
-        public short getPedestal() {
-            return pedestal;
-        }
-
-        public long getTimestamp() {
-            return timestamp;
-        }
-
-        public int getIntegral() {
-            return integral;
-        }
-
-        public int getAmplitude() {
-            return amplitude;
-        }
-        
-        public boolean equalTo(ADC o){
-            if(this.getSector()    == o.getSector() &&
-               this.getLayer()     == o.getLayer()&&
-               this.getComponent() == o.getComponent() &&
-               this.getOrder()     == o.getOrder())
-                 return true;
-            else return false;
-        }
-
-        @Override
-        public int compareTo(ADC o) {
-            int value = 0;
-            int CompSec = this.getSector()    < o.getSector()    ? -1 : this.getSector()   == o.getSector() ? 0 : 1;
-            int CompLay = this.getLayer()     < o.getLayer()     ? -1 : this.getLayer()    == o.getLayer() ? 0 : 1;
-            int CompCom = this.getComponent() < o.getComponent() ? -1 : this.getComponent()== o.getComponent()? 0 : 1;
-            int CompOrd = this.getOrder()     < o.getOrder()     ? -1 : this.getOrder()    == o.getOrder()? 0 : 1;
-            int CompTim = this.getTime()      < o.getTime()      ? -1 : this.getTime()     == o.getTime()? 0 : 1;
-
-            int value3 = ((CompOrd == 0) ? CompTim : CompOrd);
-            int value2 = ((CompCom == 0) ? value3 : CompCom);
-            int value1 = ((CompLay == 0) ? value2 : CompLay);
-            value = ((CompSec == 0) ? value1 : CompSec);
-
-            return value;
-        }
-        
-        public void show() {
-            System.out.println("Sector/Layer/Component/Order: " + sector + "/"+ layer + "/" + component + "/" + order + " ADC: " + adc + " time: " + time);
-        }
-    }
-    
-    private class TDC implements Comparable<TDC>{
-        private byte sector;
-        private byte layer;
-        private short component;
-        private byte order;
-        private int tdc;
-        
-        public TDC(byte sector, byte layer, short component, byte order, int tdc) {
-            this.sector    = sector;
-            this.layer     = layer;
-            this.component = component;
-            this.order     = order;
-            this.tdc       = tdc;          
-        }
-
-        public byte getSector() {
-            return sector;
-        }
-
-        public byte getLayer() {
-            return layer;
-        }
-
-        public short getComponent() {
-            return component;
-        }
-
-        public byte getOrder() {
-            return order;
-        }
-
-        public int getTdc() {
-            return tdc;
-        }
-
-        public void setTdc(int tdc) {
-            this.tdc = tdc;
-        }
-        
-        public boolean equalTo(TDC o){
-            if(this.getSector()    == o.getSector() &&
-               this.getLayer()     == o.getLayer()&&
-               this.getComponent() == o.getComponent() &&
-               this.getOrder()     == o.getOrder())
-                 return true;
-            else return false;
-        }
-
-        @Override
-        public int compareTo(TDC o) {
-            int value = 0;
-            int CompSec = this.getSector()    < o.getSector()    ? -1 : this.getSector()   == o.getSector() ? 0 : 1;
-            int CompLay = this.getLayer()     < o.getLayer()     ? -1 : this.getLayer()    == o.getLayer() ? 0 : 1;
-            int CompCom = this.getComponent() < o.getComponent() ? -1 : this.getComponent()== o.getComponent()? 0 : 1;
-            int CompOrd = this.getOrder()     < o.getOrder()     ? -1 : this.getOrder()    == o.getOrder()? 0 : 1;
-            int CompTim = this.getTdc()       < o.getTdc()       ? -1 : this.getTdc()      == o.getTdc()? 0 : 1;
-
-            int value3 = ((CompOrd == 0) ? CompTim : CompOrd);
-            int value2 = ((CompCom == 0) ? value3 : CompCom);
-            int value1 = ((CompLay == 0) ? value2 : CompLay);
-            value = ((CompSec == 0) ? value1 : CompSec);
-
-            return value;
-        }
-        
-        public void show() {
-            System.out.println("Sector/Layer/Component/Order: " + sector + "/"+ layer + "/" + component + "/" + order + " TDC: " + tdc);
-        }
-    }
-    
 }
@@ -0,0 +1,77 @@
+package org.jlab.analysis.eventmerger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.jlab.io.base.DataEvent;
+import org.jlab.io.hipo.HipoDataEvent;
+import org.jlab.jnp.hipo4.data.Bank;
+import org.jlab.jnp.hipo4.data.Event;
+import org.jlab.jnp.hipo4.data.SchemaFactory;
+import org.jlab.jnp.hipo4.io.HipoReader;
+
+/**
+ * Pool of background events kept in memory
+ *
+ * Background events are read and decompressed once and then sampled randomly,
+ * with reuse, so that the number of merged events is not limited by the size
+ * of the background file.  The pool keeps the event buffers and every sampled
+ * event is a new copy, owned by the caller, so that merging threads never
+ * share an event; the sampling itself is not thread safe and should be done
+ * by the thread distributing the signal events.
+ */
+public class BackgroundPool {
+
+    private final List<byte[]> events = new ArrayList<>();
+    private final Random random;
+    private SchemaFactory factory = null;
+
+    public BackgroundPool(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Load background events with a RUN::config bank from file
+     *
+     * @param filename: background file
+     * @param maxEvents: maximum number of events in the pool
+     * @return number of events in the pool
+     */
+    public int load(String filename, int maxEvents) {
+        HipoReader reader = new HipoReader();
+        reader.open(filename);
+        factory = reader.getSchemaFactory();
+        Bank  config = new Bank(factory.getSchema("RUN::config"));
+        Event event  = new Event();
+        while(reader.hasNext() && events.size()<maxEvents) {
+            reader.nextEvent(event);
+            event.read(config);
+            if(config.getRows()>0)
+                events.add(Arrays.copyOf(event.getEventBuffer().array(), event.getEventBufferSize()));
+        }
+        reader.close();
+        System.out.println("Background pool loaded with " + events.size() + " events from " + filename);
+        return events.size();
+    }
+
+    public int getSize() {
+        return events.size();
+    }
+
+    /**
+     * Select a pair of background events, distinct unless the pool has only one event
+     *
+     * @return copies of the primary and secondary background events
+     */
+    public DataEvent[] getRandomPair() {
+        int first  = random.nextInt(events.size());
+        int second = first;
+        if(events.size()>1) {
+            second = random.nextInt(events.size()-1);
+            if(second>=first) second++;
+        }
+        return new DataEvent[]{new HipoDataEvent(events.get(first), factory),
+                               new HipoDataEvent(events.get(second), factory)};
+    }
+}
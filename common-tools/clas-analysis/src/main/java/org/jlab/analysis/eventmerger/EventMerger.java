@@ -4,6 +4,11 @@
  * and open the template in the editor.
  */
 package org.jlab.analysis.eventmerger;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.jlab.io.base.DataEvent;
 import org.jlab.io.hipo.HipoDataSource;
 import org.jlab.io.hipo.HipoDataSync;
@@ -17,6 +22,10 @@ import org.jlab.utils.options.OptionParser;
  * Options :
  *      -d : list of detectors, for example "DC,FTOF,HTCC" (default = DC,FTOF)
  *      -n : maximum number of events to process (default = -1)
+ *      -p : number of background events kept in memory and sampled randomly, 
+ *           0 to read the background file sequentially (default = 0)
+ *      -r : random seed for the background sampling (default = 1)
+ *      -t : number of merging threads (default = 1)
  * 
  * @author ziegler
  * @author devita
@@ -43,6 +52,9 @@ public class EventMerger {
         parser.addOption("-n"    ,"-1", "maximum number of events to process");
         parser.addOption("-d"    ,"DC,FTOF", "list of detectors, for example \"DC,FTOF,HTCC\"");
         parser.addOption("-s"    ,"1", "suppress double TDC hits on the same component, 0-no suppression, 1-suppression");
+        parser.addOption("-p"    ,"0", "number of background events kept in memory and sampled randomly, 0-sequential reading");
+        parser.addOption("-r"    ,"1", "random seed for the background sampling");
+        parser.addOption("-t"    ,"1", "number of merging threads");
         parser.parse(args);
         
         if(parser.hasOption("-i")==true&&parser.hasOption("-o")==true&&parser.hasOption("-b")==true){
@@ -53,19 +65,30 @@ public class EventMerger {
             
             int     maxEvents  = parser.getOption("-n").intValue();
             String  detectors  = parser.getOption("-d").stringValue();
-            boolean doubleHits = true;
-            if(parser.getOption("-s").intValue()==0) doubleHits = false;
+            boolean doubleHits = parser.getOption("-s").intValue()!=0;
+            
+            int     poolSize   = parser.getOption("-p").intValue();
+            long    seed       = parser.getOption("-r").intValue();
+            int     nthreads   = parser.getOption("-t").intValue();
             
-            EventMerger en = new EventMerger();
-            ADCTDCMerger adctdcMerger = new ADCTDCMerger(detectors.split(","),doubleHits);
-
             int counter = 0;
 
             // Readers for event and background
             HipoDataSource readerData = new HipoDataSource();
             readerData.open(dataFile);
-            HipoDataSource readerBg = new HipoDataSource();
-            readerBg.open(bgFile);
+            HipoDataSource readerBg = null;
+            BackgroundPool pool = null;
+            if(poolSize>0) {
+                pool = new BackgroundPool(seed);
+                if(pool.load(bgFile, poolSize)==0) {
+                    System.out.println("No background event with RUN::config bank found in " + bgFile);
+                    return;
+                }
+            }
+            else {
+                readerBg = new HipoDataSource();
+                readerBg.open(bgFile);
+            }
 
             //Writer
             HipoDataSync writer = new HipoDataSync();
@@ -73,25 +96,79 @@ public class EventMerger {
             writer.open(outputFile);
             
             ProgressPrintout  progress = new ProgressPrintout();
-            while (readerData.hasEvent()&& readerBg.hasEvent()) {
+            
+            // every worker thread merges with its own merger and the events
+            // are written in input order:
+            ADCTDCMerger adctdcMerger = null;
+            ExecutorService executor = null;
+            ThreadLocal<ADCTDCMerger> workers = null;
+            ArrayDeque<Future<DataEvent>> pending = new ArrayDeque<>();
+            boolean failed = false;
+            if(nthreads>1) {
+                executor = Executors.newFixedThreadPool(nthreads);
+                workers  = ThreadLocal.withInitial(() -> new ADCTDCMerger(detectors.split(","),doubleHits));
+            }
+            else {
+                adctdcMerger = new ADCTDCMerger(detectors.split(","),doubleHits);
+            }
+            try {
+                while (readerData.hasEvent()) {
 
-                counter++;
+                    DataEvent eventData = readerData.getNextEvent();
+                    DataEvent eventBg1  = null;
+                    DataEvent eventBg2  = null;
+                    if(pool!=null) {
+                        DataEvent[] eventBgs = pool.getRandomPair();
+                        eventBg1 = eventBgs[0];
+                        eventBg2 = eventBgs[1];
+                    }
+                    else {
+                        if(!readerBg.hasEvent()) break;
+                        eventBg1 = readerBg.getNextEvent();
+                        if(!readerBg.hasEvent()) break;
+                        eventBg2 = readerBg.getNextEvent();
+                    }
+                    counter++;
 
-                //System.out.println("************************************************************* ");
-                DataEvent eventData = readerData.getNextEvent();
-                DataEvent eventBg1  = readerBg.getNextEvent();
-                if(!readerBg.hasEvent()) break;
-                DataEvent eventBg2  = readerBg.getNextEvent();
-                
-                adctdcMerger.updateEventWithMergedBanks(eventData, eventBg1, eventBg2);
-                writer.writeEvent(eventData);
-                progress.updateStatus();
-                if(maxEvents>0){
-                    if(counter>=maxEvents) break;
+                    if(executor==null) {
+                        adctdcMerger.updateEventWithMergedBanks(eventData, eventBg1, eventBg2);
+                        writer.writeEvent(eventData);
+                        progress.updateStatus();
+                    }
+                    else {
+                        final ThreadLocal<ADCTDCMerger> mergers = workers;
+                        final DataEvent event = eventData;
+                        final DataEvent bg1   = eventBg1;
+                        final DataEvent bg2   = eventBg2;
+                        pending.add(executor.submit(() -> {
+                            mergers.get().updateEventWithMergedBanks(event, bg1, bg2);
+                            return event;
+                        }));
+                        if(pending.size()>=4*nthreads) {
+                            writer.writeEvent(pending.poll().get());
+                            progress.updateStatus();
+                        }
+                    }
+                    if(maxEvents>0){
+                        if(counter>=maxEvents) break;
+                    }
                 }
+                while(!pending.isEmpty()) {
+                    writer.writeEvent(pending.poll().get());
+                    progress.updateStatus();
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+                failed = true;
+            } finally {
+                if(executor!=null) executor.shutdownNow();
             }
             progress.showStatus();
             writer.close();
+            if(failed) {
+                System.out.println("\n >>>> error : merging failed after reading " + counter + " events, output file is incomplete\n");
+                System.exit(1);
+            }
         }
 
     }
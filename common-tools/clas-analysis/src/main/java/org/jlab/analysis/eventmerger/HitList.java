@@ -0,0 +1,225 @@
+package org.jlab.analysis.eventmerger;
+
+import java.util.Arrays;
+import org.jlab.detector.base.DetectorType;
+import org.jlab.io.base.DataBank;
+
+/**
+ * ADC or TDC hits of several banks stored in primitive columns
+ *
+ * Hits are sorted by sector, layer, component, order and then time (ADC)
+ * or TDC value, with hits of equal keys kept in the order they were added,
+ * sorting primitive keys where (sector, layer, component, order) are packed
+ * in the high bits and the row in the low bits.  Lists are meant to be reset
+ * and reused for all the banks merged by one thread.
+ */
+public class HitList {
+
+    private static final int ROWBITS = 23;
+    private static final int MAXROWS = 1<<ROWBITS;
+
+    private int      size      = 0;
+    private byte[]   sector    = new byte[256];
+    private byte[]   layer     = new byte[256];
+    private short[]  component = new short[256];
+    private byte[]   order     = new byte[256];
+    private int[]    adc       = new int[256];
+    private float[]  time      = new float[256];
+    private short[]  ped       = new short[256];
+    private long[]   timestamp = new long[256];
+    private int[]    integral  = new int[256];
+    private int[]    amplitude = new int[256];
+    private int[]    tdc       = new int[256];
+
+    private long[]   keys      = new long[256];
+    private int[]    sorted    = new int[256];
+
+    public HitList() {
+    }
+
+    /**
+     * remove all hits
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int add(byte sector, byte layer, short component, byte order) {
+        if(size==MAXROWS)
+            throw new IllegalStateException("Too many hits: " + size);
+        if(size==this.sector.length) {
+            int n = 2*size;
+            this.sector    = Arrays.copyOf(this.sector, n);
+            this.layer     = Arrays.copyOf(this.layer, n);
+            this.component = Arrays.copyOf(this.component, n);
+            this.order     = Arrays.copyOf(this.order, n);
+            this.adc       = Arrays.copyOf(this.adc, n);
+            this.time      = Arrays.copyOf(this.time, n);
+            this.ped       = Arrays.copyOf(this.ped, n);
+            this.timestamp = Arrays.copyOf(this.timestamp, n);
+            this.integral  = Arrays.copyOf(this.integral, n);
+            this.amplitude = Arrays.copyOf(this.amplitude, n);
+            this.tdc       = Arrays.copyOf(this.tdc, n);
+            this.keys      = Arrays.copyOf(this.keys, n);
+            this.sorted    = Arrays.copyOf(this.sorted, n);
+        }
+        this.sector[size]    = sector;
+        this.layer[size]     = layer;
+        this.component[size] = component;
+        this.order[size]     = order;
+        this.adc[size]       = 0;
+        this.time[size]      = 0;
+        this.ped[size]       = 0;
+        this.timestamp[size] = 0;
+        this.integral[size]  = 0;
+        this.amplitude[size] = 0;
+        this.tdc[size]       = 0;
+        return size++;
+    }
+
+    /**
+     * Adds the hits of an ADC bank, skipping hits with ADC<=0 except for BST and BMT
+     *
+     * @param detector: detector identifier string
+     * @param bankDGTZ: selected DataBank
+     * @return number of hits added
+     */
+    public int addADCs(String detector, DataBank bankDGTZ) {
+        boolean keepAll   = detector.equals(DetectorType.BST.getName()) || detector.equals(DetectorType.BMT.getName());
+        boolean hasStamp  = detector.equals(DetectorType.BST.getName());
+        boolean hasInteg  = detector.equals(DetectorType.BMT.getName()) ||
+                            detector.equals(DetectorType.FMT.getName()) ||
+                            detector.equals(DetectorType.FTTRK.getName());
+        boolean hasAmpl   = detector.equals(DetectorType.BAND.getName());
+
+        int start = size;
+        for (int i = 0; i < bankDGTZ.rows(); i++) {
+            int value = bankDGTZ.getInt("ADC", i);
+            if(value<=0 && !keepAll) continue;
+
+            int hit = this.add(bankDGTZ.getByte("sector", i), bankDGTZ.getByte("layer", i),
+                               bankDGTZ.getShort("component", i), bankDGTZ.getByte("order", i));
+            adc[hit]  = value;
+            time[hit] = bankDGTZ.getFloat("time", i);
+            ped[hit]  = bankDGTZ.getShort("ped", i);
+            if(hasStamp || hasInteg) {
+                timestamp[hit] = (int)bankDGTZ.getLong("timestamp", i);
+            }
+            if(hasInteg) {
+                integral[hit]  = bankDGTZ.getInt("integral", i);
+            }
+            else if(hasAmpl) {
+                amplitude[hit] = bankDGTZ.getInt("amplitude", i);
+            }
+        }
+        return size-start;
+    }
+
+    /**
+     * Adds the hits of a TDC bank with TDC>0
+     *
+     * @param bankDGTZ: selected DataBank
+     * @param offset:   offset to be applied to TDC values to compensate for jitter
+     * @return number of hits added
+     */
+    public int addTDCs(DataBank bankDGTZ, int offset) {
+        int start = size;
+        for (int i = 0; i < bankDGTZ.rows(); i++) {
+            int value = bankDGTZ.getInt("TDC", i);
+            if(value<=0) continue;
+            int hit = this.add(bankDGTZ.getByte("sector", i), bankDGTZ.getByte("layer", i),
+                               bankDGTZ.getShort("component", i), bankDGTZ.getByte("order", i));
+            tdc[hit] = value+offset;
+        }
+        return size-start;
+    }
+
+    /**
+     * Sorts the hits by sector, layer, component, order and then by time
+     * for ADCs or by TDC value for TDCs
+     *
+     * @param byTDC: true to sort by TDC, false to sort by time
+     */
+    public void sort(boolean byTDC) {
+        for(int i = 0; i < size; i++) {
+            keys[i] = (getKey(i) << ROWBITS) | i;
+        }
+        Arrays.sort(keys, 0, size);
+        for(int i = 0; i < size; i++) {
+            sorted[i] = (int) (keys[i] & (MAXROWS-1));
+        }
+        // order hits with the same key by time, keeping the input order of equal times
+        int first = 0;
+        for(int i = 1; i <= size; i++) {
+            if(i<size && keys[i]>>>ROWBITS == keys[first]>>>ROWBITS) continue;
+            for(int j = first+1; j < i; j++) {
+                int hit = sorted[j];
+                int k = j;
+                while(k>first && compareTime(sorted[k-1], hit, byTDC)>0) {
+                    sorted[k] = sorted[k-1];
+                    k--;
+                }
+                sorted[k] = hit;
+            }
+            first = i;
+        }
+    }
+
+    private int compareTime(int hit1, int hit2, boolean byTDC) {
+        if(byTDC)
+            return tdc[hit1]  < tdc[hit2]  ? -1 : tdc[hit1]  == tdc[hit2]  ? 0 : 1;
+        else
+            return time[hit1] < time[hit2] ? -1 : time[hit1] == time[hit2] ? 0 : 1;
+    }
+
+    /**
+     * @param hit: hit index
+     * @return sector, layer, component and order packed in a long preserving their ordering
+     */
+    public long getKey(int hit) {
+        return ((long) (sector[hit]+128)    << 32)
+             | ((long) (layer[hit]+128)     << 24)
+             | ((long) (component[hit]+32768) << 8)
+             |  (long) (order[hit]+128);
+    }
+
+    /**
+     * @param i: position in the sorted list
+     * @return index of the i-th hit after sort
+     */
+    public int getSorted(int i) {
+        return sorted[i];
+    }
+
+    public boolean equalTo(int hit1, int hit2) {
+        return getKey(hit1)==getKey(hit2);
+    }
+
+    public byte  getSector(int hit)    { return sector[hit]; }
+    public byte  getLayer(int hit)     { return layer[hit]; }
+    public short getComponent(int hit) { return component[hit]; }
+    public byte  getOrder(int hit)     { return order[hit]; }
+    public int   getAdc(int hit)       { return adc[hit]; }
+    public float getTime(int hit)      { return time[hit]; }
+    public short getPedestal(int hit)  { return ped[hit]; }
+    public long  getTimestamp(int hit) { return timestamp[hit]; }
+    public int   getIntegral(int hit)  { return integral[hit]; }
+    public int   getAmplitude(int hit) { return amplitude[hit]; }
+    public int   getTdc(int hit)       { return tdc[hit]; }
+
+    public void setTdc(int hit, int tdc) {
+        this.tdc[hit] = tdc;
+    }
+
+    public void showADC(int hit) {
+        System.out.println("Sector/Layer/Component/Order: " + sector[hit] + "/"+ layer[hit] + "/" + component[hit] + "/" + order[hit] + " ADC: " + adc[hit] + " time: " + time[hit]);
+    }
+
+    public void showTDC(int hit) {
+        System.out.println("Sector/Layer/Component/Order: " + sector[hit] + "/"+ layer[hit] + "/" + component[hit] + "/" + order[hit] + " TDC: " + tdc[hit]);
+    }
+}
@@ -0,0 +1,104 @@
+package org.jlab.analysis.postprocess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jlab.jnp.hipo4.data.Event;
+import org.jlab.jnp.hipo4.io.HipoReader;
+
+/**
+ * Reads the events of a list of HIPO files in file order, with the reading
+ * and decompression of up to nthreads files done ahead on background threads.
+ *
+ * Each file has its own bounded queue of decoded events, so that files are
+ * read in parallel while the events are still returned in the input order.
+ */
+public class ParallelFileReader {
+
+    public static final int DEFAULT_DEPTH = 256;
+
+    private final List<String> filenames;
+    private final List<BlockingQueue<Event>> queues = new ArrayList<>();
+    private final List<Future<?>> futures = new ArrayList<>();
+    private final ExecutorService executor;
+    private int current = 0;
+
+    /**
+     * @param filenames list of names of HIPO files to read
+     * @param nthreads number of files read simultaneously
+     */
+    public ParallelFileReader(List<String> filenames, int nthreads) {
+        this(filenames, nthreads, DEFAULT_DEPTH);
+    }
+
+    /**
+     * @param filenames list of names of HIPO files to read
+     * @param nthreads number of files read simultaneously
+     * @param depth maximum number of decoded events waiting per file
+     */
+    public ParallelFileReader(List<String> filenames, int nthreads, int depth) {
+        this.filenames = filenames;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, nthreads));
+        // tasks run in submission order, so the file being consumed is always being read:
+        for (String filename : filenames) {
+            BlockingQueue<Event> queue = new ArrayBlockingQueue<>(depth);
+            queues.add(queue);
+            futures.add(executor.submit(() -> {
+                HipoReader reader = new HipoReader();
+                reader.open(filename);
+                try {
+                    while (reader.hasNext()) {
+                        Event event = new Event();
+                        reader.nextEvent(event);
+                        queue.put(event);
+                    }
+                } finally {
+                    reader.close();
+                }
+                return null;
+            }));
+        }
+    }
+
+    /**
+     * @return the next event, null after the last event of the last file
+     */
+    public Event next() {
+        try {
+            while (current < queues.size()) {
+                Event event = queues.get(current).poll(100, TimeUnit.MILLISECONDS);
+                if (event != null) return event;
+                if (futures.get(current).isDone() && queues.get(current).isEmpty()) {
+                    // rethrows a failure of the reading thread:
+                    futures.get(current).get();
+                    queues.set(current, null);
+                    current++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ParallelFileReader:  interrupted reading "+filenames.get(current), e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("ParallelFileReader:  error reading "+filenames.get(current), e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * @return index in the file list of the last event returned
+     */
+    public int getFileIndex() {
+        return current;
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+}
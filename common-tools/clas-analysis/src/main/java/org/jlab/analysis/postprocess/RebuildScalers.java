@@ -10,7 +10,6 @@ import org.jlab.detector.scalers.DaqScalers;
 import org.jlab.detector.helicity.HelicitySequenceManager;
 import org.jlab.jnp.hipo4.data.Bank;
 import org.jlab.jnp.hipo4.data.Event;
-import org.jlab.jnp.hipo4.io.HipoReader;
 import org.jlab.jnp.hipo4.io.HipoWriterSorted;
 import org.jlab.utils.groups.IndexedTable;
 import org.jlab.utils.options.OptionParser;
@@ -29,6 +28,7 @@ public class RebuildScalers {
     public static void main(String[] args) {
         
         OptionParser parser = new OptionParser("rebuildscaler");
+        parser.addOption("-t","1","number of input files read in parallel");
         parser.addRequired("-o","output.hipo");
         parser.parse(args);
         List<String> inputList = parser.getInputList();
@@ -38,14 +38,19 @@ public class RebuildScalers {
             System.exit(1);
         }
         
-        HelicitySequenceManager helSeq = new HelicitySequenceManager(8,inputList);
-        
+        final int nthreads = parser.getOption("-t").intValue();
+
         HipoWriterSorted writer = new HipoWriterSorted();
         writer.getSchemaFactory().initFromDirectory(ClasUtilsFile.getResourceDir("COATJAVA", "etc/bankdefs/hipo4"));
         writer.setCompressionType(2);
+
+        // only the tag-1 records are read for the helicity sequence:
+        Tag1Sequences sequences = new Tag1Sequences(8,false,writer.getSchemaFactory());
+        sequences.read(inputList,nthreads);
+        HelicitySequenceManager helSeq = sequences.getHelicitySequence();
+
         writer.open(parser.getOption("-o").stringValue());
 			
-        Event event = new Event();
         Bank rawScalerBank = new Bank(writer.getSchemaFactory().getSchema("RAW::scaler"));
         Bank runScalerBank = new Bank(writer.getSchemaFactory().getSchema("RUN::scaler"));
         Bank helScalerBank = new Bank(writer.getSchemaFactory().getSchema("HEL::scaler"));
@@ -54,19 +59,28 @@ public class RebuildScalers {
         ConstantsManager conman = new ConstantsManager();
         conman.init(Arrays.asList(new String[]{CCDB_FCUP_TABLE,CCDB_SLM_TABLE}));
         
-        for (String filename : inputList) {
+        // the files are read ahead in parallel, the events are kept in input order:
+        ParallelFileReader reader = new ParallelFileReader(inputList,nthreads);
 
-            HipoReader reader = new HipoReader();
-            reader.open(filename);
+        RCDBConstants rcdb = null;
+        IndexedTable ccdb_fcup = null;
+        IndexedTable ccdb_slm = null;
+        int fileIndex = -1;
 
-            RCDBConstants rcdb = null;
-            IndexedTable ccdb_fcup = null;
-            IndexedTable ccdb_slm = null;
+        try {
 
-            while (reader.hasNext()) {
+            Event event;
+            while ((event = reader.next()) != null) {
+
+                // constants are retrieved again for each file:
+                if (reader.getFileIndex() != fileIndex) {
+                    fileIndex = reader.getFileIndex();
+                    rcdb = null;
+                    ccdb_fcup = null;
+                    ccdb_slm = null;
+                }
 
                 // read the event and necessary banks:
-                reader.nextEvent(event);
                 event.read(runConfigBank);
                 event.read(runScalerBank);
                 event.read(helScalerBank);
@@ -110,6 +124,8 @@ public class RebuildScalers {
 
                 writer.addEvent(event, event.getEventTag());
             }
+        }
+        finally {
             reader.close();
         }
         writer.close();
@@ -0,0 +1,174 @@
+package org.jlab.analysis.postprocess;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jlab.jnp.hipo4.data.Bank;
+import org.jlab.jnp.hipo4.data.Event;
+import org.jlab.jnp.hipo4.data.SchemaFactory;
+import org.jlab.jnp.hipo4.io.HipoReader;
+
+import org.jlab.detector.scalers.DaqScalers;
+import org.jlab.detector.scalers.DaqScalersSequence;
+
+import org.jlab.detector.helicity.HelicityState;
+import org.jlab.detector.helicity.HelicitySequenceManager;
+
+/**
+ * Helicity states and scaler readouts for a list of files, from a single
+ * pass over only their tag-1 records, replacing separate passes for
+ * {@link HelicitySequenceManager} and {@link DaqScalersSequence}.
+ *
+ * Files are read in parallel, and their content is added to the sequences
+ * in file order.  Scaler readouts are kept in one sequence per run number,
+ * so that files from different runs can be mixed.  Readouts without
+ * RUN::config, with run number 0 and timestamp 0, are added to the sequences
+ * of all runs, including runs without their own readouts.  Lookups with run
+ * number 0, for events without RUN::config, use all the readouts, as the
+ * single sequence of {@link DaqScalersSequence#readSequence}.
+ */
+public class Tag1Sequences {
+
+    private final SchemaFactory schema;
+    private final HelicitySequenceManager helSeq;
+    private final Map<Integer,DaqScalersSequence> chargeSeqs = new HashMap<>();
+    private final DaqScalersSequence allChargeSeq;
+    private final DaqScalersSequence noRunChargeSeq;
+    private final List<DaqScalers> noRunScalers = new ArrayList<>();
+
+    private static class FileContent {
+        final List<HelicityState> states = new ArrayList<>();
+        final List<Integer> scalerRuns = new ArrayList<>();
+        final List<DaqScalers> scalers = new ArrayList<>();
+    }
+
+    /**
+     * @param delay number of helicity states delayed
+     * @param flip whether to invert the helicity states
+     * @param schema schema factory providing RUN::config, for the lookups by event
+     */
+    public Tag1Sequences(int delay, boolean flip, SchemaFactory schema) {
+        this.schema = schema;
+        this.helSeq = new HelicitySequenceManager(delay, schema, flip);
+        this.allChargeSeq = new DaqScalersSequence(schema);
+        this.noRunChargeSeq = new DaqScalersSequence(schema);
+    }
+
+    /**
+     * Read the tag-1 events of the given files.
+     * @param filenames list of names of HIPO files to read
+     * @param nthreads number of files read simultaneously
+     */
+    public void read(List<String> filenames, int nthreads) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, nthreads));
+        try {
+            List<Future<FileContent>> futures = new ArrayList<>();
+            for (String filename : filenames) {
+                futures.add(executor.submit(() -> readFile(filename)));
+            }
+            for (Future<FileContent> future : futures) {
+                this.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Tag1Sequences:  interrupted while reading tag-1 events", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Tag1Sequences:  error reading tag-1 events", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static FileContent readFile(String filename) {
+        FileContent content = new FileContent();
+        HipoReader reader = new HipoReader();
+        // tags have to be set before opening to skip the other records:
+        reader.setTags(1);
+        reader.open(filename);
+        SchemaFactory schema = reader.getSchemaFactory();
+        Event event = new Event();
+        Bank flipBank = new Bank(schema.getSchema("HEL::flip"));
+        Bank scalerBank = new Bank(schema.getSchema("RUN::scaler"));
+        Bank configBank = new Bank(schema.getSchema("RUN::config"));
+        while (reader.hasNext()) {
+            reader.nextEvent(event);
+            event.read(flipBank);
+            event.read(scalerBank);
+            event.read(configBank);
+            if (flipBank.getRows()>0) {
+                content.states.add(HelicityState.createFromFlipBank(flipBank));
+            }
+            if (scalerBank.getRows()>0) {
+                int run = 0;
+                long timestamp = 0;
+                if (configBank.getRows()>0) {
+                    run = configBank.getInt("run",0);
+                    timestamp = configBank.getLong("timestamp",0);
+                }
+                DaqScalers ds = DaqScalers.create(scalerBank);
+                ds.setTimestamp(timestamp);
+                content.scalerRuns.add(run);
+                content.scalers.add(ds);
+            }
+        }
+        reader.close();
+        return content;
+    }
+
+    private void add(FileContent content) {
+        for (HelicityState state : content.states) {
+            helSeq.addState(state.getRun(), state);
+        }
+        for (int ii=0; ii<content.scalers.size(); ii++) {
+            final int run = content.scalerRuns.get(ii);
+            final DaqScalers ds = content.scalers.get(ii);
+            allChargeSeq.add(ds);
+            if (run == 0) {
+                noRunScalers.add(ds);
+                noRunChargeSeq.add(ds);
+                for (DaqScalersSequence seq : chargeSeqs.values()) seq.add(ds);
+            }
+            else {
+                if (!chargeSeqs.containsKey(run)) {
+                    DaqScalersSequence seq = new DaqScalersSequence(schema);
+                    for (DaqScalers noRun : noRunScalers) seq.add(noRun);
+                    chargeSeqs.put(run, seq);
+                }
+                chargeSeqs.get(run).add(ds);
+            }
+        }
+    }
+
+    public HelicitySequenceManager getHelicitySequence() {
+        return helSeq;
+    }
+
+    /**
+     * @param run run number, 0 for all the readouts
+     * @return scaler sequence for given run number, null if no readouts
+     */
+    public DaqScalersSequence getScalerSequence(int run) {
+        if (run == 0) return noRunScalers.isEmpty() && chargeSeqs.isEmpty() ? null : allChargeSeq;
+        DaqScalersSequence seq = chargeSeqs.get(run);
+        // a run without its own readouts only has those without RUN::config:
+        if (seq == null && !noRunScalers.isEmpty()) return noRunChargeSeq;
+        return seq;
+    }
+
+    /**
+     * @param run run number
+     * @param timestamp TI timestamp (i.e. RUN::config.timestamp)
+     * @return the most recent DaqScalers for the given run and timestamp
+     */
+    public DaqScalers getScalers(int run, long timestamp) {
+        DaqScalersSequence seq = this.getScalerSequence(run);
+        if (seq==null) return null;
+        return seq.get(timestamp);
+    }
+}
@@ -7,13 +7,11 @@ import org.jlab.clas.reco.ReconstructionEngine;
 import org.jlab.jnp.hipo4.data.Bank;
 import org.jlab.jnp.hipo4.data.Event;
 
-import org.jlab.jnp.hipo4.io.HipoReader;
 import org.jlab.jnp.hipo4.io.HipoWriterSorted;
 
 import org.jlab.utils.system.ClasUtilsFile;
 
 import org.jlab.detector.scalers.DaqScalers;
-import org.jlab.detector.scalers.DaqScalersSequence;
 
 import org.jlab.detector.helicity.HelicityBit;
 import org.jlab.detector.helicity.HelicitySequenceManager;
@@ -29,8 +27,10 @@ import org.jlab.utils.options.OptionParser;
  * 
  * Usage: Tag1ToEvent outputFile inputFile1 [inputFile2 [inputFile3 [...]]]
  * 
- * FIXME:  DaqScalersSequence doesn't manage run numbers.  Until then, we
- * cannot mix run numbers here.
+ * The tag-1 events are read first, skipping the other records, and then
+ * all events are rewritten in a single pass, with the input files read and
+ * decompressed in parallel while the output keeps the input order.  Scaler
+ * readouts are kept per run number, so run numbers can be mixed.
  * 
  * FIXME:  delay=8 is hardcoded below, should come from CCDB.  
  *
@@ -50,6 +50,7 @@ public class Tag1ToEvent {
         parser.addOption("-q","0","do beam charge and livetime (0/1=false/true)");
         parser.addOption("-d","0","do delayed helicity (0/1=false/true)");
         parser.addOption("-f","0","do global offline helicity flip (0/1=false/true)");
+        parser.addOption("-t","1","number of input files read in parallel");
         parser.addRequired("-o","output.hipo");
         parser.parse(args);
 
@@ -68,21 +69,23 @@ public class Tag1ToEvent {
         final boolean doHelicityDelay = parser.getOption("-d").intValue() != 0;
         final boolean doBeamCharge = parser.getOption("-q").intValue() != 0;
         final boolean doHelicityFlip = parser.getOption("-f").intValue() != 0;
+        final int nthreads = parser.getOption("-t").intValue();
         if (!doHelicityDelay && !doBeamCharge && !doHelicityFlip) {
             parser.printUsage();
             System.err.println("\n >>>>> error : at least one of -q/-d/-f must be specified\n");
             System.exit(1);
         }
 
-        HelicitySequenceManager helSeq = new HelicitySequenceManager(8,inputList,doHelicityFlip);
-        DaqScalersSequence chargeSeq = DaqScalersSequence.readSequence(inputList);
-
         HipoWriterSorted writer = new HipoWriterSorted();
         writer.getSchemaFactory().initFromDirectory(ClasUtilsFile.getResourceDir("COATJAVA", "etc/bankdefs/hipo4"));
         writer.setCompressionType(2);
+
+        // one pass over only the tag-1 records for both helicity and charge:
+        Tag1Sequences sequences = new Tag1Sequences(8,doHelicityFlip,writer.getSchemaFactory());
+        sequences.read(inputList,nthreads);
+        HelicitySequenceManager helSeq = sequences.getHelicitySequence();
+
         writer.open(fileout);
-			
-        Event event = new Event();
 
         Event configEvent = new Event();
         
@@ -92,6 +95,9 @@ public class Tag1ToEvent {
         // we're going to modify this bank if doHelicityFlip is set:
         Bank helFlipBank = new Bank(writer.getSchemaFactory().getSchema("HEL::flip"));
 
+        // we're going to use this bank for the lookups:
+        Bank runConfigBank = new Bank(writer.getSchemaFactory().getSchema("RUN::config"));
+
         // we're going to copy these banks to new tag-1 events:
         List<Bank> configBanks = new ArrayList<>();
         for (String bankName : CREATE_TAG1_EVENTS) {
@@ -103,14 +109,14 @@ public class Tag1ToEvent {
         long badHelicity = 0;
         long goodHelicity = 0;
 
-        for (String filename : inputList) {
+        // the single pass rewriting the events, with the files read ahead in parallel:
+        ParallelFileReader reader = new ParallelFileReader(inputList,nthreads);
 
-            HipoReader reader = new HipoReader();
-            reader.open(filename);
+        try {
 
-            while (reader.hasNext()) {
+            Event event;
+            while ((event = reader.next()) != null) {
 
-                reader.nextEvent(event);
                 event.read(recEventBank);
                 event.read(helFlipBank);
 
@@ -124,8 +130,18 @@ public class Tag1ToEvent {
                 }
 
                 // do the lookups:
-                HelicityBit hb = helSeq.search(event);
-                DaqScalers ds = chargeSeq.get(event);
+                event.read(runConfigBank);
+                HelicityBit hb = HelicityBit.UDF;
+                DaqScalers ds = null;
+                if (runConfigBank.getRows()>0) {
+                    final int run = runConfigBank.getInt("run",0);
+                    final long timestamp = runConfigBank.getLong("timestamp",0);
+                    hb = helSeq.search(run,timestamp);
+                    ds = sequences.getScalers(run,timestamp);
+                }
+                else {
+                    ds = sequences.getScalers(0,0);
+                }
 
                 // count helicity good/bad;
                 if (Math.abs(hb.value())==1) goodHelicity++;
@@ -167,6 +183,8 @@ public class Tag1ToEvent {
                 event.write(recEventBank);
                 writer.addEvent(event, event.getEventTag());
             }
+        }
+        finally {
             reader.close();
         }
         writer.close();
@@ -0,0 +1,274 @@
+package org.jlab.analysis.eventmerger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.jlab.io.base.DataBank;
+import org.jlab.io.base.DataEvent;
+import org.jlab.io.hipo.HipoDataEvent;
+import org.jlab.jnp.hipo4.data.Bank;
+import org.jlab.jnp.hipo4.data.Event;
+import org.jlab.jnp.hipo4.data.Schema;
+import org.jlab.jnp.hipo4.data.SchemaFactory;
+import org.jlab.jnp.hipo4.io.HipoWriterSorted;
+import org.jlab.utils.system.ClasUtilsFile;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the merged banks against the former merging, which sorted ADC and
+ * TDC objects with Collections.sort and kept the first hit of each
+ * sector, layer, component and order.
+ */
+public class ADCTDCMergerTest {
+
+    private static final String[] ADC_DETECTORS = {"ECAL", "FTOF", "HTCC", "BST", "BMT"};
+    private static final String[] TDC_DETECTORS = {"ECAL", "FTOF", "CND"};
+
+    static SchemaFactory getSchemaFactory() {
+        System.setProperty("CLAS12DIR", "../../");
+        String dir = ClasUtilsFile.getResourceDir("CLAS12DIR", "etc/bankdefs/hipo4");
+        SchemaFactory factory = new SchemaFactory();
+        factory.initFromDirectory(dir);
+        return factory;
+    }
+
+    /**
+     * One row of the former ADC and TDC lists.
+     */
+    private static class Hit {
+        byte  sector;
+        byte  layer;
+        short component;
+        byte  order;
+        int   adc;
+        float time;
+        short ped;
+        long  timestamp;
+        int   integral;
+        int   tdc;
+
+        boolean equalTo(Hit o) {
+            return sector==o.sector && layer==o.layer && component==o.component && order==o.order;
+        }
+    }
+
+    private static int compareKey(Hit h1, Hit h2) {
+        if (h1.sector!=h2.sector)       return h1.sector<h2.sector ? -1 : 1;
+        if (h1.layer!=h2.layer)         return h1.layer<h2.layer ? -1 : 1;
+        if (h1.component!=h2.component) return h1.component<h2.component ? -1 : 1;
+        if (h1.order!=h2.order)         return h1.order<h2.order ? -1 : 1;
+        return 0;
+    }
+
+    private static final Comparator<Hit> ADC_ORDER = (h1,h2) -> {
+        int key = compareKey(h1, h2);
+        return key!=0 ? key : h1.time<h2.time ? -1 : h1.time==h2.time ? 0 : 1;
+    };
+
+    private static final Comparator<Hit> TDC_ORDER = (h1,h2) -> {
+        int key = compareKey(h1, h2);
+        return key!=0 ? key : Integer.compare(h1.tdc, h2.tdc);
+    };
+
+    private static void readADCs(String detector, DataBank bank, List<Hit> hits) {
+        for (int i=0; i<bank.rows(); i++) {
+            Hit hit = new Hit();
+            hit.sector    = bank.getByte("sector", i);
+            hit.layer     = bank.getByte("layer", i);
+            hit.component = bank.getShort("component", i);
+            hit.order     = bank.getByte("order", i);
+            hit.adc       = bank.getInt("ADC", i);
+            hit.time      = bank.getFloat("time", i);
+            hit.ped       = bank.getShort("ped", i);
+            if (hit.adc<=0 && !detector.equals("BST") && !detector.equals("BMT")) continue;
+            if (detector.equals("BST") || detector.equals("BMT")) hit.timestamp = (int)bank.getLong("timestamp", i);
+            if (detector.equals("BMT")) hit.integral = bank.getInt("integral", i);
+            hits.add(hit);
+        }
+    }
+
+    private static void readTDCs(DataBank bank, List<Hit> hits) {
+        for (int i=0; i<bank.rows(); i++) {
+            Hit hit = new Hit();
+            hit.sector    = bank.getByte("sector", i);
+            hit.layer     = bank.getByte("layer", i);
+            hit.component = bank.getShort("component", i);
+            hit.order     = bank.getByte("order", i);
+            hit.tdc       = bank.getInt("TDC", i);
+            if (hit.tdc>0) hits.add(hit);
+        }
+    }
+
+    /**
+     * Reference: stable sort of the signal and then background hits, keeping
+     * the first hit of each element unless double hits are allowed.
+     */
+    private static List<Hit> referenceMerge(List<Hit> hits, Comparator<Hit> order, boolean suppressDoubleHits) {
+        Collections.sort(hits, order);
+        List<Hit> merged = new ArrayList<>();
+        for (Hit hit : hits) {
+            if (merged.isEmpty() || !hit.equalTo(merged.get(merged.size()-1)) || !suppressDoubleHits) merged.add(hit);
+        }
+        return merged;
+    }
+
+    private static DataEvent createEvent(SchemaFactory factory, Random rand, String[] detectors, boolean tdc) {
+        Event event = new Event();
+        Bank config = new Bank(factory.getSchema("RUN::config"), 1);
+        config.putInt("run", 0, 11);
+        config.putLong("timestamp", 0, 0);
+        event.write(config);
+        for (String detector : detectors) {
+            // few elements and times, so duplicates and ties are common:
+            int rows = rand.nextInt(40);
+            Bank bank = new Bank(factory.getSchema(detector + (tdc ? "::tdc" : "::adc")), rows);
+            for (int i=0; i<rows; i++) {
+                bank.putByte("sector", i, (byte) (1+rand.nextInt(2)));
+                bank.putByte("layer", i, (byte) (1+rand.nextInt(3)));
+                bank.putShort("component", i, (short) (1+rand.nextInt(4)));
+                bank.putByte("order", i, (byte) rand.nextInt(2));
+                if (tdc) {
+                    bank.putInt("TDC", i, rand.nextInt(8)-1);
+                }
+                else {
+                    bank.putInt("ADC", i, rand.nextInt(100)-10);
+                    bank.putFloat("time", i, 0.5f*rand.nextInt(6));
+                    bank.putShort("ped", i, (short) rand.nextInt(300));
+                    if (detector.equals("BST") || detector.equals("BMT")) bank.putLong("timestamp", i, rand.nextLong());
+                    if (detector.equals("BMT")) bank.putInt("integral", i, rand.nextInt(1000));
+                }
+            }
+            if (rows>0 || rand.nextBoolean()) event.write(bank);
+        }
+        return new HipoDataEvent(event, factory);
+    }
+
+    private static File createBackgroundFile(SchemaFactory factory, Random rand, int nevents) throws IOException {
+        File file = File.createTempFile("ADCTDCMergerTest", ".hipo");
+        file.deleteOnExit();
+        HipoWriterSorted writer = new HipoWriterSorted();
+        for (Schema schema : factory.getSchemaList()) {
+            writer.getSchemaFactory().addSchema(schema);
+        }
+        writer.open(file.getAbsolutePath());
+        for (int i=0; i<nevents; i++) {
+            writer.addEvent(((HipoDataEvent) createEvent(factory, rand, ADC_DETECTORS, false)).getHipoEvent(), 0);
+        }
+        // events without RUN::config are not used as background:
+        writer.addEvent(new Event(), 0);
+        writer.close();
+        return file;
+    }
+
+    private static void assertADCs(String detector, List<Hit> expected, DataBank bank) {
+        assertEquals(expected.size(), bank.rows());
+        for (int i=0; i<bank.rows(); i++) {
+            Hit hit = expected.get(i);
+            assertEquals(hit.sector,    bank.getByte("sector", i));
+            assertEquals(hit.layer,     bank.getByte("layer", i));
+            assertEquals(hit.component, bank.getShort("component", i));
+            assertEquals(hit.order,     bank.getByte("order", i));
+            assertEquals(hit.adc,       bank.getInt("ADC", i));
+            assertEquals(hit.time,      bank.getFloat("time", i), 0);
+            assertEquals(hit.ped,       bank.getShort("ped", i));
+            if (detector.equals("BST") || detector.equals("BMT")) assertEquals(hit.timestamp, bank.getLong("timestamp", i));
+            if (detector.equals("BMT")) assertEquals(hit.integral, bank.getInt("integral", i));
+        }
+    }
+
+    private static void assertTDCs(List<Hit> expected, DataBank bank) {
+        assertEquals(expected.size(), bank.rows());
+        for (int i=0; i<bank.rows(); i++) {
+            Hit hit = expected.get(i);
+            assertEquals(hit.sector,    bank.getByte("sector", i));
+            assertEquals(hit.layer,     bank.getByte("layer", i));
+            assertEquals(hit.component, bank.getShort("component", i));
+            assertEquals(hit.order,     bank.getByte("order", i));
+            assertEquals(hit.tdc,       bank.getInt("TDC", i));
+        }
+    }
+
+    /**
+     * Every sampled background event is a copy, so merging threads never
+     * share one and a merged event does not change the pool.
+     */
+    @Test
+    public void testBackgroundPool() throws IOException {
+        SchemaFactory factory = getSchemaFactory();
+        File file = createBackgroundFile(factory, new Random(38), 3);
+        BackgroundPool pool = new BackgroundPool(1);
+        assertEquals(3, pool.load(file.getAbsolutePath(), 10));
+        for (int trial=0; trial<20; trial++) {
+            DataEvent[] pair = pool.getRandomPair();
+            assertNotSame(pair[0], pair[1]);
+            for (DataEvent event : pair) {
+                assertTrue(event.hasBank("RUN::config"));
+                for (String detector : ADC_DETECTORS) {
+                    if (event.hasBank(detector + "::adc")) event.removeBank(detector + "::adc");
+                }
+            }
+        }
+        int nbanks = 0;
+        for (int trial=0; trial<20; trial++) {
+            for (DataEvent event : pool.getRandomPair()) {
+                for (String detector : ADC_DETECTORS) {
+                    if (event.hasBank(detector + "::adc")) nbanks++;
+                }
+            }
+        }
+        assertTrue(nbanks > 0);
+    }
+
+    @Test
+    public void testADCBanks() {
+        SchemaFactory factory = getSchemaFactory();
+        ADCTDCMerger merger = new ADCTDCMerger(ADC_DETECTORS, true);
+        Random rand = new Random(38);
+        for (int trial=0; trial<200; trial++) {
+            DataEvent event = createEvent(factory, rand, ADC_DETECTORS, false);
+            DataEvent bg    = createEvent(factory, rand, ADC_DETECTORS, false);
+            for (String detector : ADC_DETECTORS) {
+                String name = detector + "::adc";
+                if (!event.hasBank(name) || !bg.hasBank(name)) continue;
+                List<Hit> hits = new ArrayList<>();
+                readADCs(detector, event.getBank(name), hits);
+                readADCs(detector, bg.getBank(name), hits);
+                List<Hit> expected = referenceMerge(hits, ADC_ORDER, true);
+                assertADCs(detector, expected, merger.getADCBank(detector, event, bg));
+            }
+        }
+    }
+
+    /**
+     * Signal and background have the same run and timestamp, so the jitter
+     * correction cancels; the run constants are still read from CCDB.
+     */
+    @Test
+    public void testTDCBanks() {
+        SchemaFactory factory = getSchemaFactory();
+        for (boolean suppressDoubleHits : new boolean[]{true, false}) {
+            ADCTDCMerger merger = new ADCTDCMerger(TDC_DETECTORS, suppressDoubleHits);
+            Random rand = new Random(suppressDoubleHits ? 38 : 83);
+            for (int trial=0; trial<200; trial++) {
+                DataEvent event = createEvent(factory, rand, TDC_DETECTORS, true);
+                DataEvent bg    = createEvent(factory, rand, TDC_DETECTORS, true);
+                for (String detector : TDC_DETECTORS) {
+                    String name = detector + "::tdc";
+                    if (!event.hasBank(name) || !bg.hasBank(name)) continue;
+                    List<Hit> hits = new ArrayList<>();
+                    readTDCs(event.getBank(name), hits);
+                    readTDCs(bg.getBank(name), hits);
+                    List<Hit> expected = referenceMerge(hits, TDC_ORDER, suppressDoubleHits);
+                    assertTDCs(expected, merger.getTDCBank(detector, event, bg));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.jlab.analysis.postprocess;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jlab.detector.scalers.DaqScalers;
+import org.jlab.detector.scalers.DaqScalersSequence;
+import org.jlab.jnp.hipo4.data.Bank;
+import org.jlab.jnp.hipo4.data.Event;
+import org.jlab.jnp.hipo4.data.Schema;
+import org.jlab.jnp.hipo4.data.SchemaFactory;
+import org.jlab.jnp.hipo4.io.HipoWriterSorted;
+import org.jlab.utils.system.ClasUtilsFile;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the scaler lookups by run against the single sequence of all the
+ * readouts of DaqScalersSequence.readSequence, for scaler records without
+ * RUN::config.
+ */
+public class Tag1SequencesTest {
+
+    private static SchemaFactory getSchemaFactory() {
+        System.setProperty("CLAS12DIR", "../../");
+        String dir = ClasUtilsFile.getResourceDir("CLAS12DIR", "etc/bankdefs/hipo4");
+        SchemaFactory factory = new SchemaFactory();
+        factory.initFromDirectory(dir);
+        return factory;
+    }
+
+    /**
+     * @param run run number of the readouts, 0 for readouts without RUN::config
+     * @param timestamps timestamps of the readouts, ignored without RUN::config
+     * @return file of tag-1 scaler readouts, whose gated charge is their index
+     */
+    private static String createFile(SchemaFactory factory, int run, long[] timestamps) throws IOException {
+        File file = File.createTempFile("Tag1SequencesTest", ".hipo");
+        file.deleteOnExit();
+        HipoWriterSorted writer = new HipoWriterSorted();
+        for (Schema schema : factory.getSchemaList()) {
+            writer.getSchemaFactory().addSchema(schema);
+        }
+        writer.open(file.getAbsolutePath());
+        Event event = new Event();
+        for (int i = 0; i < timestamps.length; i++) {
+            event.reset();
+            Bank scaler = new Bank(factory.getSchema("RUN::scaler"), 1);
+            scaler.putFloat("fcupgated", 0, i);
+            event.write(scaler);
+            if (run > 0) {
+                Bank config = new Bank(factory.getSchema("RUN::config"), 1);
+                config.putInt("run", 0, run);
+                config.putLong("timestamp", 0, timestamps[i]);
+                event.write(config);
+            }
+            writer.addEvent(event, 1);
+        }
+        writer.close();
+        return file.getAbsolutePath();
+    }
+
+    private static void assertSameScalers(DaqScalers expected, DaqScalers ds) {
+        if (expected == null) {
+            assertNull(ds);
+        }
+        else {
+            assertNotNull(ds);
+            assertEquals(expected.getTimestamp(), ds.getTimestamp());
+            assertEquals(expected.dsc2.getBeamChargeGated(), ds.dsc2.getBeamChargeGated(), 0);
+        }
+    }
+
+    @Test
+    public void testNoRunConfig() throws IOException {
+        SchemaFactory factory = getSchemaFactory();
+        List<String> files = Arrays.asList(createFile(factory, 0, new long[3]));
+        DaqScalersSequence reference = DaqScalersSequence.readSequence(files);
+        Tag1Sequences sequences = new Tag1Sequences(8, false, factory);
+        sequences.read(files, 2);
+        // events with and without RUN::config:
+        for (long timestamp : new long[]{0, 1, 1000}) {
+            assertNotNull(sequences.getScalers(5038, timestamp));
+            assertSameScalers(reference.get(timestamp), sequences.getScalers(5038, timestamp));
+        }
+        assertSameScalers(reference.get(0), sequences.getScalers(0, 0));
+    }
+
+    @Test
+    public void testMixedRunConfig() throws IOException {
+        SchemaFactory factory = getSchemaFactory();
+        List<String> files = Arrays.asList(
+                createFile(factory, 5038, new long[]{100, 200, 300}),
+                createFile(factory, 0, new long[2]),
+                createFile(factory, 5038, new long[]{400, 500}));
+        DaqScalersSequence reference = DaqScalersSequence.readSequence(files);
+        Tag1Sequences sequences = new Tag1Sequences(8, false, factory);
+        sequences.read(files, 3);
+        for (long timestamp = 0; timestamp < 700; timestamp += 50) {
+            assertSameScalers(reference.get(timestamp), sequences.getScalers(5038, timestamp));
+        }
+        assertSameScalers(reference.get(0), sequences.getScalers(0, 0));
+        // another run only has the readouts without RUN::config:
+        assertSameScalers(reference.get(0), sequences.getScalers(5039, 250));
+    }
+
+    @Test
+    public void testNoScalers() {
+        Tag1Sequences sequences = new Tag1Sequences(8, false, getSchemaFactory());
+        assertNull(sequences.getScalerSequence(0));
+        assertNull(sequences.getScalers(0, 0));
+        assertNull(sequences.getScalers(5038, 100));
+    }
+}
@@ -0,0 +1,205 @@
+package org.jlab.detector.decode;
+
+import java.util.Arrays;
+
+/**
+ * Batch version of {@link ExtendedFADCFitter#fit}, fitting all the mode-1
+ * pulses of an event in one call.
+ *
+ * The pulses are appended to one contiguous sample array with their
+ * offsets, lengths and fit parameters, and the results are written to
+ * primitive arrays indexed by pulse, with exactly the values the scalar
+ * fitter leaves in its public fields.  Buffers are reused between events.
+ */
+public class BatchFADCFitter {
+
+    // pedestal window, same as ExtendedFADCFitter:
+    private static final int P1 = 1, P2 = 15;
+    private static final int PEDESTAL_MAXBIN = 5;
+
+    private int     npulses = 0;
+    private int     nsamples = 0;
+    private short[] samples = new short[4096];
+
+    // input, per pulse:
+    private int[] offset = new int[64];
+    private int[] length = new int[64];
+    private int[] nsa    = new int[64];
+    private int[] nsb    = new int[64];
+    private int[] tet    = new int[64];
+    private int[] pedr   = new int[64];
+
+    // output, per pulse:
+    private int[]    t0                = new int[64];
+    private int[]    adc               = new int[64];
+    private int[]    ped               = new int[64];
+    private int[]    thresholdCrossing = new int[64];
+    private int[]    pulsePeakValue    = new int[64];
+    private int[]    pulsePeakPosition = new int[64];
+    private int[]    pulseWidth        = new int[64];
+    private double[] baseline          = new double[64];
+    private double[] rms               = new double[64];
+
+    public BatchFADCFitter(){
+
+    }
+
+    /**
+     * remove all pulses.
+     */
+    public void reset(){
+        npulses  = 0;
+        nsamples = 0;
+    }
+
+    public int getSize(){ return npulses;}
+
+    /**
+     * Appends a pulse to the batch.
+     * @param pulse samples
+     * @param nsa number of samples after threshold crossing
+     * @param nsb number of samples before threshold crossing
+     * @param tet threshold above pedestal
+     * @param pedr fixed pedestal, 0 to compute it from the pulse
+     * @return index of the pulse in the batch
+     */
+    public int add(short[] pulse, int nsa, int nsb, int tet, int pedr){
+        if(npulses==offset.length) this.grow(2*npulses);
+        if(nsamples+pulse.length>samples.length){
+            samples = Arrays.copyOf(samples, Math.max(2*samples.length, nsamples+pulse.length));
+        }
+        System.arraycopy(pulse, 0, samples, nsamples, pulse.length);
+        offset[npulses] = nsamples;
+        length[npulses] = pulse.length;
+        this.nsa[npulses]  = nsa;
+        this.nsb[npulses]  = nsb;
+        this.tet[npulses]  = tet;
+        this.pedr[npulses] = pedr;
+        nsamples += pulse.length;
+        return npulses++;
+    }
+
+    private void grow(int n){
+        offset = Arrays.copyOf(offset, n);
+        length = Arrays.copyOf(length, n);
+        nsa    = Arrays.copyOf(nsa, n);
+        nsb    = Arrays.copyOf(nsb, n);
+        tet    = Arrays.copyOf(tet, n);
+        pedr   = Arrays.copyOf(pedr, n);
+        t0                = Arrays.copyOf(t0, n);
+        adc               = Arrays.copyOf(adc, n);
+        ped               = Arrays.copyOf(ped, n);
+        thresholdCrossing = Arrays.copyOf(thresholdCrossing, n);
+        pulsePeakValue    = Arrays.copyOf(pulsePeakValue, n);
+        pulsePeakPosition = Arrays.copyOf(pulsePeakPosition, n);
+        pulseWidth        = Arrays.copyOf(pulseWidth, n);
+        baseline          = Arrays.copyOf(baseline, n);
+        rms               = Arrays.copyOf(rms, n);
+    }
+
+    /**
+     * Fits all pulses of the batch.
+     */
+    public void fit(){
+        final short[] s = this.samples;
+        for(int p = 0; p < npulses; p++){
+            final int off = offset[p];
+            final int len = length[p];
+            final int pr  = pedr[p];
+            int    pedestal = 0;
+            int    sum      = 0;
+            double base     = 0;
+            double noise    = 0;
+            int    tstart   = PEDESTAL_MAXBIN+1;
+
+            t0[p] = 0; adc[p] = 0; baseline[p] = 0; rms[p] = 0;
+            thresholdCrossing[p] = 0; pulsePeakValue[p] = 0; pulsePeakPosition[p] = 0; pulseWidth[p] = 0;
+
+            // pedestal and noise:
+            if(pr!=0) pedestal = pr;
+            if(len<P2+1 && pr==0){
+                for(int bin = off; bin < off+len; bin++) sum += s[bin];
+                ped[p] = len>0 ? sum/len : 0;
+                continue;
+            }
+            if(pr==0){
+                tstart = P2+1;
+                for(int bin = off+P1+1; bin < off+P2+1; bin++){
+                    sum   += s[bin];
+                    noise += s[bin]*s[bin];
+                }
+                base     = ((double) sum)/(P2-P1);
+                pedestal = sum/(P2-P1);
+                baseline[p] = base;
+                rms[p]      = Math.sqrt(noise/(P2-P1) - base*base);
+            }
+            ped[p] = pedestal;
+
+            // threshold crossing:
+            final int threshold = pedestal + tet[p];
+            int tcross = 0;
+            for(int bin = tstart; bin < len; bin++){
+                if(s[off+bin]>threshold){
+                    tcross = bin;
+                    break;
+                }
+            }
+            if(tcross==0) continue;
+            thresholdCrossing[p] = tcross;
+
+            // integral (up to tcross+nsa included, as the scalar fitter):
+            final int start = Math.max(0, tcross-nsb[p]);
+            final int stop  = Math.min(len, tcross+nsa[p]+1);
+            int integral = 0;
+            for(int bin = start; bin < stop; bin++) integral += s[off+bin];
+            adc[p] = integral - (stop>start ? (stop-start)*pedestal : 0);
+
+            // maximum after threshold crossing:
+            int pmax = 0, ppos = 0;
+            for(int bin = tcross; bin < stop; bin++){
+                if(s[off+bin]>pmax){
+                    pmax = s[off+bin];
+                    ppos = bin;
+                }
+            }
+            pulsePeakPosition[p] = ppos;
+            pulsePeakValue[p]    = pmax;
+
+            // fine time from the 50% crossing:
+            final double halfMax = (pmax+base)/2;
+            int s0 = -1, s1 = -1;
+            for(int bin = tcross-1; bin < Math.min(len-1, ppos+1); bin++){
+                if(s[off+bin]<=halfMax && s[off+bin+1]>halfMax){
+                    s0 = bin;
+                    break;
+                }
+            }
+            for(int bin = ppos; bin < Math.min(len-1, tcross+nsa[p]); bin++){
+                if(s[off+bin]>halfMax && s[off+bin+1]<=halfMax){
+                    s1 = bin;
+                    break;
+                }
+            }
+            if(s0>-1){
+                final int a0 = s[off+s0];
+                final int a1 = s[off+s0+1];
+                t0[p] = (s0 << 6) + ((int) ((halfMax - a0)/(a1-a0) * 64));
+            }
+            if(s1>-1 && s0>-1) pulseWidth[p] = s1 - s0;
+        }
+    }
+
+    /**
+     * @param pulse pulse index
+     * @return pedestal-subtracted integral, as ExtendedFADCFitter.adc
+     */
+    public int    getADC(int pulse){ return adc[pulse];}
+    public int    getPedestal(int pulse){ return ped[pulse];}
+    public int    getTimeWord(int pulse){ return t0[pulse];}
+    public int    getThresholdCrossing(int pulse){ return thresholdCrossing[pulse];}
+    public int    getPulsePeakValue(int pulse){ return pulsePeakValue[pulse];}
+    public int    getPulsePeakPosition(int pulse){ return pulsePeakPosition[pulse];}
+    public int    getPulseWidth(int pulse){ return pulseWidth[pulse];}
+    public double getBaseline(int pulse){ return baseline[pulse];}
+    public double getRMS(int pulse){ return rms[pulse];}
+}
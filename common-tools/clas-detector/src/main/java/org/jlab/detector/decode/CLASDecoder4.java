@@ -1,8 +1,15 @@
 package org.jlab.detector.decode;
 
 import org.jlab.detector.scalers.DaqScalers;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import java.sql.Time;
 import java.util.Date;
@@ -36,6 +43,8 @@ import org.jlab.utils.system.ClasUtilsFile;
  */
 public class CLASDecoder4 {
 
+    public static Logger LOGGER = Logger.getLogger(CLASDecoder4.class.getName());
+
     private CodaEventDecoder          codaDecoder = null;
     private DetectorEventDecoder  detectorDecoder = null;
     private List<DetectorDataDgtz>       dataList = new ArrayList<DetectorDataDgtz>();
@@ -145,7 +154,7 @@ public class CLASDecoder4 {
                         }
                     }
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    LOGGER.log(Level.SEVERE, "[CLASDecoder4] ---> failed to decode event", e);
                 }
             }
         }
@@ -696,6 +705,140 @@ public class CLASDecoder4 {
     }
     
     
+    /**
+     * The result of decoding one EVIO event: the data banks, the banks that
+     * only depend on this event and a copy of its header information.  The
+     * banks depending on previous events (header fields missing from this
+     * event, helicity flips, scalers) are added by an {@link EventSequencer}
+     * in input order, so that events can be decoded by several threads.
+     */
+    public static class DecodedEvent {
+        private Event            event;
+        private CodaEventDecoder header;
+        private Bank             decodedHelicity;
+        private Bank             epics;
+    }
+
+    /**
+     * Decode the event and the banks that only depend on it.
+     * @param evioEvent input EVIO event
+     * @return decoded event, to be completed by an {@link EventSequencer}
+     */
+    public DecodedEvent decode(EvioDataEvent evioEvent){
+        DecodedEvent decoded = new DecodedEvent();
+        decoded.event = this.getDataEvent(evioEvent);
+        decoded.header = new CodaEventDecoder();
+        if(evioEvent.getHandler().getStructure()!=null){
+            decoded.header.updateHeader(this.codaDecoder);
+        }
+        decoded.decodedHelicity = this.createHelicityDecoderBank(evioEvent);
+        decoded.epics = this.createEpicsBank();
+        return decoded;
+    }
+
+    /**
+     * Completes decoded events in input order, using the header state of
+     * its decoder, and writes them out.
+     */
+    public static class EventSequencer {
+
+        private final CLASDecoder4     decoder;
+        private final HipoWriterSorted writer;
+        private final int              nrun;
+        private final float            torus;
+        private final float            solenoid;
+
+        private final Bank  rawScaler;
+        private final Bank  rawRunConf;
+        private final Bank  helicityAdc;
+        private final Event scalerEvent = new Event();
+
+        private HelicityState prevHelicity = new HelicityState();
+        private int counter = 0;
+
+        public EventSequencer(CLASDecoder4 decoder, HipoWriterSorted writer, int nrun, float torus, float solenoid){
+            this.decoder  = decoder;
+            this.writer   = writer;
+            this.nrun     = nrun;
+            this.torus    = torus;
+            this.solenoid = solenoid;
+            rawScaler   = new Bank(writer.getSchemaFactory().getSchema("RAW::scaler"));
+            rawRunConf  = new Bank(writer.getSchemaFactory().getSchema("RUN::config"));
+            helicityAdc = new Bank(writer.getSchemaFactory().getSchema("HEL::adc"));
+        }
+
+        /**
+         * reset the helicity state at the start of a new input file.
+         */
+        public void startFile(){
+            prevHelicity = new HelicityState();
+        }
+
+        public int getCounter(){ return counter;}
+
+        public void write(DecodedEvent decoded){
+
+            decoder.codaDecoder.updateHeader(decoded.header);
+            decoder.setRunNumber(decoder.codaDecoder.getRunNumber());
+
+            Event decodedEvent = decoded.event;
+
+            Bank   header = decoder.createHeaderBank( nrun, counter, torus, solenoid);
+            if(header!=null) decodedEvent.write(header);
+            Bank   trigger = decoder.createTriggerBank();
+            if(trigger!=null) decodedEvent.write(trigger);
+            Bank onlineHelicity = decoder.createOnlineHelicityBank();
+            if(onlineHelicity!=null) decodedEvent.write(onlineHelicity);
+            if (decoded.decodedHelicity!=null) decodedEvent.write(decoded.decodedHelicity);
+
+            Bank epics = decoded.epics;
+
+            decodedEvent.read(rawScaler);
+            decodedEvent.read(rawRunConf);
+            decodedEvent.read(helicityAdc);
+
+            // check for changes to helicity state:
+            Bank helicityFlip = null;
+            if (helicityAdc.getRows()>0) {
+                HelicityState thisHelicity = HelicityState.createFromFadcBank(helicityAdc);
+                if (!thisHelicity.isValid() || !thisHelicity.equals(prevHelicity)) {
+                    helicityFlip = decoder.createHelicityFlipBank(decodedEvent,thisHelicity);
+                    prevHelicity = thisHelicity;
+                }
+            }
+
+            if(rawScaler.getRows()>0 || epics!=null || helicityFlip!=null) {
+                scalerEvent.reset();
+
+                if(rawScaler.getRows()>0) scalerEvent.write(rawScaler);
+                if(rawRunConf.getRows()>0) scalerEvent.write(rawRunConf);
+
+                Bank[] scalers = decoder.createReconScalerBanks(decodedEvent);
+                if (scalers != null) {
+                    for (Bank b : scalers) {
+                        decodedEvent.write(b);
+                        scalerEvent.write(b);
+                    }
+                }
+
+                if (epics!=null) {
+                    decodedEvent.write(epics);
+                    scalerEvent.write(epics);
+                }
+
+                if (helicityFlip!=null) {
+                    decodedEvent.write(helicityFlip);
+                    scalerEvent.write(helicityFlip);
+                }
+
+                writer.addEvent(scalerEvent, 1);
+            }
+
+            writer.addEvent(decodedEvent,0);
+            counter++;
+        }
+    }
+
     public static void main(String[] args){
 
         OptionParser parser = new OptionParser("decoder");
@@ -710,6 +853,7 @@ public class CLASDecoder4 {
         parser.addOption("-r", "-1","run number in the header bank (-1 means use CODA run)");
         parser.addOption("-t", "-0.5","torus current in the header bank");
         parser.addOption("-s", "0.5","solenoid current in the header bank");
+        parser.addOption("-j", "1","number of decoding threads");
 
         parser.parse(args);
 
@@ -741,6 +885,8 @@ public class CLASDecoder4 {
             int compression = parser.getOption("-c").intValue();
             int  recordsize = parser.getOption("-b").intValue();
             int debug = parser.getOption("-d").intValue();
+            int nthreads = parser.getOption("-j").intValue();
+            final boolean devel = developmentMode;
 
             CLASDecoder4 decoder = new CLASDecoder4(developmentMode);
 
@@ -757,12 +903,6 @@ public class CLASDecoder4 {
             writer.setCompressionType(compression);
             writer.getSchemaFactory().initFromDirectory(ClasUtilsFile.getResourceDir("CLAS12DIR", "etc/bankdefs/hipo4"));
 
-            Bank   rawScaler = new Bank(writer.getSchemaFactory().getSchema("RAW::scaler"));
-            Bank  rawRunConf = new Bank(writer.getSchemaFactory().getSchema("RUN::config"));
-            Bank  helicityAdc = new Bank(writer.getSchemaFactory().getSchema("HEL::adc"));
-            Event scalerEvent = new Event();
-
-
             int nrun = parser.getOption("-r").intValue();
             double torus = parser.getOption("-t").doubleValue();
             double solenoid = parser.getOption("-s").doubleValue();
@@ -772,92 +912,72 @@ public class CLASDecoder4 {
             ProgressPrintout progress = new ProgressPrintout();
             System.out.println("INPUT LIST SIZE = " + inputList.size());
             int nevents = parser.getOption("-n").intValue();
-            int counter = 0;
 
             if(nrun>0){
                 decoder.setRunNumber(nrun,true);
             }
 
-            for(String inputFile : inputList){
-                EvioSource reader = new EvioSource();
-                reader.open(inputFile);
-
-                HelicityState prevHelicity = new HelicityState();
-
-                while(reader.hasEvent()==true){
-                    EvioDataEvent event = (EvioDataEvent) reader.getNextEvent();
-
-                    Event  decodedEvent = decoder.getDataEvent(event);
-
-                    Bank   header = decoder.createHeaderBank( nrun, counter, (float) torus, (float) solenoid);
-                    if(header!=null) decodedEvent.write(header);
-                    Bank   trigger = decoder.createTriggerBank();
-                    if(trigger!=null) decodedEvent.write(trigger);
-                    Bank onlineHelicity = decoder.createOnlineHelicityBank();
-                    if(onlineHelicity!=null) decodedEvent.write(onlineHelicity);
-                    Bank decodedHelicity = decoder.createHelicityDecoderBank(event);
-                    if (decodedHelicity!=null) decodedEvent.write(decodedHelicity);
-                    //decodedEvent.appendBanks(header);
-                    //decodedEvent.appendBanks(trigger);
-
-                    Bank epics = decoder.createEpicsBank();
-
-                    //HipoDataEvent dhe = (HipoDataEvent) decodedEvent;
-                    //writer.writeEvent(dhe.getHipoEvent());
-
-                    int eventTag;
-                    decodedEvent.read(rawScaler);
-                    decodedEvent.read(rawRunConf);
-                    decodedEvent.read(helicityAdc);
-
-                    // check for changes to helicity state:
-                    Bank helicityFlip = null;
-                    if (helicityAdc.getRows()>0) {
-                        HelicityState thisHelicity = HelicityState.createFromFadcBank(helicityAdc);
-                        if (!thisHelicity.isValid() || !thisHelicity.equals(prevHelicity)) {
-                            helicityFlip = decoder.createHelicityFlipBank(decodedEvent,thisHelicity);
-                            //System.out.println("FLIP:  "+thisHelicity.getInfo(prevHelicity,counter));
-                            prevHelicity = thisHelicity;
-                        }
+            EventSequencer sequencer = new EventSequencer(decoder, writer, nrun, (float) torus, (float) solenoid);
+
+            if(nthreads<=1){
+                for(String inputFile : inputList){
+                    EvioSource reader = new EvioSource();
+                    reader.open(inputFile);
+                    sequencer.startFile();
+                    while(reader.hasEvent()==true){
+                        EvioDataEvent event = (EvioDataEvent) reader.getNextEvent();
+                        sequencer.write(decoder.decode(event));
+                        progress.updateStatus();
+                        if(nevents>0 && sequencer.getCounter()>=nevents) break;
                     }
-
-                    if(rawScaler.getRows()>0 || epics!=null || helicityFlip!=null) {
-                        scalerEvent.reset();
-
-                        if(rawScaler.getRows()>0) scalerEvent.write(rawScaler);
-                        if(rawRunConf.getRows()>0) scalerEvent.write(rawRunConf);
-
-                        Bank[] scalers = decoder.createReconScalerBanks(decodedEvent);
-                        if (scalers != null) {
-                            for (Bank b : scalers) {
-                                decodedEvent.write(b);
-                                scalerEvent.write(b);
+                    if(nevents>0 && sequencer.getCounter()>=nevents) break;
+                }
+            }
+            else {
+                // every worker thread decodes with its own decoder, the
+                // sequencer completes and writes the events in input order:
+                final ThreadLocal<CLASDecoder4> workers = ThreadLocal.withInitial(() -> {
+                    CLASDecoder4 worker = new CLASDecoder4(devel);
+                    worker.setDebugMode(debug);
+                    if(nrun>0) worker.setRunNumber(nrun,true);
+                    return worker;
+                });
+                ExecutorService pool = Executors.newFixedThreadPool(nthreads);
+                ArrayDeque<Future<DecodedEvent>> pending = new ArrayDeque<>();
+                int submitted = 0;
+                boolean failed = false;
+                try {
+                    for(String inputFile : inputList){
+                        EvioSource reader = new EvioSource();
+                        reader.open(inputFile);
+                        sequencer.startFile();
+                        while(reader.hasEvent()==true){
+                            if(nevents>0 && submitted>=nevents) break;
+                            final EvioDataEvent event = (EvioDataEvent) reader.getNextEvent();
+                            pending.add(pool.submit(() -> workers.get().decode(event)));
+                            submitted++;
+                            if(pending.size()>=4*nthreads){
+                                sequencer.write(pending.poll().get());
+                                progress.updateStatus();
                             }
                         }
-
-                        if (epics!=null) {
-                            decodedEvent.write(epics);
-                            scalerEvent.write(epics);
-                        }
-
-                        if (helicityFlip!=null) {
-                            decodedEvent.write(helicityFlip);
-                            scalerEvent.write(helicityFlip);
+                        // helicity state is reset per file, so flush before the next one:
+                        while(!pending.isEmpty()){
+                            sequencer.write(pending.poll().get());
+                            progress.updateStatus();
                         }
-                        
-                        writer.addEvent(scalerEvent, 1);
-                    }
-
-                    writer.addEvent(decodedEvent,0);
-
-                    counter++;
-                    progress.updateStatus();
-                    if(counter%25000==0){
-                        System.gc();
-                    }
-                    if(nevents>0){
-                        if(counter>=nevents) break;
                     }
+                } catch (InterruptedException | ExecutionException e) {
+                    LOGGER.log(Level.SEVERE, "[CLASDecoder4] ---> decoding thread failed", e);
+                    failed = true;
+                } finally {
+                    pool.shutdownNow();
+                }
+                if(failed){
+                    writer.close();
+                    LOGGER.log(Level.SEVERE, "[CLASDecoder4] ---> decoding failed after "
+                            + sequencer.getCounter() + " events, output file is incomplete");
+                    System.exit(1);
                 }
             }
             writer.close();
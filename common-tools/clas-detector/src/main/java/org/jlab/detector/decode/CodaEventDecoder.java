@@ -49,6 +49,17 @@ public class CodaEventDecoder {
 
     private final long timeStampTolerance = 0L;
     private int tiMaster = -1; 
+
+    // header information found in the last decoded event, see getHeaderMask:
+    public static final int HEADER_RUN          = 0x1;
+    public static final int HEADER_UNIXTIME     = 0x2;
+    public static final int HEADER_HELICITY     = 0x4;
+    public static final int HEADER_TRIGGER      = 0x8;
+    public static final int HEADER_TRIGGERWORDS = 0x10;
+    public static final int HEADER_TIMESTAMP    = 0x20;
+    private int headerMask = 0;
+
+    private final CompositeDataReader compositeReader = new CompositeDataReader();
             
     public CodaEventDecoder(){
 
@@ -62,6 +73,8 @@ public class CodaEventDecoder {
      */
     public List<DetectorDataDgtz> getDataEntries(EvioDataEvent event){
         
+        this.headerMask = 0;
+
         int event_size = event.getHandler().getStructure().getByteBuffer().array().length;
     
         // This had been inserted to accommodate large EVIO events that
@@ -117,6 +130,35 @@ public class CodaEventDecoder {
         return this.runNumber;
     }
 
+    /**
+     * @return bit mask of the HEADER_* fields read from the last event,
+     * the other fields keep their values from previous events
+     */
+    public int getHeaderMask(){
+        return this.headerMask;
+    }
+
+    /**
+     * Copies the header information of the last event decoded by another
+     * decoder, only for the fields that event contained. Feeding a decoder the headers of all events in order
+     * leaves it in the same state as if it had decoded them itself.
+     * @param other decoder of the event
+     */
+    public void updateHeader(CodaEventDecoder other){
+        if((other.headerMask&HEADER_RUN)!=0){
+            this.runNumber = other.runNumber;
+            this.eventNumber = other.eventNumber;
+        }
+        if((other.headerMask&HEADER_UNIXTIME)!=0) this.unixTime = other.unixTime;
+        if((other.headerMask&HEADER_HELICITY)!=0) this.helicityLevel3 = other.helicityLevel3;
+        if((other.headerMask&HEADER_TRIGGER)!=0) this.triggerBits = other.triggerBits;
+        if((other.headerMask&HEADER_TRIGGERWORDS)!=0){
+            this.triggerWords = new ArrayList<>(other.triggerWords);
+        }
+        if((other.headerMask&HEADER_TIMESTAMP)!=0) this.timeStamp = other.timeStamp;
+        this.headerMask = other.headerMask;
+    }
+
     public int getEventNumber(){
         return this.eventNumber;
     }
@@ -173,6 +215,7 @@ public class CodaEventDecoder {
             if(tiSync) ts = tiEntries.get(i0).getTimeStamp();
         }
         this.timeStamp = ts ;
+        this.headerMask |= HEADER_TIMESTAMP;
     }
 
     public long getTriggerBits() {
@@ -181,6 +224,7 @@ public class CodaEventDecoder {
 
     public void setTriggerBits(long triggerBits) {
         this.triggerBits = triggerBits;
+        this.headerMask |= HEADER_TRIGGER;
     }
 
 
@@ -385,8 +429,13 @@ public class CodaEventDecoder {
                 int[] intData = ByteDataTransformer.toIntArray(node.getStructureBuffer(true));
                 this.runNumber = intData[3];
                 this.eventNumber = intData[4];
-                if(intData[5]!=0) this.unixTime  = intData[5];
+                this.headerMask |= HEADER_RUN;
+                if(intData[5]!=0) {
+                    this.unixTime  = intData[5];
+                    this.headerMask |= HEADER_UNIXTIME;
+                }
                 this.helicityLevel3=HelicityBit.DNE.value();
+                this.headerMask |= HEADER_HELICITY;
                 if(intData.length>7) {
                     if ( (intData[7] & 0x1) == 0) {
                         this.helicityLevel3=HelicityBit.UDF.value();
@@ -407,6 +456,7 @@ public class CodaEventDecoder {
             } catch (Exception e) {
                 this.runNumber = 10;
                 this.eventNumber = 1;
+                this.headerMask |= HEADER_RUN;
             }
         } else {
             System.out.println("[error] can not read header bank");
@@ -425,6 +475,16 @@ public class CodaEventDecoder {
         if(node.getTag()==57617){
             try {
 //                System.out.println("Found SVT bank");
+                if(compositeReader.readSVT(node, event.getByteOrder())>=0){
+                    for(int hit = 0; hit < compositeReader.getSize(); hit++){
+                        rawdata.add(this.createSVTEntry(crate, (byte) compositeReader.getSlot(hit),
+                                compositeReader.getByte(hit, 0), compositeReader.getByte(hit, 1),
+                                compositeReader.getByte(hit, 2), compositeReader.getByte(hit, 3),
+                                compositeReader.getTime(hit)));
+                    }
+                    return rawdata;
+                }
+                // other formats, through the generic composite data:
                 ByteBuffer     compBuffer = node.getByteData(true);
                 //System.out.println(" COMPOSITE TYPE   = " + node.getTypeObj().name() + " "
                 //+ node.getDataTypeObj().name());
@@ -456,50 +516,10 @@ public class CodaEventDecoder {
                         Byte   half    = (Byte) cdataitems.get(position);
                         Byte   channel = (Byte) cdataitems.get(position+1);
                         Byte   tdcbyte = (Byte) cdataitems.get(position+2);
-                        Short  tdc     = DataUtils.getShortFromByte(tdcbyte);
-                        //Byte   tdc     = (Byte) cdataitems.get(position+2);
-                        //Short   adc     = (Short)  cdataitems.get(position+3);
                         Byte   adcbyte = (Byte)  cdataitems.get(position+3);
-
-                        // regular FSSR data entry
-                        int halfWord = DataUtils.getIntFromByte(half);
-                        int   chipID = DataUtils.getInteger(halfWord, 0, 2);
-                        int   halfID = DataUtils.getInteger(halfWord, 3, 3);
-                        int   adc    = adcbyte;
-                        Integer channelKey = ((half<<8) | (channel & 0xff));
-
-//                        System.err.println( "Half/chip = " + half + " CHIP = " + chipID + " HALF = " + halfID + "  CHANNEL = " + channel + " KEY = " + channelKey  );
-
-                        // TDC data entry
-                        if(half == -128) {
-                            halfWord   = DataUtils.getIntFromByte(channel);
-                            halfID     = DataUtils.getInteger(halfWord, 2, 2);
-                            chipID     = DataUtils.getInteger(halfWord, 0, 1) + 1;
-                            channel    = 0;
-                            channelKey = 0;
-                            tdc = (short) ((adcbyte<<8) | (tdcbyte & 0xff));
-//                            System.err.println( "Half/chip = " + half + " CHIP = " + chipID + " HALF = " + halfID + " TDC = " + tdcbyte + "  ADC = " + adc + " Time = " + tdc  );
-                            adc = -1;
-                        }
-
-                        //dataBank.addChannel(channelKey);
-                        //dataBank.addData(channelKey, new RawData(channelKey,tdc,adc));
-                        //int channelID = chipID*10000 + halfID*1000 + channel;
-                        int channelID = halfID*10000 + chipID*1000 + channel;
                         position += 4;
                         counter++;
-                        DetectorDataDgtz entry = new DetectorDataDgtz(crate,slot,channelID);
-                        ADCData adcData = new ADCData();
-                        adcData.setIntegral(adc);
-                        adcData.setPedestal( (short) 0);
-                        adcData.setADC(0,0);
-                        adcData.setTime(tdc);
-                        adcData.setTimeStamp(time);
-                        entry.addADC(adcData);
-                        //RawDataEntry  entry = new RawDataEntry(crate,slot,channelKey);
-                        //entry.setSVT(half, channel, tdc, adc);
-//                        System.out.println(crate + " " + slot+ " " + channelID+ " " + adcData.getIntegral()+ " " + adcData.getADC()+ " " + adcData.getTime());
-                        rawdata.add(entry);
+                        rawdata.add(this.createSVTEntry(crate, slot, half, channel, tdcbyte, adcbyte, time));
                     }
                     //bankArray.add(dataBank);
                 }
@@ -513,12 +533,56 @@ public class CodaEventDecoder {
         return rawdata;
     }
 
+    /**
+     * creates the digitized data of one SVT FSSR hit.
+     */
+    private DetectorDataDgtz createSVTEntry(int crate, byte slot, byte half, byte channel,
+                                            byte tdcbyte, byte adcbyte, long time){
+        Short  tdc     = DataUtils.getShortFromByte(tdcbyte);
+
+        // regular FSSR data entry
+        int halfWord = DataUtils.getIntFromByte(half);
+        int   chipID = DataUtils.getInteger(halfWord, 0, 2);
+        int   halfID = DataUtils.getInteger(halfWord, 3, 3);
+        int   adc    = adcbyte;
+
+        // TDC data entry
+        if(half == -128) {
+            halfWord   = DataUtils.getIntFromByte(channel);
+            halfID     = DataUtils.getInteger(halfWord, 2, 2);
+            chipID     = DataUtils.getInteger(halfWord, 0, 1) + 1;
+            channel    = 0;
+            tdc = (short) ((adcbyte<<8) | (tdcbyte & 0xff));
+            adc = -1;
+        }
+
+        int channelID = halfID*10000 + chipID*1000 + channel;
+        DetectorDataDgtz entry = new DetectorDataDgtz(crate,slot,channelID);
+        ADCData adcData = new ADCData();
+        adcData.setIntegral(adc);
+        adcData.setPedestal( (short) 0);
+        adcData.setADC(0,0);
+        adcData.setTime(tdc);
+        adcData.setTimeStamp(time);
+        entry.addADC(adcData);
+        return entry;
+    }
+
     public List<FADCData>  getADCEntries_Tag(Integer crate, EvioNode node, EvioDataEvent event, int tagid){
         List<FADCData>  entries = new ArrayList<FADCData>();
         if(node.getTag()==tagid){
           //if(node.getTag()==57638){
             try {
 
+                if(compositeReader.readRawFADC(node, event.getByteOrder())>=0){
+                    for(int hit = 0; hit < compositeReader.getSize(); hit++){
+                        FADCData   bank = new FADCData(crate,compositeReader.getSlot(hit),compositeReader.getChannel(hit));
+                        bank.setBuffer(compositeReader.getShorts(hit));
+                        entries.add(bank);
+                    }
+                    return entries;
+                }
+                // other formats, through the generic composite data:
                 ByteBuffer     compBuffer = node.getByteData(true);
                 CompositeData  compData = new CompositeData(compBuffer.array(),event.getByteOrder());
 
@@ -632,7 +696,17 @@ public class CodaEventDecoder {
     public List<FADCData>  getDataEntries_57638(Integer crate, EvioNode node, EvioDataEvent event){
         List<FADCData>  entries = new ArrayList<FADCData>();
         if(node.getTag()==57638){
+            if(compositeReader.readPackedFADC(node, event.getByteOrder())>=0){
+                for(int hit = 0; hit < compositeReader.getSize(); hit++){
+                    if(compositeReader.getLength(hit)<=18) continue;
+                    FADCData data = new FADCData(crate,compositeReader.getSlot(hit),compositeReader.getChannel(hit));
+                    data.setBuffer(compositeReader.getShorts(hit));
+                    entries.add(data);
+                }
+                return entries;
+            }
             //try {
+                // other formats, through the generic composite data:
                 ByteBuffer     compBuffer = node.getByteData(true);
                 //System.out.println(" COMPOSITE TYPE   = " + node.getTypeObj().name() + " " + node.getDataTypeObj().name());
                 //System.out.println(" COMPOSITE BUFFER = " + compBuffer.array().length);
@@ -1447,6 +1521,7 @@ public class CodaEventDecoder {
 			long word = (( (long) intData[7])<<32) | (intData[6]&0xffffffffL);
 			this.setTriggerBits(word);
                         this.triggerWords.clear();
+                        this.headerMask |= HEADER_TRIGGERWORDS;
                         for(int i=6; i<=8; i++) {
                             this.triggerWords.add(intData[i]);
 //                            System.out.println(this.triggerWords.get(this.triggerWords.size()-1));
@@ -0,0 +1,212 @@
+package org.jlab.detector.decode;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import org.jlab.coda.jevio.EvioNode;
+
+/**
+ * Streaming reader of the EVIO composite banks with a fixed, known format,
+ * walking the node data in place instead of copying it and boxing every
+ * item through CompositeData.
+ *
+ * Each parse method fills reusable primitive columns with one entry per
+ * hit (slot, channel, trigger, time stamp, byte offset and number of items
+ * of the hit data in the buffer); the samples themselves are read from the
+ * node buffer on demand.  One reader is meant to be reused for all events
+ * decoded by one thread.
+ *
+ * Supported formats, checked against the format string of the node:
+ * <pre>
+ *   c,m(c,ms)          FADC250 packed window (tag 57638)
+ *   c,i,l,N(c,Ns)      FADC250 raw window (mode 1)
+ *   c,i,l,N(c,c,c,c)   SVT FSSR (tag 57617)
+ * </pre>
+ */
+public class CompositeDataReader {
+
+    private ByteBuffer buffer = null;
+    private int        end    = 0;
+
+    private int    size    = 0;
+    private int[]  slot    = new int[256];
+    private int[]  channel = new int[256];
+    private int[]  trigger = new int[256];
+    private long[] time    = new long[256];
+    private int[]  offset  = new int[256];
+    private int[]  length  = new int[256];
+
+    public static final String FORMAT_PACKED_FADC = "c,m(c,ms)";
+    public static final String FORMAT_RAW_FADC    = "c,i,l,N(c,Ns)";
+    public static final String FORMAT_SVT         = "c,i,l,N(c,c,c,c)";
+
+    /**
+     * Sets the buffer to the data of a composite node, skipping the format
+     * tagsegment and the data bank header, without copying.
+     * @return byte position of the first data item, -1 if the format of
+     * the node is not the expected one
+     */
+    private int init(EvioNode node, ByteOrder order, String format){
+        this.buffer = node.getByteData(false);
+        this.buffer.order(order);
+        this.size = 0;
+        int position = buffer.position();
+        final int formatLength = buffer.getInt(position)&0xFFFF;
+        if(!this.hasFormat(position+4, 4*formatLength, format)) return -1;
+        position += 4*(1+formatLength);
+        final int bankLength = buffer.getInt(position);
+        final int padding    = (buffer.getInt(position+4)>>14)&0x3;
+        this.end = Math.min(buffer.limit(), position + 4*(bankLength+1) - padding);
+        return position + 8;
+    }
+
+    /**
+     * compares the format string, padded with 0 or 4, to the expected one.
+     */
+    private boolean hasFormat(int position, int length, String format){
+        if(format.length()>length) return false;
+        for(int i = 0; i < format.length(); i++){
+            if(buffer.get(position+i)!=format.charAt(i)) return false;
+        }
+        return format.length()==length || buffer.get(position+format.length())==0
+                                       || buffer.get(position+format.length())==4;
+    }
+
+    private void add(int s, int c, int trig, long t, int off, int len){
+        if(size==slot.length){
+            final int n = 2*size;
+            slot    = Arrays.copyOf(slot, n);
+            channel = Arrays.copyOf(channel, n);
+            trigger = Arrays.copyOf(trigger, n);
+            time    = Arrays.copyOf(time, n);
+            offset  = Arrays.copyOf(offset, n);
+            length  = Arrays.copyOf(length, n);
+        }
+        slot[size]    = s;
+        channel[size] = c;
+        trigger[size] = trig;
+        time[size]    = t;
+        offset[size]  = off;
+        length[size]  = len;
+        size++;
+    }
+
+    /**
+     * Reads a FADC250 packed window bank, format c,m(c,ms).  The hit data
+     * are the packed shorts.
+     * @param node composite node
+     * @param order byte order of the event
+     * @return number of hits, -1 if the node does not have this format
+     */
+    public int readPackedFADC(EvioNode node, ByteOrder order){
+        int position = this.init(node, order, FORMAT_PACKED_FADC);
+        if(position<0) return -1;
+        while(position+2<=end){
+            final int s         = buffer.get(position)&0xFF;
+            final int nchannels = buffer.get(position+1)&0xFF;
+            position += 2;
+            for(int i = 0; i < nchannels; i++){
+                if(position+2>end) return size;
+                final int c = buffer.get(position)&0xFF;
+                final int n = buffer.get(position+1)&0xFF;
+                position += 2;
+                if(position+2*n>end) return size;
+                this.add(s, c, 0, 0L, position, n);
+                position += 2*n;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Reads a FADC250 raw window bank, format c,i,l,N(c,Ns).  The hit data
+     * are the samples.
+     * @param node composite node
+     * @param order byte order of the event
+     * @return number of hits, -1 if the node does not have this format
+     */
+    public int readRawFADC(EvioNode node, ByteOrder order){
+        int position = this.init(node, order, FORMAT_RAW_FADC);
+        if(position<0) return -1;
+        while(position+17<=end){
+            final int  s         = buffer.get(position);
+            final int  trig      = buffer.getInt(position+1);
+            final long t         = buffer.getLong(position+5);
+            final int  nchannels = buffer.getInt(position+13);
+            position += 17;
+            for(int i = 0; i < nchannels; i++){
+                if(position+5>end) return size;
+                final int c = buffer.get(position);
+                final int n = buffer.getInt(position+1);
+                position += 5;
+                if(n<0 || position+2*n>end) return size;
+                this.add(s, c, trig, t, position, n);
+                position += 2*n;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Reads a SVT bank, format c,i,l,N(c,c,c,c).  The hit data are the
+     * four bytes half, channel, tdc and adc, and the channel column holds
+     * the channel byte.
+     * @param node composite node
+     * @param order byte order of the event
+     * @return number of hits, -1 if the node does not have this format
+     */
+    public int readSVT(EvioNode node, ByteOrder order){
+        int position = this.init(node, order, FORMAT_SVT);
+        if(position<0) return -1;
+        while(position+17<=end){
+            final int  s         = buffer.get(position);
+            final int  trig      = buffer.getInt(position+1);
+            final long t         = buffer.getLong(position+5);
+            final int  nchannels = buffer.getInt(position+13);
+            position += 17;
+            for(int i = 0; i < nchannels; i++){
+                if(position+4>end) return size;
+                this.add(s, buffer.get(position+1), trig, t, position, 4);
+                position += 4;
+            }
+        }
+        return size;
+    }
+
+    public int  getSize(){ return size;}
+    public int  getSlot(int hit){ return slot[hit];}
+    public int  getChannel(int hit){ return channel[hit];}
+    public int  getTrigger(int hit){ return trigger[hit];}
+    public long getTime(int hit){ return time[hit];}
+    public int  getOffset(int hit){ return offset[hit];}
+    public int  getLength(int hit){ return length[hit];}
+
+    /**
+     * @param hit hit index
+     * @param index item index in the hit data
+     * @return the short item
+     */
+    public short getShort(int hit, int index){
+        return buffer.getShort(offset[hit]+2*index);
+    }
+
+    /**
+     * @param hit hit index
+     * @param index item index in the hit data
+     * @return the byte item
+     */
+    public byte getByte(int hit, int index){
+        return buffer.get(offset[hit]+index);
+    }
+
+    /**
+     * Copies the short items of a hit.
+     * @param hit hit index
+     * @return new array with the items
+     */
+    public short[] getShorts(int hit){
+        short[] data = new short[length[hit]];
+        for(int i = 0; i < data.length; i++) data[i] = buffer.getShort(offset[hit]+2*i);
+        return data;
+    }
+}
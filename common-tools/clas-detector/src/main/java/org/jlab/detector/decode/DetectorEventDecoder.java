@@ -6,6 +6,7 @@
 
 package org.jlab.detector.decode;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import org.jlab.detector.base.DetectorType;
@@ -34,9 +35,25 @@ public class DetectorEventDecoder {
     private  BasicFADCFitter      basicFitter     = new BasicFADCFitter();
     private  ExtendedFADCFitter   extendedFitter  = new ExtendedFADCFitter();
     private  MVTFitter            mvtFitter       = new MVTFitter();
+    private  BatchFADCFitter      batchFitter     = new BatchFADCFitter();
+
+    // extended fits deferred to the batch fitter, one per (data,table):
+    private final List<DetectorDataDgtz> batchData = new ArrayList<>();
+    private  int[]                batchNSA        = new int[64];
+    private  int[]                batchNSB        = new int[64];
 
     private  Boolean          useExtendedFitter   = false;
 
+    private final DetectorTranslationIndex translationIndex = new DetectorTranslationIndex();
+
+    // per-run MVT fitter constants, indexed like keysFitter:
+    private  int              mvtRunNumber        = -1;
+    private  DetectorType[]   mvtTypes            = null;
+    private  short[]          mvtAdcOffset        = null;
+    private  double[]         mvtFineTime         = null;
+    private  double[]         mvtSamplingTime     = null;
+    private  int[]            mvtSparseSample     = null;
+
     public DetectorEventDecoder(boolean development){
         if(development==true){
             this.initDecoderDev();
@@ -131,6 +148,17 @@ public class DetectorEventDecoder {
     public void setUseExtendedFitter(boolean flag){
         this.useExtendedFitter = flag;
     }
+    /**
+     * @return the translation/fitter index of the current run, compiled
+     * from the constants managers when the run number changes
+     */
+    public DetectorTranslationIndex getTranslationIndex(){
+        if(translationIndex.getRunNumber()!=runNumber){
+            translationIndex.build(runNumber, translationManager, keysTrans, fitterManager, keysFitter);
+        }
+        return translationIndex;
+    }
+
     /**
      * applies translation table to the digitized data to translate
      * crate,slot channel to sector layer component.
@@ -138,123 +166,186 @@ public class DetectorEventDecoder {
      */
     public void translate(List<DetectorDataDgtz>  detectorData){
 
+        if(detectorData.isEmpty()) return;
+
+        DetectorTranslationIndex index = this.getTranslationIndex();
+
         for(DetectorDataDgtz data : detectorData){
 
             int crate    = data.getDescriptor().getCrate();
             int slot     = data.getDescriptor().getSlot();
             int channel  = data.getDescriptor().getChannel();
-            //if(crate==69){
-	    //System.out.println(" MVT " + crate + " " + slot +
-	    //  "  " + channel);
-	// }
-            boolean hasBeenAssigned = false;
-
-            for(String table : keysTrans){
-                IndexedTable  tt = translationManager.getConstants(runNumber, table);
-                DetectorType  type = DetectorType.getType(table);
-
-                if(tt.hasEntry(crate,slot,channel)==true){
-                    int sector    = tt.getIntValue("sector", crate,slot,channel);
-                    int layer     = tt.getIntValue("layer", crate,slot,channel);
-                    int component = tt.getIntValue("component", crate,slot,channel);
-                    int order     = tt.getIntValue("order", crate,slot,channel);
-
-                    /*if(crate>60&&crate<64){
-                        System.out.println(" SVT " + sector + " " + layer +
-                                "  " + component);
-                    }*/
-                    data.getDescriptor().setSectorLayerComponent(sector, layer, component);
-                    data.getDescriptor().setOrder(order);
-                    data.getDescriptor().setType(type);
-                    for(int i = 0; i < data.getADCSize(); i++) {
-                        data.getADCData(i).setOrder(order);
-                    }
-                    for(int i = 0; i < data.getTDCSize(); i++) {
-                        data.getTDCData(i).setOrder(order);
-                    }
-                }
+
+            int entry = index.getEntry(crate, slot, channel);
+            if(entry<0) continue;
+            DetectorType type = index.getType(entry);
+            if(type==null) continue;
+
+            int order = index.getOrder(entry);
+            data.getDescriptor().setSectorLayerComponent(index.getSector(entry),
+                    index.getLayer(entry), index.getComponent(entry));
+            data.getDescriptor().setOrder(order);
+            data.getDescriptor().setType(type);
+            for(int i = 0; i < data.getADCSize(); i++) {
+                data.getADCData(i).setOrder(order);
+            }
+            for(int i = 0; i < data.getTDCSize(); i++) {
+                data.getTDCData(i).setOrder(order);
             }
         }
         //Collections.sort(detectorData);
     }
 
+    private void initMVTConstants(){
+        if(mvtRunNumber==runNumber) return;
+        int n = keysFitter.size();
+        mvtTypes        = new DetectorType[n];
+        mvtAdcOffset    = new short[n];
+        mvtFineTime     = new double[n];
+        mvtSamplingTime = new double[n];
+        mvtSparseSample = new int[n];
+        for(int t = 0; t < n; t++){
+            String table = keysFitter.get(t);
+            if(table.equals("BMT") || table.equals("FMT") || table.equals("FTTRK")){
+                IndexedTable daq = fitterManager.getConstants(runNumber, table);
+                mvtTypes[t]        = DetectorType.getType(table);
+                mvtAdcOffset[t]    = (short) daq.getDoubleValue("adc_offset", 0, 0, 0);
+                mvtFineTime[t]     = (byte) daq.getDoubleValue("dream_clock", 0, 0, 0);
+                mvtSamplingTime[t] = (byte) daq.getDoubleValue("sampling_time", 0, 0, 0);
+                mvtSparseSample[t] = daq.getIntValue("sparse", 0, 0 ,0);
+            }
+        }
+        mvtRunNumber = runNumber;
+    }
+
     public void fitPulses(List<DetectorDataDgtz>  detectorData){
+
+        if(detectorData.isEmpty()) return;
+
+        DetectorTranslationIndex index = this.getTranslationIndex();
+        this.initMVTConstants();
+
+        batchFitter.reset();
+        batchData.clear();
+
         for(DetectorDataDgtz data : detectorData){
             int crate    = data.getDescriptor().getCrate();
             int slot     = data.getDescriptor().getSlot();
             int channel  = data.getDescriptor().getChannel();
-            //System.out.println(" looking for " + crate + "  "
-            //       + slot + " " + channel);
-            for(String table : keysFitter){
+            DetectorType dataType = data.getDescriptor().getType();
+            int  entry = index.getEntry(crate, slot, channel);
+            long mask  = entry<0 ? 0L : index.getFitterMask(entry);
+            // MVT data are fitted in place, keeping the table order:
+            boolean isMVT = false;
+            for(int t = 0; t < keysFitter.size(); t++){
+                if(mvtTypes[t]!=null && mvtTypes[t]==dataType) isMVT = true;
+            }
+            for(int t = 0; t < keysFitter.size(); t++){
                 //custom MM fitter
-            	if( ( (table.equals("BMT"))&&(data.getDescriptor().getType().getName().equals("BMT")) )
-                 || ( (table.equals("FMT"))&&(data.getDescriptor().getType().getName().equals("FMT")) )
-                 || ( (table.equals("FTTRK"))&&(data.getDescriptor().getType().getName().equals("FTTRK")) ) ){
-                    IndexedTable daq = fitterManager.getConstants(runNumber, table);
-                    short adcOffset = (short) daq.getDoubleValue("adc_offset", 0, 0, 0);
-                    double fineTimeStampResolution = (byte) daq.getDoubleValue("dream_clock", 0, 0, 0);
-                    double samplingTime = (byte) daq.getDoubleValue("sampling_time", 0, 0, 0);
-                    int sparseSample = daq.getIntValue("sparse", 0, 0 ,0);
+                if(mvtTypes[t]!=null && mvtTypes[t]==dataType){
                     if (data.getADCSize() > 0) {
                         ADCData adc = data.getADCData(0);
-                        mvtFitter.fit(adcOffset, fineTimeStampResolution, samplingTime, adc.getPulseArray(), adc.getTimeStamp(), sparseSample);
+                        mvtFitter.fit(mvtAdcOffset[t], mvtFineTime[t], mvtSamplingTime[t], adc.getPulseArray(), adc.getTimeStamp(), mvtSparseSample[t]);
                         adc.setHeight((short) (mvtFitter.adcMax));
                         adc.setTime((int) (mvtFitter.timeMax));
                         adc.setIntegral((int) (mvtFitter.integral));
                         adc.setTimeStamp(mvtFitter.timestamp);
                     }
-                } else {
-                    IndexedTable  daq = fitterManager.getConstants(runNumber, table);
-                    DetectorType  type = DetectorType.getType(table);
-                    if(daq.hasEntry(crate,slot,channel)==true){
-                        //basicFitter.setPulse(0, 4).setPedestal(35, 70);
-                        //for(int i = 0; i < data.getADCSize(); i++){
-                        //    basicFitter.fit(data.getADCData(i));
-                        //}
-                        int nsa = daq.getIntValue("nsa", crate,slot,channel);
-                        int nsb = daq.getIntValue("nsb", crate,slot,channel);
-                        int tet = daq.getIntValue("tet", crate,slot,channel);
-                        int ped = 0;
-                        if(table.equals("RF")&&data.getDescriptor().getType().getName().equals("RF")) ped = daq.getIntValue("pedestal", crate,slot,channel);
-                        if(data.getADCSize()>0){
-                            for(int i = 0; i < data.getADCSize(); i++){
-                                ADCData adc = data.getADCData(i);
-                                if(adc.getPulseSize()>0){
-                                    //System.out.println("-----");
-                                    //System.out.println(" FITTING PULSE " +
-                                    //        crate + " / " + slot + " / " + channel);
-                                    try {
-                                        extendedFitter.fit(nsa, nsb, tet, ped, adc.getPulseArray());
-                                    } catch (Exception e) {
-                                        System.out.println(">>>> error : fitting pulse "
-                                                            +  crate + " / " + slot + " / " + channel);
-                                    }
-                                    //System.out.println(" FIT RESULT = " + extendedFitter.adc + " / "
-                                    //        + this.extendedFitter.t0 + " / " + this.extendedFitter.ped);
-                                    int adc_corrected = extendedFitter.adc + extendedFitter.ped*(nsa+nsb);
-                                    adc.setHeight((short) this.extendedFitter.pulsePeakValue);
-                                    adc.setIntegral(adc_corrected);
-                                    adc.setTimeWord(this.extendedFitter.t0);
-                                    adc.setPedestal((short) this.extendedFitter.ped);
-//                                    if(table.equals("RF")&&data.getDescriptor().getType().getName().equals("RF"))
-//                                        System.out.println(" FITTING PULSE " +
-//                                                        crate + " / " + slot + " / " + channel
-//                                                + " " + nsa + " " + nsb + " " + tet
-//                                                + " " + extendedFitter.adc + " " + extendedFitter.ped*(nsa+nsb)
-//                                                + " " + adc.getPedestal() + " " + adc.getADC() + " " + adc.getTime()
-//                                    );
-                                }
-                            }
-                        }
-                        //System.out.println(" apply nsa nsb " + nsa + " " + nsb);
-                        if(data.getADCSize()>0){
-                            for(int i = 0; i < data.getADCSize(); i++){
-                                    data.getADCData(i).setADC(nsa, nsb);
-                            }
-                        }
+                } else if((mask&(1L<<t))!=0){
+                    String table = keysFitter.get(t);
+                    boolean isRF = table.equals("RF") && dataType==DetectorType.RF;
+                    int nsa, nsb, tet, ped = 0;
+                    if(Long.bitCount(mask)==1){
+                        nsa = index.getNSA(entry);
+                        nsb = index.getNSB(entry);
+                        tet = index.getTET(entry);
+                        if(isRF) ped = index.getPedestal(entry);
+                    } else {
+                        // channel in several fitter tables, use this table's values:
+                        IndexedTable  daq = fitterManager.getConstants(runNumber, table);
+                        nsa = daq.getIntValue("nsa", crate,slot,channel);
+                        nsb = daq.getIntValue("nsb", crate,slot,channel);
+                        tet = daq.getIntValue("tet", crate,slot,channel);
+                        if(isRF) ped = daq.getIntValue("pedestal", crate,slot,channel);
                     }
+                    if(isMVT) this.fitExtended(data, nsa, nsb, tet, ped);
+                    else      this.addExtended(data, nsa, nsb, tet, ped);
                 }
             }
         }
+
+        this.fitBatch();
+    }
+
+    /**
+     * queue the pulses of the data for the batch fitter.
+     */
+    private void addExtended(DetectorDataDgtz data, int nsa, int nsb, int tet, int ped){
+        final int n = batchData.size();
+        if(n==batchNSA.length){
+            batchNSA = Arrays.copyOf(batchNSA, 2*n);
+            batchNSB = Arrays.copyOf(batchNSB, 2*n);
+        }
+        batchData.add(data);
+        batchNSA[n] = nsa;
+        batchNSB[n] = nsb;
+        for(int i = 0; i < data.getADCSize(); i++){
+            ADCData adc = data.getADCData(i);
+            if(adc.getPulseSize()>0) batchFitter.add(adc.getPulseArray(), nsa, nsb, tet, ped);
+        }
+    }
+
+    /**
+     * fit the queued pulses and store the results, in the order they were
+     * queued, as fitExtended does for one channel.
+     */
+    private void fitBatch(){
+        if(batchData.isEmpty()) return;
+        batchFitter.fit();
+        int pulse = 0;
+        for(int k = 0; k < batchData.size(); k++){
+            DetectorDataDgtz data = batchData.get(k);
+            final int nsa = batchNSA[k];
+            final int nsb = batchNSB[k];
+            for(int i = 0; i < data.getADCSize(); i++){
+                ADCData adc = data.getADCData(i);
+                if(adc.getPulseSize()>0){
+                    int adc_corrected = batchFitter.getADC(pulse) + batchFitter.getPedestal(pulse)*(nsa+nsb);
+                    adc.setHeight((short) batchFitter.getPulsePeakValue(pulse));
+                    adc.setIntegral(adc_corrected);
+                    adc.setTimeWord(batchFitter.getTimeWord(pulse));
+                    adc.setPedestal((short) batchFitter.getPedestal(pulse));
+                    pulse++;
+                }
+            }
+            for(int i = 0; i < data.getADCSize(); i++){
+                data.getADCData(i).setADC(nsa, nsb);
+            }
+        }
+        batchData.clear();
+    }
+
+    private void fitExtended(DetectorDataDgtz data, int nsa, int nsb, int tet, int ped){
+        for(int i = 0; i < data.getADCSize(); i++){
+            ADCData adc = data.getADCData(i);
+            if(adc.getPulseSize()>0){
+                try {
+                    extendedFitter.fit(nsa, nsb, tet, ped, adc.getPulseArray());
+                } catch (Exception e) {
+                    System.out.println(">>>> error : fitting pulse "
+                                        +  data.getDescriptor().getCrate() + " / "
+                                        +  data.getDescriptor().getSlot() + " / "
+                                        +  data.getDescriptor().getChannel());
+                }
+                int adc_corrected = extendedFitter.adc + extendedFitter.ped*(nsa+nsb);
+                adc.setHeight((short) this.extendedFitter.pulsePeakValue);
+                adc.setIntegral(adc_corrected);
+                adc.setTimeWord(this.extendedFitter.t0);
+                adc.setPedestal((short) this.extendedFitter.ped);
+            }
+        }
+        for(int i = 0; i < data.getADCSize(); i++){
+            data.getADCData(i).setADC(nsa, nsb);
+        }
     }
 }
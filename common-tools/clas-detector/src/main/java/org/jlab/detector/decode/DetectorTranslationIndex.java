@@ -0,0 +1,188 @@
+package org.jlab.detector.decode;
+
+import java.util.Arrays;
+import java.util.List;
+import org.jlab.detector.base.DetectorType;
+import org.jlab.detector.calib.utils.ConstantsManager;
+import org.jlab.utils.groups.IndexedList;
+import org.jlab.utils.groups.IndexedTable;
+
+/**
+ * Translation and fitter tables of one run compiled into dense primitive
+ * arrays indexed by (crate, slot, channel), so that decoding a hit costs
+ * a couple of array reads instead of a hash lookup per detector table.
+ *
+ * Channels are stored contiguously per (crate,slot), each (crate,slot)
+ * pair getting as many entries as its largest channel number in any table.
+ * When several translation tables contain the same channel the last one
+ * in the table list wins, as in the table-by-table loop of
+ * {@link DetectorEventDecoder#translate}.
+ */
+public class DetectorTranslationIndex {
+
+    private int runNumber = -1;
+
+    private int   nslots   = 0;
+    private int[] slotBase = new int[0];
+    private int[] slotSize = new int[0];
+    private int   size     = 0;
+
+    // translation:
+    private DetectorType[] tableTypes = new DetectorType[0];
+    private byte[]  type      = new byte[0];
+    private int[]   sector    = new int[0];
+    private int[]   layer     = new int[0];
+    private int[]   component = new int[0];
+    private int[]   order     = new int[0];
+
+    // fitter, bit n of fitterMask is set if fitter table n has the channel:
+    private long[]  fitterMask  = new long[0];
+    private int[]   nsa         = new int[0];
+    private int[]   nsb         = new int[0];
+    private int[]   tet         = new int[0];
+    private int[]   pedestal    = new int[0];
+
+    /**
+     * @return the run the index was built for, -1 if not built
+     */
+    public int getRunNumber() { return runNumber; }
+
+    /**
+     * Compile the tables of the given run.
+     * @param run run number
+     * @param translationManager manager of the translation tables
+     * @param keysTrans translation table keys, in priority order
+     * @param fitterManager manager of the fitter tables
+     * @param keysFitter fitter table keys, at most 64
+     */
+    public void build(int run, ConstantsManager translationManager, List<String> keysTrans,
+                      ConstantsManager fitterManager, List<String> keysFitter) {
+
+        if (keysFitter.size()>64)
+            throw new IllegalArgumentException("too many fitter tables: " + keysFitter.size());
+
+        IndexedTable[] trans = new IndexedTable[keysTrans.size()];
+        IndexedTable[] fit   = new IndexedTable[keysFitter.size()];
+        for (int i=0; i<trans.length; i++) trans[i] = translationManager.getConstants(run, keysTrans.get(i));
+        for (int i=0; i<fit.length; i++)   fit[i]   = fitterManager.getConstants(run, keysFitter.get(i));
+
+        // find the extent of the (crate,slot,channel) space:
+        int maxCrate = 0, maxSlot = 0;
+        for (IndexedTable t : concat(trans, fit)) {
+            for (Object key : t.getList().getMap().keySet()) {
+                maxCrate = Math.max(maxCrate, IndexedList.IndexGenerator.getIndex((Long) key, 0));
+                maxSlot  = Math.max(maxSlot,  IndexedList.IndexGenerator.getIndex((Long) key, 1));
+            }
+        }
+        nslots   = maxSlot+1;
+        slotSize = new int[(maxCrate+1)*nslots];
+        for (IndexedTable t : concat(trans, fit)) {
+            for (Object key : t.getList().getMap().keySet()) {
+                final int cs = IndexedList.IndexGenerator.getIndex((Long) key, 0)*nslots
+                             + IndexedList.IndexGenerator.getIndex((Long) key, 1);
+                final int ch = IndexedList.IndexGenerator.getIndex((Long) key, 2);
+                slotSize[cs] = Math.max(slotSize[cs], ch+1);
+            }
+        }
+        slotBase = new int[slotSize.length];
+        size = 0;
+        for (int cs=0; cs<slotSize.length; cs++) {
+            slotBase[cs] = size;
+            size += slotSize[cs];
+        }
+
+        tableTypes = new DetectorType[trans.length];
+        for (int i=0; i<trans.length; i++) tableTypes[i] = DetectorType.getType(keysTrans.get(i));
+        type       = new byte[size];
+        sector     = new int[size];
+        layer      = new int[size];
+        component  = new int[size];
+        order      = new int[size];
+        fitterMask = new long[size];
+        nsa        = new int[size];
+        nsb        = new int[size];
+        tet        = new int[size];
+        pedestal   = new int[size];
+        Arrays.fill(type, (byte) -1);
+
+        for (int i=0; i<trans.length; i++) {
+            for (Object key : trans[i].getList().getMap().keySet()) {
+                final int crate   = IndexedList.IndexGenerator.getIndex((Long) key, 0);
+                final int slot    = IndexedList.IndexGenerator.getIndex((Long) key, 1);
+                final int channel = IndexedList.IndexGenerator.getIndex((Long) key, 2);
+                final int e = this.getEntry(crate, slot, channel);
+                type[e]      = (byte) i;
+                sector[e]    = trans[i].getIntValue("sector", crate, slot, channel);
+                layer[e]     = trans[i].getIntValue("layer", crate, slot, channel);
+                component[e] = trans[i].getIntValue("component", crate, slot, channel);
+                order[e]     = trans[i].getIntValue("order", crate, slot, channel);
+            }
+        }
+
+        for (int i=0; i<fit.length; i++) {
+            final boolean isRF = keysFitter.get(i).equals("RF");
+            for (Object key : fit[i].getList().getMap().keySet()) {
+                final int crate   = IndexedList.IndexGenerator.getIndex((Long) key, 0);
+                final int slot    = IndexedList.IndexGenerator.getIndex((Long) key, 1);
+                final int channel = IndexedList.IndexGenerator.getIndex((Long) key, 2);
+                final int e = this.getEntry(crate, slot, channel);
+                fitterMask[e] |= 1L<<i;
+                if (Long.bitCount(fitterMask[e])==1) {
+                    nsa[e] = fit[i].getIntValue("nsa", crate, slot, channel);
+                    nsb[e] = fit[i].getIntValue("nsb", crate, slot, channel);
+                    tet[e] = fit[i].getIntValue("tet", crate, slot, channel);
+                    if (isRF) pedestal[e] = fit[i].getIntValue("pedestal", crate, slot, channel);
+                }
+            }
+        }
+
+        this.runNumber = run;
+    }
+
+    private static IndexedTable[] concat(IndexedTable[] a, IndexedTable[] b) {
+        IndexedTable[] c = Arrays.copyOf(a, a.length+b.length);
+        System.arraycopy(b, 0, c, a.length, b.length);
+        return c;
+    }
+
+    /**
+     * @param crate crate number
+     * @param slot slot number
+     * @param channel channel number
+     * @return the entry index, or -1 if the channel is in no table
+     */
+    public int getEntry(int crate, int slot, int channel) {
+        if (crate<0 || slot<0 || slot>=nslots || channel<0) return -1;
+        final int cs = crate*nslots + slot;
+        if (cs>=slotSize.length || channel>=slotSize[cs]) return -1;
+        return slotBase[cs] + channel;
+    }
+
+    /**
+     * @param entry entry index
+     * @return the detector type, or null if the channel has no translation
+     */
+    public DetectorType getType(int entry) {
+        return type[entry]<0 ? null : tableTypes[type[entry]];
+    }
+
+    public int  getSector(int entry)    { return sector[entry]; }
+    public int  getLayer(int entry)     { return layer[entry]; }
+    public int  getComponent(int entry) { return component[entry]; }
+    public int  getOrder(int entry)     { return order[entry]; }
+
+    /**
+     * @param entry entry index
+     * @return bit mask of the fitter tables containing this channel
+     */
+    public long getFitterMask(int entry) { return fitterMask[entry]; }
+
+    /*
+     * The fitter parameters are those of the first fitter table containing
+     * the channel, i.e. valid when getFitterMask has a single bit set.
+     */
+    public int  getNSA(int entry)       { return nsa[entry]; }
+    public int  getNSB(int entry)       { return nsb[entry]; }
+    public int  getTET(int entry)       { return tet[entry]; }
+    public int  getPedestal(int entry)  { return pedestal[entry]; }
+}
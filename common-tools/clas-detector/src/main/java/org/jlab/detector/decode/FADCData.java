@@ -8,6 +8,7 @@ package org.jlab.detector.decode;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.jlab.detector.base.DetectorDescriptor;
 
@@ -46,11 +47,7 @@ public class FADCData {
     
     
     public DetectorDataDgtz getDetectorData(){
-       List<Short>  decodedList = getDecoded();
-       short[]  pulse = new short[decodedList.size()];
-       for(int i = 0; i < pulse.length; i++){
-           pulse[i] = decodedList.get(i);
-       }
+       short[]  pulse = getDecodedArray();
        
        DetectorDataDgtz dgtz = new DetectorDataDgtz();
        dgtz.getDescriptor().setCrateSlotChannel(
@@ -73,36 +70,38 @@ public class FADCData {
     }
     
     public List<Short> getDecoded(){
+        short[] pulse = getDecodedArray();
+        List<Short> result = new ArrayList<Short>(pulse.length);
+        for(short sample : pulse) result.add(sample);
+        return result;
+    }
+    
+    /**
+     * unpacks the compressed pulse, 16 samples per compressed block.
+     * @return the samples
+     */
+    public short[] getDecodedArray(){
         
-        List<Short> result = new ArrayList<Short>();
+        // every compressed block takes at least 6 words:
+        short[]  result = new short[16*(this.adcBuffer.length/6+1)];
+        int      nsamples = 0;
         
         short[]  bucket = new short[16];
         
-        int channel;
-        int minimum;
         int nwords;
         int nskip;
         int position = 0;
         int headerWord = 0;
         int pedestal ;
         int compressedWord = 0;
-        byte[] array = new byte[4];
-
-        ByteBuffer buffer = ByteBuffer.wrap(array);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
         
         while(position<this.adcBuffer.length){
         
             short dataH = adcBuffer[position];
             short dataL = adcBuffer[position+1];
             
-            buffer.putShort(0, dataH);
-            buffer.putShort(2, dataL);
-
-            headerWord = buffer.getInt(0);
+            headerWord = (dataL<<16)|(dataH&0xFFFF);
             
-            //headerWord = (dataL<<16)|(dataH);
-            channel  = (headerWord >> 23) & 0x0F;
             nwords   = (headerWord&0x07);
             nskip    = (dataH>>4) &0x0F;
             pedestal = (headerWord>>8)&0x0FFF;
@@ -111,9 +110,7 @@ public class FADCData {
             position+=2;
             if(compressedWord==5){
                 
-                //System.out.println( " position = " + position +  " NWORD = 5  LENGTH = " + adcBuffer.length);
                 short value;
-                //result.clear();
                 for(int i = 0; i < 4; i++){
                     value = (short) (adcBuffer[position+i]&0x000F);                    
                     bucket[i*4] = (short) (value+pedestal);                                        
@@ -126,7 +123,6 @@ public class FADCData {
                 }
                 
                 position += 4;
-                //position += nwords*2;
                 
                 if(nwords>0){
                     
@@ -139,16 +135,11 @@ public class FADCData {
                     position += nwords*2;
                 }
                 
-                for(int k = 0 ; k < bucket.length; k++){
-                    result.add(bucket[k]);
-                }
+                System.arraycopy(bucket, 0, result, nsamples, bucket.length);
+                nsamples += bucket.length;
             }
-            //position += 4;
-            
-            //position += nwords*2;
-            //System.out.println("position = " + position);
         }
-        return result;
+        return Arrays.copyOf(result, nsamples);
     }
     
     public void decode(){
@@ -16,6 +16,8 @@ public enum HelicityBit {
 
     private final int value;
 
+    private static final HelicityBit[] VALUES = HelicityBit.values();
+
     HelicityBit(int value) {
         this.value=value;
     }
@@ -23,7 +25,7 @@ public enum HelicityBit {
     public byte value() { return (byte)this.value; }
 
     public static HelicityBit create(byte value) {
-        for(HelicityBit hb: HelicityBit.values()) {
+        for(HelicityBit hb: VALUES) {
             if (hb.value() == value) return hb;
         }
         return UDF;
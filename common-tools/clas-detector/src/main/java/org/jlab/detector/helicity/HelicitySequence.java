@@ -2,6 +2,7 @@ package org.jlab.detector.helicity;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -10,6 +11,7 @@ import org.jlab.jnp.hipo4.data.Bank;
 import org.jlab.jnp.hipo4.data.Event;
 import org.jlab.jnp.hipo4.data.SchemaFactory;
 import org.jlab.jnp.hipo4.io.HipoReader;
+import org.jlab.utils.groups.LongHashSet;
 
 /**
  * Stores a sequence of helicity states and provides timestamp- or state-count-
@@ -56,6 +58,17 @@ class HelicitySequence {
     protected final List<HelicityState> states=new ArrayList<>();
     protected int verbosity=0;
 
+    // states are appended and only sorted when next used, and the analyzed
+    // sequence is copied into primitive columns for searching.  As the
+    // search cursor, this is not thread-safe, the sequence must be filled
+    // and read by one thread:
+    private boolean sorted=true;
+    private final LongHashSet stateTimestamps=new LongHashSet();
+    private int runNumber=-1;
+    private long[] timestamps=new long[0];
+    private byte[] helicities=new byte[0];
+    private int cursor=0;
+
     public HelicitySequence(){}
 
     public void setVerbosity(int verbosity) {
@@ -71,13 +84,16 @@ class HelicitySequence {
      * Get the the number of states in the sequence.
      * @return the number of states
      */
-    public final int size() { return this.states.size(); }
+    public final int size() {
+        if (!this.sorted) this.sort();
+        return this.states.size();
+    }
 
     /**
      * Add a state to the sequence, unless the same timestamp already exists
-     * or it has undefined bits, and keep them ordered by timestamp.  Note,
-     * these {@link HelicityState}s do not have to be added in order, as they
-     * will be automatically ordered by timestamp upon insertion.
+     * or it has undefined bits.  Note, these {@link HelicityState}s do not
+     * have to be added in order, as they will be ordered by timestamp before
+     * the sequence is next used.
      * @param state the state to add
      * @return whether the state was added
      */
@@ -90,40 +106,32 @@ class HelicitySequence {
         }
 
         // terminate if trying to add more than one run number:
-        for (HelicityState hs : this.states) {
-            if (hs.getRun()!=state.getRun()) {
-                throw new RuntimeException("Run number mismatch:  "+state.getRun()+"/"+state.getRun());
-            }
+        if (this.runNumber<0) {
+            this.runNumber=state.getRun();
+        }
+        else if (this.runNumber!=state.getRun()) {
+            throw new RuntimeException("Run number mismatch:  "+this.runNumber+"/"+state.getRun());
         }
         
+        // ignore duplicate timestamps:
+        if (!this.stateTimestamps.add(state.getTimestamp())) {
+            return false;
+        }
+
         // mark that we'll need to redo the analysis:
         this.analyzed=false;
-        
-        // FIXME:  should we be using a SortedSet instead?
-        // Looks like SortedList doesn't exist until java 10,
-        // and SortedSet doesn't give easy access by index?
-        // Meanwhile, we manually enforce the insertion order here.
-        if (this.states.isEmpty()) {
-            this.states.add(state);
-            return true;
-        }
-        else {
-            final int index=Collections.binarySearch(this.states,state,new HelicityState());
-            if (index==this.states.size()) {
-                // its timestamp is later than the existing sequence:
-                this.states.add(state);
-                return true;
-            }
-            else if (index<0) {
-                // it's a unique timestamp, insert it:
-                this.states.add(-index-1,state);
-                return true;
-            }
-            else {
-                // it's a duplicate timestamp, ignore it:
-                return false;
-            }
-        }
+        this.sorted=false;
+        this.states.add(state);
+        return true;
+    }
+
+    /**
+     * Sort the states by timestamp.
+     */
+    private void sort() {
+        if (this.sorted) return;
+        Collections.sort(this.states,new HelicityState());
+        this.sorted=true;
     }
 
     /**
@@ -148,14 +156,26 @@ class HelicitySequence {
      */
     protected final int searchIndex(long timestamp) {
         if (!this.analyzed) this.analyze();
-        if (this.size() == 0) return -1;
-        if (timestamp < this.getTimestamp(0)) return -1;
-        if (timestamp > this.getTimestamp(this.size()-1)) return -1;
-        // make a fake state for timestamp search:
-        HelicityState state=new HelicityState();
-        state.setTimestamp(timestamp);
-        final int index=Collections.binarySearch(this.states,state,new HelicityState());
-        final int n = index<0 ? -index-2 : index;
+        final long[] ts=this.timestamps;
+        final int size=ts.length;
+        if (size == 0) return -1;
+        if (timestamp < ts[0]) return -1;
+        if (timestamp > ts[size-1]) return -1;
+        if (timestamp == ts[size-1]) return size-1;
+        // events are mostly in time order, so try walking from the last result:
+        int n=this.cursor;
+        if (n<size-1 && ts[n]<=timestamp) {
+            for (int step=0; step<4 && ts[n+1]<=timestamp; step++) n++;
+            if (ts[n+1]<=timestamp) {
+                n=Arrays.binarySearch(ts,n+1,size,timestamp);
+                n = n<0 ? -n-2 : n;
+            }
+        }
+        else {
+            n=Arrays.binarySearch(ts,timestamp);
+            n = n<0 ? -n-2 : n;
+        }
+        this.cursor=n;
         return n;
     }
    
@@ -203,9 +223,9 @@ class HelicitySequence {
      * @return the helicity state, HelicityBit.UDF if outside the mesaured range
      */
     protected HelicityBit get(int n) {
-        HelicityState state = this.getState(n);
-        if (state==null) return HelicityBit.UDF;
-        else return state.getHelicity();
+        if (!this.analyzed) this.analyze();
+        if (n < 0 || n>this.helicities.length-1) return HelicityBit.UDF;
+        return HelicityBit.create(this.helicities[n]);
     }
 
     /**
@@ -226,7 +246,7 @@ class HelicitySequence {
     public HelicityBit search(long timestamp,int offset) {
         final int index = this.searchIndex(timestamp)+offset;
         if (index < 0) return HelicityBit.UDF;
-        else return this.getState(index).getHelicity();
+        else return this.get(index);
     }
 
     /**
@@ -337,18 +357,22 @@ class HelicitySequence {
         // triggered by the first available readout and (usually) not
         // on an actual state change, so it's timestamp is invalid:
         if (this.states.size()>0) {
-            this.states.remove(0);
+            this.stateTimestamps.remove(this.states.remove(0).getTimestamp());
         }
         int nRejects=0;
+        // removing state ii+1 only changes the windows starting at ii-1 and
+        // later, so resume the scan there instead of from the beginning:
+        int start=0;
         while (true) {
             boolean rejection=false;
-            for (int ii=0; ii<this.states.size()-3; ii++) {
+            for (int ii=start; ii<this.states.size()-3; ii++) {
                 final double dt01 = (this.getTimestamp(ii+1)-this.getTimestamp(ii+0))/TIMESTAMP_CLOCK;
                 final double dt12 = (this.getTimestamp(ii+2)-this.getTimestamp(ii+1))/TIMESTAMP_CLOCK;
                 if (Math.abs(dt01+dt12-1./this.helicityClock) < 0.3/this.helicityClock) {
-                    this.states.remove(ii+1);
+                    this.stateTimestamps.remove(this.states.remove(ii+1).getTimestamp());
                     rejection=true;
                     nRejects++;
+                    start=Math.max(0,ii-1);
                     break;
                 }
             }
@@ -367,6 +391,8 @@ class HelicitySequence {
             System.out.println("HelicitySequence:  Analyzing ....");
         }
 
+        if (!this.sorted) this.sort();
+
         final int nRejects=this.rejectFalseFlips();
         if (verbosity>0) {
             System.out.println("HelicitySequence:  Rejected false flips:  "+nRejects);
@@ -383,6 +409,14 @@ class HelicitySequence {
 
         this.analyzed=true;
 
+        this.timestamps=new long[this.states.size()];
+        this.helicities=new byte[this.states.size()];
+        for (int ii=0; ii<this.states.size(); ii++) {
+            this.timestamps[ii]=this.states.get(ii).getTimestamp();
+            this.helicities[ii]=this.states.get(ii).getHelicity().value();
+        }
+        this.cursor=0;
+
         final boolean integrity=this.integrityCheck();
 
         final boolean geninit=this.generator.initialize(this.states);
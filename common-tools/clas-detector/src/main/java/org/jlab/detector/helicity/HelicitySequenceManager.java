@@ -51,6 +51,20 @@ public final class HelicitySequenceManager {
         initialize(reader);
     }
 
+    /**
+     * Create an empty manager, to be filled with {@link #addState(int,HelicityState)}
+     * by callers that read the tag-1 events themselves.
+     * @param delay number of states delayed
+     * @param schema schema factory providing RUN::config
+     * @param flip whether to invert the states added
+     */
+    public HelicitySequenceManager(int delay,SchemaFactory schema,boolean flip) {
+        this.flip=flip;
+        this.delay=delay;
+        this.schema=schema;
+        this.rcfgBank=new Bank(schema.getSchema("RUN::config"));
+    }
+
     public void setVerbosity(int verbosity) {
         this.verbosity=verbosity;
         for (HelicitySequence hs : seqMap.values()) {
@@ -58,7 +72,12 @@ public final class HelicitySequenceManager {
         }
     }
 
-    private boolean addState(int runno,HelicityState state) {
+    /**
+     * @param runno run number
+     * @param state helicity state, e.g. from a tag-1 HEL::flip bank
+     * @return whether the state was added
+     */
+    public boolean addState(int runno,HelicityState state) {
         if (runno <= 0) return false;
         if (!seqMap.containsKey(runno)) {
             seqMap.put(runno, new HelicitySequenceDelayed(delay));
@@ -164,9 +183,9 @@ public final class HelicitySequenceManager {
             this.rcfgBank=new Bank(this.schema.getSchema("RUN::config"));
         }
         reader.setTags(1);
+        Event event=new Event();
+        Bank flipBank=new Bank(this.schema.getSchema("HEL::flip"));
         while (reader.hasNext()) {
-            Event event=new Event();
-            Bank flipBank=new Bank(this.schema.getSchema("HEL::flip"));
             reader.nextEvent(event);
             event.read(flipBank);
             if (flipBank.getRows()<1) continue;
@@ -178,6 +197,8 @@ public final class HelicitySequenceManager {
     private void initialize(List<String> filenames) {
         for (String filename : filenames) {
             HipoReader reader = new HipoReader();
+            // tags have to be set before opening to skip the other records:
+            reader.setTags(1);
             reader.open(filename);
             initialize(reader);
             reader.close();
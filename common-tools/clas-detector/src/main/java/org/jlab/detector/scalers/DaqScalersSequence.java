@@ -11,6 +11,7 @@ import org.jlab.jnp.hipo4.data.Event;
 import org.jlab.jnp.hipo4.data.Bank;
 import org.jlab.jnp.hipo4.data.SchemaFactory;
 import org.jlab.detector.scalers.DaqScalers;
+import org.jlab.utils.groups.LongHashSet;
 
 /**
  * For easy access to most recent scaler readout for any given event.
@@ -25,8 +26,27 @@ public class DaqScalersSequence implements Comparator<DaqScalers> {
     public static final double TI_CLOCK_FREQ = 250e6; // Hz
     
     protected final List<DaqScalers> scalers=new ArrayList<>();
+
+    // readouts are appended and only sorted into a primitive timestamp
+    // column on the next lookup.  As the search cursor, this is not
+    // thread-safe, the sequence must be filled and read by one thread:
+    private boolean sorted=true;
+    private final LongHashSet readoutTimestamps=new LongHashSet();
+    private long[] timestamps=new long[0];
+    private int cursor=0;
     
     private Bank rcfgBank=null;
+
+    public DaqScalersSequence() {}
+
+    /**
+     * Create an empty sequence, to be filled with {@link #add(DaqScalers)}
+     * by callers that read the tag-1 events themselves.
+     * @param schema schema factory providing RUN::config
+     */
+    public DaqScalersSequence(SchemaFactory schema) {
+        this.rcfgBank=new Bank(schema.getSchema("RUN::config"));
+    }
   
     public class Interval {
         private DaqScalers previous = null;
@@ -71,41 +91,61 @@ public class DaqScalersSequence implements Comparator<DaqScalers> {
         return 0;
     }
   
-    protected int findIndex(long timestamp) {
-        if (this.scalers.isEmpty()) return -1;
-        if (timestamp < this.scalers.get(0).getTimestamp()) return -1;
-        // assume late timestamps are ok and go with last readout, so comment this out:
-        //if (timestamp > this.scalers.get(this.scalers.size()-1).getTimestamp()) return -1;
-        // make a fake state for timestamp search:
-        DaqScalers ds=new DaqScalers();
-        ds.setTimestamp(timestamp);
-        final int index=Collections.binarySearch(this.scalers,ds,new DaqScalersSequence());
-        final int n = index<0 ? -index-2 : index;
-        return n;
+    /**
+     * Sort the readouts by timestamp and fill the timestamp column.
+     */
+    private void sort() {
+        if (this.sorted) return;
+        Collections.sort(this.scalers,this);
+        final int n=this.scalers.size();
+        this.timestamps=new long[n];
+        for (int ii=0; ii<n; ii++) this.timestamps[ii]=this.scalers.get(ii).getTimestamp();
+        this.cursor=0;
+        this.sorted=true;
     }
-   
-    protected boolean add(DaqScalers ds) {
-        if (this.scalers.isEmpty()) {
-            this.scalers.add(ds);
-            return true;
+
+    /**
+     * Get the index of the most recent readout, first trying the neighbors
+     * of the previous result since events are mostly read in time order.
+     * @param timestamp TI timestamp (i.e. RUN::config.timestamp)
+     * @return index, -1 if before the first readout
+     */
+    protected int findIndex(long timestamp) {
+        if (!this.sorted) this.sort();
+        final long[] ts=this.timestamps;
+        final int size=ts.length;
+        if (size==0) return -1;
+        if (timestamp < ts[0]) return -1;
+        // assume late timestamps are ok and go with last readout:
+        if (timestamp >= ts[size-1]) return size-1;
+        int n=this.cursor;
+        if (n<size-1 && ts[n]<=timestamp) {
+            // walk forward a few readouts before resorting to binary search:
+            for (int step=0; step<4 && ts[n+1]<=timestamp; step++) n++;
+            if (ts[n+1]<=timestamp) {
+                n=Arrays.binarySearch(ts,n+1,size,timestamp);
+                n = n<0 ? -n-2 : n;
+            }
         }
         else {
-            final int index=Collections.binarySearch(this.scalers,ds,new DaqScalersSequence());
-            if (index==this.scalers.size()) {
-                // its timestamp is later than the existing sequence:
-                this.scalers.add(ds);
-                return true;
-            }
-            else if (index<0) {
-                // it's a unique timestamp, insert it:
-                this.scalers.add(-index-1,ds);
-                return true;
-            }
-            else {
-                // it's a duplicate timestamp, ignore it:
-                return false;
-            }
+            n=Arrays.binarySearch(ts,timestamp);
+            n = n<0 ? -n-2 : n;
         }
+        this.cursor=n;
+        return n;
+    }
+   
+    /**
+     * Add a readout, unless the same timestamp already exists.  Readouts do
+     * not have to be added in order, they are ordered before the next lookup.
+     * @param ds the readout
+     * @return whether the readout was added
+     */
+    public boolean add(DaqScalers ds) {
+        if (!this.readoutTimestamps.add(ds.getTimestamp())) return false;
+        this.scalers.add(ds);
+        this.sorted=false;
+        return true;
     }
     
     /**
@@ -0,0 +1,56 @@
+package org.jlab.detector.decode;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the batch fitter against the scalar ExtendedFADCFitter, pulse by
+ * pulse, on random pulses.
+ */
+public class BatchFADCFitterTest {
+
+    private static short[] createPulse(Random random, int length, int pedestal, int amplitude, int peak) {
+        short[] pulse = new short[length];
+        for (int i = 0; i < length; i++) {
+            double x = (i - peak) / 3.0;
+            pulse[i] = (short) (pedestal + random.nextInt(7) - 3 + amplitude * Math.exp(-x * x));
+        }
+        return pulse;
+    }
+
+    @Test
+    public void testBatchFADCFitter() {
+        Random random = new Random(12345);
+        ExtendedFADCFitter scalar = new ExtendedFADCFitter();
+        BatchFADCFitter batch = new BatchFADCFitter();
+
+        final int npulses = 2000;
+        short[][] pulses = new short[npulses][];
+        int[][] params = new int[npulses][];
+        for (int p = 0; p < npulses; p++) {
+            // include short pulses, fixed pedestals and pulses below threshold:
+            int length = p % 10 == 0 ? 4 + random.nextInt(12) : 50 + random.nextInt(150);
+            int amplitude = p % 7 == 0 ? 0 : random.nextInt(3000);
+            int pedestal = 100 + random.nextInt(300);
+            pulses[p] = createPulse(random, length, pedestal, amplitude, random.nextInt(length));
+            params[p] = new int[]{ 5 + random.nextInt(30), 1 + random.nextInt(10), 5 + random.nextInt(20),
+                                   p % 5 == 0 ? pedestal : 0 };
+            assertEquals(p, batch.add(pulses[p], params[p][0], params[p][1], params[p][2], params[p][3]));
+        }
+        batch.fit();
+
+        for (int p = 0; p < npulses; p++) {
+            scalar.fit(params[p][0], params[p][1], params[p][2], params[p][3], pulses[p]);
+            assertEquals(scalar.adc, batch.getADC(p));
+            assertEquals(scalar.ped, batch.getPedestal(p));
+            assertEquals(scalar.t0, batch.getTimeWord(p));
+            assertEquals(scalar.thresholdCrossing, batch.getThresholdCrossing(p));
+            assertEquals(scalar.pulsePeakValue, batch.getPulsePeakValue(p));
+            assertEquals(scalar.pulsePeakPosition, batch.getPulsePeakPosition(p));
+            assertEquals(scalar.pulseWidth, batch.getPulseWidth(p));
+            assertEquals(scalar.baseline, batch.getBaseline(p), 0.0);
+            assertEquals(scalar.rms, batch.getRMS(p), 0.0);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.jlab.detector.helicity;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class HelicitySequenceTest {
+
+    private static HelicityState create(long timestamp, HelicityBit helicity) {
+        HelicityState state = new HelicityState(helicity, HelicityBit.PLUS, HelicityBit.PLUS);
+        state.setTimestamp(timestamp);
+        state.setRun(5038);
+        return state;
+    }
+
+    @Test
+    public void testAddState() {
+        HelicitySequence seq = new HelicitySequence();
+        HelicityState first = create(2000, HelicityBit.MINUS);
+        assertTrue(seq.addState(create(3000, HelicityBit.PLUS)));
+        assertTrue(seq.addState(first));
+        assertTrue(seq.addState(create(1000, HelicityBit.PLUS)));
+        assertFalse(seq.addState(create(2000, HelicityBit.PLUS)));
+        assertFalse(seq.addState(create(3000, HelicityBit.MINUS)));
+        assertTrue(seq.addState(create(4000, HelicityBit.MINUS)));
+        assertFalse(seq.addState(create(4000, HelicityBit.PLUS)));
+        assertFalse(seq.addState(new HelicityState()));
+
+        // the first state added for a timestamp is kept:
+        assertEquals(4, seq.size());
+        for (int i = 0; i < seq.size(); i++) {
+            assertEquals(1000L * (i + 1), seq.getTimestamp(i));
+        }
+        assertSame(first, seq.states.get(1));
+
+        try {
+            HelicityState other = create(6000, HelicityBit.PLUS);
+            other.setRun(5039);
+            seq.addState(other);
+            fail("run number mismatch");
+        }
+        catch (RuntimeException e) {}
+    }
+
+    @Test
+    public void testShuffledAdds() {
+        // states in random order, as from several files, with duplicates:
+        Random rand = new Random(34);
+        HelicitySequence seq = new HelicitySequence();
+        TreeMap<Long,HelicityState> reference = new TreeMap<>();
+        for (int i = 0; i < 200000; i++) {
+            HelicityState state = create(1000L * rand.nextInt(100000), HelicityBit.PLUS);
+            assertEquals(!reference.containsKey(state.getTimestamp()), seq.addState(state));
+            reference.putIfAbsent(state.getTimestamp(), state);
+        }
+        assertEquals(reference.size(), seq.size());
+        int i = 0;
+        for (HelicityState state : reference.values()) assertSame(state, seq.states.get(i++));
+    }
+}
@@ -0,0 +1,67 @@
+package org.jlab.detector.scalers;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DaqScalersSequenceTest {
+
+    private static DaqScalers create(long timestamp) {
+        DaqScalers ds = new DaqScalers();
+        ds.setTimestamp(timestamp);
+        return ds;
+    }
+
+    @Test
+    public void testAdd() {
+        DaqScalersSequence seq = new DaqScalersSequence();
+        DaqScalers first20 = create(20);
+        assertTrue(seq.add(create(30)));
+        assertTrue(seq.add(create(10)));
+        assertTrue(seq.add(first20));
+        assertFalse(seq.add(create(10)));
+        assertFalse(seq.add(create(30)));
+        assertTrue(seq.add(create(40)));
+        assertFalse(seq.add(create(20)));
+        assertTrue(seq.add(create(25)));
+
+        assertNull(seq.get(5));
+        assertEquals(10, seq.get(10).getTimestamp());
+        assertSame(first20, seq.get(22));
+        assertEquals(25, seq.get(29).getTimestamp());
+        assertEquals(30, seq.get(39).getTimestamp());
+        assertEquals(40, seq.get(1000).getTimestamp());
+        // lookups out of order:
+        assertSame(first20, seq.get(20));
+        assertEquals(10, seq.get(19).getTimestamp());
+
+        // adding after lookups:
+        assertFalse(seq.add(create(25)));
+        assertTrue(seq.add(create(15)));
+        assertEquals(15, seq.get(19).getTimestamp());
+    }
+
+    @Test
+    public void testShuffledAdds() {
+        // readouts in random order, as from several files, with duplicates:
+        Random rand = new Random(34);
+        DaqScalersSequence seq = new DaqScalersSequence();
+        TreeMap<Long,DaqScalers> reference = new TreeMap<>();
+        for (int i = 0; i < 200000; i++) {
+            DaqScalers ds = create(100L * rand.nextInt(100000));
+            assertEquals(!reference.containsKey(ds.getTimestamp()), seq.add(ds));
+            reference.putIfAbsent(ds.getTimestamp(), ds);
+            // lookups in between the adds:
+            if (i % 20000 == 0) assertLookup(reference, seq, rand.nextInt(10000000));
+        }
+        for (int i = 0; i < 100000; i++) assertLookup(reference, seq, rand.nextInt(10000000));
+    }
+
+    private static void assertLookup(TreeMap<Long,DaqScalers> reference, DaqScalersSequence seq, long timestamp) {
+        Map.Entry<Long,DaqScalers> entry = reference.floorEntry(timestamp);
+        assertSame(entry == null ? null : entry.getValue(), seq.get(timestamp));
+    }
+}
@@ -50,6 +50,7 @@ public abstract class AbstractComponent implements Component {
     private final List<Integer> volumeEdges;
     private final Shape3D       volumeShape;
     private final Point3D       midpoint;
+    private int                 modCount = 0;
     
     /**
      * Initializes an empty AbstractComponent with the given id.
@@ -234,6 +235,15 @@ public abstract class AbstractComponent implements Component {
         return lines;
     }
     
+    /**
+     * Returns the number of times this component was translated or rotated,
+     * used to detect that geometry derived from it is out of date.
+     * @return the number of transformations
+     */
+    final int getModCount() {
+        return modCount;
+    }
+    
     @Override
     public final Point3D getMidpoint() {
         return midpoint;
@@ -245,6 +255,7 @@ public abstract class AbstractComponent implements Component {
             pt.translateXYZ(dx, dy, dz);
         volumeShape.translateXYZ(dx, dy, dz);
         midpoint.translateXYZ(dx, dy, dz);
+        modCount++;
         onTranslateXYZ(dx, dy, dz);
     }
     
@@ -254,6 +265,7 @@ public abstract class AbstractComponent implements Component {
             pt.rotateX(angle);
         volumeShape.rotateX(angle);
         midpoint.rotateX(angle);
+        modCount++;
         onRotateX(angle);
     }
     
@@ -263,6 +275,7 @@ public abstract class AbstractComponent implements Component {
             pt.rotateY(angle);
         volumeShape.rotateY(angle);
         midpoint.rotateY(angle);
+        modCount++;
         onRotateY(angle);
     }
     
@@ -272,6 +285,7 @@ public abstract class AbstractComponent implements Component {
             pt.rotateZ(angle);
         volumeShape.rotateZ(angle);
         midpoint.rotateZ(angle);
+        modCount++;
         onRotateZ(angle);
     }
     
@@ -78,6 +78,7 @@ public abstract class AbstractLayer<ComponentType extends Component> implements
     private final Shape3D boundary;
     private final Plane3D plane;
     private final boolean useBoundaryAsHitFilter;
+    private volatile ComponentIndex componentIndex;
     
     /**
      * Initializes an empty AbstractLayer with the given id.
@@ -258,8 +259,10 @@ public abstract class AbstractLayer<ComponentType extends Component> implements
             
             // Check to see if the boundary was hit
             if (!useBoundaryAsHitFilter || boundary.hasIntersectionSegment(line)) {
-                // For each paddle
-                for (Component component : getAllComponents()) {
+                // For each paddle whose bounds are crossed by the line
+                List<ComponentType> components = getAllComponents();
+                for (int c : getComponentIndex().getCandidates(line)) {
+                    Component component = components.get(c);
                     // Find the paddle that the line hits
                     if (component.getVolumeIntersection(line, hitPosition0, hitPosition1)) {
                         hitList.add(new DetectorHit(
@@ -285,6 +288,20 @@ public abstract class AbstractLayer<ComponentType extends Component> implements
         return hitList;
     }
     
+    /**
+     * Returns the bounding volume hierarchy of the components, which is
+     * rebuilt if components were added or transformed since it was built.
+     * @return the component index
+     */
+    private ComponentIndex getComponentIndex() {
+        ComponentIndex index = componentIndex;
+        if (index == null || !index.isValid(componentList)) {
+            index = new ComponentIndex(componentList);
+            componentIndex = index;
+        }
+        return index;
+    }
+    
     @Override
     public void show() {
         System.out.print(this);
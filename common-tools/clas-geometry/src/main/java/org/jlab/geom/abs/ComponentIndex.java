@@ -0,0 +1,135 @@
+package org.jlab.geom.abs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jlab.geom.base.Component;
+import org.jlab.geom.prim.BoundingBoxTree;
+import org.jlab.geom.prim.Face3D;
+import org.jlab.geom.prim.Line3D;
+import org.jlab.geom.prim.Point3D;
+import org.jlab.geom.prim.Shape3D;
+import org.jlab.geom.prim.Triangle3D;
+
+/**
+ * A bounding volume hierarchy over the components of a layer, used to skip
+ * the volume intersection tests of components far from a line segment.
+ * <p>
+ * The bounds of a component are the axis-aligned box of the points of its
+ * volume shape, which is only used if the shape is made of triangles, as
+ * for all {@code AbstractComponent}s built from volume points.  Other
+ * components are always returned as candidates.  The bounds are indexed by
+ * a {@link BoundingBoxTree} and enlarged by a small margin, so that the
+ * pruning never removes a component whose volume intersects the segment.
+ * <p>
+ * The index remembers the component list and how many times each component
+ * was transformed, and {@link #isValid(java.util.List)} tells whether it
+ * still describes the current geometry.
+ */
+final class ComponentIndex {
+    private static final double MARGIN = 1e-6;
+
+    private final List<? extends Component> components;
+    private final int[] modCounts;
+    private final int[] unbounded;
+    private final BoundingBoxTree tree;
+    private final double scale;
+
+    ComponentIndex(List<? extends Component> components) {
+        this.components = components;
+        int n = components.size();
+        modCounts = new int[n];
+        double[] bounds = new double[6*n];
+        List<Integer> bounded = new ArrayList();
+        List<Integer> others = new ArrayList();
+        double s = 0;
+        for (int c=0; c<n; c++) {
+            Component component = components.get(c);
+            if (component instanceof AbstractComponent) {
+                modCounts[c] = ((AbstractComponent) component).getModCount();
+            }
+            if (!getBounds(component, bounds, 6*c)) {
+                others.add(c);
+            } else if (bounds[6*c] <= bounds[6*c+3]) {
+                for (int k=0; k<6; k++)
+                    s = Math.max(s, Math.abs(bounds[6*c+k]));
+                bounded.add(c);
+            }
+        }
+        scale = s;
+        unbounded = new int[others.size()];
+        for (int i=0; i<unbounded.length; i++)
+            unbounded[i] = others.get(i);
+        int[] items = new int[bounded.size()];
+        for (int i=0; i<items.length; i++)
+            items[i] = bounded.get(i);
+        tree = new BoundingBoxTree(bounds, items);
+    }
+
+    /**
+     * Sets the bounds {xmin,ymin,zmin,xmax,ymax,zmax} of a component, which
+     * are empty if the shape has no face.
+     * @return false if the component can't be bounded
+     */
+    private static boolean getBounds(Component component, double[] b, int offset) {
+        if (!(component instanceof AbstractComponent))
+            return false;
+        Shape3D shape = component.getVolumeShape();
+        for (int k=0; k<3; k++) {
+            b[offset+k]   = Double.POSITIVE_INFINITY;
+            b[offset+k+3] = Double.NEGATIVE_INFINITY;
+        }
+        for (int f=0; f<shape.size(); f++) {
+            Face3D face = shape.face(f);
+            if (!(face instanceof Triangle3D))
+                return false;
+            for (int p=0; p<3; p++) {
+                Point3D point = face.point(p);
+                if (Double.isNaN(point.x()) || Double.isNaN(point.y()) || Double.isNaN(point.z()))
+                    return false;
+                b[offset]   = Math.min(b[offset],   point.x());
+                b[offset+1] = Math.min(b[offset+1], point.y());
+                b[offset+2] = Math.min(b[offset+2], point.z());
+                b[offset+3] = Math.max(b[offset+3], point.x());
+                b[offset+4] = Math.max(b[offset+4], point.y());
+                b[offset+5] = Math.max(b[offset+5], point.z());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param components the current components of the layer
+     * @return true if the index was built from the same list and none of
+     * the components was transformed since
+     */
+    boolean isValid(List<? extends Component> components) {
+        if (components != this.components)
+            return false;
+        for (int c=0; c<modCounts.length; c++) {
+            Component component = components.get(c);
+            if (component instanceof AbstractComponent &&
+                    ((AbstractComponent) component).getModCount() != modCounts[c])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param line the line segment
+     * @return the indexes of the components whose volume may intersect the
+     * line segment, in increasing order
+     */
+    int[] getCandidates(Line3D line) {
+        int[] found = new int[components.size()];
+        int nfound = 0;
+        for (int c : unbounded)
+            found[nfound++] = c;
+        double ox = line.origin().x(), oy = line.origin().y(), oz = line.origin().z();
+        double dx = line.end().x()-ox, dy = line.end().y()-oy, dz = line.end().z()-oz;
+        double s = Math.max(scale, Math.max(Math.max(Math.abs(ox), Math.abs(oy)), Math.abs(oz)));
+        s = Math.max(s, Math.max(Math.max(Math.abs(ox+dx), Math.abs(oy+dy)), Math.abs(oz+dz)));
+        nfound = tree.search(ox, oy, oz, dx, dy, dz, 0, 1, MARGIN*(1+s), found, nfound);
+        return Arrays.copyOf(found, nfound);
+    }
+}
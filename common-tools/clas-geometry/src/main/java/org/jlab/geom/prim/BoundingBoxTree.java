@@ -0,0 +1,193 @@
+package org.jlab.geom.prim;
+
+import java.util.Arrays;
+
+/**
+ * A bounding volume hierarchy over axis-aligned boxes, used to find the
+ * items, like components, volumes or faces, whose box may be crossed by a
+ * line.
+ * <p>
+ * The boxes are given in a flat array, six values per item
+ * {xmin,ymin,zmin,xmax,ymax,zmax}, and the tree is kept in flat primitive
+ * arrays.  Each node covers a contiguous range of the item order and is
+ * split at the median center along the longest axis of its box, until it
+ * holds at most {@code LEAF_SIZE} items.
+ * <p>
+ * A query is a slab test of the line with the boxes enlarged by a margin,
+ * which is as conservative as the tests done by the users of the tree, and
+ * returns the items in increasing order.  The tree is immutable once built
+ * and can be searched concurrently.
+ */
+public final class BoundingBoxTree {
+    private static final int LEAF_SIZE = 4;
+
+    private final double[] boxes;
+    private final int[]    order;
+
+    // nodes: box, range in order[], children or -1 for leaves
+    private int      nnodes = 0;
+    private final double[] nodeBoxes;
+    private final int[]    nodeStart;
+    private final int[]    nodeEnd;
+    private final int[]    nodeLeft;
+    private final int[]    nodeRight;
+
+    /**
+     * Builds the tree over the given items.
+     * @param boxes the boxes, {xmin,ymin,zmin,xmax,ymax,zmax} for item i at
+     * index 6*i, which are not copied and must not be modified
+     * @param items the items to index, each with a non-empty box
+     */
+    public BoundingBoxTree(double[] boxes, int[] items) {
+        this.boxes = boxes;
+        this.order = items.clone();
+        int maxnodes = Math.max(1, 2*items.length);
+        nodeBoxes = new double[6*maxnodes];
+        nodeStart = new int[maxnodes];
+        nodeEnd   = new int[maxnodes];
+        nodeLeft  = new int[maxnodes];
+        nodeRight = new int[maxnodes];
+        if (order.length > 0)
+            build(0, order.length);
+    }
+
+    /**
+     * @return the number of indexed items
+     */
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * @return index of the node covering order[start:end]
+     */
+    private int build(int start, int end) {
+        int node = nnodes++;
+        nodeStart[node] = start;
+        nodeEnd[node]   = end;
+        nodeLeft[node]  = -1;
+        nodeRight[node] = -1;
+        int b = 6*node;
+        for (int k=0; k<3; k++) {
+            nodeBoxes[b+k]   = Double.POSITIVE_INFINITY;
+            nodeBoxes[b+k+3] = Double.NEGATIVE_INFINITY;
+        }
+        for (int i=start; i<end; i++) {
+            int item = 6*order[i];
+            for (int k=0; k<3; k++) {
+                nodeBoxes[b+k]   = Math.min(nodeBoxes[b+k],   boxes[item+k]);
+                nodeBoxes[b+k+3] = Math.max(nodeBoxes[b+k+3], boxes[item+k+3]);
+            }
+        }
+        if (end-start > LEAF_SIZE) {
+            int axis = 0;
+            for (int k=1; k<3; k++)
+                if (nodeBoxes[b+k+3]-nodeBoxes[b+k] > nodeBoxes[b+axis+3]-nodeBoxes[b+axis])
+                    axis = k;
+            int mid = (start+end)/2;
+            select(start, end, mid, axis);
+            nodeLeft[node]  = build(start, mid);
+            nodeRight[node] = build(mid, end);
+        }
+        return node;
+    }
+
+    /**
+     * @return twice the center of the box of an item along an axis
+     */
+    private double center(int item, int axis) {
+        return boxes[6*item+axis]+boxes[6*item+axis+3];
+    }
+
+    /**
+     * Partially sorts order[start:end] by the centers along the axis, so
+     * that the item at nth is in place, with no larger center before it and
+     * no smaller one after it.
+     */
+    private void select(int start, int end, int nth, int axis) {
+        int lo = start, hi = end-1;
+        while (lo < hi) {
+            double pivot = center(order[(lo+hi)>>>1], axis);
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (center(order[i], axis) < pivot) i++;
+                while (center(order[j], axis) > pivot) j--;
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i++] = order[j];
+                    order[j--] = swap;
+                }
+            }
+            if (nth <= j)
+                hi = j;
+            else if (nth >= i)
+                lo = i;
+            else
+                break;
+        }
+    }
+
+    /**
+     * Appends the items whose box, enlarged by the margin, may be crossed by
+     * the line o+t*d for t in [tmin,tmax], and sorts all the found items.
+     * @param ox,oy,oz the line origin
+     * @param dx,dy,dz the line direction
+     * @param tmin the lowest line parameter, or negative infinity
+     * @param tmax the highest line parameter, or positive infinity
+     * @param margin the distance by which the boxes are enlarged
+     * @param found the found items, large enough for nfound plus all the
+     * items of the tree
+     * @param nfound the number of items already in found
+     * @return the number of items in found, with found[0:nfound] sorted
+     */
+    public int search(double ox, double oy, double oz, double dx, double dy, double dz,
+            double tmin, double tmax, double margin, int[] found, int nfound) {
+        if (order.length > 0)
+            nfound = search(0, ox, oy, oz, dx, dy, dz, tmin, tmax, margin, found, nfound);
+        Arrays.sort(found, 0, nfound);
+        return nfound;
+    }
+
+    private int search(int node, double ox, double oy, double oz, double dx, double dy, double dz,
+            double tmin, double tmax, double margin, int[] found, int nfound) {
+        if (!crosses(nodeBoxes, node, ox, oy, oz, dx, dy, dz, tmin, tmax, margin))
+            return nfound;
+        if (nodeLeft[node] < 0) {
+            for (int i=nodeStart[node]; i<nodeEnd[node]; i++)
+                if (crosses(boxes, order[i], ox, oy, oz, dx, dy, dz, tmin, tmax, margin))
+                    found[nfound++] = order[i];
+            return nfound;
+        }
+        nfound = search(nodeLeft[node], ox, oy, oz, dx, dy, dz, tmin, tmax, margin, found, nfound);
+        return search(nodeRight[node], ox, oy, oz, dx, dy, dz, tmin, tmax, margin, found, nfound);
+    }
+
+    /**
+     * Slab test of the line o+t*d for t in [tmin,tmax] with a box.
+     * @param boxes the boxes, six values per box
+     * @param ibox the box index
+     * @return false if the line doesn't cross the box enlarged by the margin
+     */
+    public static boolean crosses(double[] boxes, int ibox, double ox, double oy, double oz,
+            double dx, double dy, double dz, double tmin, double tmax, double margin) {
+        int b = 6*ibox;
+        for (int k=0; k<3; k++) {
+            double o = k==0 ? ox : k==1 ? oy : oz;
+            double d = k==0 ? dx : k==1 ? dy : dz;
+            double lo = boxes[b+k]-margin;
+            double hi = boxes[b+k+3]+margin;
+            if (d == 0) {
+                if (o < lo || o > hi)
+                    return false;
+            } else {
+                double ta = (lo-o)/d;
+                double tb = (hi-o)/d;
+                tmin = Math.max(tmin, Math.min(ta, tb));
+                tmax = Math.min(tmax, Math.max(ta, tb));
+                if (tmin > tmax)
+                    return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,133 @@
+package org.jlab.geom.abs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.jlab.geom.DetectorHit;
+import org.jlab.geom.DetectorId;
+import org.jlab.geom.component.ScintillatorPaddle;
+import org.jlab.geom.prim.Line3D;
+import org.jlab.geom.prim.Path3D;
+import org.jlab.geom.prim.Point3D;
+import org.jlab.geom.prim.Transformation3D;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the hits of a layer, whose components are pruned by their bounds,
+ * against the former scan of all the components.
+ */
+public class AbstractLayerTest {
+
+    private static final int NPADDLES = 60;
+
+    private static class PanelLayer extends AbstractLayer<ScintillatorPaddle> {
+        PanelLayer() {
+            super(DetectorId.FTOF, 1, 1, 1, false);
+        }
+
+        @Override
+        public String getType() {
+            return "Test Layer";
+        }
+    }
+
+    /**
+     * @return paddles side by side along x, with a few of them tilted
+     */
+    private static PanelLayer createLayer() {
+        PanelLayer layer = new PanelLayer();
+        for (int i = 0; i < NPADDLES; i++) {
+            ScintillatorPaddle paddle = new ScintillatorPaddle(i+1, 6, 100 + 4*i, 5);
+            if (i%7 == 3) paddle.rotateY(Math.toRadians(20));
+            paddle.translateXYZ((i - NPADDLES/2.) * 6.2, 0, 0);
+            layer.addComponent(paddle);
+        }
+        Transformation3D transform = new Transformation3D();
+        transform.rotateX(Math.toRadians(25)).rotateZ(Math.toRadians(60)).translateXYZ(50, 30, 600);
+        layer.setTransformation(transform);
+        return layer;
+    }
+
+    /**
+     * Reference: the first component crossed by the first line of the path.
+     */
+    private static List<DetectorHit> getReferenceHits(PanelLayer layer, Path3D path) {
+        List<DetectorHit> hitList = new ArrayList();
+        Point3D hitPosition0 = new Point3D();
+        Point3D hitPosition1 = new Point3D();
+        if (path.size() < 2) return hitList;
+        Line3D line = path.getLine(0);
+        for (ScintillatorPaddle component : layer.getAllComponents()) {
+            if (component.getVolumeIntersection(line, hitPosition0, hitPosition1)) {
+                hitList.add(new DetectorHit(DetectorId.FTOF, 1, 1, 1, component.getComponentId(), hitPosition0));
+                hitList.add(new DetectorHit(DetectorId.FTOF, 1, 1, 1, component.getComponentId(), hitPosition1));
+                return hitList;
+            }
+        }
+        return hitList;
+    }
+
+    /**
+     * @return paths from around the origin through points around the layer,
+     * some of which stop before the layer
+     */
+    private static List<Path3D> createPaths(PanelLayer layer, long seed, int npaths) {
+        Random rand = new Random(seed);
+        List<Path3D> paths = new ArrayList<>();
+        for (int i = 0; i < npaths; i++) {
+            ScintillatorPaddle paddle = layer.getAllComponents().get(rand.nextInt(NPADDLES));
+            Point3D mid = paddle.getMidpoint();
+            Point3D origin = new Point3D(rand.nextGaussian(), rand.nextGaussian(), rand.nextGaussian());
+            Point3D point = new Point3D(mid.x() + 40*rand.nextGaussian(), mid.y() + 40*rand.nextGaussian(), mid.z() + 40*rand.nextGaussian());
+            double f = i%4 == 0 ? 2*rand.nextDouble() : 2;
+            Path3D path = new Path3D();
+            path.addPoint(origin);
+            path.addPoint(origin.x() + f*(point.x()-origin.x()), origin.y() + f*(point.y()-origin.y()), origin.z() + f*(point.z()-origin.z()));
+            path.addPoint(0, 0, 2000);
+            paths.add(path);
+        }
+        return paths;
+    }
+
+    private static int assertSameHits(PanelLayer layer, List<Path3D> paths) {
+        int nhits = 0;
+        for (Path3D path : paths) {
+            List<DetectorHit> expected = getReferenceHits(layer, path);
+            List<DetectorHit> hits = layer.getHits(path);
+            assertEquals(expected.size(), hits.size());
+            for (int i = 0; i < hits.size(); i++) {
+                assertEquals(expected.get(i).getComponentId(), hits.get(i).getComponentId());
+                assertTrue(expected.get(i).getPosition().x() == hits.get(i).getPosition().x());
+                assertTrue(expected.get(i).getPosition().y() == hits.get(i).getPosition().y());
+                assertTrue(expected.get(i).getPosition().z() == hits.get(i).getPosition().z());
+            }
+            nhits += hits.size();
+        }
+        return nhits;
+    }
+
+    @Test
+    public void testGetHits() {
+        PanelLayer layer = createLayer();
+        assertTrue(assertSameHits(layer, createPaths(layer, 45, 3000)) > 0);
+    }
+
+    @Test
+    public void testTransformedComponents() {
+        PanelLayer layer = createLayer();
+        assertTrue(assertSameHits(layer, createPaths(layer, 45, 500)) > 0);
+        // the index is rebuilt for moved and added components:
+        layer.getAllComponents().get(10).translateXYZ(0, 0, 30);
+        layer.getAllComponents().get(20).rotateZ(Math.toRadians(10));
+        assertTrue(assertSameHits(layer, createPaths(layer, 46, 500)) > 0);
+        Transformation3D transform = new Transformation3D();
+        transform.rotateY(Math.toRadians(-15)).translateXYZ(-20, 10, 500);
+        layer.setTransformation(transform);
+        ScintillatorPaddle paddle = new ScintillatorPaddle(NPADDLES+1, 6, 400, 5);
+        paddle.translateXYZ(0, 0, 500);
+        layer.addComponent(paddle);
+        assertTrue(assertSameHits(layer, createPaths(layer, 47, 500)) > 0);
+    }
+}
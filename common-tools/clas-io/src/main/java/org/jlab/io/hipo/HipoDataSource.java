@@ -2,6 +2,9 @@ package org.jlab.io.hipo;
 
 import java.io.File;
 import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,16 +33,133 @@ public class HipoDataSource implements DataSource {
     int                 currentEventNumber = 0;
     int                 minEventNumber     = 0;
     int                 numberOfEvent      = 0;
+    String              fileName           = null;
+
+    // asynchronous read-ahead, disabled when readAheadDepth is 0
+    private static final Event  END_OF_STREAM  = new Event();
+    private int                    readAheadDepth = 0;
+    private BlockingQueue<Event>   readAheadQueue = null;
+    private Thread                 readAheadThread = null;
+    private Event                  nextEvent      = null;
+    private volatile Exception     readAheadError = null;
+    private HipoEventPool          eventPool      = null;
+    private final HipoIOStatistics statistics     = new HipoIOStatistics("HipoDataSource");
     
     public HipoDataSource(){
         this.reader = new HipoReader();
     }
+
+    /**
+     * Enables asynchronous read-ahead: events are read and decompressed on a
+     * background thread into a bounded queue of the given depth, using
+     * recycled event buffers from the pool returned by {@link #getEventPool()}.
+     * Has to be called before the file is opened, random access with
+     * gotoEvent is not available in this mode.
+     * @param depth maximum number of decoded events waiting in the queue, 0 disables
+     */
+    public void setReadAhead(int depth){
+        this.readAheadDepth = depth;
+        if(depth>0){
+            this.eventPool = new HipoEventPool(2*depth);
+            this.eventPool.setStatistics(statistics);
+        } else {
+            this.eventPool = null;
+        }
+    }
+
+    public boolean isReadAhead(){ return this.readAheadDepth>0;}
+
+    /**
+     * @return the pool the read-ahead events are taken from, null in synchronous mode
+     */
+    public HipoEventPool getEventPool(){ return this.eventPool;}
+
+    public HipoIOStatistics getStatistics(){ return this.statistics;}
+
+    /**
+     * Returns an event obtained from getNextEvent to the read-ahead pool.
+     * Must only be called when the event is no longer used, it is a no-op
+     * in synchronous mode.
+     * @param event event to recycle
+     */
+    public void releaseEvent(DataEvent event){
+        if(eventPool!=null) eventPool.release(event);
+    }
     
     @Override
     public boolean hasEvent() {
+        if(readAheadThread!=null){
+            return peekEvent()!=END_OF_STREAM;
+        }
         return reader.hasNext();
     }
 
+    /**
+     * Next event of the read-ahead queue, END_OF_STREAM at the end of the
+     * file. A failure of the read-ahead thread is rethrown here, instead of
+     * being reported as the end of the file.
+     */
+    private Event peekEvent(){
+        Event event = this.takeEvent();
+        if(event==END_OF_STREAM && readAheadError!=null){
+            throw new RuntimeException("[HipoDataSource] ---> failed reading file " + fileName, readAheadError);
+        }
+        return event;
+    }
+
+    private Event takeEvent(){
+        if(nextEvent==null){
+            long start = System.nanoTime();
+            try {
+                nextEvent = readAheadQueue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                nextEvent = END_OF_STREAM;
+            }
+            statistics.addConsumerWait(System.nanoTime()-start);
+        }
+        return nextEvent;
+    }
+
+    private void startReadAhead(){
+        statistics.reset();
+        readAheadQueue  = new ArrayBlockingQueue<>(readAheadDepth+1);
+        nextEvent       = null;
+        readAheadError  = null;
+        readAheadThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    try {
+                        while(reader.hasNext()==true){
+                            Event event = eventPool.acquire();
+                            long start = System.nanoTime();
+                            reader.nextEvent(event);
+                            long read  = System.nanoTime();
+                            statistics.addEvent(read-start);
+                            readAheadQueue.put(event);
+                            statistics.addProducerWait(System.nanoTime()-read);
+                        }
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        LOGGER.log(Level.SEVERE, "[HipoDataSource] ---> read-ahead thread failed", e);
+                        readAheadError = e;
+                    }
+                    statistics.stop();
+                    readAheadQueue.put(END_OF_STREAM);
+                } catch (InterruptedException e) {
+                    // the source was closed while events were still pending
+                    statistics.stop();
+                    readAheadQueue.clear();
+                    readAheadQueue.offer(END_OF_STREAM);
+                }
+            }
+        }, "HipoDataSource-readahead");
+        readAheadThread.setDaemon(true);
+        readAheadThread.start();
+    }
+
     @Override
     public void open(File file) {
         this.open(file.getAbsolutePath());
@@ -59,7 +179,9 @@ public class HipoDataSource implements DataSource {
     @Override
     public void open(String filename) {
         this.reader.open(filename);
+        this.fileName = filename;
         LOGGER.log(Level.INFO,"[DataSourceDump] --> opened file with events # " );
+        if(readAheadDepth>0) this.startReadAhead();
         //this.reader.getSchemaFactory().show();
         /*
         HipoRecord header = this.reader.getHeaderRecord();
@@ -83,7 +205,18 @@ public class HipoDataSource implements DataSource {
     }
 
     public void close() {
-        
+        if(readAheadThread!=null){
+            readAheadThread.interrupt();
+            try {
+                readAheadThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            readAheadThread = null;
+            readAheadQueue  = null;
+            nextEvent       = null;
+            LOGGER.log(Level.INFO, statistics.toString());
+        }
     }
 
     public  HipoReader getReader(){ return reader;}
@@ -96,7 +229,36 @@ public class HipoDataSource implements DataSource {
 
     @Override
     public DataEventList getEventList(int start, int stop) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        int[] positions = new int[Math.max(0, stop-start)];
+        for(int i = 0; i < positions.length; i++) positions[i] = start + i;
+        return this.getEventList(positions);
+    }
+
+    /**
+     * Random-access list over the given event positions, events are read
+     * with gotoEvent when requested so only the records containing them
+     * are decompressed.
+     * @param positions event positions in the file, e.g. from {@link HipoEventIndex#select}
+     * @return list of events
+     */
+    public DataEventList getEventList(final int[] positions) {
+        return new DataEventList() {
+            @Override
+            public int getSize() { return positions.length; }
+            @Override
+            public DataEvent getEvent(int i) { return gotoEvent(positions[i]); }
+        };
+    }
+
+    /**
+     * Returns the sidecar index of the currently open file, building it in
+     * one pass if needed (see {@link HipoEventIndex#open}).
+     * @param taggers user-defined tags for a newly built index
+     * @return the event index, null if no file is open
+     */
+    public HipoEventIndex getEventIndex(List<HipoEventTagger> taggers) {
+        if(fileName==null) return null;
+        return HipoEventIndex.open(fileName, taggers);
     }
 
     @Override
@@ -106,6 +268,20 @@ public class HipoDataSource implements DataSource {
 
     @Override
     public DataEvent getNextEvent() {
+        if(readAheadThread!=null){
+            Event event = peekEvent();
+            if(event==END_OF_STREAM) return null;
+            nextEvent = null;
+            HipoDataEvent  hipoEvent = new HipoDataEvent(event,reader.getSchemaFactory());
+            // a read failure is only reported by the next call:
+            if(takeEvent()!=END_OF_STREAM){
+                hipoEvent.setType(DataEventType.EVENT_ACCUMULATE);
+            } else {
+                hipoEvent.setType(DataEventType.EVENT_STOP);
+            }
+            this.currentEventNumber++;
+            return hipoEvent;
+        }
         Event event = new Event();
         reader.nextEvent(event);
         /*hipoEvent.getDataBuffer();        
@@ -134,6 +310,9 @@ public class HipoDataSource implements DataSource {
 
     @Override
     public DataEvent gotoEvent(int index) {
+        if(readAheadThread!=null){
+            throw new UnsupportedOperationException("random access is not supported in read-ahead mode");
+        }
         Event event = new Event();
         reader.getEvent(event, index);
         /*hipoEvent.getDataBuffer();        
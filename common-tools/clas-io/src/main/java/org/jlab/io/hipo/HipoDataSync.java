@@ -1,6 +1,8 @@
 package org.jlab.io.hipo;
 
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,6 +27,15 @@ public class HipoDataSync implements DataSync {
     public static Logger LOGGER = Logger.getLogger(HipoDataSync.class.getName());
     
     HipoWriterSorted writer = null;
+
+    // asynchronous write-behind, disabled when writeBehindDepth is 0
+    private static final Event  END_OF_STREAM    = new Event();
+    private int                    writeBehindDepth = 0;
+    private BlockingQueue<Event>   writeQueue       = null;
+    private Thread                 writeThread      = null;
+    private HipoEventPool          eventPool        = null;
+    private volatile Exception     writeBehindError = null;
+    private final HipoIOStatistics statistics       = new HipoIOStatistics("HipoDataSync");
     
     public HipoDataSync(){
         this.writer = new HipoWriterSorted();
@@ -55,6 +66,67 @@ public class HipoDataSync implements DataSync {
             this.writer.addHeader(descString);
         }*/
         this.writer.open(file);
+        if(writeBehindDepth>0) this.startWriteBehind();
+    }
+
+    /**
+     * Enables asynchronous write-behind: events passed to writeEvent are
+     * queued and compressed/written on a separate thread. The caller must
+     * not modify an event after it has been passed to writeEvent.
+     * Has to be called before the file is opened.
+     * @param depth maximum number of events waiting to be written, 0 disables
+     */
+    public void setWriteBehind(int depth){
+        this.writeBehindDepth = depth;
+    }
+
+    /**
+     * Events are returned to this pool once written, typically the pool of
+     * a {@link HipoDataSource} in read-ahead mode.
+     * @param pool pool to recycle written events into
+     */
+    public void setEventPool(HipoEventPool pool){
+        this.eventPool = pool;
+    }
+
+    public HipoIOStatistics getStatistics(){ return this.statistics;}
+
+    private void startWriteBehind(){
+        statistics.reset();
+        writeQueue  = new ArrayBlockingQueue<>(writeBehindDepth);
+        writeBehindError = null;
+        writeThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while(true){
+                    Event event;
+                    long start = System.nanoTime();
+                    try {
+                        event = writeQueue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    long taken = System.nanoTime();
+                    statistics.addConsumerWait(taken-start);
+                    if(event==END_OF_STREAM) break;
+                    // after a failure, the remaining events are only drained
+                    if(writeBehindError==null){
+                        try {
+                            writer.addEvent(event, event.getEventTag());
+                        } catch (Exception e) {
+                            LOGGER.log(Level.SEVERE, "[HipoDataSync] ---> write-behind thread failed", e);
+                            writeBehindError = e;
+                        }
+                    }
+                    statistics.addEvent(System.nanoTime()-taken);
+                    if(eventPool!=null) eventPool.release(event);
+                }
+                statistics.stop();
+            }
+        }, "HipoDataSync-writebehind");
+        writeThread.setDaemon(true);
+        writeThread.start();
     }
 
     public void addSchema(Schema schema){
@@ -70,13 +142,49 @@ public class HipoDataSync implements DataSync {
         //EvioDataEvent  evioEvent = (EvioDataEvent) event;
         if(event instanceof HipoDataEvent) {
             HipoDataEvent hipoEvent = (HipoDataEvent) event;
-            
+            if(writeThread!=null){
+                this.checkWriteBehind();
+                long start = System.nanoTime();
+                try {
+                    writeQueue.put(hipoEvent.getHipoEvent());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                statistics.addProducerWait(System.nanoTime()-start);
+                return;
+            }
             this.writer.addEvent(hipoEvent.getHipoEvent(),hipoEvent.getHipoEvent().getEventTag());
         }
     }
     public HipoWriterSorted getWriter(){ return writer;}
+
+    /**
+     * Rethrows the failure of the write-behind thread, if any.
+     */
+    private void checkWriteBehind(){
+        if(writeBehindError!=null){
+            throw new RuntimeException("[HipoDataSync] ---> failed writing events", writeBehindError);
+        }
+    }
     
     public void close() {
+        if(writeThread!=null){
+            try {
+                writeQueue.put(END_OF_STREAM);
+                writeThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writeThread = null;
+            writeQueue  = null;
+            LOGGER.log(Level.INFO, statistics.toString());
+            try {
+                this.checkWriteBehind();
+            } finally {
+                this.writer.close();
+            }
+            return;
+        }
         this.writer.close();
     }
     
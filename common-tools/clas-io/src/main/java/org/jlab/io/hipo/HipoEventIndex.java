@@ -0,0 +1,316 @@
+package org.jlab.io.hipo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jlab.jnp.hipo4.data.Bank;
+import org.jlab.jnp.hipo4.data.Event;
+import org.jlab.jnp.hipo4.data.SchemaFactory;
+import org.jlab.jnp.hipo4.io.HipoReader;
+
+/**
+ * Sidecar event index for a HIPO file, used to skim events without decoding
+ * the whole file.
+ *
+ * The index is computed in one pass over the file and stores, for every
+ * event position in the file, the run and event number and the trigger word
+ * from RUN::config together with a 64-bit word of user-defined tags (see
+ * {@link HipoEventTagger}). It is saved next to the data file as
+ * {@code <file>.idx} and loaded through a memory-mapped buffer. The event
+ * positions returned by {@link #select} can be passed directly to
+ * {@link HipoDataSource#gotoEvent} or {@link HipoDataSource#getEventList(int[])},
+ * which only decompress the records holding the selected events.
+ */
+public class HipoEventIndex {
+
+    public static Logger LOGGER = Logger.getLogger(HipoEventIndex.class.getName());
+
+    public static final String EXTENSION = ".idx";
+    public static final int    MAX_TAGS  = 64;
+
+    private static final int   MAGIC   = 0x48494458; // "HIDX"
+    private static final int   VERSION = 1;
+
+    private int       size     = 0;
+    private int[]     runs     = new int[1024];
+    private int[]     events   = new int[1024];
+    private long[]    triggers = new long[1024];
+    private long[]    tags     = new long[1024];
+    private final List<String> tagNames = new ArrayList<>();
+
+    public HipoEventIndex(){}
+
+    /**
+     * Builds the index of a file in a single sequential pass.
+     * @param filename HIPO file to index
+     * @param taggers  user-defined tags, at most {@link #MAX_TAGS}
+     * @return the index
+     */
+    public static HipoEventIndex build(String filename, List<HipoEventTagger> taggers){
+        if(taggers.size()>MAX_TAGS)
+            throw new IllegalArgumentException("at most " + MAX_TAGS + " tags can be indexed");
+        HipoEventIndex index = new HipoEventIndex();
+        for(HipoEventTagger tagger : taggers) index.tagNames.add(tagger.getName());
+
+        HipoReader reader = new HipoReader();
+        reader.open(filename);
+        SchemaFactory factory = reader.getSchemaFactory();
+        Bank  config = factory.hasSchema("RUN::config") ? new Bank(factory.getSchema("RUN::config")) : null;
+        Event event  = new Event();
+        while(reader.hasNext()){
+            reader.nextEvent(event);
+            int  run = 0, evn = 0;
+            long trigger = 0L;
+            if(config!=null){
+                event.read(config);
+                if(config.getRows()>0){
+                    run     = config.getInt("run", 0);
+                    evn     = config.getInt("event", 0);
+                    trigger = config.getLong("trigger", 0);
+                }
+            }
+            long bits = 0L;
+            for(int t = 0; t < taggers.size(); t++){
+                if(taggers.get(t).tag(event, factory)) bits |= 1L<<t;
+            }
+            index.add(run, evn, trigger, bits);
+        }
+        reader.close();
+        return index;
+    }
+
+    public static HipoEventIndex build(String filename){
+        return build(filename, new ArrayList<HipoEventTagger>());
+    }
+
+    private void add(int run, int event, long trigger, long bits){
+        if(size==runs.length){
+            int capacity = 2*size;
+            runs     = Arrays.copyOf(runs, capacity);
+            events   = Arrays.copyOf(events, capacity);
+            triggers = Arrays.copyOf(triggers, capacity);
+            tags     = Arrays.copyOf(tags, capacity);
+        }
+        runs[size]     = run;
+        events[size]   = event;
+        triggers[size] = trigger;
+        tags[size]     = bits;
+        size++;
+    }
+
+    public int    getSize(){ return size;}
+    public int    getRun(int index){ return runs[index];}
+    public int    getEvent(int index){ return events[index];}
+    public long   getTrigger(int index){ return triggers[index];}
+    public long   getTags(int index){ return tags[index];}
+    public List<String> getTagNames(){ return tagNames;}
+
+    /**
+     * @param name tag name
+     * @return bit mask of the tag
+     * @throws IllegalArgumentException if the tag is not in the index
+     */
+    public long getTagMask(String name){
+        int bit = tagNames.indexOf(name);
+        if(bit<0) throw new IllegalArgumentException("tag " + name + " is not in the index " + tagNames);
+        return 1L<<bit;
+    }
+
+    /**
+     * Selects events by trigger bits and user tags.
+     * @param triggerMask events with any of these trigger bits set are selected, 0 accepts all
+     * @param tagMask     events with all of these tags set are selected, 0 accepts all
+     * @return ascending event positions in the file
+     */
+    public int[] select(long triggerMask, long tagMask){
+        int[] selected = new int[size];
+        int n = 0;
+        for(int i = 0; i < size; i++){
+            if(triggerMask!=0 && (triggers[i]&triggerMask)==0) continue;
+            if((tags[i]&tagMask)!=tagMask) continue;
+            selected[n++] = i;
+        }
+        return Arrays.copyOf(selected, n);
+    }
+
+    /**
+     * @param run   run number
+     * @param event event number
+     * @return position of the event in the file, -1 if not found
+     */
+    public int find(int run, int event){
+        for(int i = 0; i < size; i++){
+            if(events[i]==event && runs[i]==run) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @param taggers user-defined tags
+     * @return whether the index stores exactly these tags, in the same order
+     */
+    public boolean hasTags(List<HipoEventTagger> taggers){
+        if(taggers.size()!=tagNames.size()) return false;
+        for(int t = 0; t < taggers.size(); t++){
+            if(!taggers.get(t).getName().equals(tagNames.get(t))) return false;
+        }
+        return true;
+    }
+
+    public static String getIndexFileName(String filename){
+        return filename + EXTENSION;
+    }
+
+    /**
+     * write the index to the given file.
+     * @param filename output index file
+     */
+    public void save(String filename){
+        int header = 4*4;
+        for(String name : tagNames) header += 4 + name.getBytes(StandardCharsets.UTF_8).length;
+        ByteBuffer buffer = ByteBuffer.allocate(header + size*(4+4+8+8));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(size);
+        buffer.putInt(tagNames.size());
+        for(String name : tagNames){
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+        for(int i = 0; i < size; i++) buffer.putInt(runs[i]);
+        for(int i = 0; i < size; i++) buffer.putInt(events[i]);
+        for(int i = 0; i < size; i++) buffer.putLong(triggers[i]);
+        for(int i = 0; i < size; i++) buffer.putLong(tags[i]);
+        buffer.flip();
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            while(buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "[HipoEventIndex] ---> failed to write index " + filename, e);
+        }
+    }
+
+    /**
+     * read an index file through a memory-mapped buffer.
+     * @param filename index file
+     * @return the index, or null if the file does not exist or is not a valid index
+     */
+    public static HipoEventIndex load(String filename){
+        if(!new File(filename).exists()) return null;
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if(buffer.getInt()!=MAGIC || buffer.getInt()!=VERSION){
+                LOGGER.log(Level.WARNING, "[HipoEventIndex] ---> invalid index file " + filename);
+                return null;
+            }
+            HipoEventIndex index = new HipoEventIndex();
+            int n     = buffer.getInt();
+            int ntags = buffer.getInt();
+            for(int t = 0; t < ntags; t++){
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                index.tagNames.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            index.size     = n;
+            index.runs     = new int[n];
+            index.events   = new int[n];
+            index.triggers = new long[n];
+            index.tags     = new long[n];
+            buffer.asIntBuffer().get(index.runs);
+            buffer.position(buffer.position() + 4*n);
+            buffer.asIntBuffer().get(index.events);
+            buffer.position(buffer.position() + 4*n);
+            buffer.asLongBuffer().get(index.triggers);
+            buffer.position(buffer.position() + 8*n);
+            buffer.asLongBuffer().get(index.tags);
+            return index;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "[HipoEventIndex] ---> failed to read index " + filename, e);
+        }
+        return null;
+    }
+
+    /**
+     * Loads the sidecar index of a data file, building and saving it in one
+     * pass if it does not exist yet, is older than the data file or was
+     * built with other tags.
+     * @param filename HIPO data file
+     * @param taggers  user-defined tags of the index
+     * @return the index
+     */
+    public static HipoEventIndex open(String filename, List<HipoEventTagger> taggers){
+        String idxName = getIndexFileName(filename);
+        File idxFile = new File(idxName);
+        if(idxFile.exists() && idxFile.lastModified()>=new File(filename).lastModified()){
+            HipoEventIndex index = load(idxName);
+            if(index!=null && index.hasTags(taggers)) return index;
+        }
+        HipoEventIndex index = build(filename, taggers);
+        index.save(idxName);
+        return index;
+    }
+
+    /**
+     * Tags events containing at least one REC::Particle with the given PID.
+     * @param pid particle id
+     * @return the tagger
+     */
+    public static HipoEventTagger particleTagger(final int pid){
+        return new HipoEventTagger() {
+            private Bank particles = null;
+            @Override
+            public String getName() { return "pid" + pid; }
+            @Override
+            public boolean tag(Event event, SchemaFactory factory) {
+                if(particles==null){
+                    if(!factory.hasSchema("REC::Particle")) return false;
+                    particles = new Bank(factory.getSchema("REC::Particle"));
+                }
+                event.read(particles);
+                for(int row = 0; row < particles.getRows(); row++){
+                    if(particles.getInt("pid", row)==pid) return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static void main(String[] args){
+        if(args.length<1){
+            System.out.println("\tUsage: HipoEventIndex file.hipo [file2.hipo ...] [-pid pid1,pid2,...]");
+            return;
+        }
+        List<String> files = new ArrayList<>();
+        List<HipoEventTagger> taggers = new ArrayList<>();
+        for(int i = 0; i < args.length; i++){
+            if(args[i].equals("-pid") && i+1<args.length){
+                for(String pid : args[++i].split(",")){
+                    taggers.add(particleTagger(Integer.parseInt(pid.trim())));
+                }
+            } else {
+                files.add(args[i]);
+            }
+        }
+        for(String file : files){
+            HipoEventIndex index = build(file, taggers);
+            index.save(getIndexFileName(file));
+            System.out.println(String.format("[HipoEventIndex] ---> %s : indexed %d events",
+                    file, index.getSize()));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.jlab.io.hipo;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jlab.io.base.DataEvent;
+import org.jlab.jnp.hipo4.data.Event;
+
+/**
+ * Thread-safe pool of HIPO {@link Event} objects, used by the asynchronous
+ * modes of {@link HipoDataSource} and {@link HipoDataSync} to recycle event
+ * buffers instead of allocating a new one for every event read.
+ *
+ * Events are returned to the pool with {@link #release}, either by the
+ * write-behind thread after the event was written or by the caller for
+ * events that are not written. Events that are never released are simply
+ * garbage collected.
+ */
+public class HipoEventPool {
+
+    private final ConcurrentLinkedQueue<Event> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger                size = new AtomicInteger(0);
+    private final int                          maxSize;
+    private HipoIOStatistics                   stats = null;
+
+    public HipoEventPool(int maxSize){
+        this.maxSize = maxSize;
+    }
+
+    public void setStatistics(HipoIOStatistics stats){
+        this.stats = stats;
+    }
+
+    /**
+     * @return an event from the pool, or a newly allocated one if the pool is empty
+     */
+    public Event acquire(){
+        Event event = pool.poll();
+        if(event!=null){
+            size.decrementAndGet();
+            if(stats!=null) stats.addPooled();
+            return event;
+        }
+        if(stats!=null) stats.addAllocated();
+        return new Event();
+    }
+
+    /**
+     * return an event to the pool, it is dropped if the pool is full.
+     * @param event event that is no longer referenced by the caller
+     */
+    public void release(Event event){
+        if(event==null) return;
+        if(size.incrementAndGet()<=maxSize){
+            pool.offer(event);
+        } else {
+            size.decrementAndGet();
+        }
+    }
+
+    public void release(DataEvent event){
+        if(event instanceof HipoDataEvent){
+            release(((HipoDataEvent) event).getHipoEvent());
+        }
+    }
+
+    public int getSize(){ return size.get();}
+}
@@ -0,0 +1,23 @@
+package org.jlab.io.hipo;
+
+import org.jlab.jnp.hipo4.data.Event;
+import org.jlab.jnp.hipo4.data.SchemaFactory;
+
+/**
+ * User-defined event tag evaluated once per event while building a
+ * {@link HipoEventIndex}.
+ */
+public interface HipoEventTagger {
+
+    /**
+     * @return the name stored in the index header for this tag
+     */
+    String getName();
+
+    /**
+     * @param event   event being indexed
+     * @param factory schema factory of the file being indexed
+     * @return true if the event carries this tag
+     */
+    boolean tag(Event event, SchemaFactory factory);
+}
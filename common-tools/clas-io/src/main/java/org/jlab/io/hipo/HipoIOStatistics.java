@@ -0,0 +1,83 @@
+package org.jlab.io.hipo;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput and back-pressure counters for the asynchronous read-ahead
+ * mode of {@link HipoDataSource} and the write-behind mode of
+ * {@link HipoDataSync}.
+ *
+ * The producer side (reader thread or caller of writeEvent) accumulates
+ * the time spent blocked on a full queue, the consumer side accumulates
+ * the time spent waiting on an empty queue. A large producer wait means
+ * the I/O thread is ahead of the computation, a large consumer wait means
+ * the computation is starved by I/O.
+ */
+public class HipoIOStatistics {
+
+    private final String     name;
+    private final AtomicLong eventCount        = new AtomicLong(0);
+    private final AtomicLong ioTimeNanos       = new AtomicLong(0);
+    private final AtomicLong producerWaitNanos = new AtomicLong(0);
+    private final AtomicLong consumerWaitNanos = new AtomicLong(0);
+    private final AtomicLong pooledEvents      = new AtomicLong(0);
+    private final AtomicLong allocatedEvents   = new AtomicLong(0);
+    private volatile long    startTime         = System.nanoTime();
+    private volatile long    stopTime          = 0L;
+
+    public HipoIOStatistics(String name){
+        this.name = name;
+    }
+
+    public void reset(){
+        eventCount.set(0);
+        ioTimeNanos.set(0);
+        producerWaitNanos.set(0);
+        consumerWaitNanos.set(0);
+        pooledEvents.set(0);
+        allocatedEvents.set(0);
+        startTime = System.nanoTime();
+        stopTime  = 0L;
+    }
+
+    public void stop(){ stopTime = System.nanoTime(); }
+
+    public void addEvent(long ioNanos){
+        eventCount.incrementAndGet();
+        ioTimeNanos.addAndGet(ioNanos);
+    }
+
+    public void addProducerWait(long nanos){ producerWaitNanos.addAndGet(nanos); }
+    public void addConsumerWait(long nanos){ consumerWaitNanos.addAndGet(nanos); }
+    public void addPooled(){    pooledEvents.incrementAndGet();}
+    public void addAllocated(){ allocatedEvents.incrementAndGet();}
+
+    public long   getEventCount(){ return eventCount.get();}
+    public long   getPooledEvents(){ return pooledEvents.get();}
+    public long   getAllocatedEvents(){ return allocatedEvents.get();}
+    public double getIoTime(){ return ioTimeNanos.get()*1e-9;}
+    public double getProducerWaitTime(){ return producerWaitNanos.get()*1e-9;}
+    public double getConsumerWaitTime(){ return consumerWaitNanos.get()*1e-9;}
+
+    public double getElapsedTime(){
+        long end = stopTime>0 ? stopTime : System.nanoTime();
+        return (end-startTime)*1e-9;
+    }
+
+    /**
+     * @return number of events per second since the statistics were started.
+     */
+    public double getRate(){
+        double elapsed = getElapsedTime();
+        return elapsed>0 ? getEventCount()/elapsed : 0.0;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("[%s] events = %d, rate = %.1f Hz, io = %.2f sec, "
+                + "producer wait = %.2f sec, consumer wait = %.2f sec, events pooled/allocated = %d/%d",
+                name, getEventCount(), getRate(), getIoTime(),
+                getProducerWaitTime(), getConsumerWaitTime(),
+                getPooledEvents(), getAllocatedEvents());
+    }
+}
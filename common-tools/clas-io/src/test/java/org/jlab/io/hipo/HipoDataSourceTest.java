@@ -0,0 +1,147 @@
+package org.jlab.io.hipo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.jlab.io.base.DataEvent;
+import org.jlab.jnp.hipo4.data.Bank;
+import org.jlab.jnp.hipo4.data.Event;
+import org.jlab.jnp.hipo4.data.SchemaFactory;
+import org.jlab.jnp.hipo4.io.HipoWriterSorted;
+import org.jlab.utils.system.ClasUtilsFile;
+
+/**
+ * Checks that the read-ahead and write-behind modes give the same events
+ * as the synchronous reading and writing.
+ */
+public class HipoDataSourceTest {
+
+    private static final int NEVENTS = 500;
+
+    static SchemaFactory getSchemaFactory() {
+        System.setProperty("CLAS12DIR", "../../");
+        String dir = ClasUtilsFile.getResourceDir("CLAS12DIR", "etc/bankdefs/hipo4");
+        SchemaFactory factory = new SchemaFactory();
+        factory.initFromDirectory(dir);
+        return factory;
+    }
+
+    /**
+     * @return an event with RUN::config and a few REC::Particle rows
+     */
+    static Event createEvent(SchemaFactory factory, int run, int number, long trigger, int[] pids) {
+        Bank config = new Bank(factory.getSchema("RUN::config"), 1);
+        config.putInt("run", 0, run);
+        config.putInt("event", 0, number);
+        config.putLong("trigger", 0, trigger);
+        Bank particles = new Bank(factory.getSchema("REC::Particle"), pids.length);
+        for (int row = 0; row < pids.length; row++) {
+            particles.putInt("pid", row, pids[row]);
+        }
+        Event event = new Event();
+        event.write(config);
+        event.write(particles);
+        return event;
+    }
+
+    static int[] getPids(int number) {
+        int[] pids = new int[number % 4];
+        for (int row = 0; row < pids.length; row++) {
+            pids[row] = row == 0 ? (number % 3 == 0 ? 11 : 2212) : (row % 2 == 0 ? 22 : -211);
+        }
+        return pids;
+    }
+
+    static File createFile(SchemaFactory factory, int nevents) throws IOException {
+        File file = File.createTempFile("HipoDataSourceTest", ".hipo");
+        file.deleteOnExit();
+        HipoWriterSorted writer = new HipoWriterSorted();
+        for (org.jlab.jnp.hipo4.data.Schema schema : factory.getSchemaList()) {
+            writer.getSchemaFactory().addSchema(schema);
+        }
+        writer.open(file.getAbsolutePath());
+        for (int i = 0; i < nevents; i++) {
+            writer.addEvent(createEvent(factory, 11, i + 1, 1L << (i % 5), getPids(i)), 0);
+        }
+        writer.close();
+        return file;
+    }
+
+    /**
+     * @return run, event number, trigger and pids of the event
+     */
+    static List<Long> getContent(DataEvent event, SchemaFactory factory) {
+        Event hipoEvent = ((HipoDataEvent) event).getHipoEvent();
+        Bank config = new Bank(factory.getSchema("RUN::config"));
+        Bank particles = new Bank(factory.getSchema("REC::Particle"));
+        hipoEvent.read(config);
+        hipoEvent.read(particles);
+        List<Long> content = new ArrayList<>();
+        content.add((long) config.getInt("run", 0));
+        content.add((long) config.getInt("event", 0));
+        content.add(config.getLong("trigger", 0));
+        for (int row = 0; row < particles.getRows(); row++) {
+            content.add((long) particles.getInt("pid", row));
+        }
+        return content;
+    }
+
+    static List<List<Long>> readAll(String filename, int readAhead, SchemaFactory factory) {
+        HipoDataSource source = new HipoDataSource();
+        source.setReadAhead(readAhead);
+        source.open(filename);
+        List<List<Long>> events = new ArrayList<>();
+        while (source.hasEvent()) {
+            DataEvent event = source.getNextEvent();
+            events.add(getContent(event, factory));
+            source.releaseEvent(event);
+        }
+        source.close();
+        return events;
+    }
+
+    @Test
+    public void testReadAhead() throws IOException {
+        SchemaFactory factory = getSchemaFactory();
+        File file = createFile(factory, NEVENTS);
+
+        List<List<Long>> expected = readAll(file.getAbsolutePath(), 0, factory);
+        assertEquals(NEVENTS, expected.size());
+        for (int depth : new int[]{1, 4, 64}) {
+            assertEquals(expected, readAll(file.getAbsolutePath(), depth, factory));
+        }
+    }
+
+    @Test
+    public void testWriteBehind() throws IOException {
+        SchemaFactory factory = getSchemaFactory();
+        File input = createFile(factory, NEVENTS);
+        List<List<Long>> expected = readAll(input.getAbsolutePath(), 0, factory);
+
+        for (int depth : new int[]{0, 1, 16}) {
+            File output = File.createTempFile("HipoDataSourceTest", ".hipo");
+            output.deleteOnExit();
+
+            // copy the input, recycling the events as in EngineProcessor:
+            HipoDataSource source = new HipoDataSource();
+            source.setReadAhead(depth);
+            source.open(input.getAbsolutePath());
+            HipoDataSync writer = source.createWriter();
+            writer.setWriteBehind(depth);
+            writer.setEventPool(source.getEventPool());
+            writer.open(output.getAbsolutePath());
+            while (source.hasEvent()) {
+                writer.writeEvent(source.getNextEvent());
+            }
+            writer.close();
+            source.close();
+
+            assertEquals(expected, readAll(output.getAbsolutePath(), 0, factory));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.jlab.io.hipo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.jlab.jnp.hipo4.data.SchemaFactory;
+
+/**
+ * Builds, saves, loads and selects from the index of a small file written
+ * by {@link HipoDataSourceTest}.
+ */
+public class HipoEventIndexTest {
+
+    private static final int NEVENTS = 300;
+
+    private static boolean hasPid(int number, int pid) {
+        for (int p : HipoDataSourceTest.getPids(number)) {
+            if (p == pid) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return positions of the events with the trigger bit and the pid, by a linear scan
+     */
+    private static int[] expected(long triggerMask, int... pids) {
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < NEVENTS; i++) {
+            if (triggerMask != 0 && ((1L << (i % 5)) & triggerMask) == 0) continue;
+            boolean all = true;
+            for (int pid : pids) all &= hasPid(i, pid);
+            if (all) positions.add(i);
+        }
+        return positions.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    public void testBuildLoadSelect() throws IOException {
+        SchemaFactory factory = HipoDataSourceTest.getSchemaFactory();
+        File file = HipoDataSourceTest.createFile(factory, NEVENTS);
+        List<HipoEventTagger> taggers = Arrays.asList(
+                HipoEventIndex.particleTagger(11), HipoEventIndex.particleTagger(22));
+
+        HipoEventIndex built = HipoEventIndex.build(file.getAbsolutePath(), taggers);
+        File idxFile = new File(HipoEventIndex.getIndexFileName(file.getAbsolutePath()));
+        idxFile.deleteOnExit();
+        built.save(idxFile.getAbsolutePath());
+        HipoEventIndex loaded = HipoEventIndex.load(idxFile.getAbsolutePath());
+        assertNotNull(loaded);
+
+        for (HipoEventIndex index : new HipoEventIndex[]{built, loaded}) {
+            assertEquals(NEVENTS, index.getSize());
+            assertEquals(Arrays.asList("pid11", "pid22"), index.getTagNames());
+            for (int i = 0; i < NEVENTS; i++) {
+                assertEquals(11, index.getRun(i));
+                assertEquals(i + 1, index.getEvent(i));
+                assertEquals(1L << (i % 5), index.getTrigger(i));
+            }
+            assertEquals(41, index.find(11, 42));
+            assertEquals(-1, index.find(12, 42));
+
+            long electron = index.getTagMask("pid11");
+            long photon = index.getTagMask("pid22");
+            assertArrayEquals(expected(0), index.select(0, 0));
+            assertArrayEquals(expected(0, 11), index.select(0, electron));
+            assertArrayEquals(expected(0, 11, 22), index.select(0, electron | photon));
+            assertArrayEquals(expected(0x6, 22), index.select(0x6, photon));
+        }
+
+        // the selected positions read the selected events:
+        HipoDataSource source = new HipoDataSource();
+        source.open(file.getAbsolutePath());
+        int[] positions = loaded.select(0x1, loaded.getTagMask("pid11"));
+        assertTrue(positions.length > 0);
+        for (int i = 0; i < positions.length; i++) {
+            List<Long> content = HipoDataSourceTest.getContent(source.getEventList(positions).getEvent(i), factory);
+            assertEquals(positions[i] + 1, content.get(1).longValue());
+            assertTrue(content.contains(11L));
+        }
+        source.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownTag() throws IOException {
+        SchemaFactory factory = HipoDataSourceTest.getSchemaFactory();
+        File file = HipoDataSourceTest.createFile(factory, 10);
+        HipoEventIndex index = HipoEventIndex.build(file.getAbsolutePath(),
+                Arrays.asList(HipoEventIndex.particleTagger(11)));
+        index.getTagMask("pid2212");
+    }
+
+    @Test
+    public void testStaleIndex() throws IOException {
+        SchemaFactory factory = HipoDataSourceTest.getSchemaFactory();
+        File file = HipoDataSourceTest.createFile(factory, NEVENTS);
+        String filename = file.getAbsolutePath();
+        new File(HipoEventIndex.getIndexFileName(filename)).deleteOnExit();
+
+        HipoEventIndex first = HipoEventIndex.open(filename, Arrays.asList(HipoEventIndex.particleTagger(11)));
+        assertEquals(Arrays.asList("pid11"), first.getTagNames());
+
+        // an index saved with other tags is rebuilt, not reused:
+        HipoEventIndex second = HipoEventIndex.open(filename, Arrays.asList(HipoEventIndex.particleTagger(22)));
+        assertEquals(Arrays.asList("pid22"), second.getTagNames());
+        assertArrayEquals(expected(0, 22), second.select(0, second.getTagMask("pid22")));
+
+        // and the rebuilt index is the one saved:
+        HipoEventIndex third = HipoEventIndex.load(HipoEventIndex.getIndexFileName(filename));
+        assertEquals(Arrays.asList("pid22"), third.getTagNames());
+        assertArrayEquals(second.select(0, second.getTagMask("pid22")), third.select(0, third.getTagMask("pid22")));
+    }
+}
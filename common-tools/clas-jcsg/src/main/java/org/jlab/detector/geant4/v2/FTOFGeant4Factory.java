@@ -18,6 +18,8 @@ import static org.jlab.detector.units.SystemOfUnits.Length;
 import org.jlab.detector.volume.G4World;
 import org.jlab.geom.base.ConstantProvider;
 import org.jlab.geom.prim.Plane3D;
+import org.jlab.detector.hits.DetHit;
+import org.jlab.geometry.prim.Straight;
 
 /**
  *
@@ -44,6 +46,9 @@ public final class FTOFGeant4Factory extends Geant4Factory {
         "1a", "1b", "2"
     };
 
+    // analytic paddle intersections, one per sector and layer:
+    private final List<PaddlePlaneIndex> panelIndices = new ArrayList<>();
+
     public FTOFGeant4Factory(ConstantProvider provider) {
         motherVolume = new G4World("fc");
 
@@ -66,6 +71,13 @@ public final class FTOFGeant4Factory extends Geant4Factory {
                 layerVolume.setMother(motherVolume);
             }
         }
+        for (Geant4Basic panel : motherVolume.getChildren()) {
+            List<G4Box> paddles = new ArrayList<>();
+            for (Geant4Basic volume : panel.getChildren()) {
+                if (volume instanceof G4Box) paddles.add((G4Box) volume);
+            }
+            panelIndices.add(new PaddlePlaneIndex(paddles));
+        }
         properties.put("email", "carman@jlab.org, jguerra@jlab.org");
         properties.put("author", "carman, guerra");
         properties.put("date", "06/03/13");
@@ -217,6 +229,22 @@ public final class FTOFGeant4Factory extends Geant4Factory {
         return new Plane3D(x, y, z, normal.x, normal.y, normal.z);
     }
 
+    /**
+     * Intersections with the paddles, computed analytically from the panel
+     * planes instead of the paddle polygons.  The geometry is indexed at
+     * construction, so volumes should not be moved afterwards.
+     * @param line straight line
+     * @return paddle hits, ordered by sector, layer and paddle
+     */
+    @Override
+    public List<DetHit> getIntersections(Straight line) {
+        List<DetHit> hits = new ArrayList<>();
+        for (PaddlePlaneIndex index : panelIndices) {
+            index.getIntersections(line, hits);
+        }
+        return hits;
+    }
+
     public G4World getMother() {
         return motherVolume;
     }
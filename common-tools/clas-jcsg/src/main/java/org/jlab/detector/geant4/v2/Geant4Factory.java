@@ -46,8 +46,6 @@ public abstract class Geant4Factory {
     }
 
     public List<DetHit> getIntersections(Straight line) {
-        return motherVolume.getChildren().stream()
-                .flatMap(child -> child.getIntersections(line).stream())
-                .collect(Collectors.toList());
+        return motherVolume.getDaughterIntersections(line);
     }
 }
@@ -0,0 +1,180 @@
+package org.jlab.detector.geant4.v2;
+
+import eu.mihosoft.vrl.v3d.Vector3d;
+import java.util.List;
+import org.jlab.detector.hits.DetHit;
+import org.jlab.detector.volume.G4Box;
+import org.jlab.geometry.prim.Line3d;
+import org.jlab.geometry.prim.Straight;
+
+/**
+ * Intersections of straight lines with a planar panel of parallel box
+ * paddles stacked along their local z axis, as the FTOF panels.
+ *
+ * The paddle centers, axes and half lengths are computed once from the
+ * volumes.  A line is first reduced to the range of stacking coordinates it
+ * covers within the panel thickness, which selects the candidate paddles
+ * by binary search, and each candidate is then intersected analytically
+ * as a box, instead of testing all polygons of all paddles.  The hits are
+ * the same as Geant4Basic.getIntersections, up to rounding.
+ *
+ * Paddles which are not parallel or not ordered along z are not indexed:
+ * the line is then intersected with each paddle volume, as in
+ * Geant4Basic.getIntersections.
+ *
+ * The index is a snapshot of the geometry, and has to be rebuilt if the
+ * volumes are moved.
+ */
+public class PaddlePlaneIndex {
+
+    private static final double TOLERANCE = 1e-6;
+
+    private final G4Box[] paddles;
+    // false if the paddles are not parallel and ordered along z:
+    private final boolean indexed;
+    // per paddle, center, x/y/z unit axes and half lengths:
+    private final double[][] center;
+    private final double[][] axes;
+    private final double[][] half;
+    // panel frame, from the first paddle:
+    private final double[] origin;
+    private final double[] normal;
+    private final double[] stack;
+    private final double ymin, ymax;
+    // stacking coordinate of the lower/upper paddle edges, increasing:
+    private final double[] slow, shigh;
+
+    /**
+     * @param boxes paddles of the panel, indexed if parallel and ordered along their z axis
+     */
+    public PaddlePlaneIndex(List<G4Box> boxes) {
+        int n = boxes.size();
+        paddles = boxes.toArray(new G4Box[n]);
+        center = new double[n][];
+        axes = new double[n][];
+        half = new double[n][];
+        for (int i = 0; i < n; i++) {
+            Line3d[] lines = {paddles[i].getLineX(), paddles[i].getLineY(), paddles[i].getLineZ()};
+            Vector3d mid = lines[0].origin().plus(lines[0].end()).dividedBy(2);
+            center[i] = new double[]{mid.x, mid.y, mid.z};
+            axes[i] = new double[9];
+            half[i] = new double[3];
+            for (int a = 0; a < 3; a++) {
+                Vector3d diff = lines[a].diff();
+                half[i][a] = diff.magnitude() / 2;
+                Vector3d u = diff.normalized();
+                axes[i][3*a] = u.x;
+                axes[i][3*a+1] = u.y;
+                axes[i][3*a+2] = u.z;
+            }
+        }
+
+        origin = center[0];
+        normal = new double[]{axes[0][3], axes[0][4], axes[0][5]};
+        stack = new double[]{axes[0][6], axes[0][7], axes[0][8]};
+        double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+        boolean ordered = true;
+        slow = new double[n];
+        shigh = new double[n];
+        for (int i = 0; i < n; i++) {
+            double y = dot(normal, center[i], origin);
+            double s = dot(stack, center[i], origin);
+            lo = Math.min(lo, y - half[i][1]);
+            hi = Math.max(hi, y + half[i][1]);
+            slow[i] = s - half[i][2];
+            shigh[i] = s + half[i][2];
+            if (i > 0 && shigh[i] < shigh[i-1]) ordered = false;
+            for (int a = 3; a < 9; a += 3) {
+                double cos = axes[i][a]*axes[0][a] + axes[i][a+1]*axes[0][a+1] + axes[i][a+2]*axes[0][a+2];
+                if (cos < 1 - TOLERANCE) ordered = false;
+            }
+        }
+        indexed = ordered;
+        ymin = lo;
+        ymax = hi;
+    }
+
+    /**
+     * @return true if the paddles are parallel and ordered along z, false if
+     * the intersections are computed from the paddle volumes
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    private static double dot(double[] u, double[] p, double[] o) {
+        return u[0]*(p[0]-o[0]) + u[1]*(p[1]-o[1]) + u[2]*(p[2]-o[2]);
+    }
+
+    /**
+     * Add the intersections of the line with the sensitive paddles
+     * @param line straight line
+     * @param hits list the hits are added to, in paddle order
+     */
+    public void getIntersections(Straight line, List<DetHit> hits) {
+        if (!indexed) {
+            for (G4Box paddle : paddles) hits.addAll(paddle.getIntersections(line));
+            return;
+        }
+        Vector3d o = line.origin();
+        Vector3d d = line.diff();
+        double[] po = {o.x, o.y, o.z};
+        double[] pd = {d.x, d.y, d.z};
+        double[] zero = {0, 0, 0};
+
+        // range of stacking coordinates within the panel thickness:
+        double y0 = dot(normal, po, origin);
+        double dy = dot(normal, pd, zero);
+        double s0 = dot(stack, po, origin);
+        double ds = dot(stack, pd, zero);
+        double smin, smax;
+        if (dy == 0) {
+            if (y0 < ymin - TOLERANCE || y0 > ymax + TOLERANCE) return;
+            smin = Double.NEGATIVE_INFINITY;
+            smax = Double.POSITIVE_INFINITY;
+        }
+        else {
+            double t1 = (ymin - y0) / dy;
+            double t2 = (ymax - y0) / dy;
+            smin = Math.min(s0 + t1*ds, s0 + t2*ds) - TOLERANCE;
+            smax = Math.max(s0 + t1*ds, s0 + t2*ds) + TOLERANCE;
+        }
+
+        // first paddle with upper edge above smin:
+        int lo = 0, hi = paddles.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (shigh[mid] < smin) lo = mid + 1;
+            else hi = mid;
+        }
+        for (int i = lo; i < paddles.length && slow[i] <= smax; i++) {
+            if (paddles[i].isSensitive()) this.intersect(i, line, po, pd, hits);
+        }
+    }
+
+    private void intersect(int i, Straight line, double[] po, double[] pd, List<DetHit> hits) {
+        double tmin = Double.NEGATIVE_INFINITY;
+        double tmax = Double.POSITIVE_INFINITY;
+        for (int a = 0; a < 3; a++) {
+            double p = axes[i][3*a]*(center[i][0]-po[0]) + axes[i][3*a+1]*(center[i][1]-po[1]) + axes[i][3*a+2]*(center[i][2]-po[2]);
+            double q = axes[i][3*a]*pd[0] + axes[i][3*a+1]*pd[1] + axes[i][3*a+2]*pd[2];
+            double h = half[i][a];
+            if (q == 0) {
+                if (Math.abs(p) > h) return;
+            }
+            else {
+                double t1 = (p - h) / q;
+                double t2 = (p + h) / q;
+                tmin = Math.max(tmin, Math.min(t1, t2));
+                tmax = Math.min(tmax, Math.max(t1, t2));
+                if (tmin > tmax) return;
+            }
+        }
+        if (Double.isInfinite(tmin) || Double.isInfinite(tmax)) return;
+        // both faces have to be crossed, as for the polygon intersections:
+        if (!line.contains(tmin) || !line.contains(tmax)) return;
+        Vector3d o = line.origin();
+        Vector3d d = line.diff();
+        hits.add(new DetHit(o.plus(d.times(tmin)), o.plus(d.times(tmax)), paddles[i]));
+    }
+}
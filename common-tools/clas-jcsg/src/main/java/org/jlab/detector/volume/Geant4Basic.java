@@ -48,6 +48,10 @@ public abstract class Geant4Basic {
 
     private Geant4Basic motherVolume;
 
+    // intersection caches, checked against the current solids before use:
+    private volatile PreparedCSG preparedCSG;
+    private volatile VolumeTree daughterTree;
+
     protected Geant4Basic(Primitive volumeSolid) {
         this.volumeSolid = volumeSolid;
         updateCSGtransformation();
@@ -292,21 +296,49 @@ public abstract class Geant4Basic {
         return volumeSolid;
     }
 
+    /**
+     * @return the solid prepared for intersections, rebuilt if the solid changed
+     */
+    PreparedCSG getPrepared() {
+        CSG csg = volumeCSG;
+        if (csg == null) {
+            return null;
+        }
+        PreparedCSG prepared = preparedCSG;
+        if (prepared == null || prepared.getCSG() != csg) {
+            prepared = new PreparedCSG(csg, csg.getPolygons().size() > 20);
+            preparedCSG = prepared;
+        }
+        return prepared;
+    }
+
     public List<DetHit> getIntersections(Straight line) {
         if (children.isEmpty()) {
             return getIntersectedHits(line);
-        } else {
-            List<Vector3d> dots = volumeCSG.getIntersections(line.toLine());
-            if (dots.size() > 0) {
-                return children.stream()
-                        .flatMap(child -> child.getIntersections(line).stream())
-                        .collect(Collectors.toList());
-            }
+        } else if (getPrepared().intersects(line.toLine())) {
+            return getDaughterIntersections(line);
         }
 
         return new ArrayList<>();
     }
 
+    /**
+     * Intersections with the daughter volumes, skipping the daughters whose
+     * bounds are not crossed by the line.
+     * @param line straight line
+     * @return hits in the daughters, in the order of the daughters
+     */
+    public List<DetHit> getDaughterIntersections(Straight line) {
+        VolumeTree tree = daughterTree;
+        if (tree == null || !tree.isValid(children)) {
+            tree = new VolumeTree(children);
+            daughterTree = tree;
+        }
+        return tree.getCandidates(line).stream()
+                .flatMap(child -> child.getIntersections(line).stream())
+                .collect(Collectors.toList());
+    }
+
     protected List<DetHit> getIntersectedHits(Straight line) {
         List<DetHit> hits = new ArrayList<>();
         if (this.isSensitive()) {
@@ -315,14 +347,14 @@ public abstract class Geant4Basic {
             //if the number of polygons is large,
             //it's more efficient to test the bounds on intersections
             //before testing all polygons involved
-            if (volumeCSG.getPolygons().size() > 20) {
-                List<Vector3d> dots = volumeCSG.getBounds().toCSG().getIntersections(line.toLine());
-                if (dots.isEmpty()) {
+            PreparedCSG prepared = getPrepared();
+            if (prepared.getPolygonCount() > 20) {
+                if (!prepared.boundsIntersect(line.toLine())) {
                     return hits;
                 }
             }
 
-            List<Vector3d> dots = volumeCSG.getIntersections(line);
+            List<Vector3d> dots = prepared.getIntersections(line);
 
             for (int ihit = 0; ihit < dots.size() / 2; ihit++) {
                 DetHit hit = new DetHit(dots.get(ihit * 2), dots.get(ihit * 2 + 1), this);
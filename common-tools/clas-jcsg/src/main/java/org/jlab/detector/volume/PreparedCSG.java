@@ -0,0 +1,265 @@
+package org.jlab.detector.volume;
+
+import eu.mihosoft.vrl.v3d.CSG;
+import eu.mihosoft.vrl.v3d.Polygon;
+import eu.mihosoft.vrl.v3d.Vector3d;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jlab.geometry.prim.Straight;
+
+/**
+ * Line intersections of a CSG, prepared once for repeated queries.
+ *
+ * The polygons are split into the same triangle fans as
+ * Polygon.getIntersection and stored in a primitive array, together with
+ * the per triangle quantities of Triangle3d, and the intersections are
+ * computed with the same operations in the same order, so that the results
+ * are bit-identical to CSG.getIntersections.  The axis-aligned bounds are
+ * cached, and give a conservative test to skip the polygons for lines that
+ * pass far from the solid.
+ *
+ * The CSG polygons must not be modified after preparation.
+ */
+final class PreparedCSG {
+
+    // relative tolerance of the bounds test, well above rounding and the
+    // 1e-10 tolerance of Triangle3d.contains:
+    private static final double MARGIN = 1e-6;
+
+    // per triangle, vertex 0, side 1, side 2, normal, d00, d01, d11, denom:
+    private static final int STRIDE = 16;
+
+    private final CSG csg;
+    private final double[] triangles;
+    // first triangle of each polygon, with one extra entry for the end:
+    private final int[] polygonStart;
+    private final double minX, minY, minZ, maxX, maxY, maxZ;
+    private final double scale;
+    private final int npolygons;
+
+    // bounding box as in csg.getBounds().toCSG(), only for volumes with many polygons:
+    private final PreparedCSG bounds;
+
+    PreparedCSG(CSG csg, boolean withBounds) {
+        this.csg = csg;
+        List<Polygon> polygons = csg.getPolygons();
+        npolygons = polygons.size();
+        polygonStart = new int[npolygons + 1];
+        int ntriangles = 0;
+        for (int ip = 0; ip < npolygons; ip++) {
+            polygonStart[ip] = ntriangles;
+            ntriangles += Math.max(0, polygons.get(ip).vertices.size() - 2);
+        }
+        polygonStart[npolygons] = ntriangles;
+
+        triangles = new double[ntriangles * STRIDE];
+        double x0 = Double.POSITIVE_INFINITY, y0 = x0, z0 = x0;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = x1, z1 = x1;
+        for (int ip = 0; ip < npolygons; ip++) {
+            Polygon polygon = polygons.get(ip);
+            for (int iv = 0; iv < polygon.vertices.size(); iv++) {
+                Vector3d pos = polygon.vertices.get(iv).pos;
+                if (pos.x < x0) x0 = pos.x;
+                if (pos.y < y0) y0 = pos.y;
+                if (pos.z < z0) z0 = pos.z;
+                if (pos.x > x1) x1 = pos.x;
+                if (pos.y > y1) y1 = pos.y;
+                if (pos.z > z1) z1 = pos.z;
+            }
+            for (int iv = 1; iv < polygon.vertices.size() - 1; iv++) {
+                this.setTriangle(polygonStart[ip] + iv - 1,
+                        polygon.vertices.get(0).pos,
+                        polygon.vertices.get(iv).pos,
+                        polygon.vertices.get(iv + 1).pos);
+            }
+        }
+        minX = x0;
+        minY = y0;
+        minZ = z0;
+        maxX = x1;
+        maxY = y1;
+        maxZ = z1;
+        scale = npolygons == 0 ? 0 : Math.max(
+                Math.max(Math.max(Math.abs(x0), Math.abs(x1)), Math.max(Math.abs(y0), Math.abs(y1))),
+                Math.max(Math.abs(z0), Math.abs(z1)));
+
+        bounds = withBounds ? new PreparedCSG(csg.getBounds().toCSG(), false) : null;
+    }
+
+    /**
+     * Same quantities as the Triangle3d constructor and contains method
+     */
+    private void setTriangle(int it, Vector3d v0, Vector3d v1, Vector3d v2) {
+        int b = it * STRIDE;
+        double s1x = v1.x - v0.x, s1y = v1.y - v0.y, s1z = v1.z - v0.z;
+        double s2x = v2.x - v0.x, s2y = v2.y - v0.y, s2z = v2.z - v0.z;
+        double cx = s1y * s2z - s1z * s2y;
+        double cy = s1z * s2x - s1x * s2z;
+        double cz = s1x * s2y - s1y * s2x;
+        double mag = Math.sqrt(cx * cx + cy * cy + cz * cz);
+        double d00 = s1x * s1x + s1y * s1y + s1z * s1z;
+        double d01 = s1x * s2x + s1y * s2y + s1z * s2z;
+        double d11 = s2x * s2x + s2y * s2y + s2z * s2z;
+        triangles[b]      = v0.x;
+        triangles[b + 1]  = v0.y;
+        triangles[b + 2]  = v0.z;
+        triangles[b + 3]  = s1x;
+        triangles[b + 4]  = s1y;
+        triangles[b + 5]  = s1z;
+        triangles[b + 6]  = s2x;
+        triangles[b + 7]  = s2y;
+        triangles[b + 8]  = s2z;
+        triangles[b + 9]  = cx / mag;
+        triangles[b + 10] = cy / mag;
+        triangles[b + 11] = cz / mag;
+        triangles[b + 12] = d00;
+        triangles[b + 13] = d01;
+        triangles[b + 14] = d11;
+        triangles[b + 15] = d00 * d11 - d01 * d01;
+    }
+
+    CSG getCSG() {
+        return csg;
+    }
+
+    int getPolygonCount() {
+        return npolygons;
+    }
+
+    double getMinX() { return minX; }
+    double getMinY() { return minY; }
+    double getMinZ() { return minZ; }
+    double getMaxX() { return maxX; }
+    double getMaxY() { return maxY; }
+    double getMaxZ() { return maxZ; }
+
+    /**
+     * @param line straight line, tested as an infinite line
+     * @return false if the line cannot intersect any polygon
+     */
+    boolean mayIntersect(Straight line) {
+        if (npolygons == 0) return false;
+        return mayIntersect(line, minX, minY, minZ, maxX, maxY, maxZ, scale);
+    }
+
+    /**
+     * Conservative test of an infinite line against an axis-aligned box,
+     * enlarged by a margin relative to the coordinates involved.
+     */
+    static boolean mayIntersect(Straight line, double x0, double y0, double z0,
+            double x1, double y1, double z1, double scale) {
+        Vector3d o = line.origin();
+        Vector3d e = line.end();
+        double m = getMargin(line, scale);
+        double[] range = {Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+        return slab(o.x, e.x - o.x, x0 - m, x1 + m, range)
+            && slab(o.y, e.y - o.y, y0 - m, y1 + m, range)
+            && slab(o.z, e.z - o.z, z0 - m, z1 + m, range);
+    }
+
+    /**
+     * @param line straight line
+     * @param scale largest absolute coordinate of the boxes tested
+     * @return margin by which the boxes are enlarged in mayIntersect
+     */
+    static double getMargin(Straight line, double scale) {
+        Vector3d o = line.origin();
+        Vector3d e = line.end();
+        double s = Math.max(scale, Math.max(
+                Math.max(Math.abs(o.x), Math.max(Math.abs(o.y), Math.abs(o.z))),
+                Math.max(Math.abs(e.x), Math.max(Math.abs(e.y), Math.abs(e.z)))));
+        return MARGIN * (1 + s);
+    }
+
+    private static boolean slab(double o, double d, double lo, double hi, double[] range) {
+        if (d == 0) return o >= lo && o <= hi;
+        double t1 = (lo - o) / d;
+        double t2 = (hi - o) / d;
+        range[0] = Math.max(range[0], Math.min(t1, t2));
+        range[1] = Math.min(range[1], Math.max(t1, t2));
+        return range[0] <= range[1];
+    }
+
+    /**
+     * Same as Polygon.getIntersection for each polygon
+     * @return parametric position of the intersection, NaN if none, which
+     * can't be the position of an intersection found by the contains test
+     */
+    private double intersect(int ip, Straight line, double ox, double oy, double oz,
+            double dx, double dy, double dz, double[] point) {
+        for (int it = polygonStart[ip]; it < polygonStart[ip + 1]; it++) {
+            int b = it * STRIDE;
+            double nx = triangles[b + 9], ny = triangles[b + 10], nz = triangles[b + 11];
+            double tt = (triangles[b] - ox) * nx + (triangles[b + 1] - oy) * ny + (triangles[b + 2] - oz) * nz;
+            double denom = dx * nx + dy * ny + dz * nz;
+            if (denom != 0) {
+                tt /= denom;
+                if (line.contains(tt)) {
+                    double px = ox + dx * tt, py = oy + dy * tt, pz = oz + dz * tt;
+                    double qx = px - triangles[b], qy = py - triangles[b + 1], qz = pz - triangles[b + 2];
+                    double d00 = triangles[b + 12], d01 = triangles[b + 13], d11 = triangles[b + 14];
+                    double d20 = qx * triangles[b + 3] + qy * triangles[b + 4] + qz * triangles[b + 5];
+                    double d21 = qx * triangles[b + 6] + qy * triangles[b + 7] + qz * triangles[b + 8];
+                    double den = triangles[b + 15];
+                    double vv = (d11 * d20 - d01 * d21) / den;
+                    double ww = (d00 * d21 - d01 * d20) / den;
+                    if (vv >= -1e-10 && ww >= -1e-10 && (vv + ww) <= 1 + 1e-10) {
+                        point[0] = px;
+                        point[1] = py;
+                        point[2] = pz;
+                        return tt;
+                    }
+                }
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * @param line straight line
+     * @return whether CSG.getIntersections(line) is not empty
+     */
+    boolean intersects(Straight line) {
+        if (!this.mayIntersect(line)) return false;
+        Vector3d o = line.origin();
+        Vector3d e = line.end();
+        double dx = e.x - o.x, dy = e.y - o.y, dz = e.z - o.z;
+        double[] point = new double[3];
+        for (int ip = 0; ip < npolygons; ip++) {
+            if (!Double.isNaN(this.intersect(ip, line, o.x, o.y, o.z, dx, dy, dz, point))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param line straight line
+     * @return whether csg.getBounds().toCSG().getIntersections(line) is not empty
+     */
+    boolean boundsIntersect(Straight line) {
+        return bounds.intersects(line);
+    }
+
+    /**
+     * @param line straight line
+     * @return same as CSG.getIntersections(line)
+     */
+    List<Vector3d> getIntersections(Straight line) {
+        List<Vector3d> dots = new ArrayList<>();
+        if (!this.mayIntersect(line)) return dots;
+        Vector3d o = line.origin();
+        Vector3d e = line.end();
+        double dx = e.x - o.x, dy = e.y - o.y, dz = e.z - o.z;
+        double[] point = new double[3];
+        List<double[]> found = new ArrayList<>();
+        for (int ip = 0; ip < npolygons; ip++) {
+            double tt = this.intersect(ip, line, o.x, o.y, o.z, dx, dy, dz, point);
+            if (!Double.isNaN(tt)) found.add(new double[]{tt, point[0], point[1], point[2]});
+        }
+        // same stable sort and comparator as CSG.getIntersections:
+        double[][] sorted = found.toArray(new double[found.size()][]);
+        Arrays.sort(sorted, (p2, p1) -> (int) Math.signum(p2[0] - p1[0]));
+        for (double[] p : sorted) dots.add(new Vector3d(p[1], p[2], p[3]));
+        return dots;
+    }
+}
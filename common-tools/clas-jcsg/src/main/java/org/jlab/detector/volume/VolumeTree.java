@@ -0,0 +1,92 @@
+package org.jlab.detector.volume;
+
+import eu.mihosoft.vrl.v3d.CSG;
+import eu.mihosoft.vrl.v3d.Vector3d;
+import java.util.ArrayList;
+import java.util.List;
+import org.jlab.geom.prim.BoundingBoxTree;
+import org.jlab.geometry.prim.Straight;
+
+/**
+ * Bounding volume hierarchy over the daughters of a volume.
+ *
+ * The daughter bounds are indexed by a BoundingBoxTree, and a line query
+ * returns the daughters whose bounds it may cross, in their original
+ * order.  Daughters without a solid are always returned.  The tree keeps
+ * the daughters and their CSGs it was built from, so that it can be checked
+ * against the current volumes before use.
+ */
+final class VolumeTree {
+
+    private final Geant4Basic[] volumes;
+    private final CSG[] csgs;
+    private final int[] unbounded;
+    private final BoundingBoxTree tree;
+    private final double scale;
+
+    VolumeTree(List<Geant4Basic> daughters) {
+        int n = daughters.size();
+        volumes = daughters.toArray(new Geant4Basic[n]);
+        csgs = new CSG[n];
+        double[] bounds = new double[6 * n];
+        List<Integer> bounded = new ArrayList<>();
+        List<Integer> others = new ArrayList<>();
+        double s = 0;
+        for (int i = 0; i < n; i++) {
+            csgs[i] = volumes[i].toCSG();
+            PreparedCSG prepared = volumes[i].getPrepared();
+            if (prepared == null) {
+                others.add(i);
+            }
+            else if (prepared.getPolygonCount() > 0) {
+                bounds[6 * i]     = prepared.getMinX();
+                bounds[6 * i + 1] = prepared.getMinY();
+                bounds[6 * i + 2] = prepared.getMinZ();
+                bounds[6 * i + 3] = prepared.getMaxX();
+                bounds[6 * i + 4] = prepared.getMaxY();
+                bounds[6 * i + 5] = prepared.getMaxZ();
+                for (int k = 0; k < 6; k++) s = Math.max(s, Math.abs(bounds[6 * i + k]));
+                bounded.add(i);
+            }
+        }
+        scale = s;
+        unbounded = others.stream().mapToInt(Integer::intValue).toArray();
+        tree = new BoundingBoxTree(bounds, bounded.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * @param daughters current daughters of the volume
+     * @return whether the tree was built from the same daughters and solids
+     */
+    boolean isValid(List<Geant4Basic> daughters) {
+        if (daughters.size() != volumes.length) return false;
+        for (int i = 0; i < volumes.length; i++) {
+            if (daughters.get(i) != volumes[i] || volumes[i].toCSG() != csgs[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param line straight line, tested as an infinite line
+     * @return daughters that may be intersected, in their original order
+     */
+    List<Geant4Basic> getCandidates(Straight line) {
+        int[] found = new int[volumes.length];
+        int nfound = 0;
+        for (int i : unbounded) found[nfound++] = i;
+        if (tree.size() > 0) {
+            // the margin of the largest bounds, then the one of each daughter:
+            Vector3d o = line.origin();
+            Vector3d e = line.end();
+            nfound = tree.search(o.x, o.y, o.z, e.x - o.x, e.y - o.y, e.z - o.z,
+                    Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+                    PreparedCSG.getMargin(line, scale), found, nfound);
+        }
+        List<Geant4Basic> candidates = new ArrayList<>(nfound);
+        for (int i = 0; i < nfound; i++) {
+            PreparedCSG prepared = volumes[found[i]].getPrepared();
+            if (prepared == null || prepared.mayIntersect(line)) candidates.add(volumes[found[i]]);
+        }
+        return candidates;
+    }
+}
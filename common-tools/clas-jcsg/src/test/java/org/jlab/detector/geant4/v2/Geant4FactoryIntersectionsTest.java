@@ -0,0 +1,108 @@
+package org.jlab.detector.geant4.v2;
+
+import eu.mihosoft.vrl.v3d.CSG;
+import eu.mihosoft.vrl.v3d.Vector3d;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.jlab.detector.hits.DetHit;
+import org.jlab.detector.volume.Geant4Basic;
+import org.jlab.geometry.prim.Line3d;
+import org.jlab.geometry.prim.Straight;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Traces a fixed set of lines through a factory with the former recursion
+ * over all daughters and polygons, and checks that the prepared solids and
+ * daughter trees give bit-identical hits.
+ */
+public class Geant4FactoryIntersectionsTest {
+
+    /**
+     * Reference: intersections with the CSG of every daughter of a volume
+     * crossed by the line, as computed before the solids were prepared.
+     */
+    private static List<DetHit> getReferenceHits(Geant4Basic volume, Straight line) {
+        List<DetHit> hits = new ArrayList<>();
+        CSG csg = volume.toCSG();
+        if (volume.getChildren().isEmpty()) {
+            if (!volume.isSensitive()) return hits;
+            if (csg.getPolygons().size() > 20 && csg.getBounds().toCSG().getIntersections(line.toLine()).isEmpty()) {
+                return hits;
+            }
+            List<Vector3d> dots = csg.getIntersections(line);
+            for (int ihit = 0; ihit < dots.size() / 2; ihit++) {
+                hits.add(new DetHit(dots.get(ihit * 2), dots.get(ihit * 2 + 1), volume));
+            }
+        }
+        else if (!csg.getIntersections(line.toLine()).isEmpty()) {
+            for (Geant4Basic child : volume.getChildren()) hits.addAll(getReferenceHits(child, line));
+        }
+        return hits;
+    }
+
+    private static List<DetHit> getReferenceHits(Geant4Factory factory, Straight line) {
+        List<DetHit> hits = new ArrayList<>();
+        for (Geant4Basic volume : factory.motherVolume.getChildren()) hits.addAll(getReferenceHits(volume, line));
+        return hits;
+    }
+
+    /**
+     * @return segments from around the origin, with polar angles up to thmax
+     */
+    private static List<Line3d> createLines(long seed, int nlines, double thmax, double length) {
+        Random rand = new Random(seed);
+        List<Line3d> lines = new ArrayList<>();
+        for (int i = 0; i < nlines; i++) {
+            double theta = Math.toRadians(thmax * rand.nextDouble());
+            double phi = 2 * Math.PI * rand.nextDouble();
+            Vector3d origin = new Vector3d(rand.nextGaussian(), rand.nextGaussian(), rand.nextGaussian());
+            Vector3d dir = new Vector3d(Math.sin(theta) * Math.cos(phi), Math.sin(theta) * Math.sin(phi), Math.cos(theta));
+            // some segments stop inside the volumes:
+            double len = i % 4 == 0 ? length * rand.nextDouble() : length;
+            lines.add(new Line3d(origin, origin.plus(dir.times(len))));
+        }
+        return lines;
+    }
+
+    private static int assertSameHits(Geant4Factory factory, List<Line3d> lines) {
+        int nhits = 0;
+        for (Line3d line : lines) {
+            List<DetHit> expected = getReferenceHits(factory, line);
+            List<DetHit> hits = factory.getIntersections(line);
+            assertEquals(expected.size(), hits.size());
+            for (int i = 0; i < hits.size(); i++) {
+                assertArrayEquals(expected.get(i).getId(), hits.get(i).getId());
+                assertTrue(expected.get(i).origin().x == hits.get(i).origin().x);
+                assertTrue(expected.get(i).origin().y == hits.get(i).origin().y);
+                assertTrue(expected.get(i).origin().z == hits.get(i).origin().z);
+                assertTrue(expected.get(i).end().x == hits.get(i).end().x);
+                assertTrue(expected.get(i).end().y == hits.get(i).end().y);
+                assertTrue(expected.get(i).end().z == hits.get(i).end().z);
+            }
+            nhits += hits.size();
+        }
+        return nhits;
+    }
+
+    @Test
+    public void testSVT() {
+        SVTGeant4Factory factory = new SVTGeant4Factory();
+        for (Geant4Basic volume : factory.getAllVolumes()) {
+            if (volume.getChildren().isEmpty()) volume.makeSensitive();
+        }
+        assertTrue(assertSameHits(factory, createLines(44, 2000, 90, 80)) > 0);
+        // the prepared solids and trees follow moved volumes:
+        factory.motherVolume.getChildren().get(0).translate(0, 0, 3);
+        factory.motherVolume.getChildren().get(1).getChildren().get(0).rotate("xyz", 0, 0, 0.1);
+        assertTrue(assertSameHits(factory, createLines(45, 2000, 90, 80)) > 0);
+    }
+
+    @Test
+    public void testRICH() {
+        RICHGeant4Factory factory = new RICHGeant4Factory();
+        assertTrue(assertSameHits(factory, createLines(44, 300, 35, 1000)) > 0);
+    }
+}
@@ -0,0 +1,119 @@
+package org.jlab.detector.geant4.v2;
+
+import eu.mihosoft.vrl.v3d.Vector3d;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.jlab.detector.hits.DetHit;
+import org.jlab.detector.volume.G4Box;
+import org.jlab.geometry.prim.Line3d;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the panel index against the intersections with each paddle volume,
+ * for a tilted panel of paddles as in FTOF, and that panels which can not be
+ * indexed fall back to the paddle volumes instead of failing.
+ */
+public class PaddlePlaneIndexTest {
+
+    private static final int NPADDLES = 12;
+
+    /**
+     * @param tilt rotation of the last paddle about its length, in radians
+     * @return paddles stacked along z in a tilted and rotated panel
+     */
+    private static List<G4Box> createPanel(double tilt) {
+        G4Box panel = new G4Box("panel", 200, 5, NPADDLES*8);
+        panel.rotate("xyz", Math.toRadians(-115), 0, Math.toRadians(-90));
+        panel.translate(300, 40, 600);
+        List<G4Box> paddles = new ArrayList<>();
+        for (int i = 0; i < NPADDLES; i++) {
+            G4Box paddle = new G4Box("paddle" + (i+1), 100 + 5*i, 2.5, 3);
+            paddle.makeSensitive();
+            if (i == NPADDLES-1) paddle.rotate("xyz", tilt, 0, 0);
+            paddle.translate(0, 0, (i - NPADDLES/2. + 0.5) * 6.5);
+            paddle.setId(12, 1, 1, i+1);
+            paddle.setMother(panel);
+            paddles.add(paddle);
+        }
+        return paddles;
+    }
+
+    /**
+     * @return lines from the target through points around the panel
+     */
+    private static List<Line3d> createLines(List<G4Box> paddles, int nlines) {
+        Random rand = new Random(43);
+        List<Line3d> lines = new ArrayList<>();
+        for (int i = 0; i < nlines; i++) {
+            G4Box paddle = paddles.get(rand.nextInt(paddles.size()));
+            Vector3d point = paddle.getLineX().origin().plus(paddle.getLineX().end()).dividedBy(2);
+            point = point.plus(new Vector3d(rand.nextGaussian(), rand.nextGaussian(), rand.nextGaussian()).times(30));
+            Vector3d origin = new Vector3d(rand.nextGaussian(), rand.nextGaussian(), rand.nextGaussian());
+            lines.add(new Line3d(origin, origin.plus(point.minus(origin).times(2))));
+        }
+        return lines;
+    }
+
+    private static List<DetHit> getReferenceHits(List<G4Box> paddles, Line3d line) {
+        List<DetHit> hits = new ArrayList<>();
+        for (G4Box paddle : paddles) hits.addAll(paddle.getIntersections(line));
+        return hits;
+    }
+
+    private static void assertHits(List<DetHit> expected, List<DetHit> hits, double tolerance) {
+        assertEquals(expected.size(), hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            assertArrayEquals(expected.get(i).getId(), hits.get(i).getId());
+            assertEquals(expected.get(i).origin().x, hits.get(i).origin().x, tolerance);
+            assertEquals(expected.get(i).origin().y, hits.get(i).origin().y, tolerance);
+            assertEquals(expected.get(i).origin().z, hits.get(i).origin().z, tolerance);
+            assertEquals(expected.get(i).end().x, hits.get(i).end().x, tolerance);
+            assertEquals(expected.get(i).end().y, hits.get(i).end().y, tolerance);
+            assertEquals(expected.get(i).end().z, hits.get(i).end().z, tolerance);
+        }
+    }
+
+    @Test
+    public void testIndexed() {
+        List<G4Box> paddles = createPanel(0);
+        PaddlePlaneIndex index = new PaddlePlaneIndex(paddles);
+        assertTrue(index.isIndexed());
+        int nhits = 0;
+        for (Line3d line : createLines(paddles, 2000)) {
+            List<DetHit> hits = new ArrayList<>();
+            index.getIntersections(line, hits);
+            assertHits(getReferenceHits(paddles, line), hits, 1e-6);
+            nhits += hits.size();
+        }
+        assertTrue(nhits > 0);
+    }
+
+    @Test
+    public void testNotOrdered() {
+        List<G4Box> paddles = createPanel(0);
+        Collections.swap(paddles, 3, 7);
+        PaddlePlaneIndex index = new PaddlePlaneIndex(paddles);
+        assertFalse(index.isIndexed());
+        for (Line3d line : createLines(paddles, 500)) {
+            List<DetHit> hits = new ArrayList<>();
+            index.getIntersections(line, hits);
+            assertHits(getReferenceHits(paddles, line), hits, 0);
+        }
+    }
+
+    @Test
+    public void testNotParallel() {
+        List<G4Box> paddles = createPanel(Math.toRadians(5));
+        PaddlePlaneIndex index = new PaddlePlaneIndex(paddles);
+        assertFalse(index.isIndexed());
+        for (Line3d line : createLines(paddles, 500)) {
+            List<DetHit> hits = new ArrayList<>();
+            index.getIntersections(line, hits);
+            assertHits(getReferenceHits(paddles, line), hits, 0);
+        }
+    }
+}
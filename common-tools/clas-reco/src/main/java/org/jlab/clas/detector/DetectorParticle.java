@@ -405,6 +405,26 @@ public class DetectorParticle implements Comparable {
     public void setPid(int pid){this.particlePID = pid;}
     public void setCharge(int charge) { this.detectorTrack.setCharge(charge);}
     
+    /**
+     * @param type detector type
+     * @return whether this particle may share hits of the given detector with other particles
+     */
+    public boolean isHitSharing(DetectorType type) {
+        for (int ii=0; ii<sharedDetectors.length && this.getCharge()!=0; ii++) {
+            if (type == sharedDetectors[ii]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param type detector type
+     * @param detectorLayer detector layer, non-positive for any layer
+     * @return whether the track can be matched to the given detector layer
+     */
+    public boolean hasTrajectory(DetectorType type, int detectorLayer) {
+        return true;
+    }
+
     public int getDetectorHit(List<DetectorResponse>  hitList, DetectorType type,
             int detectorLayer,
             double distanceThreshold){
@@ -414,13 +434,7 @@ public class DetectorParticle implements Comparable {
         double   minimumDistance = 500.0;
         int      bestIndex       = -1;
 
-        boolean hitSharing=false;
-        for (int ii=0; ii<sharedDetectors.length && this.getCharge()!=0; ii++) {
-            if (type == sharedDetectors[ii]) {
-                hitSharing=true;
-                break;
-            }
-        }
+        final boolean hitSharing=this.isHitSharing(type);
 
         for(int loop = 0; loop < hitList.size(); loop++){
            
@@ -454,6 +468,70 @@ public class DetectorParticle implements Comparable {
         return bestIndex;
     }
     
+    /**
+     * Same as {@link #getDetectorHit(List,DetectorType,int,double)}, but only
+     * visits the indexed responses of the given type and layer in the track's
+     * sector, with the distance computed from the cached hit positions.
+     *
+     * @param index response index of the event
+     * @param type detector type
+     * @param detectorLayer detector layer, non-positive for any layer
+     * @param distanceThreshold maximum distance between trajectory and hit
+     * @return position of the best response in the indexed list, or -1
+     */
+    public int getDetectorHit(DetectorResponseIndex index, DetectorType type,
+            int detectorLayer,
+            double distanceThreshold){
+
+        DetectorResponseIndex.Bucket bucket = index.getBucket(type, detectorLayer);
+        if (bucket==null) return -1;
+
+        final boolean hitSharing=this.isHitSharing(type);
+
+        // closest approach to the infinite line, as in Line3D.distance:
+        Line3D trajectory = this.detectorTrack.getLastCross();
+        final double x0 = trajectory.origin().x();
+        final double y0 = trajectory.origin().y();
+        final double z0 = trajectory.origin().z();
+        final double vx = trajectory.end().x()-x0;
+        final double vy = trajectory.end().y()-y0;
+        final double vz = trajectory.end().z()-z0;
+        final double vv = vx*vx + vy*vy + vz*vz;
+
+        double   minimumDistance = 500.0;
+        int      bestIndex       = -1;
+
+        // same-sector requirement between hit and track, responses
+        // without sector are in slot 0 and always considered:
+        final int trackSector = this.detectorTrack.getSector();
+        final int nslots = bucket.getSectors();
+        for (int slot=0; slot<nslots; slot++) {
+            if (trackSector>0 && slot>0 && slot!=trackSector) continue;
+            for (int ii=0; ii<bucket.getSize(slot); ii++) {
+                final int pos = bucket.getPosition(slot, ii);
+                if (!hitSharing && index.getResponse(pos).getAssociation()>=0) continue;
+                final double hx = index.getX(pos);
+                final double hy = index.getY(pos);
+                final double hz = index.getZ(pos);
+                final double b = ((hx-x0)*vx + (hy-y0)*vy + (hz-z0)*vz) / vv;
+                final double px = x0+vx*b;
+                final double py = y0+vy*b;
+                final double pz = z0+vz*b;
+                final double hitdistance = Math.sqrt(
+                        (hx-px)*(hx-px) + (hy-py)*(hy-py) + (hz-pz)*(hz-pz));
+                if (hitdistance<distanceThreshold) {
+                    // ties go to the earlier response, as in the list-based scan:
+                    if (hitdistance<minimumDistance ||
+                       (hitdistance==minimumDistance && bestIndex>=0 && pos<bestIndex)) {
+                        minimumDistance = hitdistance;
+                        bestIndex       = pos;
+                    }
+                }
+            }
+        }
+        return bestIndex;
+    }
+
     public double getDetectorHitQuality(List<DetectorResponse>  hitList, int index, Vector3D hitRes){
         
         Line3D   trajectory = this.detectorTrack.getLastCross();
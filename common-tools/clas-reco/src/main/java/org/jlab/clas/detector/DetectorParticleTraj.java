@@ -17,25 +17,39 @@ public class DetectorParticleTraj extends DetectorParticle {
         super(track);
     }
 
+    /**
+     * Protect against odd tracks that don't have trajectory intersection.
+     */
+    @Override
+    public boolean hasTrajectory(DetectorType type, int detectorLayer) {
+        if (detectorLayer<1) {
+            return detectorTrack.getTrajectory().hasDetector(type.getDetectorId());
+        }
+        return detectorTrack.getTrajectoryPoint(type.getDetectorId(),detectorLayer)!=null;
+    }
+
     @Override
     public int getDetectorHit(List<DetectorResponse>  hitList, DetectorType type,
             int detectorLayer,
             double distanceThreshold){
         
-        // Protect against odd tracks that don't have trajectory intersection:
-        if (detectorLayer<1) {
-            if (!detectorTrack.getTrajectory().hasDetector(type.getDetectorId())) {
-                return -1;
-            }
-        }
-        else if (detectorTrack.getTrajectoryPoint(type.getDetectorId(),detectorLayer)==null) {
-            return -1;
-        }
+        if (!hasTrajectory(type,detectorLayer)) return -1;
 
         // FIXME:  replace with trajectory-based matching:
         return super.getDetectorHit(hitList, type, detectorLayer, distanceThreshold);
     }
 
+    @Override
+    public int getDetectorHit(DetectorResponseIndex index, DetectorType type,
+            int detectorLayer,
+            double distanceThreshold){
+        
+        if (!hasTrajectory(type,detectorLayer)) return -1;
+
+        // FIXME:  replace with trajectory-based matching:
+        return super.getDetectorHit(index, type, detectorLayer, distanceThreshold);
+    }
+
     @Override
     public double getPathLength(DetectorType type,int layId) {
         return this.detectorTrack.getPathLength(type,layId);
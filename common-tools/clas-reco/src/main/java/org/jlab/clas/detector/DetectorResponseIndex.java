@@ -0,0 +1,130 @@
+package org.jlab.clas.detector;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jlab.detector.base.DetectorType;
+
+/**
+ * Per-event index of detector responses bucketed by detector type, layer
+ * and sector, used to restrict track-to-hit matching to the responses
+ * that can actually match instead of scanning the whole response list.
+ *
+ * Entries are positions in the indexed response list, and hit positions
+ * are cached in primitive arrays.  Responses with non-positive sector are
+ * kept in sector slot 0 and are candidates for every track, consistent
+ * with the same-sector requirement in
+ * {@link DetectorParticle#getDetectorHit}.  The index object and its
+ * buckets are reused between events.
+ */
+public class DetectorResponseIndex {
+
+    private static final int ANYLAYER = 0;
+
+    private List<DetectorResponse> responses = null;
+    private int      size = 0;
+    private double[] xpos = new double[64];
+    private double[] ypos = new double[64];
+    private double[] zpos = new double[64];
+
+    private final Map<Integer,Bucket> buckets = new HashMap<>();
+
+    /**
+     * Positions of the responses of one detector type and layer, split by sector.
+     */
+    public static class Bucket {
+        private int[][] positions = new int[0][];
+        private int[]   counts    = new int[0];
+
+        private void clear() {
+            Arrays.fill(counts, 0);
+        }
+
+        private void add(int sector, int position) {
+            if (sector<0) sector=0;
+            if (sector>=counts.length) {
+                final int n = sector+1;
+                positions = Arrays.copyOf(positions, n);
+                counts = Arrays.copyOf(counts, n);
+                for (int ii=0; ii<n; ii++) {
+                    if (positions[ii]==null) positions[ii] = new int[8];
+                }
+            }
+            if (counts[sector]==positions[sector].length) {
+                positions[sector] = Arrays.copyOf(positions[sector], 2*counts[sector]);
+            }
+            positions[sector][counts[sector]++] = position;
+        }
+
+        /**
+         * @return number of sector slots, slot 0 holds responses without a sector
+         */
+        public int getSectors() { return counts.length; }
+
+        public int getSize(int sector) {
+            return sector>=0 && sector<counts.length ? counts[sector] : 0;
+        }
+
+        public int getPosition(int sector, int index) {
+            return positions[sector][index];
+        }
+    }
+
+    private static int getKey(DetectorType type, int layer) {
+        return type.getDetectorId()*1000 + (layer>0 ? layer : ANYLAYER);
+    }
+
+    /**
+     * Rebuild the index over the given list.  Responses added to the list
+     * afterwards are not indexed until the next call.
+     * @param list responses of the event
+     */
+    public void build(List<DetectorResponse> list) {
+        this.responses = list;
+        this.size = list.size();
+        for (Bucket b : buckets.values()) b.clear();
+        if (size>xpos.length) {
+            xpos = new double[2*size];
+            ypos = new double[2*size];
+            zpos = new double[2*size];
+        }
+        for (int ii=0; ii<size; ii++) {
+            DetectorResponse r = list.get(ii);
+            xpos[ii] = r.getPosition().x();
+            ypos[ii] = r.getPosition().y();
+            zpos[ii] = r.getPosition().z();
+            final DetectorType type = r.getDescriptor().getType();
+            final int layer = r.getDescriptor().getLayer();
+            final int sector = r.getDescriptor().getSector();
+            getOrCreate(getKey(type,ANYLAYER)).add(sector, ii);
+            if (layer>0) getOrCreate(getKey(type,layer)).add(sector, ii);
+        }
+    }
+
+    private Bucket getOrCreate(int key) {
+        Bucket b = buckets.get(key);
+        if (b==null) {
+            b = new Bucket();
+            buckets.put(key, b);
+        }
+        return b;
+    }
+
+    /**
+     * @param type detector type
+     * @param layer detector layer, non-positive for all layers
+     * @return the bucket, or null if there are no such responses
+     */
+    public Bucket getBucket(DetectorType type, int layer) {
+        return buckets.get(getKey(type,layer));
+    }
+
+    public List<DetectorResponse> getResponses() { return this.responses; }
+    public DetectorResponse getResponse(int position) { return this.responses.get(position); }
+    public int getSize() { return this.size; }
+
+    public double getX(int position) { return xpos[position]; }
+    public double getY(int position) { return ypos[position]; }
+    public double getZ(int position) { return zpos[position]; }
+}
@@ -0,0 +1,264 @@
+package org.jlab.clas.reco;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.H2F;
+import org.jlab.groot.data.TDirectory;
+
+/**
+ * Monitoring histograms filled by the event threads of an engine.
+ *
+ * Histograms are declared once, e.g. in the engine init(), and are then
+ * filled by id.  No histogram can be declared once filling has started.
+ * Each thread fills its own shard of bin counts without locking, and the
+ * shards are summed into groot histograms on request.
+ * <p>
+ * Only the owning thread writes the counts of a shard, with ordered stores,
+ * so a merge while threads are filling sees each count as it was at some
+ * point during the merge, and misses at most the events in flight.  A
+ * merge that overlaps a reset() starts over, so it never mixes counts from
+ * before and after the reset.  The merge at the end of processing (e.g. in
+ * the engine destroy()) is exact.
+ */
+public class EngineMonitor {
+
+    private final String name;
+
+    // histogram definitions:
+    private final List<String>  names  = new ArrayList<>();
+    private final List<String>  titles = new ArrayList<>();
+    private final List<int[]>   bins   = new ArrayList<>();
+    private final List<double[]> limits = new ArrayList<>();
+
+    private final Queue<Shard> shards = new ConcurrentLinkedQueue<>();
+    private final AtomicLong generation = new AtomicLong();
+    // set by the first fill, after which the definitions are only read:
+    private boolean filling = false;
+    private final ThreadLocal<Shard> shard = ThreadLocal.withInitial(() -> {
+        synchronized (EngineMonitor.this) {
+            filling = true;
+        }
+        Shard s = new Shard();
+        shards.add(s);
+        return s;
+    });
+
+    /**
+     * Bin counts filled by one thread.  The counts are zeroed before the
+     * new generation is published, and published before the generation
+     * is read by a merge.
+     */
+    private class Shard {
+        private volatile long generation = EngineMonitor.this.generation.get();
+        private volatile AtomicLongArray[] contents = new AtomicLongArray[names.size()];
+
+        private AtomicLongArray get(int id) {
+            long current = EngineMonitor.this.generation.get();
+            if (generation != current) {
+                for (AtomicLongArray c : contents) {
+                    if (c == null) continue;
+                    for (int i = 0; i < c.length(); i++) c.lazySet(i, 0);
+                }
+                generation = current;
+            }
+            AtomicLongArray c = contents[id];
+            if (c == null) {
+                int[] b = bins.get(id);
+                c = new AtomicLongArray(b[0]*b[1]);
+                // copy on write, so that merge only sees complete arrays:
+                AtomicLongArray[] grown = Arrays.copyOf(contents, contents.length);
+                grown[id] = c;
+                contents = grown;
+            }
+            return c;
+        }
+
+        private void increment(int id, int bin) {
+            AtomicLongArray c = this.get(id);
+            c.lazySet(bin, c.get(bin)+1);
+        }
+    }
+
+    /**
+     * @param name name of the monitor, used as directory name in the output
+     */
+    public EngineMonitor(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Declare a 1D histogram, before any filling
+     * @param name histogram name
+     * @param title histogram title
+     * @param nx number of bins
+     * @param xmin lower edge
+     * @param xmax upper edge
+     * @return histogram id
+     * @throws IllegalStateException if a histogram was already filled
+     */
+    public synchronized int addH1F(String name, String title, int nx, double xmin, double xmax) {
+        return this.add(name, title, new int[]{nx,1}, new double[]{xmin,xmax,0,1});
+    }
+
+    /**
+     * Declare a 2D histogram, before any filling
+     * @param name histogram name
+     * @param title histogram title
+     * @param nx number of x bins
+     * @param xmin lower x edge
+     * @param xmax upper x edge
+     * @param ny number of y bins
+     * @param ymin lower y edge
+     * @param ymax upper y edge
+     * @return histogram id
+     * @throws IllegalStateException if a histogram was already filled
+     */
+    public synchronized int addH2F(String name, String title, int nx, double xmin, double xmax, int ny, double ymin, double ymax) {
+        return this.add(name, title, new int[]{nx,ny,2}, new double[]{xmin,xmax,ymin,ymax});
+    }
+
+    private int add(String name, String title, int[] nbins, double[] range) {
+        if (filling) throw new IllegalStateException("EngineMonitor:  histogram "+name+" declared after filling started");
+        names.add(name);
+        titles.add(title);
+        bins.add(nbins);
+        limits.add(range);
+        return names.size()-1;
+    }
+
+    public synchronized int getSize() {
+        return names.size();
+    }
+
+    private static int bin(double x, int n, double min, double max) {
+        if (!(x >= min && x < max)) return -1;
+        int b = (int) ((x-min)/(max-min)*n);
+        return b < n ? b : n-1;
+    }
+
+    /**
+     * Fill a 1D histogram from the calling thread, values out of range are ignored
+     * @param id histogram id
+     * @param x value
+     */
+    public void fill(int id, double x) {
+        // the shard first, its creation makes the definitions visible:
+        Shard s = shard.get();
+        double[] r = limits.get(id);
+        int bx = bin(x, bins.get(id)[0], r[0], r[1]);
+        if (bx >= 0) s.increment(id, bx);
+    }
+
+    /**
+     * Fill a 2D histogram from the calling thread, values out of range are ignored
+     * @param id histogram id
+     * @param x x value
+     * @param y y value
+     */
+    public void fill(int id, double x, double y) {
+        Shard s = shard.get();
+        int[] b = bins.get(id);
+        double[] r = limits.get(id);
+        int bx = bin(x, b[0], r[0], r[1]);
+        int by = bin(y, b[1], r[2], r[3]);
+        if (bx >= 0 && by >= 0) s.increment(id, by*b[0]+bx);
+    }
+
+    /**
+     * Clear the histograms of all threads, each shard is cleared by its
+     * own thread on its next fill
+     */
+    public void reset() {
+        generation.incrementAndGet();
+    }
+
+    private double[] merge(int id) {
+        int[] b = bins.get(id);
+        double[] sum = new double[b[0]*b[1]];
+        while (true) {
+            long current = generation.get();
+            Arrays.fill(sum, 0);
+            for (Shard s : shards) {
+                // a shard of an older generation is cleared, and a shard of
+                // the current one is only cleared after the next reset:
+                if (s.generation != current) continue;
+                AtomicLongArray c = s.contents[id];
+                if (c == null) continue;
+                for (int i = 0; i < sum.length; i++) sum[i] += c.get(i);
+            }
+            if (generation.get() == current) return sum;
+        }
+    }
+
+    /**
+     * @param id histogram id
+     * @return whether the histogram is 2D
+     */
+    public synchronized boolean is2D(int id) {
+        return bins.get(id).length > 2;
+    }
+
+    /**
+     * @param id id of a 1D histogram
+     * @return new histogram with the sum of all threads
+     */
+    public synchronized H1F getH1F(int id) {
+        int[] b = bins.get(id);
+        double[] r = limits.get(id);
+        H1F h = new H1F(names.get(id), titles.get(id), b[0], r[0], r[1]);
+        double[] sum = this.merge(id);
+        for (int ix = 0; ix < b[0]; ix++) h.setBinContent(ix, sum[ix]);
+        return h;
+    }
+
+    /**
+     * @param id id of a 2D histogram
+     * @return new histogram with the sum of all threads
+     */
+    public synchronized H2F getH2F(int id) {
+        int[] b = bins.get(id);
+        double[] r = limits.get(id);
+        H2F h = new H2F(names.get(id), titles.get(id), b[0], r[0], r[1], b[1], r[2], r[3]);
+        double[] sum = this.merge(id);
+        for (int iy = 0; iy < b[1]; iy++) {
+            for (int ix = 0; ix < b[0]; ix++) h.setBinContent(ix, iy, sum[iy*b[0]+ix]);
+        }
+        return h;
+    }
+
+    /**
+     * Add the merged histograms to a directory named after the monitor
+     * @param dir directory
+     */
+    public synchronized void addTo(TDirectory dir) {
+        dir.cd();
+        dir.mkdir("/"+name);
+        dir.cd("/"+name);
+        for (int id = 0; id < names.size(); id++) {
+            if (this.is2D(id)) dir.addDataSet(this.getH2F(id));
+            else               dir.addDataSet(this.getH1F(id));
+        }
+        dir.cd();
+    }
+
+    /**
+     * Write the merged histograms to a HIPO file
+     * @param filename output file name
+     */
+    public void writeFile(String filename) {
+        TDirectory dir = new TDirectory();
+        this.addTo(dir);
+        dir.writeFile(filename);
+    }
+}
@@ -36,6 +36,7 @@ public class EngineProcessor {
     ReconstructionEngine  engineDummy = null;
     private static Logger LOGGER = Logger.getLogger(EngineProcessor.class.getPackage().getName());
     private boolean updateDictionary = true;
+    private int     asyncQueueDepth  = 0;
     
     private List<String>  schemaExempt = Arrays.asList("RUN::config","DC::tdc");
     
@@ -237,6 +238,15 @@ public class EngineProcessor {
         }
     }
 
+    /**
+     * enable asynchronous read-ahead and write-behind in processFile, so
+     * that decompression and compression/writing overlap with the engines.
+     * @param depth number of events buffered on each side, 0 for synchronous I/O
+     */
+    public void setAsyncQueueDepth(int depth){
+        this.asyncQueueDepth = depth;
+    }
+
     /**
      * Initialize all the engines in the chain.
      */
@@ -287,11 +297,14 @@ public class EngineProcessor {
         if(file.endsWith(".hipo")==true||file.endsWith(".h5")==true
                 ||file.endsWith(".h4")==true){
             HipoDataSource reader = new HipoDataSource();
+            reader.setReadAhead(asyncQueueDepth);
             reader.open(file);
             
             int eventCounter = 0;
             HipoDataSync   writer = new HipoDataSync();
             writer.setCompressionType(2);
+            writer.setWriteBehind(asyncQueueDepth);
+            writer.setEventPool(reader.getEventPool());
             writer.open(output);
 
             if(updateDictionary==true)
@@ -305,6 +318,8 @@ public class EngineProcessor {
                 if(nskip<=0 || eventCounter>nskip) {
                     processEvent(event);
                     writer.writeEvent(event);
+                } else {
+                    reader.releaseEvent(event);
                 }
                 eventCounter++;
                 if(nevents>0){
@@ -313,6 +328,7 @@ public class EngineProcessor {
                 progress.updateStatus();
             }
             progress.showStatus();
+            reader.close();
             writer.close();
         } else {
             LOGGER.info("\n\n>>>> error in file extension (use .hipo,.h4 or .h5)\n>>>> how is this not simple ?\n");
@@ -342,6 +358,7 @@ public class EngineProcessor {
         parser.addOption("-y","0","yaml file");
         parser.addOption("-u","true","update dictionary from writer ? ");
         parser.addOption("-d","1","Debug level [0 - OFF, 1 - ON/default]");
+        parser.addOption("-q","0","asynchronous I/O queue depth [0 - synchronous/default]");
         parser.setDescription("previously known as notsouseful-util");
 
         parser.parse(args);
@@ -370,6 +387,7 @@ public class EngineProcessor {
             // added by GG. to turn off the dictionary update                //
             //---------------------------------------------------------------//
             if(update.contains("false")==true) proc.updateDictionary = false;
+            proc.setAsyncQueueDepth(parser.getOption("-q").intValue());
             
             if(!yamlFileName.equals("0")) {
                 try {
@@ -0,0 +1,125 @@
+package org.jlab.utils.groups;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive long values, e.g. timestamps, with open addressing
+ * and linear probing, to test membership without boxing.
+ */
+public class LongHashSet {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[]  keys;
+    private int     size = 0;
+    private boolean hasEmpty = false;
+
+    public LongHashSet(){
+        this(16);
+    }
+
+    /**
+     * @param capacity expected number of values
+     */
+    public LongHashSet(int capacity){
+        int n = 16;
+        while(n < 2*capacity) n <<= 1;
+        this.keys = new long[n];
+        Arrays.fill(this.keys, EMPTY);
+    }
+
+    private static int hash(long value){
+        long h = value*0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h>>>32));
+    }
+
+    /**
+     * @param value
+     * @return whether the value was not already in the set
+     */
+    public boolean add(long value){
+        if(value == EMPTY){
+            if(this.hasEmpty) return false;
+            this.hasEmpty = true;
+            this.size++;
+            return true;
+        }
+        final int mask = this.keys.length-1;
+        int slot = hash(value) & mask;
+        while(this.keys[slot] != EMPTY){
+            if(this.keys[slot] == value) return false;
+            slot = (slot+1) & mask;
+        }
+        this.keys[slot] = value;
+        this.size++;
+        if(2*this.size > this.keys.length) this.rehash();
+        return true;
+    }
+
+    public boolean contains(long value){
+        if(value == EMPTY) return this.hasEmpty;
+        final int mask = this.keys.length-1;
+        int slot = hash(value) & mask;
+        while(this.keys[slot] != EMPTY){
+            if(this.keys[slot] == value) return true;
+            slot = (slot+1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @param value
+     * @return whether the value was in the set
+     */
+    public boolean remove(long value){
+        if(value == EMPTY){
+            if(!this.hasEmpty) return false;
+            this.hasEmpty = false;
+            this.size--;
+            return true;
+        }
+        final int mask = this.keys.length-1;
+        int slot = hash(value) & mask;
+        while(this.keys[slot] != value){
+            if(this.keys[slot] == EMPTY) return false;
+            slot = (slot+1) & mask;
+        }
+        // shift back the following values of the probe run into the hole:
+        int hole = slot;
+        int next = (hole+1) & mask;
+        while(this.keys[next] != EMPTY){
+            final int home = hash(this.keys[next]) & mask;
+            if(((next-home) & mask) >= ((next-hole) & mask)){
+                this.keys[hole] = this.keys[next];
+                hole = next;
+            }
+            next = (next+1) & mask;
+        }
+        this.keys[hole] = EMPTY;
+        this.size--;
+        return true;
+    }
+
+    public int size(){
+        return this.size;
+    }
+
+    public void clear(){
+        Arrays.fill(this.keys, EMPTY);
+        this.size = 0;
+        this.hasEmpty = false;
+    }
+
+    private void rehash(){
+        final long[] old = this.keys;
+        this.keys = new long[2*old.length];
+        Arrays.fill(this.keys, EMPTY);
+        final int mask = this.keys.length-1;
+        for(long value : old){
+            if(value == EMPTY) continue;
+            int slot = hash(value) & mask;
+            while(this.keys[slot] != EMPTY) slot = (slot+1) & mask;
+            this.keys[slot] = value;
+        }
+    }
+}
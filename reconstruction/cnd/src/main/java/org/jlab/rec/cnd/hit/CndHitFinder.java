@@ -69,7 +69,7 @@ public class CndHitFinder {
 			double phi_hit = 0.; // Phi angle of the hit position (assuming center of paddle) from the x-axis(9o'clock looking downstream)
 			double theta_hit = 0.; // Theta angle of the hit position from the z-axis;
 
-			int totrec = 0;      // counter for "good" reconstructions
+			HalfHitIndex index = new HalfHitIndex(halfhits);   // half-hits by sector, layer and component
 
 			for(int i = 0; i < (halfhits.size()); i++) 
 			{	
@@ -82,11 +82,13 @@ public class CndHitFinder {
 				if (pad == 1) neigh = 2;  // the neighbouring paddle
 				else neigh = 1;
 
-				// Now loop through the half-hits again and match any which can give a physical reconstruction,
+				// Now loop through the half-hits of the coupled paddle and match any which can give a physical reconstruction,
 				// but off-set the start of the list to make sure no repeats:
 
-				for (int j = i+1; j < halfhits.size(); j++) 
+				int coupled = index.bucket(block, lay, neigh);
+				for (int k = index.firstAfter(coupled, i); k < index.end(coupled); k++) 
 				{	
+					int j = index.position(k);
 					HalfHit hit2 = halfhits.get(j);   // get the second half-hit	
 
 					if (block != hit2.Sector()) continue;             // half-hits must be in the same sector
@@ -208,8 +210,6 @@ public class CndHitFinder {
 
 					theta_hit = Math.acos(z_hit/path) * 180./Math.PI;
 
-					totrec++;  // count number of "good" reconstructions
-
 					// Create a new CndHit and fill it with the relevant info:
 
 					CndHit GoodHit = new CndHit(pad_d,pad_n);  // Takes as index the halfhits array indices of the two half-hits involved.
@@ -253,36 +253,20 @@ public class CndHitFinder {
 			// There may be cases of ambiguous reconstruction: where two signals from one paddle can be matched up with a single one from the neighbour.
 			// Remove those reconstructions:
 
-			int ambig_rec[] = new int[totrec];  // to keep track of ambiguous reconstructions in the next loops
-
-			for (int i=0; i<totrec; i++)
-			{
-				ambig_rec[i] = 0;  // set all to zero before you start.
-			}
+			int nrec[] = new int[halfhits.size()];  // number of reconstructions each half-hit is used in
 
 			for(int i = 0; i < (HitArray.size()); i++)
 			{		
-				CndHit cndhit1 = HitArray.get(i);
-
-				for(int j = i+1; j < HitArray.size(); j++) 
-				{
-					CndHit cndhit2 = HitArray.get(j);   
-
-					if (i!=j){
-						if ((cndhit1.index_d() == cndhit2.index_d() || cndhit1.index_d() == cndhit2.index_n() || cndhit1.index_n() == cndhit2.index_d() || cndhit1.index_n() == cndhit2.index_n()))	
-						{
-							ambig_rec[i] = 1;  // set the flags for ambiguous reconstructions
-							ambig_rec[j] = 1;
-						}
-					}
-				}
+				nrec[HitArray.get(i).index_d()]++;
+				nrec[HitArray.get(i).index_n()]++;
 			}
 
-			// Now loop through and create a new array in which there are no ambiguous reconstructions:
+			// Now loop through and create a new array in which there are no ambiguous reconstructions,
+			// i.e. none of the two half-hits is shared with another reconstruction:
 			for(int i = 0; i < HitArray.size(); i++)
 			{	
 				CndHit goodhit = HitArray.get(i);
-				if (ambig_rec[i] == 0)
+				if (nrec[goodhit.index_d()] == 1 && nrec[goodhit.index_n()] == 1)
 				{
 					goodCndHits.add(goodhit);
 				}
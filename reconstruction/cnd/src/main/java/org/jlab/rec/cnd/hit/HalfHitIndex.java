@@ -0,0 +1,100 @@
+package org.jlab.rec.cnd.hit;
+
+import java.util.Arrays;
+import java.util.List;
+
+class HalfHitIndex {
+
+	// Positions of the half-hits in the list, bucketed by sector, layer and component, in increasing order.
+	// The buckets are filled by a counting sort over the range of sector, layer and component of the event,
+	// which is small and dense for the CND (24 x 3 x 2). If the range is too large, all the half-hits are in
+	// a single bucket. The buckets are only a preselection, the callers still compare sector, layer and component.
+
+	private static final int MAXBUCKETS = 4096;
+
+	private int minSector, minLayer, minComponent;
+	private int nSectors = 1, nLayers = 1, nComponents = 1;
+
+	private final int[] start;       // bucket b holds positions[start[b]] to positions[start[b+1]-1]
+	private final int[] positions;
+
+	public HalfHitIndex(List<HalfHit> halfhits)
+	{
+		int n = halfhits.size();
+		positions = new int[n];
+		if(n > 0)
+		{
+			int maxSector = Integer.MIN_VALUE, maxLayer = Integer.MIN_VALUE, maxComponent = Integer.MIN_VALUE;
+			minSector = minLayer = minComponent = Integer.MAX_VALUE;
+			for(int i = 0; i < n; i++)
+			{
+				HalfHit hit = halfhits.get(i);
+				minSector    = Math.min(minSector,    hit.Sector());
+				maxSector    = Math.max(maxSector,    hit.Sector());
+				minLayer     = Math.min(minLayer,     hit.Layer());
+				maxLayer     = Math.max(maxLayer,     hit.Layer());
+				minComponent = Math.min(minComponent, hit.Component());
+				maxComponent = Math.max(maxComponent, hit.Component());
+			}
+			long ns = (long) maxSector - minSector + 1;
+			long nl = (long) maxLayer - minLayer + 1;
+			long nc = (long) maxComponent - minComponent + 1;
+			if(ns * nl * nc <= MAXBUCKETS)
+			{
+				nSectors    = (int) ns;
+				nLayers     = (int) nl;
+				nComponents = (int) nc;
+			}
+		}
+		int nbuckets = nSectors * nLayers * nComponents;
+		start = new int[nbuckets+1];
+		if(nbuckets == 1)
+		{
+			for(int i = 0; i < n; i++) positions[i] = i;
+			start[1] = n;
+			return;
+		}
+		int[] buckets = new int[n];
+		for(int i = 0; i < n; i++)
+		{
+			HalfHit hit = halfhits.get(i);
+			buckets[i] = this.bucket(hit.Sector(), hit.Layer(), hit.Component());
+			start[buckets[i]+1]++;
+		}
+		for(int b = 0; b < nbuckets; b++) start[b+1] += start[b];
+		int[] next = Arrays.copyOf(start, nbuckets);
+		for(int i = 0; i < n; i++) positions[next[buckets[i]]++] = i;
+	}
+
+	// bucket of sector, layer and component, -1 if none of the half-hits can be in it
+	public int bucket(int sector, int layer, int component)
+	{
+		if(nSectors * nLayers * nComponents == 1) return 0;
+		int s = sector - minSector;
+		int l = layer - minLayer;
+		int c = component - minComponent;
+		if(s < 0 || s >= nSectors || l < 0 || l >= nLayers || c < 0 || c >= nComponents) return -1;
+		return (s * nLayers + l) * nComponents + c;
+	}
+
+	// end of the bucket entries
+	public int end(int bucket)
+	{
+		return bucket < 0 ? 0 : start[bucket+1];
+	}
+
+	// position of the half-hit of an entry
+	public int position(int entry)
+	{
+		return positions[entry];
+	}
+
+	// first entry of the bucket with a position after the given one
+	public int firstAfter(int bucket, int position)
+	{
+		if(bucket < 0) return 0;
+		int k = Arrays.binarySearch(positions, start[bucket], start[bucket+1], position);
+		return k >= 0 ? k+1 : -k-1;
+	}
+
+}
@@ -0,0 +1,173 @@
+package org.jlab.rec.cnd.hit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.jlab.detector.calib.utils.ConstantsManager;
+import org.jlab.rec.cnd.constants.CalibrationConstantsLoader;
+import org.jlab.utils.groups.IndexedTable;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the hits found through the half-hit index against the former
+ * comparison of every half-hit with all the later ones.
+ */
+public class CndHitFinderTest {
+
+    /**
+     * @return constants with fixed random values, without reading CCDB
+     */
+    private static CalibrationConstantsLoader createConstants() {
+        ConstantsManager manager = new ConstantsManager() {
+            @Override
+            public IndexedTable getConstants(int run, String table) {
+                return new IndexedTable(3);
+            }
+        };
+        CalibrationConstantsLoader ccdb = new CalibrationConstantsLoader(11, manager);
+        Random rand = new Random(47);
+        for (int s = 0; s < 24; s++) {
+            for (int l = 0; l < 3; l++) {
+                ccdb.UTURNTLOSS[s][l]     = 0.5 + 0.2*rand.nextDouble();
+                ccdb.TIMEOFFSETSECT[s][l] = 2*rand.nextDouble();
+                ccdb.TIMEOFFSETSLR[s][l]  = rand.nextDouble();
+                for (int c = 0; c < 2; c++) {
+                    ccdb.TDCTOTIMESLOPE[s][l][c] = 0.0234;
+                    ccdb.EFFVEL[s][l][c]         = 15 + 2*rand.nextDouble();
+                    ccdb.ATNLEN[s][l][c]         = 140 + 20*rand.nextDouble();
+                    ccdb.MIPDIRECT[s][l][c]      = 1.8 + 0.4*rand.nextDouble();
+                    ccdb.MIPINDIRECT[s][l][c]    = 1.3 + 0.4*rand.nextDouble();
+                }
+            }
+        }
+        ccdb.LENGTH[0] = 665.72;
+        ccdb.LENGTH[1] = 700.0;
+        ccdb.LENGTH[2] = 734.28;
+        ccdb.ZOFFSET[0] = 35.9;
+        ccdb.ZOFFSET[1] = 52.9;
+        ccdb.ZOFFSET[2] = 69.9;
+        ccdb.THICKNESS[0] = 30.8;
+        ccdb.INNERRADIUS[0] = 289.2;
+        return ccdb;
+    }
+
+    /**
+     * @param nsectors number of sectors with half-hits
+     * @return half-hits in a few sectors, so that most signals have several
+     * candidates in the coupled paddle
+     */
+    private static ArrayList<HalfHit> createHalfHits(Random rand, int nhits, int nsectors, CalibrationConstantsLoader ccdb) {
+        ArrayList<HalfHit> halfhits = new ArrayList<>();
+        for (int i = 0; i < nhits; i++) {
+            int sector = 1 + rand.nextInt(nsectors);
+            int layer = 1 + rand.nextInt(3);
+            int component = 1 + rand.nextInt(2);
+            halfhits.add(new HalfHit(sector, layer, component, 4*rand.nextInt(6), rand.nextInt(3000), 400 + rand.nextInt(1300), i, i, ccdb));
+        }
+        return halfhits;
+    }
+
+    /**
+     * Reference: every pair of a half-hit with a later one in the coupled
+     * paddle, each reconstructed alone, then without the ambiguous pairs.
+     */
+    private static List<CndHit> referenceHits(ArrayList<HalfHit> halfhits, int flag, CalibrationConstantsLoader ccdb) {
+        CndHitFinder finder = new CndHitFinder();
+        List<CndHit> pairs = new ArrayList<>();
+        for (int i = 0; i < halfhits.size(); i++) {
+            HalfHit hit1 = halfhits.get(i);
+            int neigh = hit1.Component() == 1 ? 2 : 1;
+            for (int j = i+1; j < halfhits.size(); j++) {
+                HalfHit hit2 = halfhits.get(j);
+                if (hit1.Sector() != hit2.Sector() || hit1.Layer() != hit2.Layer() || hit2.Component() != neigh) continue;
+                for (CndHit hit : finder.findHits(new ArrayList<>(Arrays.asList(hit1, hit2)), flag, ccdb)) {
+                    CndHit pair = new CndHit(hit.index_d() == 0 ? i : j, hit.index_n() == 0 ? i : j);
+                    copy(hit, pair);
+                    pairs.add(pair);
+                }
+            }
+        }
+        int[] nrec = new int[halfhits.size()];
+        for (CndHit pair : pairs) {
+            nrec[pair.index_d()]++;
+            nrec[pair.index_n()]++;
+        }
+        List<CndHit> hits = new ArrayList<>();
+        for (CndHit pair : pairs) {
+            if (nrec[pair.index_d()] == 1 && nrec[pair.index_n()] == 1) hits.add(pair);
+        }
+        Collections.sort(hits);
+        return hits;
+    }
+
+    private static void copy(CndHit from, CndHit to) {
+        to.set_Time(from.Time());
+        to.set_X(from.X());
+        to.set_Y(from.Y());
+        to.set_Z(from.Z());
+        to.set_Edep(from.Edep());
+        to.set_Theta(from.Theta());
+        to.set_Phi(from.Phi());
+        to.set_Sector(from.Sector());
+        to.set_Layer(from.Layer());
+        to.set_Component(from.Component());
+    }
+
+    private static void assertSameHits(List<CndHit> expected, List<CndHit> hits) {
+        assertEquals(expected.size(), hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            CndHit e = expected.get(i);
+            CndHit h = hits.get(i);
+            assertEquals(e.index_d(), h.index_d());
+            assertEquals(e.index_n(), h.index_n());
+            assertEquals(e.Sector(), h.Sector());
+            assertEquals(e.Layer(), h.Layer());
+            assertEquals(e.Component(), h.Component());
+            assertEquals(e.Time(), h.Time(), 0);
+            assertEquals(e.X(), h.X(), 0);
+            assertEquals(e.Y(), h.Y(), 0);
+            assertEquals(e.Z(), h.Z(), 0);
+            assertEquals(e.Edep(), h.Edep(), 0);
+            assertEquals(e.Theta(), h.Theta(), 0);
+            assertEquals(e.Phi(), h.Phi(), 0);
+        }
+    }
+
+    @Test
+    public void testFindHits() {
+        CalibrationConstantsLoader ccdb = createConstants();
+        Random rand = new Random(47);
+        int nhits = 0;
+        for (int event = 0; event < 400; event++) {
+            int flag = event % 2;
+            ArrayList<HalfHit> halfhits = createHalfHits(rand, rand.nextInt(event % 10 == 0 ? 60 : 12), 1 + event % 4, ccdb);
+            List<CndHit> hits = new CndHitFinder().findHits(halfhits, flag, ccdb);
+            assertSameHits(referenceHits(halfhits, flag, ccdb), hits);
+            nhits += hits.size();
+        }
+        assertTrue(nhits > 0);
+    }
+
+    /**
+     * A half-hit of a component far from the paddles spreads the range of
+     * the event beyond the buckets, and all the half-hits are then compared.
+     */
+    @Test
+    public void testLargeRange() {
+        CalibrationConstantsLoader ccdb = createConstants();
+        Random rand = new Random(74);
+        int nhits = 0;
+        for (int event = 0; event < 100; event++) {
+            ArrayList<HalfHit> halfhits = createHalfHits(rand, 20, 3, ccdb);
+            halfhits.add(rand.nextInt(halfhits.size()), new HalfHit(24, 3, 5000, 0, 100, 1000, 99, 99, ccdb));
+            List<CndHit> hits = new CndHitFinder().findHits(halfhits, 0, ccdb);
+            assertSameHits(referenceHits(halfhits, 0, ccdb), hits);
+            nhits += hits.size();
+        }
+        assertTrue(nhits > 0);
+    }
+}
@@ -11,14 +11,14 @@ import org.jlab.utils.groups.IndexedTable;
 import org.jlab.geom.prim.Vector3D;
 
 /**
+ * Event builder constants of one run, read once from CCDB into arrays indexed
+ * by EBCCDBEnum.  They are not modified after construction, so one instance
+ * can be shared by all events of the run.
  *
  * @author baltzell
  */
 public class EBCCDBConstants {
 
-    private int currentRun = -1;
-    private boolean isLoaded = false;
-    
     private static final String EB_TABLE_PREFIX="/calibration/eb/";
 
     private static final String[] EB_TABLE_NAMES={
@@ -54,61 +54,92 @@ public class EBCCDBConstants {
         return ret;
     }
 
+    private static final int NKEYS = EBCCDBEnum.values().length;
+    private static final int NSECTORS = 7;
+
+    private final int currentRun;
+
+    // values indexed by EBCCDBEnum ordinal, null/false if not loaded:
     private final Map <String,IndexedTable> tables = new HashMap<>();
-    private final Map <EBCCDBEnum,Double> dbDoubles = new HashMap<>();
-    private final Map <EBCCDBEnum,Integer> dbIntegers = new HashMap<>();
-    private final Map <EBCCDBEnum,Vector3D> dbVector3Ds = new HashMap<>();
-    private final Map <EBCCDBEnum,Double[]> dbArrays = new HashMap<>();
-    private final Map <EBCCDBEnum, Map <Integer,Double[]>> dbSectorArrays = new HashMap<>();
+    private final double[] dbDoubles = new double[NKEYS];
+    private final boolean[] hasDoubles = new boolean[NKEYS];
+    private final int[] dbIntegers = new int[NKEYS];
+    private final boolean[] hasIntegers = new boolean[NKEYS];
+    private final Vector3D[] dbVector3Ds = new Vector3D[NKEYS];
+    private final double[][] dbArrays = new double[NKEYS][];
+    private final double[][][] dbSectorArrays = new double[NKEYS][][];
 
-    // fill maps:
-    private void setDouble(EBCCDBEnum key,Double value) {
-        dbDoubles.put(key,value);
+    // fill arrays:
+    private void setDouble(EBCCDBEnum key,double value) {
+        dbDoubles[key.ordinal()]=value;
+        hasDoubles[key.ordinal()]=true;
     }
     private void setVector3D(EBCCDBEnum key,Vector3D value) {
-        dbVector3Ds.put(key,value);
+        dbVector3Ds[key.ordinal()]=value;
     }
     private void setInteger(EBCCDBEnum key,int value) {
-        dbIntegers.put(key,value);
+        dbIntegers[key.ordinal()]=value;
+        hasIntegers[key.ordinal()]=true;
     }
-    private void setArray(EBCCDBEnum key,Double[] value) {
-        dbArrays.put(key,value);
+    private void setArray(EBCCDBEnum key,double[] value) {
+        dbArrays[key.ordinal()]=value;
     }
-    private void setSectorArray(EBCCDBEnum key, Integer sector, Double[] value) {
-        if (!dbSectorArrays.containsKey(key)) dbSectorArrays.put(key,new HashMap<>());
-        dbSectorArrays.get(key).put(sector,value);
+    private void setSectorArray(EBCCDBEnum key, int sector, double[] value) {
+        if (dbSectorArrays[key.ordinal()]==null) dbSectorArrays[key.ordinal()]=new double[NSECTORS][];
+        dbSectorArrays[key.ordinal()][sector]=value;
     }
     
-    // read maps:
+    // read arrays:
     public double getDouble(EBCCDBEnum key) {
-        if (!dbDoubles.containsKey(key)) 
+        if (!hasDoubles[key.ordinal()]) 
             throw new RuntimeException("Missing Double Key:  "+key);
-        return dbDoubles.get(key);
+        return dbDoubles[key.ordinal()];
     }
     public Vector3D getVector3D(EBCCDBEnum key) {
-        if (!dbVector3Ds.containsKey(key)) 
+        if (dbVector3Ds[key.ordinal()]==null) 
             throw new RuntimeException("Missing Vector3D Key:  "+key);
-        return dbVector3Ds.get(key);
+        return new Vector3D(dbVector3Ds[key.ordinal()]);
     }
     public int getInteger(EBCCDBEnum key) {
-        if (!dbIntegers.containsKey(key)) 
+        if (!hasIntegers[key.ordinal()]) 
             throw new RuntimeException("Missing Integer Key:  "+key);
-        return dbIntegers.get(key);
+        return dbIntegers[key.ordinal()];
     }
-    public Double[] getArray(EBCCDBEnum key) {
-        if (!dbArrays.containsKey(key)) 
+    private double[] array(EBCCDBEnum key) {
+        if (dbArrays[key.ordinal()]==null) 
             throw new RuntimeException("Missing Integer Key:  "+key);
-        return dbArrays.get(key);
+        return dbArrays[key.ordinal()];
     }
-    public Double[] getSectorArray(EBCCDBEnum key,int sector) {
-        if (!dbSectorArrays.containsKey(key))
+    private double[] sectorArray(EBCCDBEnum key,int sector) {
+        if (dbSectorArrays[key.ordinal()]==null)
             throw new RuntimeException("Missing Integer Key:  "+key);
-        if (!dbSectorArrays.get(key).containsKey(sector))
+        if (sector<0 || sector>=NSECTORS || dbSectorArrays[key.ordinal()][sector]==null)
             throw new RuntimeException("Missing Integer Key:  "+sector);
-        return dbSectorArrays.get(key).get(sector);
+        return dbSectorArrays[key.ordinal()][sector];
+    }
+    /**
+     * @return a copy of the constants, use getArrayValue in loops
+     */
+    public double[] getArray(EBCCDBEnum key) {
+        return array(key).clone();
+    }
+    public int getArrayLength(EBCCDBEnum key) {
+        return array(key).length;
+    }
+    public double getArrayValue(EBCCDBEnum key,int index) {
+        return array(key)[index];
     }
-    public Double getSectorDouble(EBCCDBEnum key, int sector) {
-        return getSectorArray(key,sector)[0];
+    /**
+     * @return a copy of the constants, use getSectorArrayValue in loops
+     */
+    public double[] getSectorArray(EBCCDBEnum key,int sector) {
+        return sectorArray(key,sector).clone();
+    }
+    public double getSectorArrayValue(EBCCDBEnum key,int sector,int index) {
+        return sectorArray(key,sector)[index];
+    }
+    public double getSectorDouble(EBCCDBEnum key, int sector) {
+        return sectorArray(key,sector)[0];
     }
 
     public IndexedTable getTable(String tableName) {
@@ -162,7 +193,7 @@ public class EBCCDBConstants {
             String tableName,
             String[] colNames,
             int sector,int layer,int component) {
-        Double vals[]=new Double[colNames.length];
+        double vals[]=new double[colNames.length];
         for (int ii=0; ii<colNames.length; ii++)
             vals[ii]=tables.get(tableName).getDoubleValue(colNames[ii],sector,layer,component);
         setArray(key,vals);
@@ -172,7 +203,7 @@ public class EBCCDBConstants {
             String tableName,
             String[] colNames,
             int sector) {
-        Double vals[]=new Double[colNames.length];
+        double vals[]=new double[colNames.length];
         for (int ii=0; ii<colNames.length; ii++)
             vals[ii]=tables.get(tableName).getDoubleValue(colNames[ii],sector,0,0);
         setSectorArray(key,sector,vals);
@@ -181,7 +212,7 @@ public class EBCCDBConstants {
             EBCCDBEnum key,
             String tableName,
             String[] colNames) {
-        for (int ii=0; ii<=6; ii++) {
+        for (int ii=0; ii<NSECTORS; ii++) {
             this.loadSectorArray(key,tableName,colNames,ii);
         }
     }
@@ -191,24 +222,30 @@ public class EBCCDBConstants {
     
     public void show() {
         System.out.println("EBCCDBConstants:  show()");
-        for (EBCCDBEnum ii : dbIntegers.keySet()) {
-            System.out.println(String.format("%-30s: %d",ii,dbIntegers.get(ii)));
+        for (EBCCDBEnum ii : EBCCDBEnum.values()) {
+            if (!hasIntegers[ii.ordinal()]) continue;
+            System.out.println(String.format("%-30s: %d",ii,dbIntegers[ii.ordinal()]));
         }
-        for (EBCCDBEnum ii : dbDoubles.keySet()) {
-            System.out.println(String.format("%-30s: %f",ii,dbDoubles.get(ii)));
+        for (EBCCDBEnum ii : EBCCDBEnum.values()) {
+            if (!hasDoubles[ii.ordinal()]) continue;
+            System.out.println(String.format("%-30s: %f",ii,dbDoubles[ii.ordinal()]));
         }
-        for (EBCCDBEnum ii : dbArrays.keySet()) {
+        for (EBCCDBEnum ii : EBCCDBEnum.values()) {
+            if (dbArrays[ii.ordinal()]==null) continue;
             System.out.print(String.format("%-30s: ",ii));
-            for (double xx : dbArrays.get(ii)) System.out.print(xx+" , ");
+            for (double xx : dbArrays[ii.ordinal()]) System.out.print(xx+" , ");
             System.out.println();
         }
-        for (EBCCDBEnum ii : dbVector3Ds.keySet()) {
-           System.out.println(String.format("%-30s",ii)+": "+dbVector3Ds.get(ii));
+        for (EBCCDBEnum ii : EBCCDBEnum.values()) {
+            if (dbVector3Ds[ii.ordinal()]==null) continue;
+            System.out.println(String.format("%-30s",ii)+": "+dbVector3Ds[ii.ordinal()]);
         }
-        for (EBCCDBEnum ii : dbSectorArrays.keySet()) {
-            for (int sector : dbSectorArrays.get(ii).keySet()) {
+        for (EBCCDBEnum ii : EBCCDBEnum.values()) {
+            if (dbSectorArrays[ii.ordinal()]==null) continue;
+            for (int sector=0; sector<NSECTORS; sector++) {
+                if (dbSectorArrays[ii.ordinal()][sector]==null) continue;
                 System.out.print(String.format("%-30s: %d ",ii,sector));
-                for (double xx : dbSectorArrays.get(ii).get(sector)) {
+                for (double xx : dbSectorArrays[ii.ordinal()][sector]) {
                     System.out.print(xx+" , ");
                 }
                 System.out.println();
@@ -216,7 +253,7 @@ public class EBCCDBConstants {
         }
     }
 
-    public final void load(int run,ConstantsManager manager) {
+    private void load(int run,ConstantsManager manager) {
 
         // load /calibration/eb tables:
         for (String ss : EB_TABLE_NAMES) loadEbTable(run,manager,ss);
@@ -310,16 +347,12 @@ public class EBCCDBConstants {
         loadInteger(EBCCDBEnum.HELICITY_pattern,"/runcontrol/helicity","pattern",0,0,0);
         
         //this.show();
-        currentRun = run;
-        isLoaded = true;
     }
     
-    public boolean isLoaded() { return isLoaded; }
     public int getRunNumber() { return currentRun; }
 
-    public EBCCDBConstants() {}
-
     public EBCCDBConstants(int run,ConstantsManager manager) {
         load(run,manager);
+        currentRun = run;
     }
 }
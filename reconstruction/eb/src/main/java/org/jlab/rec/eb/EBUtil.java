@@ -104,19 +104,20 @@ public class EBUtil {
      * Calculate timing resolution from EventBuilder constants:
      */
     public static double getEBTimingResolution(DetectorParticle p, DetectorType type, int layer,EBCCDBConstants ccdb) {
-        Double[] pars;
+        EBCCDBEnum pars;
         if (type==DetectorType.FTOF) {
-            if (layer==1) pars=ccdb.getArray(EBCCDBEnum.FTOF1A_TimingRes);
-            if (layer==2) pars=ccdb.getArray(EBCCDBEnum.FTOF1B_TimingRes);
-            else          pars=ccdb.getArray(EBCCDBEnum.FTOF2_TimingRes);
+            if (layer==1) pars=EBCCDBEnum.FTOF1A_TimingRes;
+            if (layer==2) pars=EBCCDBEnum.FTOF1B_TimingRes;
+            else          pars=EBCCDBEnum.FTOF2_TimingRes;
         }
         else if (type==DetectorType.CTOF) {
-            pars=ccdb.getArray(EBCCDBEnum.CTOF_TimingRes);
+            pars=EBCCDBEnum.CTOF_TimingRes;
         }
         else throw new RuntimeException("not ready for non-TOF");
         final double mom=p.vector().mag();
         double res=0;
-        for (int ii=0; ii<pars.length; ii++) res += pars[ii]*pow(mom,ii);
+        final int npars=ccdb.getArrayLength(pars);
+        for (int ii=0; ii<npars; ii++) res += ccdb.getArrayValue(pars,ii)*pow(mom,ii);
         return res;
     }
 
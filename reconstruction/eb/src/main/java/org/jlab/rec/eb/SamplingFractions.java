@@ -14,6 +14,12 @@ public class SamplingFractions {
 
     private static DetectorType detType = DetectorType.ECAL;
 
+    private static double parametrize(EBCCDBConstants ccdb, EBCCDBEnum p, int sector, double measuredEnergy) {
+        return ccdb.getSectorArrayValue(p,sector,0)*(ccdb.getSectorArrayValue(p,sector,1)
+                + ccdb.getSectorArrayValue(p,sector,2)/measuredEnergy
+                + ccdb.getSectorArrayValue(p,sector,3)*pow(measuredEnergy,-2));
+    }
+
     /**
      * @return mean of sampling fraction
      */
@@ -23,21 +29,21 @@ public class SamplingFractions {
             final EBCCDBConstants ccdb) {
         final int sector = part.getSector(detType);
         final double measuredEnergy = part.getEnergy(detType);
-        Double[] p;
+        EBCCDBEnum p;
         switch (pid) {
             case -11:
-                p = ccdb.getSectorArray(EBCCDBEnum.ELEC_SF,sector);
+                p = EBCCDBEnum.ELEC_SF;
                 break;
             case 11:
-                p = ccdb.getSectorArray(EBCCDBEnum.ELEC_SF,sector);
+                p = EBCCDBEnum.ELEC_SF;
                 break;
             case 22:
-                p = ccdb.getSectorArray(EBCCDBEnum.PHOT_SF,sector);
+                p = EBCCDBEnum.PHOT_SF;
                 break;
             default:
                 throw new RuntimeException("Unknown sampling fraction for pid="+pid);
         }
-        return p[0]*(p[1] + p[2]/measuredEnergy + p[3]*pow(measuredEnergy,-2));
+        return parametrize(ccdb,p,sector,measuredEnergy);
     }
     
     /**
@@ -49,21 +55,21 @@ public class SamplingFractions {
             final EBCCDBConstants ccdb) {
         final int sector = part.getSector(detType);
         final double measuredEnergy = part.getEnergy(detType);
-        Double[] p;
+        EBCCDBEnum p;
         switch (pid) {
             case -11:
-                p = ccdb.getSectorArray(EBCCDBEnum.ELEC_SFS,sector);
+                p = EBCCDBEnum.ELEC_SFS;
                 break;
             case 11:
-                p = ccdb.getSectorArray(EBCCDBEnum.ELEC_SFS,sector);
+                p = EBCCDBEnum.ELEC_SFS;
                 break;
             case 22:
-                p = ccdb.getSectorArray(EBCCDBEnum.PHOT_SFS,sector);
+                p = EBCCDBEnum.PHOT_SFS;
                 break;
             default:
                 throw new RuntimeException("Unknown sampling fraction for pid="+pid);
         }
-        return p[0]*(p[1] + p[2]/measuredEnergy + p[3]*pow(measuredEnergy,-2));
+        return parametrize(ccdb,p,sector,measuredEnergy);
     }
    
     /**
@@ -28,6 +28,7 @@ public class EBEngine extends ReconstructionEngine {
     public static Logger LOGGER = Logger.getLogger(EBEngine.class.getName());
 
     boolean usePOCA = false;
+    boolean useGlobalMatching = false;
 
     // output banks:
     String eventBank        = null;
@@ -51,6 +52,9 @@ public class EBEngine extends ReconstructionEngine {
     String covMatrixType    = null;
     String cvtTrackType     = null;
     String cvtTrajType      = null;
+
+    // constants of the latest run, shared by the event threads:
+    private volatile EBCCDBConstants ccdb = null;
     
     public EBEngine(String name){
         super(name,"gavalian","1.0");
@@ -65,6 +69,10 @@ public class EBEngine extends ReconstructionEngine {
         this.usePOCA=val;
     }
 
+    public void setUseGlobalMatching(boolean val) {
+        this.useGlobalMatching=val;
+    }
+
     @Override
     public boolean processDataEvent(DataEvent de) {
         throw new RuntimeException("EBEngine cannot be used directly.  Use EBTBEngine/EBHBEngine instead.");
@@ -89,6 +97,19 @@ public class EBEngine extends ReconstructionEngine {
         this.setFTBank(prefix+"::ForwardTagger");
     }
 
+    /**
+     * @param run run number
+     * @return the constants of the run, loaded only when the run changes
+     */
+    EBCCDBConstants getCCDBConstants(int run) {
+        EBCCDBConstants constants = this.ccdb;
+        if (constants == null || constants.getRunNumber() != run) {
+            constants = new EBCCDBConstants(run,this.getConstantsManager());
+            this.ccdb = constants;
+        }
+        return constants;
+    }
+
     public boolean processDataEvent(DataEvent de,EBScalers ebs) {
 
         // check run number, get constants from CCDB:
@@ -101,12 +122,13 @@ public class EBEngine extends ReconstructionEngine {
             return false;
         }
 
-        EBCCDBConstants ccdb = new EBCCDBConstants(run,this.getConstantsManager());
+        EBCCDBConstants ccdb = this.getCCDBConstants(run);
 
         DetectorHeader head = EBio.readHeader(de,ebs,ccdb);
 
         EventBuilder eb = new EventBuilder(ccdb);
         eb.setUsePOCA(this.usePOCA);
+        eb.setUseGlobalMatching(this.useGlobalMatching);
         eb.initEvent(head); // clear particles
 
         EBMatching ebm = new EBMatching(eb);
@@ -327,6 +349,10 @@ public class EBEngine extends ReconstructionEngine {
 	    this.setOutputBankPrefix(this.getEngineConfigString("outputBankPrefix"));
         }
 
+        if (this.getEngineConfigString("globalMatching")!=null) {
+            this.setUseGlobalMatching(Boolean.parseBoolean(this.getEngineConfigString("globalMatching")));
+        }
+
         requireConstants(EBCCDBConstants.getAllTableNames());
 
         this.getConstantsManager().setVariation("default");
@@ -0,0 +1,329 @@
+package org.jlab.service.eb;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.jlab.clas.detector.DetectorParticle;
+import org.jlab.clas.detector.DetectorResponse;
+import org.jlab.clas.detector.DetectorResponseIndex;
+import org.jlab.detector.base.DetectorType;
+import org.jlab.geom.prim.Line3D;
+
+/**
+ *
+ * Order-independent track-to-hit assignment, one detector layer at a time.
+ *
+ * The particle x response distance matrix is computed once per layer in
+ * primitive arrays, using the same distance, same-sector and trajectory
+ * requirements as DetectorParticle.getDetectorHit.  For detectors whose
+ * hits can be shared (FTOF, CTOF for charged particles) every particle
+ * takes its closest response.  Otherwise the assignment maximizing the
+ * summed margin (threshold - distance) over matched pairs is found with the
+ * Hungarian algorithm, where every particle may also stay unmatched.  Above
+ * MAX_HUNGARIAN particles or responses, a deterministic global greedy on
+ * pairs sorted by distance is used instead, to bound the cost per event.
+ */
+public class EBHitAssignment {
+
+    public static final int MAX_HUNGARIAN = 100;
+
+    static final double INFEASIBLE = 1e9;
+
+    private final EventBuilder eventBuilder;
+
+    // per-particle trajectory lines:
+    private int[]    rows = new int[16];
+    private double[] x0 = new double[16];
+    private double[] y0 = new double[16];
+    private double[] z0 = new double[16];
+    private double[] vx = new double[16];
+    private double[] vy = new double[16];
+    private double[] vz = new double[16];
+    private double[] vv = new double[16];
+    private int[]    sector = new int[16];
+
+    // candidate responses:
+    private int[]    cols = new int[64];
+    private double[] hx = new double[64];
+    private double[] hy = new double[64];
+    private double[] hz = new double[64];
+    private int[]    hsector = new int[64];
+
+    // distance matrix, row-major, and assignment result:
+    private double[] distance = new double[1024];
+    private int[]    assignment = new int[16];
+
+    public EBHitAssignment(EventBuilder eb) {
+        this.eventBuilder = eb;
+    }
+
+    /**
+     * Match the given particles to the unmatched responses of one detector layer.
+     *
+     * @param pindices indices of the particles in the event to match
+     * @param type detector type
+     * @param layer detector layer, non-positive for any layer
+     * @param threshold maximum distance between trajectory and hit
+     * @return number of matches
+     */
+    public int assign(int[] pindices, DetectorType type, int layer, double threshold) {
+
+        DetectorResponseIndex index = eventBuilder.getResponseIndex();
+        DetectorResponseIndex.Bucket bucket = index.getBucket(type, layer);
+        if (bucket==null || pindices.length==0) return 0;
+
+        final int np = this.loadParticles(pindices, type, layer);
+        if (np==0) return 0;
+        // hits are only shared if all particles allow it (i.e. charged):
+        boolean sharing = true;
+        for (int ip=0; ip<np; ip++) {
+            sharing &= eventBuilder.getEvent().getParticle(rows[ip]).isHitSharing(type);
+        }
+        final int nr = this.loadResponses(index, bucket, sharing);
+        if (nr==0) return 0;
+
+        this.computeDistances(np, nr, threshold);
+
+        if (sharing) {
+            this.assignClosest(np, nr);
+        }
+        else if (np<=MAX_HUNGARIAN && nr<=MAX_HUNGARIAN) {
+            this.assignHungarian(np, nr, threshold);
+        }
+        else {
+            this.assignSortedGreedy(np, nr);
+        }
+
+        List<DetectorResponse> responses = index.getResponses();
+        int nmatch = 0;
+        for (int ip=0; ip<np; ip++) {
+            if (assignment[ip]<0) continue;
+            final int pindex = rows[ip];
+            eventBuilder.associateHit(pindex, eventBuilder.getEvent().getParticle(pindex),
+                    responses, cols[assignment[ip]]);
+            nmatch++;
+        }
+        return nmatch;
+    }
+
+    private int loadParticles(int[] pindices, DetectorType type, int layer) {
+        if (pindices.length>rows.length) {
+            final int n = 2*pindices.length;
+            rows = new int[n];
+            x0 = new double[n]; y0 = new double[n]; z0 = new double[n];
+            vx = new double[n]; vy = new double[n]; vz = new double[n];
+            vv = new double[n];
+            sector = new int[n];
+            assignment = new int[n];
+        }
+        int np = 0;
+        for (int pindex : pindices) {
+            DetectorParticle p = eventBuilder.getEvent().getParticle(pindex);
+            if (!p.hasTrajectory(type, layer)) continue;
+            Line3D cross = p.getLastCross();
+            rows[np] = pindex;
+            x0[np] = cross.origin().x();
+            y0[np] = cross.origin().y();
+            z0[np] = cross.origin().z();
+            vx[np] = cross.end().x()-x0[np];
+            vy[np] = cross.end().y()-y0[np];
+            vz[np] = cross.end().z()-z0[np];
+            vv[np] = vx[np]*vx[np] + vy[np]*vy[np] + vz[np]*vz[np];
+            sector[np] = p.getTrack().getSector();
+            np++;
+        }
+        return np;
+    }
+
+    private int loadResponses(DetectorResponseIndex index, DetectorResponseIndex.Bucket bucket, boolean sharing) {
+        int nr = 0;
+        for (int slot=0; slot<bucket.getSectors(); slot++) {
+            for (int ii=0; ii<bucket.getSize(slot); ii++) {
+                final int pos = bucket.getPosition(slot, ii);
+                if (!sharing && index.getResponse(pos).getAssociation()>=0) continue;
+                if (nr==cols.length) {
+                    cols = Arrays.copyOf(cols, 2*nr);
+                    hx = Arrays.copyOf(hx, 2*nr);
+                    hy = Arrays.copyOf(hy, 2*nr);
+                    hz = Arrays.copyOf(hz, 2*nr);
+                    hsector = Arrays.copyOf(hsector, 2*nr);
+                }
+                cols[nr++] = pos;
+            }
+        }
+        // keep the response list order, for deterministic tie-breaking:
+        Arrays.sort(cols, 0, nr);
+        for (int ir=0; ir<nr; ir++) {
+            final int pos = cols[ir];
+            hx[ir] = index.getX(pos);
+            hy[ir] = index.getY(pos);
+            hz[ir] = index.getZ(pos);
+            hsector[ir] = Math.max(0, index.getResponse(pos).getSector());
+        }
+        return nr;
+    }
+
+    /**
+     * Fill the distance matrix, infeasible pairs get INFEASIBLE.
+     */
+    private void computeDistances(int np, int nr, double threshold) {
+        if (np*nr>distance.length) distance = new double[2*np*nr];
+        for (int ip=0; ip<np; ip++) {
+            final double px0 = x0[ip], py0 = y0[ip], pz0 = z0[ip];
+            final double pvx = vx[ip], pvy = vy[ip], pvz = vz[ip], pvv = vv[ip];
+            final int offset = ip*nr;
+            // branch-free distance to the infinite line, as in Line3D.distance:
+            for (int ir=0; ir<nr; ir++) {
+                final double wx = hx[ir]-px0;
+                final double wy = hy[ir]-py0;
+                final double wz = hz[ir]-pz0;
+                final double b = (wx*pvx + wy*pvy + wz*pvz) / pvv;
+                final double dx = hx[ir]-(px0+pvx*b);
+                final double dy = hy[ir]-(py0+pvy*b);
+                final double dz = hz[ir]-(pz0+pvz*b);
+                distance[offset+ir] = Math.sqrt(dx*dx + dy*dy + dz*dz);
+            }
+            // same-sector requirement and threshold:
+            for (int ir=0; ir<nr; ir++) {
+                if (!(distance[offset+ir]<threshold) ||
+                    (sector[ip]>0 && hsector[ir]>0 && sector[ip]!=hsector[ir])) {
+                    distance[offset+ir] = INFEASIBLE;
+                }
+            }
+        }
+    }
+
+    private void assignClosest(int np, int nr) {
+        for (int ip=0; ip<np; ip++) {
+            assignment[ip] = -1;
+            double best = INFEASIBLE;
+            for (int ir=0; ir<nr; ir++) {
+                if (distance[ip*nr+ir]<best) {
+                    best = distance[ip*nr+ir];
+                    assignment[ip] = ir;
+                }
+            }
+        }
+    }
+
+    /**
+     * Rectangular Hungarian algorithm (potentials and shortest augmenting
+     * paths, O(n^2 m)).  Columns are the responses followed by one
+     * "unmatched" column per particle costing the threshold, so a particle
+     * is only matched when the distance is below threshold.
+     */
+    private void assignHungarian(int np, int nr, double threshold) {
+        final int n = np;
+        final int m = nr + np;
+        final double[] u = new double[n+1];
+        final double[] v = new double[m+1];
+        final int[] p = new int[m+1];
+        final int[] way = new int[m+1];
+        final double[] minv = new double[m+1];
+        final boolean[] used = new boolean[m+1];
+        for (int i=1; i<=n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                final int i0 = p[j0];
+                double delta = Double.POSITIVE_INFINITY;
+                int j1 = 0;
+                for (int j=1; j<=m; j++) {
+                    if (used[j]) continue;
+                    final double c = (j<=nr ? distance[(i0-1)*nr+j-1] : threshold) - u[i0] - v[j];
+                    if (c<minv[j]) {
+                        minv[j] = c;
+                        way[j] = j0;
+                    }
+                    if (minv[j]<delta) {
+                        delta = minv[j];
+                        j1 = j;
+                    }
+                }
+                for (int j=0; j<=m; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    }
+                    else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0]!=0);
+            do {
+                final int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0!=0);
+        }
+        Arrays.fill(assignment, 0, np, -1);
+        for (int j=1; j<=nr; j++) {
+            if (p[j]>0 && distance[(p[j]-1)*nr+j-1]<INFEASIBLE) {
+                assignment[p[j]-1] = j-1;
+            }
+        }
+    }
+
+    private void assignSortedGreedy(int np, int nr) {
+        assignSortedGreedy(distance, np, nr, assignment);
+    }
+
+    /**
+     * Accept feasible pairs in increasing distance, ties broken by particle
+     * and then response order.  Pairs are sorted on a primitive key, the
+     * rank of the distance in the upper and the matrix index in the lower
+     * 32 bits.
+     *
+     * @param distance row-major particle x response distances
+     * @param np number of particles
+     * @param nr number of responses
+     * @param assignment output, the response of each particle or -1
+     */
+    static void assignSortedGreedy(double[] distance, int np, int nr, int[] assignment) {
+        int npairs = 0;
+        for (int k=0; k<np*nr; k++) if (distance[k]<INFEASIBLE) npairs++;
+        final double[] dist = new double[npairs];
+        int ii = 0;
+        for (int k=0; k<np*nr; k++) {
+            if (distance[k]<INFEASIBLE) dist[ii++] = distance[k];
+        }
+        Arrays.sort(dist);
+        // equal distances share a rank, so the matrix index breaks ties:
+        final long[] keys = new long[npairs];
+        ii = 0;
+        for (int k=0; k<np*nr; k++) {
+            if (distance[k]<INFEASIBLE) {
+                final int rank = lowerBound(dist, npairs, distance[k]);
+                keys[ii++] = ((long)rank<<32) | k;
+            }
+        }
+        Arrays.sort(keys);
+        final boolean[] taken = new boolean[nr];
+        Arrays.fill(assignment, 0, np, -1);
+        for (int k=0; k<npairs; k++) {
+            final int pair = (int)keys[k];
+            final int ip = pair/nr;
+            final int ir = pair%nr;
+            if (assignment[ip]>=0 || taken[ir]) continue;
+            assignment[ip] = ir;
+            taken[ir] = true;
+        }
+    }
+
+    /**
+     * @return the first position in the sorted array not less than the value
+     */
+    private static int lowerBound(double[] sorted, int n, double value) {
+        int lo = 0, hi = n;
+        while (lo<hi) {
+            final int mid = (lo+hi)>>>1;
+            if (sorted[mid]<value) lo = mid+1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
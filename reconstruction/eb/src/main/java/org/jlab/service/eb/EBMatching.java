@@ -5,6 +5,7 @@ import java.util.List;
 import org.jlab.clas.physics.Vector3;
 import org.jlab.clas.detector.DetectorParticle;
 import org.jlab.clas.detector.DetectorResponse;
+import org.jlab.clas.detector.DetectorResponseIndex;
 import org.jlab.detector.base.DetectorType;
 import org.jlab.clas.detector.DetectorEvent;
 import org.jlab.rec.eb.EBCCDBEnum;
@@ -33,9 +34,7 @@ public class EBMatching {
      */
     public void addResponsesFTOF(List <DetectorParticle> parts) {
 
-        List<DetectorResponse> respFTOF1A = eventBuilder.getUnmatchedResponses(null, DetectorType.FTOF, 1);
-        List<DetectorResponse> respFTOF1B = eventBuilder.getUnmatchedResponses(null, DetectorType.FTOF, 2);
-        List<DetectorResponse>  respFTOF2 = eventBuilder.getUnmatchedResponses(null, DetectorType.FTOF, 3);
+        DetectorResponseIndex index = eventBuilder.getResponseIndex();
 
         for (int ii=0; ii<parts.size(); ii++) {
             
@@ -44,25 +43,25 @@ public class EBMatching {
             int pindex_offset = this.eventBuilder.getPindexMap().get(0)
                                 + this.eventBuilder.getPindexMap().get(1);
 
-            int index1A = part.getDetectorHit(respFTOF1A, DetectorType.FTOF, 1, 
+            int index1A = part.getDetectorHit(index, DetectorType.FTOF, 1, 
                     eventBuilder.ccdb.getDouble(EBCCDBEnum.FTOF_MATCHING_1A));
             if (index1A >= 0) {
-                part.addResponse(respFTOF1A.get(index1A), true);
-                respFTOF1A.get(index1A).setAssociation(ii + pindex_offset);
+                part.addResponse(eventBuilder.getResponse(index1A), true);
+                eventBuilder.getResponse(index1A).setAssociation(ii + pindex_offset);
             }
-            int index1B = part.getDetectorHit(respFTOF1B, DetectorType.FTOF, 2,
+            int index1B = part.getDetectorHit(index, DetectorType.FTOF, 2,
                     eventBuilder.ccdb.getDouble(EBCCDBEnum.FTOF_MATCHING_1B));
             if (index1B >= 0) {
-                part.addResponse(respFTOF1B.get(index1B), true);
-                respFTOF1B.get(index1B).setAssociation(ii + pindex_offset);
+                part.addResponse(eventBuilder.getResponse(index1B), true);
+                eventBuilder.getResponse(index1B).setAssociation(ii + pindex_offset);
             }
             // only try to match with FTOF2 if not matched with 1A/1B:
             if (index1A<0 && index1B<0) {
-                int index2 = part.getDetectorHit(respFTOF2, DetectorType.FTOF, 3,
+                int index2 = part.getDetectorHit(index, DetectorType.FTOF, 3,
                         eventBuilder.ccdb.getDouble(EBCCDBEnum.FTOF_MATCHING_2));
                 if (index2>=0) {
-                    part.addResponse(respFTOF2.get(index2), true);
-                    respFTOF2.get(index2).setAssociation(ii + pindex_offset);
+                    part.addResponse(eventBuilder.getResponse(index2), true);
+                    eventBuilder.getResponse(index2).setAssociation(ii + pindex_offset);
                 }
             }
         }
@@ -99,14 +98,12 @@ public class EBMatching {
                         throw new RuntimeException("Invalid ECAL Layer:  "+layer);
                 }
 
-                List<DetectorResponse> respECAL = eventBuilder.getUnmatchedResponses(null, DetectorType.ECAL, layer);
-
-                int index = part.getDetectorHit(respECAL, DetectorType.ECAL, layer, matching);
+                int index = part.getDetectorHit(eventBuilder.getResponseIndex(), DetectorType.ECAL, layer, matching);
                 if (index>=0) {
                     int pindex_offset = this.eventBuilder.getPindexMap().get(0)
                                       + this.eventBuilder.getPindexMap().get(1); //After FD/CD Charged Particles
-                    part.addResponse(respECAL.get(index), true); 
-                    respECAL.get(index).setAssociation(ii + pindex_offset);
+                    part.addResponse(eventBuilder.getResponse(index), true); 
+                    eventBuilder.getResponse(index).setAssociation(ii + pindex_offset);
                 }
             }
         }
@@ -187,18 +184,17 @@ public class EBMatching {
             respCND.setAssociation(pindex);
 
             // find and associate matching CTOF hits:
-            List<DetectorResponse> respCTOF =
-                    eventBuilder.getUnmatchedResponses(null, DetectorType.CTOF, 0);
-            final int indx=neutral.getDetectorHit(respCTOF,DetectorType.CTOF,0,
+            final int indx=neutral.getDetectorHit(eventBuilder.getResponseIndex(),DetectorType.CTOF,0,
                     eventBuilder.ccdb.getDouble(EBCCDBEnum.CTOF_DZ));
             if (indx >= 0) {
-                neutral.addResponse(respCTOF.get(indx),true);
-                respCTOF.get(indx).setAssociation(pindex);
+                DetectorResponse respCTOF = eventBuilder.getResponse(indx);
+                neutral.addResponse(respCTOF,true);
+                respCTOF.setAssociation(pindex);
                 // FIXME:  stop mixing Vector3 and Vector3D
-                final double dx = respCTOF.get(indx).getPosition().x()-vertex.x();
-                final double dy = respCTOF.get(indx).getPosition().y()-vertex.y();
-                final double dz = respCTOF.get(indx).getPosition().z()-vertex.z();
-                respCTOF.get(indx).setPath(Math.sqrt(dx*dx+dy*dy+dz*dz));
+                final double dx = respCTOF.getPosition().x()-vertex.x();
+                final double dy = respCTOF.getPosition().y()-vertex.y();
+                final double dz = respCTOF.getPosition().z()-vertex.z();
+                respCTOF.setPath(Math.sqrt(dx*dx+dy*dy+dz*dz));
             }
 
             de.addParticle(neutral);
@@ -2,6 +2,7 @@ package org.jlab.service.eb;
 
 import static java.lang.Math.abs;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,6 +17,7 @@ import org.jlab.clas.detector.DetectorEvent;
 import org.jlab.clas.detector.DetectorParticle;
 import org.jlab.clas.detector.DetectorParticleTraj;
 import org.jlab.clas.detector.DetectorResponse;
+import org.jlab.clas.detector.DetectorResponseIndex;
 import org.jlab.clas.detector.DetectorTrack;
 import org.jlab.clas.detector.TaggerResponse;
 import org.jlab.clas.detector.CherenkovResponse;
@@ -36,12 +38,15 @@ public class EventBuilder {
     public EBCCDBConstants ccdb;
     private final DetectorEvent               detectorEvent = new DetectorEvent();
     private final List<DetectorResponse>  detectorResponses = new ArrayList<>();
+    private final DetectorResponseIndex       responseIndex = new DetectorResponseIndex();
+    private boolean                       responseIndexDirty = true;
     private final List<Map<DetectorType,Integer>> ftIndices = new ArrayList<>();
     private final HashMap<Integer,Integer> pindex_map = new HashMap<>();
     
     private static final int[] TRIGGERLIST = new int[]{11,-11,211,-211,0};
 
     private boolean usePOCA=false;
+    private boolean useGlobalMatching=false;
     
     public EventBuilder(EBCCDBConstants ccdb){
         this.ccdb=ccdb;
@@ -50,6 +55,14 @@ public class EventBuilder {
     public void setUsePOCA(boolean val) {
         usePOCA=val;
     }
+
+    /**
+     * @param val whether to match FTOF/ECAL/CTOF/CND hits with the
+     * order-independent {@link EBHitAssignment} instead of particle by particle
+     */
+    public void setUseGlobalMatching(boolean val) {
+        useGlobalMatching=val;
+    }
     public void initEvent() {
         detectorEvent.clear();
     }
@@ -60,6 +73,25 @@ public class EventBuilder {
     }
     public void addDetectorResponses(List<DetectorResponse> responses){
         detectorResponses.addAll(responses);
+        responseIndexDirty = true;
+    }
+
+    /**
+     * Index of the detector responses by type, layer and sector, rebuilt
+     * after new responses were added.  Copies of shared hits appended
+     * during matching are not indexed, their originals always win ties.
+     * @return the response index
+     */
+    public DetectorResponseIndex getResponseIndex() {
+        if (responseIndexDirty) {
+            responseIndex.build(detectorResponses);
+            responseIndexDirty = false;
+        }
+        return responseIndex;
+    }
+
+    public DetectorResponse getResponse(int index) {
+        return detectorResponses.get(index);
     }
 
     public void addFTIndices(List<Map<DetectorType, Integer>> ftindex) {
@@ -103,6 +135,11 @@ public class EventBuilder {
      */
     public void processHitMatching(){
         
+        if (useGlobalMatching) {
+            processGlobalHitMatching();
+            return;
+        }
+
         int np = detectorEvent.getParticles().size();
         for(int n = 0; n < np; n++){
             DetectorParticle  p = this.detectorEvent.getParticle(n);
@@ -152,8 +189,61 @@ public class EventBuilder {
 
         }
 
-        // Special treatment for HTCC, with coarse resolution.
-        // Try all combos of HTCC clusters and particle to find best matches.
+        processHTCCMatching();
+    }
+
+    /**
+     * Same as {@link #processHitMatching}, but FTOF/ECAL/CTOF/CND responses
+     * are assigned to all particles at once, one detector layer at a time.
+     */
+    public void processGlobalHitMatching(){
+
+        int np = detectorEvent.getParticles().size();
+        int[] forward = new int[np];
+        int[] central = new int[np];
+        int nforward = 0, ncentral = 0;
+        for(int n = 0; n < np; n++){
+            DetectorParticle  p = this.detectorEvent.getParticle(n);
+            if (p.getTrackDetectorID()==DetectorType.DC.getDetectorId()) forward[nforward++] = n;
+            else if (p.getTrackDetectorID()==DetectorType.CVT.getDetectorId()) central[ncentral++] = n;
+        }
+        forward = Arrays.copyOf(forward, nforward);
+        central = Arrays.copyOf(central, ncentral);
+
+        EBHitAssignment assignment = new EBHitAssignment(this);
+
+        // FTOF:
+        assignment.assign(forward, DetectorType.FTOF, 1, ccdb.getDouble(EBCCDBEnum.FTOF_MATCHING_1A));
+        assignment.assign(forward, DetectorType.FTOF, 2, ccdb.getDouble(EBCCDBEnum.FTOF_MATCHING_1B));
+        assignment.assign(forward, DetectorType.FTOF, 3, ccdb.getDouble(EBCCDBEnum.FTOF_MATCHING_2));
+
+        // ECAL:
+        assignment.assign(forward, DetectorType.ECAL, 1, ccdb.getDouble(EBCCDBEnum.PCAL_MATCHING));
+        assignment.assign(forward, DetectorType.ECAL, 4, ccdb.getDouble(EBCCDBEnum.ECIN_MATCHING));
+        assignment.assign(forward, DetectorType.ECAL, 7, ccdb.getDouble(EBCCDBEnum.ECOUT_MATCHING));
+
+        // LTCC:
+        for (int n : forward) {
+            DetectorParticle p = this.detectorEvent.getParticle(n);
+            int index = p.getCherenkovSignal(this.detectorResponses,DetectorType.LTCC);
+            if(index>=0){
+                p.addResponse(detectorResponses.get(index));
+                detectorResponses.get(index).setAssociation(n);
+            }
+        }
+
+        // CTOF/CND:
+        assignment.assign(central, DetectorType.CTOF, 1, ccdb.getDouble(EBCCDBEnum.CTOF_DZ));
+        assignment.assign(central, DetectorType.CND, -1, ccdb.getDouble(EBCCDBEnum.CND_DZ));
+
+        processHTCCMatching();
+    }
+
+    /**
+     * Special treatment for HTCC, with coarse resolution.
+     * Try all combos of HTCC clusters and particle to find best matches.
+     */
+    private void processHTCCMatching(){
         while (true) {
             int bestPart=-1;
             int bestRes=-1;
@@ -209,25 +299,46 @@ public class EventBuilder {
     public boolean findMatchingHit(
             final int pindex, DetectorParticle particle, List<DetectorResponse> responses,
             DetectorType type, final int layer, final double distance) {
-        int index = particle.getDetectorHit(responses,type,layer,distance);
+        int index;
+        if (responses==detectorResponses) {
+            index = particle.getDetectorHit(getResponseIndex(),type,layer,distance);
+        }
+        else {
+            index = particle.getDetectorHit(responses,type,layer,distance);
+        }
         if (index>=0) {
-            // if sharing hits between tracks, duplicate it:
-            if (responses.get(index).getAssociation() >= 0) {
-                //System.out.println(responses.get(index).getClass());
-                //DetectorResponse copy = new DetectorResponse();
-                //copy.copy(responses.get(index));
-                DetectorResponse copy = DetectorResponseFactory.create(responses.get(index));
-                copy.clearAssociations();
-                responses.add(copy);
-                index = responses.size()-1;
-            }
-            particle.addResponse(responses.get(index),true);
-            responses.get(index).addAssociation(pindex);
+            associateHit(pindex, particle, responses, index);
             return true;
         }
         return false;
     }
 
+    /**
+     * Associate a matched response with the particle.  If the response is
+     * already associated with another particle (shared hits), a copy of it
+     * is appended to the response list and associated instead.
+     *
+     * @param pindex the particle's index
+     * @param particle the particle
+     * @param responses all responses
+     * @param index the matched response's index in the list
+     */
+    public void associateHit(final int pindex, DetectorParticle particle,
+            List<DetectorResponse> responses, int index) {
+        // if sharing hits between tracks, duplicate it:
+        if (responses.get(index).getAssociation() >= 0) {
+            //System.out.println(responses.get(index).getClass());
+            //DetectorResponse copy = new DetectorResponse();
+            //copy.copy(responses.get(index));
+            DetectorResponse copy = DetectorResponseFactory.create(responses.get(index));
+            copy.clearAssociations();
+            responses.add(copy);
+            index = responses.size()-1;
+        }
+        particle.addResponse(responses.get(index),true);
+        responses.get(index).addAssociation(pindex);
+    }
+
     public void forwardTaggerIDMatching() {
         int np = this.detectorEvent.getParticles().size();
         if(this.ftIndices.size()>0 && this.detectorEvent.getParticles().size()>0) {
@@ -0,0 +1,87 @@
+package org.jlab.service.eb;
+
+import org.jlab.detector.calib.utils.ConstantsManager;
+import org.jlab.rec.eb.EBCCDBConstants;
+import org.jlab.rec.eb.EBCCDBEnum;
+import org.jlab.utils.groups.IndexedTable;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the engine loads the constants once per run, from tables whose
+ * values are the run number, without reading CCDB.
+ */
+public class EBCCDBConstantsTest {
+
+    private static class RunManager extends ConstantsManager {
+        int nloads = 0;
+        @Override
+        public IndexedTable getConstants(int run, String table) {
+            nloads++;
+            return new IndexedTable(3) {
+                @Override
+                public int getIntValue(String item, int... index) {
+                    return 1;
+                }
+                @Override
+                public double getDoubleValue(String item, int... index) {
+                    return run;
+                }
+            };
+        }
+    }
+
+    private static EBEngine createEngine(RunManager manager) {
+        return new EBHBEngine() {
+            @Override
+            public ConstantsManager getConstantsManager() {
+                return manager;
+            }
+        };
+    }
+
+    private static void assertRun(int run, EBCCDBConstants ccdb) {
+        assertEquals(run, ccdb.getRunNumber());
+        assertEquals(run, ccdb.getDouble(EBCCDBEnum.RF_OFFSET), 0);
+        for (int ii=0; ii<ccdb.getArrayLength(EBCCDBEnum.FTOF1A_TimingRes); ii++)
+            assertEquals(run, ccdb.getArrayValue(EBCCDBEnum.FTOF1A_TimingRes,ii), 0);
+        for (int sector=0; sector<7; sector++)
+            assertEquals(run, ccdb.getSectorArrayValue(EBCCDBEnum.ELEC_SF,sector,3), 0);
+    }
+
+    @Test
+    public void testRunChange() {
+        RunManager manager = new RunManager();
+        EBEngine engine = createEngine(manager);
+
+        EBCCDBConstants ccdb1 = engine.getCCDBConstants(11);
+        final int nloads = manager.nloads;
+        assertTrue(nloads > 0);
+        assertRun(11, ccdb1);
+
+        // the same run reuses the loaded constants:
+        assertSame(ccdb1, engine.getCCDBConstants(11));
+        assertEquals(nloads, manager.nloads);
+
+        // another run loads its own, and leaves the previous ones untouched:
+        EBCCDBConstants ccdb2 = engine.getCCDBConstants(12);
+        assertNotSame(ccdb1, ccdb2);
+        assertEquals(2*nloads, manager.nloads);
+        assertRun(12, ccdb2);
+        assertRun(11, ccdb1);
+        assertSame(ccdb2, engine.getCCDBConstants(12));
+    }
+
+    @Test
+    public void testArrayCopies() {
+        EBCCDBConstants ccdb = createEngine(new RunManager()).getCCDBConstants(11);
+        double[] pars = ccdb.getArray(EBCCDBEnum.CTOF_TimingRes);
+        pars[0] = -1;
+        double[] sf = ccdb.getSectorArray(EBCCDBEnum.PHOT_SF,1);
+        sf[0] = -1;
+        assertEquals(11, ccdb.getArrayValue(EBCCDBEnum.CTOF_TimingRes,0), 0);
+        assertEquals(11, ccdb.getSectorArrayValue(EBCCDBEnum.PHOT_SF,1,0), 0);
+        assertEquals(11, ccdb.getSectorDouble(EBCCDBEnum.PHOT_SF,1), 0);
+    }
+}
@@ -0,0 +1,81 @@
+package org.jlab.service.eb;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the sorted greedy assignment against a comparator sort of the
+ * feasible pairs, on matrices with many equal distances.
+ */
+public class EBHitAssignmentTest {
+
+    /**
+     * Reference: boxed sort by distance, then matrix index.
+     */
+    private static int[] referenceGreedy(double[] distance, int np, int nr) {
+        Integer[] pairs = new Integer[np*nr];
+        int npairs = 0;
+        for (int k=0; k<np*nr; k++) {
+            if (distance[k]<EBHitAssignment.INFEASIBLE) pairs[npairs++] = k;
+        }
+        Arrays.sort(pairs, 0, npairs, (a,b) -> distance[a]!=distance[b] ?
+                Double.compare(distance[a],distance[b]) : Integer.compare(a,b));
+        int[] assignment = new int[np];
+        Arrays.fill(assignment, -1);
+        boolean[] taken = new boolean[nr];
+        for (int k=0; k<npairs; k++) {
+            final int ip = pairs[k]/nr;
+            final int ir = pairs[k]%nr;
+            if (assignment[ip]>=0 || taken[ir]) continue;
+            assignment[ip] = ir;
+            taken[ir] = true;
+        }
+        return assignment;
+    }
+
+    private static double[] randomDistances(Random rand, int np, int nr, int levels) {
+        double[] distance = new double[np*nr];
+        for (int k=0; k<distance.length; k++) {
+            // a few distinct values, so ties are common:
+            distance[k] = rand.nextInt(4)==0 ? EBHitAssignment.INFEASIBLE : 0.5*rand.nextInt(levels);
+        }
+        return distance;
+    }
+
+    @Test
+    public void testSortedGreedy() {
+        Random rand = new Random(29);
+        for (int trial=0; trial<2000; trial++) {
+            final int np = 1+rand.nextInt(trial<1000 ? 10 : 150);
+            final int nr = 1+rand.nextInt(trial<1000 ? 10 : 150);
+            double[] distance = randomDistances(rand, np, nr, 1+rand.nextInt(8));
+            int[] expected = referenceGreedy(distance, np, nr);
+            int[] assignment = new int[np+3];
+            EBHitAssignment.assignSortedGreedy(distance, np, nr, assignment);
+            assertArrayEquals(expected, Arrays.copyOf(assignment, np));
+            // repeated calls give the same answer:
+            int[] again = new int[np];
+            EBHitAssignment.assignSortedGreedy(distance, np, nr, again);
+            assertArrayEquals(expected, again);
+        }
+    }
+
+    @Test
+    public void testTies() {
+        // all pairs equally close: particle i takes response i, in order
+        final int np = 4, nr = 3;
+        double[] distance = new double[np*nr];
+        Arrays.fill(distance, 1.0);
+        int[] assignment = new int[np];
+        EBHitAssignment.assignSortedGreedy(distance, np, nr, assignment);
+        assertArrayEquals(new int[]{0, 1, 2, -1}, assignment);
+
+        // no feasible pairs:
+        Arrays.fill(distance, EBHitAssignment.INFEASIBLE);
+        EBHitAssignment.assignSortedGreedy(distance, np, nr, assignment);
+        assertArrayEquals(new int[]{-1, -1, -1, -1}, assignment);
+    }
+}
@@ -0,0 +1,504 @@
+package org.jlab.service.ec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jlab.clas.reco.EngineMonitor;
+import org.jlab.detector.base.DetectorLayer;
+import org.jlab.detector.calib.utils.ConstantsManager;
+import org.jlab.geom.base.Detector;
+import org.jlab.geom.base.Layer;
+import org.jlab.geom.component.ScintillatorPaddle;
+import org.jlab.geom.prim.Line3D;
+import org.jlab.geom.prim.Point3D;
+import org.jlab.io.base.DataBank;
+import org.jlab.io.base.DataEvent;
+import org.jlab.utils.groups.IndexedList;
+import org.jlab.utils.groups.IndexedTable;
+
+/**
+ * Per-thread state of the EC strip, peak and cluster reconstruction.
+ *
+ * The lists returned by the reconstruction steps belong to the context and
+ * are reused for the next event, so a context must be used by one thread
+ * at a time (see ECEngine) and its results copied if they are needed after
+ * the next event.  Configuration (thresholds, cuts, variations) is still
+ * read from ECCommon.
+ */
+
+public class ECContext {
+
+    private final List<ECStrip>     strips = new ArrayList<>();
+    private final List<ECPeak>    allPeaks = new ArrayList<>();
+    private final List<ECPeak>       peaks = new ArrayList<>();
+    private final List<ECCluster> clusters = new ArrayList<>();
+
+    // peaks by sector and view, W peak index and TDC lists, reused across events:
+    private final List<List<ECPeak>> viewPeaks = new ArrayList<>();
+    private final ViewIndex                 wIndex = new ViewIndex();
+    private final IndexedList<List<Integer>> tdcs = new IndexedList<>(3);
+    private final List<List<Integer>>    tdcLists = new ArrayList<>();
+    private int                         nTdcLists = 0;
+
+    private boolean    singleEvent = false;
+    private EngineMonitor  monitor = null;
+
+    public ECContext() {
+        for(int i = 0; i < 18; i++) viewPeaks.add(new ArrayList<>());
+    }
+
+    /**
+     * @param val whether to reset the monitoring histograms for every event
+     */
+    public void setSingleEvent(boolean val) {
+        singleEvent = val;
+    }
+
+    /**
+     * @param monitor monitor with the histograms of ECCommon.initHistos to
+     * fill, or null for no monitoring
+     */
+    public void setMonitor(EngineMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    /**
+     * @return strips of the last event
+     */
+    public List<ECStrip> getStrips() {
+        return strips;
+    }
+
+    /**
+     * @return peaks of the last event
+     */
+    public List<ECPeak> getPeaks() {
+        return peaks;
+    }
+
+    /**
+     * @return clusters of the last event
+     */
+    public List<ECCluster> getClusters() {
+        return clusters;
+    }
+
+    public List<ECStrip>  initEC(DataEvent event, Detector detector, ConstantsManager manager, int run){
+
+        manager.setVariation(ECCommon.variation);
+
+        IndexedTable    atten = manager.getConstants(run, "/calibration/ec/attenuation");
+        IndexedTable     gain = manager.getConstants(run, "/calibration/ec/gain");
+        IndexedTable     time = manager.getConstants(run, "/calibration/ec/timing");
+        IndexedTable      ggs = manager.getConstants(run, "/calibration/ec/global_gain_shift");
+        IndexedTable      gtw = manager.getConstants(run, "/calibration/ec/global_time_walk");
+        IndexedTable       ev = manager.getConstants(run, "/calibration/ec/effective_velocity");
+        IndexedTable      tgo = manager.getConstants(run, "/calibration/ec/tdc_global_offset");
+        IndexedTable   r2gain = manager.getConstants(2,   "/calibration/ec/gain");
+
+        if (singleEvent && monitor != null) monitor.reset();
+
+        List<ECStrip>  ecStrips = this.readStripsHipo(event, run, manager);
+
+        Collections.sort(ecStrips);
+
+        for(ECStrip strip : ecStrips){
+            int sector    = strip.getDescriptor().getSector();
+            int layer     = strip.getDescriptor().getLayer();      //1,2,3=PCAL 4,5,6=ECIN 7,8,9=ECOU
+            int component = strip.getDescriptor().getComponent();
+            int superlayer = (int) ((layer-1)/3);                  //0=PCAL 1=ECIN 2=ECOU
+            int localLayer = (layer-1)%3;                          //0=U 1=V 2=W
+
+            int off = superlayer==0 ? DetectorLayer.PCAL_Z : (superlayer==1 ? DetectorLayer.EC_INNER_Z : DetectorLayer.EC_OUTER_Z);
+
+            Layer detLayer = detector.getSector(sector-1).getSuperlayer(superlayer).getLayer(localLayer+off);
+            ScintillatorPaddle      paddle = (ScintillatorPaddle) detLayer.getComponent(component-1);
+            ScintillatorPaddle firstPaddle = (ScintillatorPaddle) detLayer.getComponent(0);
+            ScintillatorPaddle  lastPaddle = (ScintillatorPaddle) detLayer.getComponent(detLayer.getNumComponents()-1);
+
+            strip.getLine().copy(paddle.getLine());
+
+            double distance = paddle.getLine().origin().distance(firstPaddle.getLine().origin());
+
+            strip.setDistanceEdge(distance);
+            // Modified on May 1st 2019. This is to account for
+            // the fact that the distance from the edge on PCAL
+            // for layers V and W are calculated from the wider
+            // strips edge.
+            if(layer==2||layer==3){
+                distance = paddle.getLine().origin().distance(lastPaddle.getLine().origin());
+                double hL = 394.2*0.5;
+                double hyp = Math.sqrt(hL*hL + 385.2*385.2);
+                double theta = Math.acos(hL/hyp);
+                double proj  = 4.5*Math.cos(theta);
+                strip.setDistanceEdge(distance + proj);
+            }
+            // End of the edit.
+            strip.setAttenuation(atten.getDoubleValue("A", sector,layer,component),
+                                 atten.getDoubleValue("B", sector,layer,component),
+                                 atten.getDoubleValue("C", sector,layer,component));
+            double ccdbGain =   gain.getDoubleValue("gain", sector,layer,component)*ggs.getDoubleValue("gain_shift",sector,layer,0);
+            double run2Gain = r2gain.getDoubleValue("gain", sector,layer,component);
+            strip.setGain(ECCommon.useCCDBGain?ccdbGain:run2Gain);
+            strip.setGlobalTimeWalk(gtw.getDoubleValue("time_walk",sector,layer,0));
+            strip.setVeff(ev.getDoubleValue("veff",sector,layer,component));
+            strip.setTiming(time.getDoubleValue("a0", sector, layer, component),
+                            time.getDoubleValue("a1", sector, layer, component),
+                            time.getDoubleValue("a2", sector, layer, component),
+                            time.getDoubleValue("a3", sector, layer, component),
+                            time.getDoubleValue("a4", sector, layer, component));
+            strip.setGlobalTimingOffset(tgo.getDoubleValue("offset",0,0,0)); //global shift of TDC acceptance window
+        }
+
+        return ecStrips;
+    }
+
+    private List<Integer> nextTdcList() {
+        if (nTdcLists == tdcLists.size()) tdcLists.add(new ArrayList<>());
+        List<Integer> list = tdcLists.get(nTdcLists++);
+        list.clear();
+        return list;
+    }
+
+    public List<ECStrip>  readStripsHipo(DataEvent event, int run, ConstantsManager manager){
+
+        strips.clear();
+        tdcs.clear();
+        nTdcLists = 0;
+
+        IndexedTable    jitter = manager.getConstants(run, "/calibration/ec/time_jitter");
+        IndexedTable        fo = manager.getConstants(run, "/calibration/ec/fadc_offset");
+        IndexedTable       tmf = manager.getConstants(run, "/calibration/ec/tmf_offset");
+        IndexedTable       fgo = manager.getConstants(run, "/calibration/ec/fadc_global_offset");
+        IndexedTable       gtw = manager.getConstants(run, "/calibration/ec/global_time_walk");
+        IndexedTable    tmfcut = manager.getConstants(run,  "/calibration/ec/tmf_window");
+        IndexedTable    status = manager.getConstants(run,  "/calibration/ec/status");
+
+        double PERIOD  = jitter.getDoubleValue("period",0,0,0);
+        int    PHASE   = jitter.getIntValue("phase",0,0,0);
+        int    CYCLES  = jitter.getIntValue("cycles",0,0,0);
+        float FTOFFSET = (float) fgo.getDoubleValue("global_offset",0,0,0); //global shift of trigger time
+        float  TMFCUT  = (float) tmfcut.getDoubleValue("window", 0,0,0); //acceptance window for TDC-FADC times
+
+        int triggerPhase = 0;
+
+        if(CYCLES>0&&event.hasBank("RUN::config")==true){
+            DataBank bank = event.getBank("RUN::config");
+            long timestamp = bank.getLong("timestamp", 0);
+            triggerPhase = (int) (PERIOD*((timestamp+PHASE)%CYCLES));
+        }
+
+        if(event.hasBank("ECAL::tdc")==true){
+            DataBank  bank = event.getBank("ECAL::tdc");
+            for(int i = 0; i < bank.rows(); i++){
+                int  is = bank.getByte("sector",i);
+                int  il = bank.getByte("layer",i);
+                int  ip = bank.getShort("component",i);
+                int tdc = bank.getInt("TDC",i);
+
+                if(status.getIntValue("status",is,il,ip)==2) continue;
+
+                if(tdc>0) {
+                    if(!tdcs.hasItem(is,il,ip)) tdcs.add(this.nextTdcList(),is,il,ip);
+                        tdcs.getItem(is,il,ip).add(tdc);
+                }
+            }
+        }
+
+        if(event.hasBank("ECAL::adc")==true){
+            DataBank bank = event.getBank("ECAL::adc");
+            for(int i = 0; i < bank.rows(); i++){
+                int  is = bank.getByte("sector", i);
+                int  il = bank.getByte("layer", i);
+                int  ip = bank.getShort("component", i);
+                int adc = bank.getInt("ADC", i);
+                float t = bank.getFloat("time", i) + (float) tmf.getDoubleValue("offset",is,il,ip) // FADC-TDC offset (sector, layer, PMT)
+                                                   + (float)  fo.getDoubleValue("offset",is,il,0); // FADC-TDC offset (sector, layer)
+
+                if (status.getIntValue("status",is,il,ip)==3) continue;
+
+                ECStrip  strip = new ECStrip(is, il, ip);
+
+                strip.setADC(adc);
+                strip.setTriggerPhase(triggerPhase);
+                strip.setID(i+1);
+
+                if(strip.getADC()>ECCommon.getScale(is,il)*ECCommon.stripThreshold[ECCommon.ind[il-1]]) strips.add(strip);
+
+                float  tmax = 1000; int tdc = 0;
+
+                if (tdcs.hasItem(is,il,ip)) {
+                    float radc = (float)Math.sqrt(adc);
+                    for (float tdcc : tdcs.getItem(is,il,ip)) {
+                         float tdif = ECCommon.tps*tdcc - (float)gtw.getDoubleValue("time_walk",is,il,0)/radc - triggerPhase - FTOFFSET - t;
+                        if (Math.abs(tdif)<TMFCUT&&tdif<tmax) {tmax = tdif; tdc = (int)tdcc;}
+                    }
+                    strip.setTDC(tdc);
+                }
+            }
+        }
+
+        return strips;
+    }
+
+    public List<ECPeak>  createPeaks(List<ECStrip> stripList){
+
+        List<ECPeak>  peakList = allPeaks;
+        peakList.clear();
+
+        if(stripList.size()>1){ //Require minimum of 2 strips/event to reject uncorrelated hot channels
+            ECPeak  firstPeak = new ECPeak(stripList.get(0)); //Seed the first peak with the first strip
+            peakList.add(firstPeak);
+            for(int loop = 1; loop < stripList.size(); loop++){ //Loop over all strips
+                boolean stripAdded = false;
+                for(ECPeak  peak : peakList) {
+                    if(peak.addStrip(stripList.get(loop))){ //Add adjacent strip to newly seeded peak
+                        stripAdded = true;
+                    }
+                }
+                if(!stripAdded){
+                    ECPeak  newPeak = new ECPeak(stripList.get(loop)); //Non-adjacent strip seeds new peak
+                    peakList.add(newPeak);
+                }
+            }
+        }
+        for(int loop = 0; loop < peakList.size(); loop++){
+            peakList.get(loop).setPeakId(loop+1);
+        }
+        return peakList;
+    }
+
+    public List<ECPeak>  processPeaks(List<ECPeak> peakList){
+
+        peaks.clear();
+
+        for(ECPeak p : peakList){
+            int adc = p.getADC();
+            int lay = p.getDescriptor().getLayer();
+            int sec = p.getDescriptor().getSector();
+            if(adc>ECCommon.getScale(sec,lay)*ECCommon.peakThreshold[ECCommon.ind[lay-1]]) peaks.add(p); //adc threshold (uncorrected energy MeV*10)
+        }
+
+        ECPeakAnalysis.splitPeaks(peaks);       //Split peak if strip members have an adc valley
+        for(ECPeak p : peaks) p.redoPeakLine(); //Find new peak lines after splitPeaks
+
+        return peaks;
+    }
+
+    /**
+     * Create the PCAL, ECinner and ECouter clusters
+     * @param peaks peaks of the event
+     * @return clusters
+     */
+    public List<ECCluster>  createClusters(List<ECPeak>  peaks){
+        clusters.clear();
+        this.createClusters(peaks, 1, clusters); //PCAL
+        this.createClusters(peaks, 4, clusters); //ECinner
+        this.createClusters(peaks, 7, clusters); //ECouter
+        return clusters;
+    }
+
+    /**
+     * Create the clusters of one detector
+     *
+     * Only the W peaks that can be close enough to the U-V intersection are
+     * tried, unless the histograms of all U-V-W combinations are filled.
+     *
+     * @param peaks peaks of the event
+     * @param startLayer first layer of the detector
+     * @param clusters list to append the clusters to
+     * @return number of clusters appended
+     */
+    public int  createClusters(List<ECPeak>  peaks, int startLayer, List<ECCluster> clusters){
+
+        int first = clusters.size();
+
+        for(int p = 0; p < peaks.size(); p++){
+            peaks.get(p).setOrder(p+1);
+        }
+
+        for(List<ECPeak> list : viewPeaks) list.clear();
+        for(ECPeak peak : peaks){
+            int sector = peak.getDescriptor().getSector();
+            int view   = peak.getDescriptor().getLayer()-startLayer;
+            if(sector<1 || sector>6 || view<0 || view>2) continue;
+            viewPeaks.get(3*(sector-1)+view).add(peak);
+        }
+
+        float cut = ECCommon.clusterError[ECCommon.ind[startLayer-1]];
+
+        for(int sector = 1; sector <= 6; sector++){
+
+            List<ECPeak>  pU = viewPeaks.get(3*(sector-1));
+            List<ECPeak>  pV = viewPeaks.get(3*(sector-1)+1);
+            List<ECPeak>  pW = viewPeaks.get(3*(sector-1)+2);
+
+           int nclus=0; float maxerr=0;
+           if(pU.size()>0&&pV.size()>0&&pW.size()>0){  //U,V,W peaks required for cluster
+                for(ECPeak p : pU) p.redoPeakLine();
+                for(ECPeak p : pV) p.redoPeakLine();
+                for(ECPeak p : pW) p.redoPeakLine();
+                boolean prune = monitor == null && wIndex.build(pW);
+                for(int bU = 0; bU < pU.size();bU++){
+                    for(int bV = 0; bV < pV.size();bV++){
+                        int nW = prune ? wIndex.find(pU.get(bU), pV.get(bV), cut) : wIndex.all(pW.size());
+                        for(int iW = 0; iW < nW; iW++){
+                            int bW = wIndex.found[iW];
+                            ECCluster cluster = new ECCluster(pU.get(bU),pV.get(bV),pW.get(bW));
+                            float err = (float) cluster.getHitPositionError();
+                            if(monitor != null) monitor.fill(ECCommon.histoId(sector,ECCommon.ind[startLayer-1]+1,0),err);
+                            if(err<cut) {
+                            	if(err>maxerr) maxerr=err;
+                                if(monitor != null) monitor.fill(ECCommon.histoId(sector,ECCommon.ind[startLayer-1]+1,1),err);
+                                if(ECCommon.isGoodCluster(cluster)) {clusters.add(cluster);nclus++;}
+                            }
+                        }
+                    }
+                }
+            }
+            if(monitor != null) monitor.fill(ECCommon.histoId(sector,ECCommon.ind[startLayer-1]+1,2),nclus,maxerr);
+        }
+
+        for(int i = first ; i < clusters.size(); i++){
+            clusters.get(i).setEnergy(
+            clusters.get(i).getEnergy(0) +
+            clusters.get(i).getEnergy(1) +
+            clusters.get(i).getEnergy(2));
+        }
+
+        return clusters.size()-first;
+    }
+
+    /**
+     * W peaks of one sector sorted by their coordinate across the strips.
+     *
+     * The strips of a view are parallel, so the distance of a point P to
+     * the line of W peak i is at least |P.n - O_i.n|, with n perpendicular
+     * to the strips and O_i the peak line origin, minus a margin covering
+     * the deviations of the peak directions from the first one.  Peaks
+     * further than the cluster cut plus this margin cannot make a cluster.
+     */
+    private static class ViewIndex {
+
+        private static final double TOLERANCE = 1e-3; // cm, covers rounding and the float cast of the error
+
+        int[]    found  = new int[16];
+        private double[] coord  = new double[16];
+        private int[]    sorted = new int[16];
+        private int      size   = 0;
+
+        private double ox, oy, oz;   // first peak line origin
+        private double nx, ny, nz;   // unit vector perpendicular to the strips
+        private double delta;        // largest deviation of the unit directions
+        private double radius;       // largest distance of the origins from the first one
+
+        private void ensure(int n) {
+            if(found.length<n) {
+                found  = new int[2*n];
+                coord  = new double[2*n];
+                sorted = new int[2*n];
+            }
+        }
+
+        int all(int n) {
+            ensure(n);
+            for(int i = 0; i < n; i++) found[i] = i;
+            return n;
+        }
+
+        /**
+         * @param peaks W peaks of one sector
+         * @return false if the peak lines are degenerate and can't be indexed
+         */
+        boolean build(List<ECPeak> peaks) {
+            size = peaks.size();
+            ensure(size);
+            Line3D line0 = peaks.get(0).getLine();
+            ox = line0.origin().x();
+            oy = line0.origin().y();
+            oz = line0.origin().z();
+            double dx = line0.end().x()-ox;
+            double dy = line0.end().y()-oy;
+            double dz = line0.end().z()-oz;
+            double len = Math.sqrt(dx*dx+dy*dy+dz*dz);
+            if(!(len>0) || Double.isInfinite(len)) return false;
+            dx /= len; dy /= len; dz /= len;
+
+            // perpendicular direction, preferably towards the farthest peak:
+            delta  = 0;
+            radius = 0;
+            double ex = 0, ey = 0, ez = 0;
+            for(int i = 1; i < size; i++) {
+                Line3D line = peaks.get(i).getLine();
+                double lx = line.end().x()-line.origin().x();
+                double ly = line.end().y()-line.origin().y();
+                double lz = line.end().z()-line.origin().z();
+                double l  = Math.sqrt(lx*lx+ly*ly+lz*lz);
+                if(!(l>0) || Double.isInfinite(l)) return false;
+                double ddx = lx/l-dx, ddy = ly/l-dy, ddz = lz/l-dz;
+                delta = Math.max(delta, Math.sqrt(ddx*ddx+ddy*ddy+ddz*ddz));
+                double rx = line.origin().x()-ox;
+                double ry = line.origin().y()-oy;
+                double rz = line.origin().z()-oz;
+                double r  = Math.sqrt(rx*rx+ry*ry+rz*rz);
+                if(!(r<=radius)) {
+                    if(Double.isNaN(r) || Double.isInfinite(r)) return false;
+                    radius = r;
+                    ex = rx; ey = ry; ez = rz;
+                }
+            }
+            double proj = ex*dx+ey*dy+ez*dz;
+            nx = ex-proj*dx; ny = ey-proj*dy; nz = ez-proj*dz;
+            double nlen = Math.sqrt(nx*nx+ny*ny+nz*nz);
+            if(!(nlen>1e-6*radius) || nlen==0) {
+                // any perpendicular keeps the bound valid
+                if(Math.abs(dx)<0.9) { nx = 0;   ny = dz;  nz = -dy; }
+                else                 { nx = -dz; ny = 0;   nz = dx;  }
+                nlen = Math.sqrt(nx*nx+ny*ny+nz*nz);
+            }
+            nx /= nlen; ny /= nlen; nz /= nlen;
+
+            for(int i = 0; i < size; i++) {
+                Line3D line = peaks.get(i).getLine();
+                coord[i]  = line.origin().x()*nx+line.origin().y()*ny+line.origin().z()*nz;
+                sorted[i] = i;
+            }
+            for(int i = 1; i < size; i++) {
+                int k = sorted[i];
+                int j = i;
+                while(j>0 && coord[sorted[j-1]]>coord[k]) { sorted[j] = sorted[j-1]; j--; }
+                sorted[j] = k;
+            }
+            return true;
+        }
+
+        /**
+         * @return number of W peaks in found, in their original order, that
+         * can be within the cut from the U-V intersection
+         */
+        int find(ECPeak u, ECPeak v, double cut) {
+            Point3D p = u.getLine().distance(v.getLine()).midpoint();
+            double pn = p.x()*nx+p.y()*ny+p.z()*nz;
+            // an undefined intersection gives an undefined error for all W peaks
+            if(Double.isNaN(pn) || Double.isInfinite(pn)) return 0;
+            double px = p.x()-ox, py = p.y()-oy, pz = p.z()-oz;
+            double window = cut + delta*(Math.sqrt(px*px+py*py+pz*pz)+radius) + TOLERANCE;
+            int lo = 0, hi = size;
+            while(lo<hi) {
+                int mid = (lo+hi)>>>1;
+                if(coord[sorted[mid]]<pn-window) lo = mid+1;
+                else                              hi = mid;
+            }
+            int n = 0;
+            for(int i = lo; i < size && coord[sorted[i]]<=pn+window; i++) found[n++] = sorted[i];
+            Arrays.sort(found, 0, n);
+            return n;
+        }
+    }
+
+    public void shareClustersEnergy(List<ECCluster> clusters){
+        ECCommon.shareClustersEnergy(clusters);
+    }
+}
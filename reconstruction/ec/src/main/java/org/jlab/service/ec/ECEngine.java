@@ -1,12 +1,12 @@
 package org.jlab.service.ec;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.jlab.clas.reco.EngineMonitor;
 import org.jlab.clas.reco.ReconstructionEngine;
 import org.jlab.detector.base.DetectorCollection;
 import org.jlab.detector.base.DetectorType;
@@ -32,6 +32,14 @@ public class ECEngine extends ReconstructionEngine {
     public Boolean              isMC = false;
     int                       calrun = 2;
     
+    // strip/peak/cluster state, one per event thread:
+    private final ThreadLocal<ECContext> context = ThreadLocal.withInitial(ECContext::new);
+    
+    // cluster error histograms, filled by all event threads:
+    private final EngineMonitor monitor = new EngineMonitor("EC");
+    private boolean         useMonitor = false;
+    private String         monitorFile = null;
+    
     public ECEngine(){
         super("EC","gavalian","1.0");
     }
@@ -39,9 +47,9 @@ public class ECEngine extends ReconstructionEngine {
     @Override
     public boolean processDataEvent(DataEvent de) {
            
-        ECCommon.setDebug(debug);
-        ECCommon.setisSingleThreaded(isSingleThreaded);
-        ECCommon.setSingleEvent(singleEvent);
+        ECContext ctx = context.get();
+        ctx.setMonitor(useMonitor ? monitor : null);
+        ctx.setSingleEvent(singleEvent);
 
         int runNo = 10;
         
@@ -54,15 +62,11 @@ public class ECEngine extends ReconstructionEngine {
             }
         }
                 
-        List<ECStrip>     ecStrips = ECCommon.initEC(de,  ecDetector, this.getConstantsManager(), runNo); // thresholds, ADC/TDC match        
-        List<ECPeak>      ecPeaks  = ECCommon.processPeaks(ECCommon.createPeaks(ecStrips)); // thresholds, split peaks -> update peak-lines          
-        List<ECCluster> ecClusters = new ArrayList<ECCluster>();
+        List<ECStrip>     ecStrips = ctx.initEC(de,  ecDetector, this.getConstantsManager(), runNo); // thresholds, ADC/TDC match        
+        List<ECPeak>      ecPeaks  = ctx.processPeaks(ctx.createPeaks(ecStrips)); // thresholds, split peaks -> update peak-lines          
+        List<ECCluster> ecClusters = ctx.createClusters(ecPeaks); //PCAL, ECinner, ECouter
         
-        ecClusters.addAll(ECCommon.createClusters(ecPeaks,1)); //PCAL
-        ecClusters.addAll(ECCommon.createClusters(ecPeaks,4)); //ECinner 
-        ecClusters.addAll(ECCommon.createClusters(ecPeaks,7)); //ECouter
-        
-        ECCommon.shareClustersEnergy(ecClusters);  // Repair 2 clusters which share the same peaks
+        ctx.shareClustersEnergy(ecClusters);  // Repair 2 clusters which share the same peaks
        
         for (int iCl = 0; iCl < ecClusters.size(); iCl++) {
             // As clusters are already defined at this point, we can fill the clusterID of ECStrips belonging to the given cluster
@@ -99,26 +103,28 @@ public class ECEngine extends ReconstructionEngine {
 	    
         this.writeHipoBanks(de,ecStrips,ecPeaks,ecClusters);  
         
-        if (isSingleThreaded) {
-        	ECCommon.clearMyStructures();
-        	getStrips().addAll(ecStrips);
-        	getPeaks().addAll(ecPeaks);
-        	getClusters().addAll(ecClusters);
-        }
-        
         return true;
     }
     
+    /**
+     * @return strips of the last event processed by the calling thread
+     */
     public List<ECStrip> getStrips() {
-	    return ECCommon.getMyStrips();    		
+	    return context.get().getStrips();    		
     }
     
+    /**
+     * @return peaks of the last event processed by the calling thread
+     */
     public List<ECPeak> getPeaks() {
-	    return ECCommon.getMyPeaks();    
+	    return context.get().getPeaks();    
     }
     
+    /**
+     * @return clusters of the last event processed by the calling thread
+     */
     public List<ECCluster> getClusters() {
-	    return ECCommon.getMyClusters();    
+	    return context.get().getClusters();    
     }    
         
     private void writeHipoBanks(DataEvent de, 
@@ -289,12 +295,37 @@ public class ECEngine extends ReconstructionEngine {
         ECCommon.clusterThreshold[2] = thr2;    	
     }
     
+    /**
+     * @return cluster error histograms, summed over all event threads
+     */
     public DetectorCollection<H1F>  getHist() {
-        return ECCommon.H1_ecEng;
+        DetectorCollection<H1F> h1 = new DetectorCollection<>();
+        if (!useMonitor) return h1;
+        for (int is=1; is<7; is++){
+            for (int il=1; il<4; il++) {
+                h1.add(is,il,0, monitor.getH1F(ECCommon.histoId(is,il,0)));
+                h1.add(is,il,1, monitor.getH1F(ECCommon.histoId(is,il,1)));
+            }
+        }
+        return h1;
     }
     
+    /**
+     * @return cluster error vs. number of clusters, summed over all event threads
+     */
     public DetectorCollection<H2F>  getHist2() {
-        return ECCommon.H2_ecEng;
+        DetectorCollection<H2F> h2 = new DetectorCollection<>();
+        if (!useMonitor) return h2;
+        for (int is=1; is<7; is++){
+            for (int il=1; il<4; il++) {
+                h2.add(is,il,1, monitor.getH2F(ECCommon.histoId(is,il,2)));
+            }
+        }
+        return h2;
+    }
+    
+    public EngineMonitor getMonitor() {
+        return monitor;
     }
     
     @Override
@@ -336,8 +367,19 @@ public class ECEngine extends ReconstructionEngine {
         this.registerOutputBank("ECAL::calib");
         this.registerOutputBank("ECAL::moments");
 
-        if (isSingleThreaded) ECCommon.initHistos();
+        // histograms are filled standalone, or with "monitoring" set in the engine configuration:
+        useMonitor = isSingleThreaded || Boolean.parseBoolean(this.getEngineConfigString("monitoring"));
+        monitorFile = this.getEngineConfigString("monitorFile");
+        if (useMonitor && monitor.getSize()==0) ECCommon.initHistos(monitor);
         return true;
     }
     
+    @Override
+    public void destroy() {
+        if (useMonitor && monitorFile != null) {
+            LOGGER.log(Level.INFO,"ECEngine:  writing monitoring histograms to "+monitorFile);
+            monitor.writeFile(monitorFile);
+        }
+    }
+    
 }
@@ -1,11 +1,24 @@
 package org.jlab.service.ec;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import org.jlab.io.base.DataBank;
 import org.jlab.io.base.DataEvent;
+import org.jlab.io.hipo.HipoDataEvent;
 
 import org.jlab.analysis.physics.TestEvent;
+import org.jlab.jnp.hipo4.data.Bank;
+import org.jlab.jnp.hipo4.data.Event;
 import org.jlab.jnp.hipo4.data.SchemaFactory;
 import org.jlab.logging.DefaultLogger;
 import org.jlab.utils.system.ClasUtilsFile;
@@ -41,4 +54,121 @@ public class ECReconstructionTest {
     assertEquals(testEvent.getBank("ECAL::clusters").rows(), 3);    
   }
 
+  /**
+   * A variation of the photon event: the hits are moved to one or two
+   * sectors, about one in six is dropped and the ADCs are rescaled.
+   */
+  private static DataEvent createEvent(SchemaFactory schemaFactory, int seed) {
+    Random rand = new Random(seed);
+    Event photon = TestEvent.getECSector1PhotonEvent(schemaFactory).getHipoEvent();
+    Bank config = new Bank(schemaFactory.getSchema("RUN::config"));
+    Bank adc    = new Bank(schemaFactory.getSchema("ECAL::adc"));
+    Bank tdc    = new Bank(schemaFactory.getSchema("ECAL::tdc"));
+    photon.read(config);
+    photon.read(adc);
+    photon.read(tdc);
+
+    int sector1 = 1 + rand.nextInt(6);
+    int sector2 = rand.nextBoolean() ? 1 + (sector1 + rand.nextInt(5)) % 6 : 0;
+    double scale = 0.5 + rand.nextDouble();
+    List<Integer> rows = new ArrayList<>();
+    for (int row = 0; row < adc.getRows(); row++) {
+      if (rand.nextInt(6) > 0) rows.add(row);
+    }
+    int[] sectors = sector2 > 0 ? new int[]{sector1, sector2} : new int[]{sector1};
+
+    Bank newAdc = new Bank(adc.getSchema(), rows.size() * sectors.length);
+    Bank newTdc = new Bank(tdc.getSchema(), rows.size() * sectors.length);
+    int hit = 0;
+    for (int sector : sectors) {
+      for (int row : rows) {
+        newAdc.putByte("sector", hit, (byte) sector);
+        newAdc.putByte("layer", hit, adc.getByte("layer", row));
+        newAdc.putShort("component", hit, adc.getShort("component", row));
+        newAdc.putByte("order", hit, adc.getByte("order", row));
+        newAdc.putInt("ADC", hit, (int) (scale * adc.getInt("ADC", row)));
+        newAdc.putFloat("time", hit, adc.getFloat("time", row));
+        newAdc.putShort("ped", hit, adc.getShort("ped", row));
+        newTdc.putByte("sector", hit, (byte) sector);
+        newTdc.putByte("layer", hit, tdc.getByte("layer", row));
+        newTdc.putShort("component", hit, tdc.getShort("component", row));
+        newTdc.putByte("order", hit, tdc.getByte("order", row));
+        newTdc.putInt("TDC", hit, tdc.getInt("TDC", row));
+        hit++;
+      }
+    }
+    Event event = new Event();
+    event.write(config);
+    event.write(newAdc);
+    event.write(newTdc);
+    return new HipoDataEvent(event, schemaFactory);
+  }
+
+  private static String getClusters(DataEvent event) {
+    StringBuilder clusters = new StringBuilder();
+    if (!event.hasBank("ECAL::clusters")) return "";
+    DataBank bank = event.getBank("ECAL::clusters");
+    for (int row = 0; row < bank.rows(); row++) {
+      clusters.append(bank.getByte("sector", row)).append(' ')
+              .append(bank.getByte("layer", row)).append(' ')
+              .append(bank.getShort("status", row)).append(' ')
+              .append(bank.getByte("idU", row)).append(' ')
+              .append(bank.getByte("idV", row)).append(' ')
+              .append(bank.getByte("idW", row)).append(' ')
+              .append(bank.getFloat("energy", row)).append(' ')
+              .append(bank.getFloat("time", row)).append(' ')
+              .append(bank.getFloat("x", row)).append(' ')
+              .append(bank.getFloat("y", row)).append(' ')
+              .append(bank.getFloat("z", row)).append('\n');
+    }
+    return clusters.toString();
+  }
+
+  @Test
+  public void testECReconstructionThreads() throws Exception {
+    DefaultLogger.debug();
+
+    System.setProperty("CLAS12DIR", "../../");
+
+    String dir = ClasUtilsFile.getResourceDir("CLAS12DIR", "etc/bankdefs/hipo4");
+    SchemaFactory schemaFactory = new SchemaFactory();
+    schemaFactory.initFromDirectory(dir);
+
+    ECEngine engineEC = new ECEngine();
+    engineEC.init();
+
+    // single-threaded reference for events with different hit patterns:
+    final int nevents = 24;
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < nevents; i++) {
+      DataEvent event = createEvent(schemaFactory, i);
+      engineEC.processDataEvent(event);
+      expected.add(getClusters(event));
+    }
+    assertTrue(new HashSet<>(expected).size() > nevents / 2);
+
+    // the same engine processing the events, shuffled, from several threads:
+    List<Integer> order = new ArrayList<>();
+    for (int repeat = 0; repeat < 8; repeat++) {
+      for (int i = 0; i < nevents; i++) order.add(i);
+    }
+    Collections.shuffle(order, new Random(40));
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<String>> futures = new ArrayList<>();
+    for (int i : order) {
+      futures.add(executor.submit(() -> {
+        DataEvent event = createEvent(schemaFactory, i);
+        engineEC.processDataEvent(event);
+        return getClusters(event);
+      }));
+    }
+    try {
+      for (int k = 0; k < order.size(); k++) {
+        assertEquals("event " + order.get(k), expected.get(order.get(k)), futures.get(k).get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
 }
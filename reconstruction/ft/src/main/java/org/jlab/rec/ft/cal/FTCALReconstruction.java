@@ -1,6 +1,7 @@
 package org.jlab.rec.ft.cal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import org.jlab.detector.calib.utils.ConstantsManager;
@@ -17,6 +18,32 @@ public class FTCALReconstruction {
 	
     public int debugMode = 0;
 
+    // number of crystals along x and y
+    private static final int NCRYSTALS = 22;
+
+    /**
+     * Already clustered hits, chained per crystal, reused from event to event
+     */
+    private static class CrystalGrid {
+        // crystals with a border of empty cells, so that neighbours need no bound check
+        static final int SIZE = NCRYSTALS+2;
+        static final int[] NEIGHBOURS = {-SIZE-1, -SIZE, -SIZE+1, -1, 1, SIZE-1, SIZE, SIZE+1};
+
+        // first hit per cell and next hit in the same cell, -1 at the end
+        final int[] first = new int[SIZE*SIZE];
+        int[] next = new int[64];
+
+        CrystalGrid() {
+            Arrays.fill(first, -1);
+        }
+
+        static int cell(FTCALHit hit) {
+            return hit.get_IDY()*SIZE + hit.get_IDX();
+        }
+    }
+
+    private final ThreadLocal<CrystalGrid> crystalGrid = ThreadLocal.withInitial(CrystalGrid::new);
+
     public FTCALReconstruction() {
     }
 	
@@ -75,11 +102,69 @@ public class FTCALReconstruction {
 			
     public List<FTCALCluster> findClusters(List<FTCALHit> hits, ConstantsManager manager, int run) {
 
-        List<FTCALCluster> clusters = new ArrayList();
-        
         IndexedTable   thresholds   = manager.getConstants(run, "/calibration/ft/ftcal/thresholds");
         IndexedTable   clusterTable = manager.getConstants(run, "/calibration/ft/ftcal/cluster");
         
+        for(int ihit=0; ihit<hits.size(); ihit++) {
+            FTCALHit hit = hits.get(ihit);
+            if(hit.get_IDX()<1 || hit.get_IDX()>NCRYSTALS || hit.get_IDY()<1 || hit.get_IDY()>NCRYSTALS) {
+                return this.findClustersByCluster(hits, thresholds, clusterTable);
+            }
+        }
+        
+        List<FTCALCluster> clusters = new ArrayList();
+        double timeWindow = clusterTable.getDoubleValue("time_window", 1,1,0);
+        CrystalGrid grid = crystalGrid.get();
+        if(grid.next.length<hits.size()) grid.next = new int[hits.size()];
+        
+        if(debugMode>=1) System.out.println("\nBuilding clusters");
+        try {
+            for(int ihit=0; ihit<hits.size(); ihit++) {
+                FTCALHit hit = hits.get(ihit);
+                if(hit.get_ClusID()!=0) continue;
+                int cell = CrystalGrid.cell(hit);
+                // the first cluster with a hit in a neighbouring crystal is the one with the lowest ID
+                if(hit.get_Edep()>thresholds.getDoubleValue("thresholdCluster",1,1,hit.get_COMPONENT())) {
+                    int clusID = 0;
+                    for(int neighbour : CrystalGrid.NEIGHBOURS) {
+                        for(int jhit=grid.first[cell+neighbour]; jhit>=0; jhit=grid.next[jhit]) {
+                            FTCALHit other = hits.get(jhit);
+                            if(Math.abs(hit.get_Time() - other.get_Time()) <= timeWindow &&
+                               (clusID==0 || other.get_ClusID()<clusID)) clusID = other.get_ClusID();
+                        }
+                    }
+                    if(clusID>0) {
+                        FTCALCluster cluster = clusters.get(clusID-1);
+                        hit.set_ClusID(cluster.getID());     // attaching hit to previous cluster 
+                        cluster.add(hit);
+                        if(debugMode>=1) System.out.println("Attaching hit " + ihit + " to cluster " + cluster.getID());
+                    }
+                }
+                if(hit.get_ClusID()==0)  {                       // new cluster found
+                    FTCALCluster cluster = new FTCALCluster(clusters.size()+1);
+                    hit.set_ClusID(cluster.getID());
+                    cluster.add(hit);
+                    clusters.add(cluster);
+                    if(debugMode>=1) System.out.println("Creating new cluster with ID " + cluster.getID());
+                }
+                grid.next[ihit]  = grid.first[cell];
+                grid.first[cell] = ihit;
+            }
+        }
+        finally {
+            for(int ihit=0; ihit<hits.size(); ihit++) grid.first[CrystalGrid.cell(hits.get(ihit))] = -1;
+        }
+        return clusters;
+    }
+
+    /**
+     * Cluster search comparing each hit to all hits of the existing clusters,
+     * used for hits outside of the crystal grid
+     */
+    List<FTCALCluster> findClustersByCluster(List<FTCALHit> hits, IndexedTable thresholds, IndexedTable clusterTable) {
+
+        List<FTCALCluster> clusters = new ArrayList();
+        
         if(debugMode>=1) System.out.println("\nBuilding clusters");
         for(int ihit=0; ihit<hits.size(); ihit++) {
             FTCALHit hit = hits.get(ihit);
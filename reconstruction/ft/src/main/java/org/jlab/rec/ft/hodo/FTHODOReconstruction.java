@@ -1,6 +1,7 @@
 package org.jlab.rec.ft.hodo;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import org.jlab.detector.calib.utils.ConstantsManager;
@@ -17,6 +18,36 @@ public class FTHODOReconstruction {
 
     public int debugMode = 0;
 
+    // Per-thread buffers of the cluster search, reused from event to event
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    /**
+     * Cell hash table and cluster memberships of the clustered hits.
+     */
+    private static class Buffers {
+
+        long[] cells = new long[0];
+        int[]  first = new int[0];
+        int[]  next   = new int[0];
+        int[]  hitOf  = new int[0];
+        int[]  clusOf = new int[0];
+        int[]  matches = new int[8];
+
+        void ensureCapacity(int capacity, int entries) {
+            if(cells.length<capacity) {
+                cells = new long[capacity];
+                first = new int[capacity];
+            }
+            if(next.length<entries) this.growEntries(entries);
+        }
+
+        void growEntries(int entries) {
+            next   = Arrays.copyOf(next,   entries);
+            hitOf  = Arrays.copyOf(hitOf,  entries);
+            clusOf = Arrays.copyOf(clusOf, entries);
+        }
+    }
+
     public FTHODOReconstruction() {
     }
 	
@@ -72,6 +103,99 @@ public class FTHODOReconstruction {
 
     public List<FTHODOCluster> findClusters(List<FTHODOHit> hits) {
 
+        double distance = FTHODOConstantsLoader.hit_distance;
+        if(!(distance>0) || Double.isInfinite(distance)) return this.findClustersByCluster(hits);
+        
+        // cells larger than the hit distance, so that hits within the distance are in adjacent cells
+        double cellSize = distance*1.01;
+        
+        List<FTHODOCluster> clusters = new ArrayList();
+        // cluster memberships of the clustered hits, chained per cell, with
+        // the cells in an open addressing hash table of the first capacity slots
+        int     capacity = Integer.highestOneBit(Math.max(hits.size(),1)*4);
+        Buffers buffers  = BUFFERS.get();
+        buffers.ensureCapacity(capacity, 2*hits.size());
+        long[]  cells = buffers.cells;
+        int[]   first = buffers.first;
+        Arrays.fill(first, 0, capacity, -1);
+        int   nentries = 0;
+        int[] matches = buffers.matches;
+        
+        if(debugMode>=1) System.out.println("\nBuilding clusters");
+        for(int ihit=0; ihit<hits.size(); ihit++) {
+            FTHODOHit hit = hits.get(ihit);
+            if(hit.get_ClusterIndex()!=0) continue;
+            int ix = (int) Math.floor(hit.get_Dx()/cellSize);
+            int iy = (int) Math.floor(hit.get_Dy()/cellSize);
+            // a hit is attached to all clusters it matches, in cluster order
+            int nmatches = 0;
+            for(int jx=ix-1; jx<=ix+1; jx++) {
+                for(int jy=iy-1; jy<=iy+1; jy++) {
+                    int slot = findCell(cells, first, capacity-1, cellKey(jx, jy));
+                    for(int j=first[slot]; j>=0; j=buffers.next[j]) {
+                        FTHODOHit other = hits.get(buffers.hitOf[j]);
+                        double tDiff = Math.abs(hit.get_Time() - other.get_Time());
+                        double xDiff = Math.abs(hit.get_Dx()   - other.get_Dx());
+                        double yDiff = Math.abs(hit.get_Dy()   - other.get_Dy());
+                        if(tDiff <= FTHODOConstantsLoader.time_window && 
+                           xDiff <= distance && 
+                           yDiff <= distance) {
+                            if(nmatches==matches.length) matches = buffers.matches = Arrays.copyOf(matches, 2*nmatches);
+                            matches[nmatches++] = buffers.clusOf[j];
+                        }
+                    }
+                }
+            }
+            Arrays.sort(matches, 0, nmatches);
+            for(int i=0; i<nmatches; i++) {
+                if(i>0 && matches[i]==matches[i-1]) continue;
+                FTHODOCluster cluster = clusters.get(matches[i]-1);
+                hit.set_ClusterIndex(cluster.getID());     // attaching hit to previous cluster 
+                cluster.add(hit);
+                if(debugMode>=1) System.out.println("Attaching hit " + ihit + " to cluster " + cluster.getID());
+            }
+            if(hit.get_ClusterIndex()==0)  {                       // new cluster found
+                FTHODOCluster cluster = new FTHODOCluster(clusters.size()+1);
+                hit.set_ClusterIndex(cluster.getID());
+                cluster.add(hit);
+                clusters.add(cluster);
+                if(debugMode>=1) System.out.println("Creating new cluster with ID " + cluster.getID());
+                matches[nmatches++] = cluster.getID();
+            }
+            long key = cellKey(ix, iy);
+            int slot = findCell(cells, first, capacity-1, key);
+            cells[slot] = key;
+            for(int i=0; i<nmatches; i++) {
+                if(i>0 && matches[i]==matches[i-1]) continue;
+                if(nentries==buffers.next.length) buffers.growEntries(2*nentries);
+                buffers.next[nentries]   = first[slot];
+                buffers.hitOf[nentries]  = ihit;
+                buffers.clusOf[nentries] = matches[i];
+                first[slot]      = nentries++;
+            }
+        }
+        return clusters;
+    }
+
+    private static long cellKey(int ix, int iy) {
+        return ((long) ix << 32) | (iy & 0xffffffffL);
+    }
+
+    /**
+     * @return slot of the cell in the hash table, or the empty slot where it would go
+     */
+    private static int findCell(long[] cells, int[] first, int mask, long key) {
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while(first[slot]>=0 && cells[slot]!=key) slot = (slot+1) & mask;
+        return slot;
+    }
+
+    /**
+     * Cluster search comparing each hit to all hits of the existing clusters,
+     * used when the hit distance can't define a grid
+     */
+    List<FTHODOCluster> findClustersByCluster(List<FTHODOHit> hits) {
+
         List<FTHODOCluster> clusters = new ArrayList();
         
         if(debugMode>=1) System.out.println("\nBuilding clusters");
@@ -0,0 +1,109 @@
+package org.jlab.rec.ft.cal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.jlab.detector.calib.utils.ConstantsManager;
+import org.jlab.utils.groups.IndexedTable;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the cluster search through neighbouring crystals against the search
+ * comparing each hit to all hits of the existing clusters, on random hits.
+ */
+public class FTCALReconstructionTest {
+
+    private static final double THRESHOLD   = 10;
+    private static final double TIME_WINDOW = 2;
+
+    private static class TableManager extends ConstantsManager {
+        @Override
+        public IndexedTable getConstants(int run, String table) {
+            return new IndexedTable(3) {
+                @Override
+                public double getDoubleValue(String item, int... index) {
+                    if (item.equals("thresholdCluster")) return THRESHOLD;
+                    if (item.equals("time_window")) return TIME_WINDOW;
+                    return 1;
+                }
+            };
+        }
+    }
+
+    private static int randomIndex(Random random) {
+        // half of the hits in the edge crystals, to check the grid border:
+        if (random.nextBoolean()) {
+            int[] edges = {1, 2, 21, 22};
+            return edges[random.nextInt(edges.length)];
+        }
+        return 1 + random.nextInt(22);
+    }
+
+    /**
+     * @return sorted hits, whose times are integers so that time differences
+     * equal to the window are frequent
+     */
+    private static List<FTCALHit> createHits(long seed, int nhits, IndexedTable table) {
+        Random random = new Random(seed);
+        List<FTCALHit> hits = new ArrayList<>();
+        for (int i = 0; i < nhits; i++) {
+            int idx = randomIndex(random);
+            int idy = randomIndex(random);
+            FTCALHit hit = new FTCALHit(i, (idy-1)*22 + idx-1, 1, 0f, table, table, table, table);
+            hit.set_Edep(random.nextInt(4) == 0 ? THRESHOLD/2 : THRESHOLD*(1 + random.nextDouble()));
+            hit.set_Time(random.nextInt(7));
+            hits.add(hit);
+        }
+        Collections.sort(hits);
+        return hits;
+    }
+
+    private static void assertSameClusters(List<FTCALCluster> expected, List<FTCALCluster> clusters) {
+        assertEquals(expected.size(), clusters.size());
+        for (int i = 0; i < expected.size(); i++) {
+            FTCALCluster a = expected.get(i);
+            FTCALCluster b = clusters.get(i);
+            assertEquals(a.getID(), b.getID());
+            assertEquals(a.getSize(), b.getSize());
+            for (int j = 0; j < a.size(); j++) {
+                assertEquals(a.get(j).get_DGTZIndex(), b.get(j).get_DGTZIndex());
+                assertEquals(a.get(j).get_ClusID(), b.get(j).get_ClusID());
+            }
+        }
+    }
+
+    @Test
+    public void testFindClusters() {
+        ConstantsManager manager = new TableManager();
+        IndexedTable table = manager.getConstants(11, "/calibration/ft/ftcal/cluster");
+        IndexedTable thresholds = manager.getConstants(11, "/calibration/ft/ftcal/thresholds");
+        FTCALReconstruction reco = new FTCALReconstruction();
+        for (long seed = 0; seed < 1000; seed++) {
+            int nhits = 1 + (int) (seed % 80);
+            List<FTCALHit> hits = createHits(seed, nhits, table);
+            List<FTCALCluster> expected = reco.findClustersByCluster(hits, thresholds, table);
+            hits = createHits(seed, nhits, table);
+            assertSameClusters(expected, reco.findClusters(hits, manager, 11));
+        }
+    }
+
+    @Test
+    public void testOutsideGrid() {
+        ConstantsManager manager = new TableManager();
+        IndexedTable table = manager.getConstants(11, "/calibration/ft/ftcal/cluster");
+        IndexedTable thresholds = manager.getConstants(11, "/calibration/ft/ftcal/thresholds");
+        FTCALReconstruction reco = new FTCALReconstruction();
+        List<FTCALHit> hits = createHits(1, 40, table);
+        hits.get(3).set_IDX(0);
+        hits.get(5).set_IDY(23);
+        List<FTCALCluster> expected = reco.findClustersByCluster(hits, thresholds, table);
+        hits = createHits(1, 40, table);
+        hits.get(3).set_IDX(0);
+        hits.get(5).set_IDY(23);
+        assertSameClusters(expected, reco.findClusters(hits, manager, 11));
+    }
+}
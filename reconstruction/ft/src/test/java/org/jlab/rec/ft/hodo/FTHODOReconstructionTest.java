@@ -0,0 +1,69 @@
+package org.jlab.rec.ft.hodo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.jlab.utils.groups.IndexedTable;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the cluster search through neighbouring cells against the search
+ * comparing each hit to all hits of the existing clusters, on random hits.
+ */
+public class FTHODOReconstructionTest {
+
+    /**
+     * @return sorted hits on a lattice of the hit distance, with integer times,
+     * so that distances and time differences equal to the limits are frequent
+     */
+    private static List<FTHODOHit> createHits(long seed, int nhits) {
+        IndexedTable table = new IndexedTable(3) {
+            @Override
+            public double getDoubleValue(String item, int... index) {
+                return 1;
+            }
+        };
+        Random random = new Random(seed);
+        List<FTHODOHit> hits = new ArrayList<>();
+        for (int i = 0; i < nhits; i++) {
+            FTHODOHit hit = new FTHODOHit(i, 1+random.nextInt(8), 1+random.nextInt(2), 1+random.nextInt(20), 1, 0f, table, table, table);
+            // tiles on both sides of zero, to check negative cells:
+            double step = FTHODOConstantsLoader.hit_distance/(1 + random.nextInt(2));
+            hit.set_Dx(step*(random.nextInt(13) - 6));
+            hit.set_Dy(step*(random.nextInt(13) - 6));
+            hit.set_Edep(random.nextDouble());
+            hit.set_Time(random.nextInt((int) (3*FTHODOConstantsLoader.time_window)));
+            hits.add(hit);
+        }
+        Collections.sort(hits);
+        return hits;
+    }
+
+    private static void assertSameClusters(List<FTHODOCluster> expected, List<FTHODOCluster> clusters) {
+        assertEquals(expected.size(), clusters.size());
+        for (int i = 0; i < expected.size(); i++) {
+            FTHODOCluster a = expected.get(i);
+            FTHODOCluster b = clusters.get(i);
+            assertEquals(a.getID(), b.getID());
+            assertEquals(a.size(), b.size());
+            for (int j = 0; j < a.size(); j++) {
+                assertEquals(a.get(j).get_DGTZIndex(), b.get(j).get_DGTZIndex());
+                assertEquals(a.get(j).get_ClusterIndex(), b.get(j).get_ClusterIndex());
+            }
+        }
+    }
+
+    @Test
+    public void testFindClusters() {
+        FTHODOReconstruction reco = new FTHODOReconstruction();
+        for (long seed = 0; seed < 1000; seed++) {
+            int nhits = 1 + (int) (seed % 80);
+            List<FTHODOCluster> expected = reco.findClustersByCluster(createHits(seed, nhits));
+            assertSameClusters(expected, reco.findClusters(createHits(seed, nhits)));
+        }
+    }
+}
@@ -26,8 +26,37 @@ public class HTCCReconstruction {
     public IndexedTable status;
     public IndexedTable geometry;
 
+    // Number of mirrors along theta and phi
+    private static final int NTHETA = 4;
+    private static final int NPHI = 12;
+
+    // Mirrors adjacent to each mirror, indexed by itheta*NPHI + iphi
+    private static final int[][] MIRROR_NEIGHBOURS = new int[NTHETA * NPHI][];
+
+    static {
+        for (int itheta = 0; itheta < NTHETA; ++itheta) {
+            for (int iphi = 0; iphi < NPHI; ++iphi) {
+                int[] neighbours = new int[8];
+                int n = 0;
+                for (int jtheta = itheta - 1; jtheta <= itheta + 1; ++jtheta) {
+                    if (jtheta < 0 || jtheta >= NTHETA) {
+                        continue;
+                    }
+                    for (int dphi = -1; dphi <= 1; ++dphi) {
+                        if (jtheta != itheta || dphi != 0) {
+                            neighbours[n++] = jtheta * NPHI + (iphi + dphi + NPHI) % NPHI;
+                        }
+                    }
+                }
+                MIRROR_NEIGHBOURS[itheta * NPHI + iphi] = Arrays.copyOf(neighbours, n);
+            }
+        }
+    }
+
+    // Per-thread buffers, reused from event to event
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
     // Raw HTCC data from the bank
-    private int[] hitnArray;
     private int[] sectorArray;
     private int[] ringArray;
     private int[] halfArray;
@@ -37,11 +66,87 @@ public class HTCCReconstruction {
     private int[] iphiArray;
     private int numHits;
 
-    // Data about the hit in the remaining hit list with the greatest number of
-    // photoelections. See findMaximumHit().
-    private double maxHitNumPhotoelectrons;
-    private int maxHitRemainingIndex;
-    private int maxHitRawDataIndex;
+    // The remaining hits, i.e. the hits not used by a cluster yet. See
+    // initRemainingHits().
+    private Buffers remaining;
+
+    /**
+     * Arrays holding the raw data and the remaining hits of an event.
+     */
+    private static class Buffers {
+
+        int[] sector = new int[0];
+        int[] ring = new int[0];
+        int[] half = new int[0];
+        double[] nphe = new double[0];
+        double[] time = new double[0];
+        int[] itheta = new int[0];
+        int[] iphi = new int[0];
+
+        // Whether each hit is not (or no longer) a remaining hit
+        boolean[] used = new boolean[0];
+        // Binary heap of remaining hits, with the greatest number of
+        // photoelectrons first and the lowest index first for equal numbers.
+        // Used hits are only dropped when they reach the top.
+        int[] heap = new int[0];
+        int heapSize;
+        // Remaining hits chained per mirror, and hits outside of the mirror
+        // grid, which are tested against all cluster hits
+        final int[] mirrorFirst = new int[NTHETA * NPHI];
+        int[] mirrorNext = new int[0];
+        int[] outside = new int[0];
+        int numOutside;
+        // Hits to test against a cluster hit
+        int[] candidates = new int[0];
+
+        void ensureCapacity(int size) {
+            if (sector.length >= size) {
+                return;
+            }
+            sector = new int[size];
+            ring = new int[size];
+            half = new int[size];
+            nphe = new double[size];
+            time = new double[size];
+            itheta = new int[size];
+            iphi = new int[size];
+            used = new boolean[size];
+            heap = new int[size];
+            mirrorNext = new int[size];
+            outside = new int[size];
+            candidates = new int[size];
+        }
+
+        boolean before(int hit1, int hit2) {
+            return nphe[hit1] > nphe[hit2] || (nphe[hit1] == nphe[hit2] && hit1 < hit2);
+        }
+
+        void push(int hit) {
+            int k = heapSize++;
+            while (k > 0 && before(hit, heap[(k - 1) / 2])) {
+                heap[k] = heap[(k - 1) / 2];
+                k = (k - 1) / 2;
+            }
+            heap[k] = hit;
+        }
+
+        void pop() {
+            int hit = heap[--heapSize];
+            int k = 0;
+            while (2 * k + 1 < heapSize) {
+                int child = 2 * k + 1;
+                if (child + 1 < heapSize && before(heap[child + 1], heap[child])) {
+                    child++;
+                }
+                if (!before(heap[child], hit)) {
+                    break;
+                }
+                heap[k] = heap[child];
+                k = child;
+            }
+            heap[k] = hit;
+        }
+    }
 
     /**
      * Initializes the HTCCReconstruction.
@@ -57,13 +162,13 @@ public class HTCCReconstruction {
     public void processEvent(DataEvent event) {
         // Load the raw data about the event
         readBankInput(event);
-        // Initialize the remaining hits list
-        List<Integer> remainingHits = intiRemainingHitList();
+        // Initialize the remaining hits
+        initRemainingHits();
 
         // Place all of the hits into clusters
         List<HTCCCluster> clusters = new ArrayList();
         HTCCCluster cluster;
-        while (remainingHits.size() > 0 && (cluster = findCluster(remainingHits)) != null) {
+        while ((cluster = findCluster()) != null) {
             clusters.add(cluster);
         }
 
@@ -77,6 +182,9 @@ public class HTCCReconstruction {
      * @param event the event under analysis
      */
     void readBankInput(DataEvent event) {
+        Buffers buffers = BUFFERS.get();
+        remaining = buffers;
+        numHits = 0;
         if (!event.hasBank("HTCC::adc")) {
             return;
         }
@@ -87,20 +195,20 @@ public class HTCCReconstruction {
         }
         int rows = bankDGTZ.rows();
 
-        hitnArray = new int[rows];
-        sectorArray = new int[rows];;
-        ringArray = new int[rows];;
-        halfArray = new int[rows];;
-        npheArray = new double[rows];;
-        timeArray = new double[rows];
-        ithetaArray = new int[rows];
-        iphiArray = new int[rows];
-        for (int i = 0; i < bankDGTZ.rows(); i++) {
-            //      hitnArray[i]   = bankDGTZ.getInt("hitn", i);
+        buffers.ensureCapacity(rows);
+        sectorArray = buffers.sector;
+        ringArray = buffers.ring;
+        halfArray = buffers.half;
+        npheArray = buffers.nphe;
+        timeArray = buffers.time;
+        ithetaArray = buffers.itheta;
+        iphiArray = buffers.iphi;
+        for (int i = 0; i < rows; i++) {
             sectorArray[i] = bankDGTZ.getByte("sector", i);
             ringArray[i] = bankDGTZ.getShort("component", i);
             halfArray[i] = bankDGTZ.getByte("layer", i);
             timeArray[i] = bankDGTZ.getFloat("time", i);
+            npheArray[i] = 0;
 
             if (sectorArray[i] > 0) {
                 npheArray[i] = ((bankDGTZ.getInt("ADC", i))) / (gain.getDoubleValue("gain", sectorArray[i], halfArray[i], ringArray[i]));
@@ -108,11 +216,9 @@ public class HTCCReconstruction {
             }
 
         }
-        numHits = sectorArray.length;
-        // Create and fill ithetaArray and iphiArray so that the itheta and iphi
-        // values are not calculated more than once
-        ithetaArray = new int[numHits];
-        iphiArray = new int[numHits];
+        numHits = rows;
+        // Fill ithetaArray and iphiArray so that the itheta and iphi values
+        // are not calculated more than once
         for (int hit = 0; hit < numHits; ++hit) {
             ithetaArray[hit] = Math.abs(ringArray[hit]) - 1;
             int iphi = 2 * Math.abs(sectorArray[hit]) + Math.abs(halfArray[hit]) - 3;
@@ -123,58 +229,74 @@ public class HTCCReconstruction {
     }
 
     /**
-     * Returns a list of of the indexes of the hits whose number of
-     * photoelectrons surpasses the minimum number of photoelectrons specified
-     * by in <code>parameters</code>.
-     *
-     * @return a list of hit indexes
+     * Makes the remaining hits the hits whose number of photoelectrons
+     * surpasses the minimum number of photoelectrons specified by
+     * <code>cluster_par.npheminhit</code>, and which have a good status.
      */
-    List<Integer> intiRemainingHitList() {
-        List<Integer> remainingHits = new ArrayList();
+    void initRemainingHits() {
+        Arrays.fill(remaining.mirrorFirst, -1);
+        remaining.heapSize = 0;
+        remaining.numOutside = 0;
 
         // Find all hits above the photoelectron threshold
         for (int hit = 0; hit < numHits; ++hit) {
+            remaining.used[hit] = true;
             if(    npheArray[hit] > cluster_par.getDoubleValue("npheminhit", 0,0,0) 
                 && sectorArray[hit] > 0
                 && status.getIntValue("status", sectorArray[hit],halfArray[hit],ringArray[hit])==0) {
-                remainingHits.add(hit);
+                remaining.used[hit] = false;
+                remaining.push(hit);
+                int mirror = getMirror(ithetaArray[hit], iphiArray[hit]);
+                if (mirror < 0) {
+                    remaining.outside[remaining.numOutside++] = hit;
+                } else {
+                    remaining.mirrorNext[hit] = remaining.mirrorFirst[mirror];
+                    remaining.mirrorFirst[mirror] = hit;
+                }
             }
         }
+    }
 
-        return remainingHits;
+    /**
+     * @return the index of the mirror, or -1 if outside of the detector
+     */
+    private static int getMirror(int itheta, int iphi) {
+        if (itheta < 0 || itheta >= NTHETA || iphi < 0 || iphi >= NPHI) {
+            return -1;
+        }
+        return itheta * NPHI + iphi;
     }
 
     /**
      * Returns the next cluster or null if no clusters are left.
      *
-     * @param remainingHits the list of remaining hits
      * @return the next cluster or null if no clusters are left
      */
-    HTCCCluster findCluster(List<Integer> remainingHits) {
-        // Note:
-        // maxHitNumPhotoelectrons : the number of photoelectrons for the maximum hit
-        // maxHitRawDataIndex : the index of the hit in the raw data
-        // maxHitRemainingIndex : the index of the hit in the remaining hits list
-
-        // Find the hit from the list of remaining hits with the largest number 
-        // of photoelectrons that also meets the threshold for the minimum 
-        // number of photoelectrons specified by cluster_par.npheminmax
-        findMaximumHit(remainingHits);
+    HTCCCluster findCluster() {
+        // Find the remaining hit with the largest number of photoelectrons,
+        // the first one in the raw data for equal numbers
+        while (remaining.heapSize > 0 && remaining.used[remaining.heap[0]]) {
+            remaining.pop();
+        }
+        if (remaining.heapSize == 0) {
+            return null;
+        }
+        int maxHit = remaining.heap[0];
+        double nphe = npheArray[maxHit];
 
-        // If a maximum hit was found:
-        if (maxHitNumPhotoelectrons > -1) {
+        // If the maximum hit meets the threshold for the minimum number of
+        // photoelectrons specified by cluster_par.npheminmax:
+        if (nphe >= cluster_par.getDoubleValue("npheminmax", 0,0,0)) {
 
-            // Remove the maximum hit from the list of remaining hits
-            remainingHits.remove(maxHitRemainingIndex);
+            // Remove the maximum hit from the remaining hits
+            remaining.used[maxHit] = true;
 
             // Get Hit Data:
             // Detector Indicies
-            int itheta = ithetaArray[maxHitRawDataIndex];
-            int iphi = iphiArray[maxHitRawDataIndex];
-            // Numver of Photoelectrons
-            double nphe = maxHitNumPhotoelectrons;
+            int itheta = ithetaArray[maxHit];
+            int iphi = iphiArray[maxHit];
             // Hit Time
-            double time = timeArray[maxHitRawDataIndex] - ring_time.getDoubleValue("offset", 0,0,itheta+1);
+            double time = timeArray[maxHit] - ring_time.getDoubleValue("offset", 0,0,itheta+1);
             // Detector Coordinates (polar)
             double theta = Math.toRadians(geometry.getDoubleValue("theta0", 0,0,0)+2*geometry.getDoubleValue("dtheta", 0,0,0)*itheta);
             double phi   = Math.toRadians(geometry.getDoubleValue("phi0", 0,0,0)  +2*geometry.getDoubleValue("dphi", 0,0,0)*iphi);
@@ -186,7 +308,7 @@ public class HTCCReconstruction {
             HTCCCluster cluster = new HTCCCluster();
             cluster.addHit(itheta, iphi, nphe, time, theta, phi, dtheta, dphi);
             // Recursively grow the cluster by adding nearby hits
-            growCluster(cluster, remainingHits);
+            growCluster(cluster);
 
             //Check whether this cluster has nphe above threshold, size along theta and phi and total number of hits less than maximum:
             if (cluster.getNPheTot() >= cluster_par.getDoubleValue("npheminclst", 0,0,0)
@@ -204,48 +326,48 @@ public class HTCCReconstruction {
     }
 
     /**
-     * Finds the hit from the list of remaining hits with the largest number of
-     * photoelectrons that also meets the threshold for the minimum number of
-     * photoelectrons specified in <code>parameters</code>.
-     * <p>
-     * Side effects: If a maximum hit was found with a number of photo electrons
-     * greater than or equal to <code>cluster_par.npheminmax</code>, then:
-     * maxHitNumPhotoelectrons = the number of photoelectrons for the max hit
-     * maxHitRawDataIndex = the index of the max hit in the bank data
-     * maxHitRemainingIndex = the index of the max hit in the remaining hits
-     * list
-     * <p>
-     * If no remaining hit has a number of photoelectrons greater than or equal
-     * to <code>cluster_par.npheminmax</code>, then: maxHitNumPhotoelectrons = -1
-     * maxHitRawDataIndex = -1 maxHitRemainingIndex = -1
+     * Collects the remaining hits that can be adjacent to the given mirror,
+     * in increasing order of index: the hits of the neighbouring mirrors and
+     * the hits outside of the mirror grid.
      *
-     * @param remainingHits the list of remaining hits
+     * @return the number of candidates in <code>remaining.candidates</code>
      */
-    void findMaximumHit(List<Integer> remainingHits) {
-        maxHitNumPhotoelectrons = -100;
-        maxHitRemainingIndex = -100;
-        maxHitRawDataIndex = -100;
-        for (int hit = 0; hit < remainingHits.size(); ++hit) {
-            int hitIndex = remainingHits.get(hit);
-            double numPhotoElectrons = npheArray[hitIndex];
-            if (numPhotoElectrons >= cluster_par.getDoubleValue("npheminmax", 0,0,0)
-                    && numPhotoElectrons > maxHitNumPhotoelectrons) {
-                maxHitNumPhotoelectrons = numPhotoElectrons;
-                maxHitRemainingIndex = hit;
-                maxHitRawDataIndex = hitIndex;
+    private int findCandidates(int itheta, int iphi) {
+        int[] candidates = remaining.candidates;
+        int n = 0;
+        int mirror = getMirror(itheta, iphi);
+        if (mirror < 0) {
+            for (int hit = 0; hit < numHits; ++hit) {
+                if (!remaining.used[hit]) {
+                    candidates[n++] = hit;
+                }
             }
+            return n;
         }
+        for (int neighbour : MIRROR_NEIGHBOURS[mirror]) {
+            for (int hit = remaining.mirrorFirst[neighbour]; hit >= 0; hit = remaining.mirrorNext[hit]) {
+                if (!remaining.used[hit]) {
+                    candidates[n++] = hit;
+                }
+            }
+        }
+        for (int i = 0; i < remaining.numOutside; ++i) {
+            if (!remaining.used[remaining.outside[i]]) {
+                candidates[n++] = remaining.outside[i];
+            }
+        }
+        Arrays.sort(candidates, 0, n);
+        return n;
     }
 
     /**
-     * Grows the given cluster by adding nearby hits from the remaining hits
-     * list. As hits are added to the cluster they are removed from the
-     * remaining hits list.
+     * Grows the given cluster by adding nearby hits from the remaining hits.
+     * As hits are added to the cluster they are removed from the remaining
+     * hits.
      *
      * @param cluster the cluster to grow
-     * @param remainingHits the list of indexes of the remaining hits
      */
-    void growCluster(HTCCCluster cluster, List<Integer> remainingHits) {
+    void growCluster(HTCCCluster cluster) {
         // Get the average time of the cluster
         double clusterTime = cluster.getTime();
         // For each hit in the cluster:
@@ -254,11 +376,11 @@ public class HTCCReconstruction {
             int ithetaCurr = cluster.getHitITheta(currHit);
             int iphiCurr = cluster.getHitIPhi(currHit);
 
-            // For each of the remaining hits:
-            int hit = 0;
-            while (hit < remainingHits.size()) {
+            // For each of the remaining hits that can be close enough in space:
+            int numCandidates = findCandidates(ithetaCurr, iphiCurr);
+            for (int hit = 0; hit < numCandidates; ++hit) {
                 // Get the index of the remaining hit (and call it a test hit)
-                int testHit = remainingHits.get(hit);
+                int testHit = remaining.candidates[hit];
                 // Get the coordinates of the test hit
                 int ithetaTest = ithetaArray[testHit];
                 int iphiTest = iphiArray[testHit];
@@ -271,15 +393,14 @@ public class HTCCReconstruction {
                 double time = timeArray[testHit] - ring_time.getDoubleValue("offset", 0,0,ithetaTest+1);
                 double timeDiff = Math.abs(time - clusterTime);
 
-                double npheTest = npheArray[testHit];
                 // If the test hit is close enough in space and time
                 if ((ithetaDiff == 1 || iphiDiff == 1)
                         && (ithetaDiff + iphiDiff <= 2)
                         && (timeDiff <= cluster_par.getDoubleValue("maxtimediff", 0,0,0))) {
-                    // Remove the hit from the remaining hits list
-                    remainingHits.remove(hit);
+                    // Remove the hit from the remaining hits
+                    remaining.used[testHit] = true;
                     // Get the Numeber of Photoelectrons
-                    npheTest = npheArray[testHit];
+                    double npheTest = npheArray[testHit];
                     // Get the Detector Coordinates (polar)
                     double thetaTest = Math.toRadians(geometry.getDoubleValue("theta0", 0,0,0)+2*geometry.getDoubleValue("dtheta", 0,0,0)*ithetaTest);
                     double phiTest   = Math.toRadians(geometry.getDoubleValue("phi0", 0,0,0)  +2*geometry.getDoubleValue("dphi", 0,0,0)*iphiTest);
@@ -290,9 +411,6 @@ public class HTCCReconstruction {
                     cluster.addHit(ithetaTest, iphiTest, npheTest, time, thetaTest, phiTest, dthetaTest, dphiTest);
                     // Get the new average time of the cluster
                     clusterTime = cluster.getTime();
-                } else {
-                    // Go to the next hit in the remaining hits list
-                    hit++;
                 }
             }
         }
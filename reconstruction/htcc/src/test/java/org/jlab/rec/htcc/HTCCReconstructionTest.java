@@ -0,0 +1,300 @@
+package org.jlab.rec.htcc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jlab.io.base.DataBank;
+import org.jlab.io.base.DataEvent;
+import org.jlab.io.hipo.HipoDataEvent;
+import org.jlab.jnp.hipo4.data.Bank;
+import org.jlab.jnp.hipo4.data.Event;
+import org.jlab.jnp.hipo4.data.SchemaFactory;
+import org.jlab.utils.groups.IndexedTable;
+import org.jlab.utils.system.ClasUtilsFile;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the clustering through the hit heap and the mirror adjacency against
+ * the linear scans of all the remaining hits it replaced, on random hits.
+ */
+public class HTCCReconstructionTest {
+
+    private static SchemaFactory getSchemaFactory() {
+        System.setProperty("CLAS12DIR", "../../");
+        String dir = ClasUtilsFile.getResourceDir("CLAS12DIR", "etc/bankdefs/hipo4");
+        SchemaFactory factory = new SchemaFactory();
+        factory.initFromDirectory(dir);
+        return factory;
+    }
+
+    private static IndexedTable createTable() {
+        return new IndexedTable(3) {
+            @Override
+            public double getDoubleValue(String item, int... index) {
+                switch (item) {
+                    case "npheminhit":    return 0.5;
+                    case "npheminmax":    return 1;
+                    case "npheminclst":   return 2;
+                    case "nthetamaxclst": return 2;
+                    case "nphimaxclst":   return 2;
+                    case "nhitmaxclst":   return 4;
+                    case "maxtimediff":   return 1;
+                    case "theta0":        return 8.75;
+                    case "dtheta":        return 3.75;
+                    case "phi0":          return 15;
+                    case "dphi":          return 15;
+                    case "gain":          return 1;
+                    default:              return 0;
+                }
+            }
+            @Override
+            public int getIntValue(String item, int... index) {
+                // one bad channel:
+                return index[0] == 3 && index[1] == 2 && index[2] == 2 ? 1 : 0;
+            }
+        };
+    }
+
+    private static HTCCReconstruction createReconstruction() {
+        HTCCReconstruction reco = new HTCCReconstruction();
+        reco.gain        = createTable();
+        reco.time        = createTable();
+        reco.ring_time   = createTable();
+        reco.cluster_par = createTable();
+        reco.status      = createTable();
+        reco.geometry    = createTable();
+        return reco;
+    }
+
+    /**
+     * @return event of hits with few ADC and time values, so that equal
+     * numbers of photoelectrons and time differences equal to the maximum are
+     * frequent, and with some hits outside of the mirror grid
+     */
+    private static DataEvent createEvent(SchemaFactory factory, Random random) {
+        int nhits = 1 + random.nextInt(30);
+        Bank adc = new Bank(factory.getSchema("HTCC::adc"), nhits);
+        for (int i = 0; i < nhits; i++) {
+            boolean outside = random.nextInt(10) == 0;
+            adc.putByte("sector", i, (byte) (outside && random.nextBoolean() ? 7 : 1 + random.nextInt(6)));
+            adc.putByte("layer", i, (byte) (outside && random.nextBoolean() ? 3 : 1 + random.nextInt(2)));
+            adc.putShort("component", i, (short) (outside && random.nextBoolean() ? 5 : 1 + random.nextInt(4)));
+            adc.putInt("ADC", i, random.nextInt(6));
+            adc.putFloat("time", i, random.nextInt(4));
+        }
+        Event event = new Event();
+        event.write(adc);
+        return new HipoDataEvent(event, factory);
+    }
+
+    /**
+     * The clustering before the hit heap and the mirror adjacency table.
+     */
+    private static class LinearScan {
+
+        final HTCCReconstruction reco;
+        final int[]    sectorArray;
+        final int[]    ringArray;
+        final int[]    halfArray;
+        final double[] npheArray;
+        final double[] timeArray;
+        final int[]    ithetaArray;
+        final int[]    iphiArray;
+
+        LinearScan(HTCCReconstruction reco, DataBank bank) {
+            this.reco = reco;
+            int rows = bank.rows();
+            sectorArray = new int[rows];
+            ringArray   = new int[rows];
+            halfArray   = new int[rows];
+            npheArray   = new double[rows];
+            timeArray   = new double[rows];
+            ithetaArray = new int[rows];
+            iphiArray   = new int[rows];
+            for (int i = 0; i < rows; i++) {
+                sectorArray[i] = bank.getByte("sector", i);
+                ringArray[i]   = bank.getShort("component", i);
+                halfArray[i]   = bank.getByte("layer", i);
+                timeArray[i]   = bank.getFloat("time", i);
+                if (sectorArray[i] > 0) {
+                    npheArray[i] = bank.getInt("ADC", i) / reco.gain.getDoubleValue("gain", sectorArray[i], halfArray[i], ringArray[i]);
+                    timeArray[i] = timeArray[i] - reco.time.getDoubleValue("shift", sectorArray[i], halfArray[i], ringArray[i]);
+                }
+                ithetaArray[i] = Math.abs(ringArray[i]) - 1;
+                int iphi = 2 * Math.abs(sectorArray[i]) + Math.abs(halfArray[i]) - 3;
+                iphiArray[i] = (iphi == 0 ? iphi + 12 : iphi) - 1;
+            }
+        }
+
+        void findClusters(List<HTCCCluster> clusters) {
+            List<Integer> remainingHits = new ArrayList<>();
+            for (int hit = 0; hit < npheArray.length; ++hit) {
+                if (npheArray[hit] > reco.cluster_par.getDoubleValue("npheminhit", 0,0,0)
+                        && sectorArray[hit] > 0
+                        && reco.status.getIntValue("status", sectorArray[hit],halfArray[hit],ringArray[hit]) == 0) {
+                    remainingHits.add(hit);
+                }
+            }
+            HTCCCluster cluster;
+            while (remainingHits.size() > 0 && (cluster = findCluster(remainingHits)) != null) {
+                clusters.add(cluster);
+            }
+        }
+
+        HTCCCluster findCluster(List<Integer> remainingHits) {
+            double maxNphe = -100;
+            int maxRemaining = -100;
+            for (int hit = 0; hit < remainingHits.size(); ++hit) {
+                double nphe = npheArray[remainingHits.get(hit)];
+                if (nphe >= reco.cluster_par.getDoubleValue("npheminmax", 0,0,0) && nphe > maxNphe) {
+                    maxNphe = nphe;
+                    maxRemaining = hit;
+                }
+            }
+            if (maxNphe > -1) {
+                int maxHit = remainingHits.remove(maxRemaining);
+                HTCCCluster cluster = new HTCCCluster();
+                addHit(cluster, maxHit);
+                growCluster(cluster, remainingHits);
+                if (cluster.getNPheTot() >= reco.cluster_par.getDoubleValue("npheminclst", 0,0,0)
+                        && cluster.getNThetaClust() <= reco.cluster_par.getDoubleValue("nthetamaxclst", 0,0,0)
+                        && cluster.getNPhiClust() <= reco.cluster_par.getDoubleValue("nphimaxclst", 0,0,0)
+                        && cluster.getNHitClust() <= reco.cluster_par.getDoubleValue("nhitmaxclst", 0,0,0)) {
+                    return cluster;
+                }
+            }
+            return null;
+        }
+
+        double getTime(int hit) {
+            return timeArray[hit] - reco.ring_time.getDoubleValue("offset", 0,0,ithetaArray[hit]+1);
+        }
+
+        void addHit(HTCCCluster cluster, int hit) {
+            IndexedTable geometry = reco.geometry;
+            cluster.addHit(ithetaArray[hit], iphiArray[hit], npheArray[hit], getTime(hit),
+                    Math.toRadians(geometry.getDoubleValue("theta0", 0,0,0)+2*geometry.getDoubleValue("dtheta", 0,0,0)*ithetaArray[hit]),
+                    Math.toRadians(geometry.getDoubleValue("phi0", 0,0,0)  +2*geometry.getDoubleValue("dphi", 0,0,0)*iphiArray[hit]),
+                    Math.toRadians(geometry.getDoubleValue("dtheta", 0,0,0)),
+                    Math.toRadians(geometry.getDoubleValue("dphi", 0,0,0)));
+        }
+
+        void growCluster(HTCCCluster cluster, List<Integer> remainingHits) {
+            double clusterTime = cluster.getTime();
+            for (int currHit = 0; currHit < cluster.getNHitClust(); ++currHit) {
+                int ithetaCurr = cluster.getHitITheta(currHit);
+                int iphiCurr = cluster.getHitIPhi(currHit);
+                int hit = 0;
+                while (hit < remainingHits.size()) {
+                    int testHit = remainingHits.get(hit);
+                    int ithetaDiff = Math.abs(ithetaArray[testHit] - ithetaCurr);
+                    int iphiDiff = Math.min((12 + iphiArray[testHit] - iphiCurr) % 12, (12 + iphiCurr - iphiArray[testHit]) % 12);
+                    double timeDiff = Math.abs(getTime(testHit) - clusterTime);
+                    if ((ithetaDiff == 1 || iphiDiff == 1)
+                            && (ithetaDiff + iphiDiff <= 2)
+                            && (timeDiff <= reco.cluster_par.getDoubleValue("maxtimediff", 0,0,0))) {
+                        remainingHits.remove(hit);
+                        addHit(cluster, testHit);
+                        clusterTime = cluster.getTime();
+                    } else {
+                        hit++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the clusters, followed by the error message if a hit outside of
+     * the mirror grid was added to a cluster
+     */
+    private static String describe(List<HTCCCluster> clusters, RuntimeException error) {
+        StringBuilder str = new StringBuilder();
+        for (HTCCCluster cluster : clusters) {
+            str.append(cluster.getNHitClust()).append(' ')
+               .append(cluster.getNPheTot()).append(' ')
+               .append(cluster.getTime()).append(' ')
+               .append(cluster.getTheta()).append(' ')
+               .append(cluster.getPhi()).append(" :");
+            for (int hit = 0; hit < cluster.getNHitClust(); hit++) {
+                str.append(' ').append(cluster.getHitITheta(hit)).append('/').append(cluster.getHitIPhi(hit));
+            }
+            str.append('\n');
+        }
+        if (error != null) str.append(error.getClass().getName()).append(' ').append(error.getMessage());
+        return str.toString();
+    }
+
+    private static String findReferenceClusters(HTCCReconstruction reco, DataEvent event) {
+        LinearScan scan = new LinearScan(reco, event.getBank("HTCC::adc"));
+        List<HTCCCluster> clusters = new ArrayList<>();
+        try {
+            scan.findClusters(clusters);
+        }
+        catch (IllegalArgumentException e) {
+            return describe(clusters, e);
+        }
+        return describe(clusters, null);
+    }
+
+    private static String findClusters(HTCCReconstruction reco, DataEvent event) {
+        reco.readBankInput(event);
+        reco.initRemainingHits();
+        List<HTCCCluster> clusters = new ArrayList<>();
+        try {
+            HTCCCluster cluster;
+            while ((cluster = reco.findCluster()) != null) {
+                clusters.add(cluster);
+            }
+        }
+        catch (IllegalArgumentException e) {
+            return describe(clusters, e);
+        }
+        return describe(clusters, null);
+    }
+
+    @Test
+    public void testFindClusters() {
+        SchemaFactory factory = getSchemaFactory();
+        HTCCReconstruction reco = createReconstruction();
+        Random random = new Random(11);
+        int nclusters = 0;
+        int nerrors = 0;
+        for (int ievent = 0; ievent < 5000; ievent++) {
+            DataEvent event = createEvent(factory, random);
+            String expected = findReferenceClusters(reco, event);
+            assertEquals("event " + ievent, expected, findClusters(reco, event));
+            nclusters += expected.length() - expected.replace("\n", "").length();
+            if (expected.contains("Exception")) nerrors++;
+        }
+        System.out.println("HTCC clusters: " + nclusters + ", events with hits outside of the mirrors in a cluster: " + nerrors);
+        assertTrue(nclusters > 1000 && nerrors > 0);
+    }
+
+    @Test
+    public void testWrapAround() {
+        SchemaFactory factory = getSchemaFactory();
+        HTCCReconstruction reco = createReconstruction();
+        // iphi 11 (sector 1, half 1) next to iphi 0 (sector 1, half 2),
+        // with the same number of photoelectrons:
+        Bank adc = new Bank(factory.getSchema("HTCC::adc"), 3);
+        int[][] hits = {{1, 1, 2, 5}, {1, 2, 2, 5}, {1, 1, 3, 4}};
+        for (int i = 0; i < hits.length; i++) {
+            adc.putByte("sector", i, (byte) hits[i][0]);
+            adc.putByte("layer", i, (byte) hits[i][1]);
+            adc.putShort("component", i, (short) hits[i][2]);
+            adc.putInt("ADC", i, hits[i][3]);
+            adc.putFloat("time", i, 0);
+        }
+        Event event = new Event();
+        event.write(adc);
+        DataEvent dataEvent = new HipoDataEvent(event, factory);
+        String expected = findReferenceClusters(reco, dataEvent);
+        assertEquals("3 14.0", expected.substring(0, 6));
+        assertTrue(expected.contains(": 1/11 1/0 2/11\n"));
+        assertEquals(expected, findClusters(reco, dataEvent));
+    }
+}
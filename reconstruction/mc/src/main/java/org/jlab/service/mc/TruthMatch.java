@@ -74,8 +74,8 @@ public class TruthMatch extends ReconstructionEngine {
          * Now let's get True hits from the MC::True bank
          * ********************************************************
          */
-        // <Detector, <hitn, MCHit>>
-        Map<Byte, Map<Integer, MCHit>> mchits = getMCHits(event.getBank("MC::True"), mcp);
+        // <Detector, hitn> -> MCHit
+        MCHitIndex mchits = getMCHits(event.getBank("MC::True"), mcp);
 
         /**
          * We need a conversion from trkID to the index of a track in the
@@ -92,19 +92,19 @@ public class TruthMatch extends ReconstructionEngine {
          * cluster to which the hit belogs to - pindex : pindex of the particle
          * that the current cluster belongs to.
          */
-        Map< Short, List<RecHit>> ecalHits = getECalHits(event, mchits.get((byte) DetectorType.ECAL.getDetectorId()));
+        Map< Short, List<RecHit>> ecalHits = getECalHits(event, mchits);
         List<RecCluster> ecalClusters = getECalClusters(event);
 
         /**
          * Getting FT Hits and clusters
          */
-        Map< Short, List<RecHit>> ftCalHits = getFTCalHits(event, mchits.get((byte) DetectorType.FTCAL.getDetectorId()));
+        Map< Short, List<RecHit>> ftCalHits = getFTCalHits(event, mchits);
         List<RecCluster> ftCalClusters = getFTCalClusters(event);
 
         /**
          * Getting CND Hits and Clusters
          */
-        Map<Short, List<RecHit>> cndHits = getCNDHits(event, mchits.get((byte) DetectorType.CND.getDetectorId()));
+        Map<Short, List<RecHit>> cndHits = getCNDHits(event, mchits);
         List<RecCluster> cndClusters = getCNDClusters(event);
 
 //        if (cndClusters != null && cndClusters.size() > 0 && cndHits.isEmpty()) {
@@ -114,37 +114,37 @@ public class TruthMatch extends ReconstructionEngine {
         /**
          * Getting CTOF Hits and Clusters
          */
-        Map<Short, List<RecHit>> ctofHits = getCTOFHits(event, mchits.get((byte) DetectorType.CTOF.getDetectorId()));
+        Map<Short, List<RecHit>> ctofHits = getCTOFHits(event, mchits);
         List<RecCluster> ctofClusters = getCTOFClusters(event);
 
         /**
          * Getting BST Hits and Clusters
          */
-        Map<Short, List<RecHit>> bstHits = getBSTHits(event, mchits.get((byte) DetectorType.BST.getDetectorId()), trkID2Index, mcp, recp);
+        Map<Short, List<RecHit>> bstHits = getBSTHits(event, mchits, trkID2Index, mcp, recp);
         List<RecCluster> bstClusters = getBSTClusters(event, trkID2Index);
 
         /**
          * Getting BMT Hits and Clusters
          */
-        Map<Short, List<RecHit>> bmtHits = getBMTHits(event, mchits.get((byte) DetectorType.BMT.getDetectorId()), trkID2Index, mcp, recp);
+        Map<Short, List<RecHit>> bmtHits = getBMTHits(event, mchits, trkID2Index, mcp, recp);
         List<RecCluster> bmtClusters = getBMTClusters(event, trkID2Index);
 
         /**
          * Getting DC Hits and Clusters
          */
-        Map<Short, List<RecHit>> DCHits = getDCHits(event, mchits.get((byte) DetectorType.DC.getDetectorId()), mcp, recp);
+        Map<Short, List<RecHit>> DCHits = getDCHits(event, mchits, mcp, recp);
         List<RecCluster> dcClusters = getDCClusters(event);
 
         /**
          * Matchingg clusters to MCParticles
          */
-        MatchClasters(ecalClusters, ecalHits, mchits.get((byte) DetectorType.ECAL.getDetectorId()));
-        MatchClasters(ftCalClusters, ftCalHits, mchits.get((byte) DetectorType.FTCAL.getDetectorId()));
-        MatchClasters(cndClusters, cndHits, mchits.get((byte) DetectorType.CND.getDetectorId()));
-        MatchClasters(ctofClusters, ctofHits, mchits.get((byte) DetectorType.CTOF.getDetectorId()));
-        MatchClasters(bstClusters, bstHits, mchits.get((byte) DetectorType.BST.getDetectorId()));
-        MatchClasters(bmtClusters, bmtHits, mchits.get((byte) DetectorType.BMT.getDetectorId()));
-        MatchClasters(dcClusters, DCHits, mchits.get((byte) DetectorType.DC.getDetectorId()));
+        MatchClasters(ecalClusters, ecalHits, mchits, (byte) DetectorType.ECAL.getDetectorId());
+        MatchClasters(ftCalClusters, ftCalHits, mchits, (byte) DetectorType.FTCAL.getDetectorId());
+        MatchClasters(cndClusters, cndHits, mchits, (byte) DetectorType.CND.getDetectorId());
+        MatchClasters(ctofClusters, ctofHits, mchits, (byte) DetectorType.CTOF.getDetectorId());
+        MatchClasters(bstClusters, bstHits, mchits, (byte) DetectorType.BST.getDetectorId());
+        MatchClasters(bmtClusters, bmtHits, mchits, (byte) DetectorType.BMT.getDetectorId());
+        MatchClasters(dcClusters, DCHits, mchits, (byte) DetectorType.DC.getDetectorId());
 
         /**
          * Adding all clusters together
@@ -263,6 +263,63 @@ public class TruthMatch extends ReconstructionEngine {
         public byte detector; // Detector code descriptor
     }
 
+// MC::True hits indexed by detector and hitn
+    class MCHitIndex {
+
+        /**
+         * Open addressing hash table, where the key combines the detector and
+         * the hitn of the hit. As for a map, a later hit with the same key
+         * replaces the earlier one.
+         */
+        private final long[] keys;
+        private final MCHit[] hits;
+        private final boolean[] detectors = new boolean[256];
+
+        public MCHitIndex(int nhits) {
+            int capacity = 16;
+            while (capacity < 2 * nhits) {
+                capacity <<= 1;
+            }
+            keys = new long[capacity];
+            hits = new MCHit[capacity];
+        }
+
+        private long key(byte detector, int hitn) {
+            return ((long) detector << 32) | (hitn & 0xffffffffL);
+        }
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while (hits[slot] != null && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        public void put(MCHit hit) {
+            long key = key(hit.detector, hit.hitn);
+            int slot = slot(key);
+            keys[slot] = key;
+            hits[slot] = hit;
+            detectors[hit.detector & 0xff] = true;
+        }
+
+        /**
+         * @return the hit of the detector with the given hitn, or null
+         */
+        public MCHit get(byte detector, int hitn) {
+            return hits[slot(key(detector, hitn))];
+        }
+
+        /**
+         * @return whether there is any MC hit in the detector
+         */
+        public boolean hasDetector(byte detector) {
+            return detectors[detector & 0xff];
+        }
+    }
+
 // RecHit object
     class RecHit {
 
@@ -369,6 +426,8 @@ public class TruthMatch extends ReconstructionEngine {
     private final int MUMINUS_ID = 13;
     private final int MUPLUS_ID = -13;
 
+    private static final String[] HIT_ID_NAMES = {"Hit1_ID", "Hit2_ID", "Hit3_ID", "Hit4_ID", "Hit5_ID"};
+
     private final int BSTStartBit = 36;
     private final int BMTStartBit = 42;
     private final int DCStartBit = 0;
@@ -441,9 +500,9 @@ public class TruthMatch extends ReconstructionEngine {
         return recp;
     }
 
-    Map<Byte, Map<Integer, MCHit>> getMCHits(DataBank mctrue, Map<Short, MCPart> mcp) {
+    MCHitIndex getMCHits(DataBank mctrue, Map<Short, MCPart> mcp) {
 
-        Map<Byte, Map<Integer, MCHit>> dmchits = new HashMap<>();
+        MCHitIndex dmchits = new MCHitIndex(mctrue.rows());
 
         for (int i = 0; i < mctrue.rows(); i++) {
             MCHit hit = new MCHit();
@@ -492,10 +551,7 @@ public class TruthMatch extends ReconstructionEngine {
              * studies... if( mcp.get( (short) tid ) == null && mcp.get( (short)
              * mtid ) == null ) continue;
              */
-            if (dmchits.get(hit.detector) == null) {
-                dmchits.put(hit.detector, new HashMap<>());
-            }
-            dmchits.get(hit.detector).put(hit.hitn, hit);
+            dmchits.put(hit);
 
         }
         return dmchits;
@@ -530,11 +586,11 @@ public class TruthMatch extends ReconstructionEngine {
     /**
      *
      * @param event DataEvent
-     * @param mchitsInECal MCHits in ECal
+     * @param mchits index of the MCHits
      * @return Map<clusterID, List<RecHit>>, Map, where the Key is the
      * clusterID, and the value is a list of hits having the same clusterID
      */
-    Map< Short, List<RecHit>> getECalHits(DataEvent event, Map<Integer, MCHit> mchitsInECal) {
+    Map< Short, List<RecHit>> getECalHits(DataEvent event, MCHitIndex mchits) {
 
         /**
          * We need two banks to be present in the event: ECAL::hits and
@@ -544,7 +600,8 @@ public class TruthMatch extends ReconstructionEngine {
          * <cId, pindex>.
          */
         Map< Short, List<RecHit>> recHits = new HashMap<>();
-        if (mchitsInECal == null) {
+        final byte det = (byte) DetectorType.ECAL.getDetectorId();
+        if (!mchits.hasDetector(det)) {
             /**
              * In case if no MC hit present in the ECal, then don't proceed, as
              * we need only hits that are associated to an MC hit
@@ -581,11 +638,11 @@ public class TruthMatch extends ReconstructionEngine {
 
             curHit.id = hitsBank.getShort("id", ihit) - 1;   // -1 for starting from 0
             curHit.cid = (short) (hitsBank.getShort("clusterId", ihit) - 1);  // -1 for starting from 0
-            if (curHit.cid == -2 || !mchitsInECal.containsKey(curHit.id)) {
+            if (curHit.cid == -2 || mchits.get(det, curHit.id) == null) {
                 continue; // The hit is not part of any cluster, or the hit it's corresponding MC hit is ignored
             }
             curHit.pindex = clId2Pindex.get(curHit.cid);
-            curHit.detector = (byte) DetectorType.ECAL.getDetectorId();
+            curHit.detector = det;
 
             if (recHits.get(curHit.cid) == null) {
                 recHits.put(curHit.cid, new ArrayList<>());
@@ -597,10 +654,11 @@ public class TruthMatch extends ReconstructionEngine {
         return recHits;
     }
 
-    Map< Short, List<RecHit>> getFTCalHits(DataEvent event, Map<Integer, MCHit> mchitsInFTCal) {
+    Map< Short, List<RecHit>> getFTCalHits(DataEvent event, MCHitIndex mchits) {
         Map< Short, List<RecHit>> recHits = new HashMap<>();
+        final byte det = (byte) DetectorType.FTCAL.getDetectorId();
 
-        if (mchitsInFTCal == null) {
+        if (!mchits.hasDetector(det)) {
             /**
              * In case if no MC hit present in the FTCal, then don't proceed, as
              * we need only hits that are associated to an MC hit
@@ -638,7 +696,7 @@ public class TruthMatch extends ReconstructionEngine {
 
             curHit.id = hitsBank.getShort("hitID", ihit);   // Not removing 1, as hitID start from 0
             curHit.cid = (short) (hitsBank.getShort("clusterID", ihit) - 1);  // -1 for starting from 0
-            if (curHit.cid == -2 || !mchitsInFTCal.containsKey(curHit.id)) {
+            if (curHit.cid == -2 || mchits.get(det, curHit.id) == null) {
                 continue; // The hit is not part of any cluster, or the hit it's corresponding MC hit is ignored
             }
 
@@ -664,10 +722,11 @@ public class TruthMatch extends ReconstructionEngine {
         return recHits;
     }
 
-    Map< Short, List<RecHit>> getCNDHits(DataEvent event, Map<Integer, MCHit> mchitsInCND) {
+    Map< Short, List<RecHit>> getCNDHits(DataEvent event, MCHitIndex mchits) {
         Map< Short, List<RecHit>> recHits = new HashMap<>();
+        final byte det = (byte) DetectorType.CND.getDetectorId();
 
-        if (mchitsInCND == null) {
+        if (!mchits.hasDetector(det)) {
             /**
              * If no MC hits present in the CND, then we stop here! no need to
              * collect hits, as wee need only hits that are matched to an MChit
@@ -713,12 +772,12 @@ public class TruthMatch extends ReconstructionEngine {
              */
             curHit.id = (int) hitsBank.getShort("indexLtdc", ihit) / 2;   // We should devide to 2, as each MC::True hit is digitized into two ADC/TDC hits.
             curHit.cid = (short) (hitsBank.getShort("clusterid", ihit) - 1);  // -1 for starting from 0
-            if (curHit.cid == -2 || !mchitsInCND.containsKey(curHit.id)) {
+            if (curHit.cid == -2 || mchits.get(det, curHit.id) == null) {
                 continue; // The hit is not part of any cluster, or the hit it's corresponding MC hit is ignored
             }
 
             curHit.pindex = clId2Pindex.get(curHit.cid);
-            curHit.detector = (byte) DetectorType.CND.getDetectorId();
+            curHit.detector = det;
 
             if (recHits.get(curHit.cid) == null) {
                 recHits.put(curHit.cid, new ArrayList<>());
@@ -731,10 +790,11 @@ public class TruthMatch extends ReconstructionEngine {
         return recHits;
     }
 
-    Map< Short, List<RecHit>> getCTOFHits(DataEvent event, Map<Integer, MCHit> mchitsInCTOF) {
+    Map< Short, List<RecHit>> getCTOFHits(DataEvent event, MCHitIndex mchits) {
         Map< Short, List<RecHit>> recHits = new HashMap<>();
+        final byte det = (byte) DetectorType.CTOF.getDetectorId();
 
-        if (mchitsInCTOF == null) {
+        if (!mchits.hasDetector(det)) {
             /**
              * If no MC hits present in the CTOF, then we stop here! no need to
              * collect hits, as wee need only hits that are matched to an MChit
@@ -781,14 +841,14 @@ public class TruthMatch extends ReconstructionEngine {
             curHit.id = (int) hitsBank.getShort("tdc_idx1", ihit) / 2;   // We should devide to 2, as each MC::True hit is digitized into two ADC/TDC hits.
 
             curHit.cid = (short) (hitsBank.getShort("clusterid", ihit) - 1);  // -1 for starting from 0
-            if (curHit.cid == -1 || !mchitsInCTOF.containsKey(curHit.id)) {
+            if (curHit.cid == -1 || mchits.get(det, curHit.id) == null) {
 
                 //System.out.println("Continuing!!!! The hit id is " + curHit.id);
                 continue; // The hit is not part of any cluster, or the hit it's corresponding MC hit is ignored
             }
 
             curHit.pindex = clId2Pindex.get(curHit.cid);
-            curHit.detector = (byte) DetectorType.CTOF.getDetectorId();
+            curHit.detector = det;
 
             if (recHits.get(curHit.cid) == null) {
                 recHits.put(curHit.cid, new ArrayList<>());
@@ -801,11 +861,12 @@ public class TruthMatch extends ReconstructionEngine {
         return recHits;
     }
 
-    Map< Short, List<RecHit>> getBSTHits(DataEvent event, Map<Integer, MCHit> mchitsInBST, Map<Integer, Map<Short, Integer>> trkID2Index, Map<Short, MCPart> mcp, Map<Short, RecPart> recp) {
+    Map< Short, List<RecHit>> getBSTHits(DataEvent event, MCHitIndex mchits, Map<Integer, Map<Short, Integer>> trkID2Index, Map<Short, MCPart> mcp, Map<Short, RecPart> recp) {
 
         Map< Short, List<RecHit>> recHits = new HashMap<>();
+        final byte det = (byte) DetectorType.BST.getDetectorId();
 
-        if (mchitsInBST == null) {
+        if (!mchits.hasDetector(det)) {
             /**
              * If no MC hits present in the BST, then we stop here! no need to
              * collect hits, as wee need only hits that are matched to an MChit
@@ -859,25 +920,20 @@ public class TruthMatch extends ReconstructionEngine {
             // The hardcoded 5 is the Max number of hits per Cl
             for (int iHit = 0; iHit < 5; iHit++) {
 
-                int hitID = clBank.getInt(String.format("Hit%d_ID", iHit + 1), iCL) - 1;
+                int hitID = clBank.getInt(HIT_ID_NAMES[iHit], iCL) - 1;
 
                 if (hitID < 0) {
                     break;
                 }
 
                 int layerBit = BSTStartBit + adcBank.getInt("layer", hitID) - 1;
-                mcp.get((short) mchitsInBST.get(hitID).otid).MCLayersTrk |= 1L << layerBit;
+                MCHit mchit = mchits.get(det, hitID);
+                MCPart part = mcp.get((short) mchit.otid);
+                part.MCLayersTrk |= 1L << layerBit;
                 if (pindex >= 0) {
-
-                    if (!mcp.get((short) mchitsInBST.get(hitID).otid).RecLayersTrk.containsKey((int) pindex)) {
-                        mcp.get((short) mchitsInBST.get(hitID).otid).RecLayersTrk.put((int) pindex, 0L);
-                    }
-
-                    Long tmp = mcp.get((short) mchitsInBST.get(hitID).otid).RecLayersTrk.get((int) pindex);
-                    tmp |= 1L << layerBit;
-                    mcp.get((short) mchitsInBST.get(hitID).otid).RecLayersTrk.put((int) pindex, tmp);
+                    addRecLayer(part, pindex, layerBit);
                 }
-                if (!mchitsInBST.containsKey(hitID)) {
+                if (mchit == null) {
                     // We need only hits that correspond to an MCHit
                     continue;
                 }
@@ -887,7 +943,7 @@ public class TruthMatch extends ReconstructionEngine {
                 curHit.id = hitID;
                 curHit.cid = (short) iCL;
                 curHit.pindex = pindex;
-                curHit.detector = (byte) DetectorType.BST.getDetectorId();
+                curHit.detector = det;
 
                 if (iHit == 0) {
                     recHits.put(curHit.cid, new ArrayList<>());
@@ -902,8 +958,9 @@ public class TruthMatch extends ReconstructionEngine {
         return recHits;
     }
 
-    Map< Short, List<RecHit>> getBMTHits(DataEvent event, Map<Integer, MCHit> mchitsInBMT, Map<Integer, Map<Short, Integer>> trkID2Index, Map<Short, MCPart> mcp, Map<Short, RecPart> recp) {
+    Map< Short, List<RecHit>> getBMTHits(DataEvent event, MCHitIndex mchits, Map<Integer, Map<Short, Integer>> trkID2Index, Map<Short, MCPart> mcp, Map<Short, RecPart> recp) {
         Map< Short, List<RecHit>> recHits = new HashMap<>();
+        final byte det = (byte) DetectorType.BMT.getDetectorId();
 
         /**
          * Check if three necessary banks exist otherwise will return null
@@ -927,27 +984,22 @@ public class TruthMatch extends ReconstructionEngine {
 
             for (int iHit = 0; iHit < 5; iHit++) {
 
-                int hitID = clBank.getInt(String.format("Hit%d_ID", iHit + 1), iCL) - 1;
+                int hitID = clBank.getInt(HIT_ID_NAMES[iHit], iCL) - 1;
 
                 if (hitID < 0) {
                     break;
                 }
 
                 int layerBit = BMTStartBit + adcBank.getInt("layer", hitID) - 1;
-                mcp.get((short) mchitsInBMT.get(hitID).otid).MCLayersTrk |= 1L << layerBit;
+                MCHit mchit = mchits.get(det, hitID);
+                MCPart part = mcp.get((short) mchit.otid);
+                part.MCLayersTrk |= 1L << layerBit;
                 if (pindex >= 0) {
-
-                    if (!mcp.get((short) mchitsInBMT.get(hitID).otid).RecLayersTrk.containsKey((int) pindex)) {
-                        mcp.get((short) mchitsInBMT.get(hitID).otid).RecLayersTrk.put((int) pindex, 0L);
-                    }
-
-                    Long tmp = mcp.get((short) mchitsInBMT.get(hitID).otid).RecLayersTrk.get((int) pindex);
-                    tmp |= 1L << layerBit;
-                    mcp.get((short) mchitsInBMT.get(hitID).otid).RecLayersTrk.put((int) pindex, tmp);
+                    addRecLayer(part, pindex, layerBit);
                 }
 
-                //System.out.println("Bitwise representation of LayersTrk is " + Long.toBinaryString(mcp.get((short) mchitsInBMT.get(hitID).otid).MCLayersTrk));
-                if (!mchitsInBMT.containsKey(hitID)) {
+                //System.out.println("Bitwise representation of LayersTrk is " + Long.toBinaryString(part.MCLayersTrk));
+                if (mchit == null) {
                     // We need only hits that correspond to an MCHit
                     continue;
                 }
@@ -957,7 +1009,7 @@ public class TruthMatch extends ReconstructionEngine {
                 curHit.id = hitID;
                 curHit.cid = (short) iCL;
                 curHit.pindex = pindex;
-                curHit.detector = (byte) DetectorType.BMT.getDetectorId();
+                curHit.detector = det;
 
                 if (iHit == 0) {
                     recHits.put(curHit.cid, new ArrayList<>());
@@ -972,8 +1024,9 @@ public class TruthMatch extends ReconstructionEngine {
         return recHits;
     }
 
-    Map< Short, List<RecHit>> getDCHits(DataEvent event, Map<Integer, MCHit> mchitsInDC, Map<Short, MCPart> mcp, Map<Short, RecPart> recp) {
+    Map< Short, List<RecHit>> getDCHits(DataEvent event, MCHitIndex mchits, Map<Short, MCPart> mcp, Map<Short, RecPart> recp) {
         Map< Short, List<RecHit>> recHits = new HashMap<>();
+        final byte det = (byte) DetectorType.DC.getDetectorId();
 
         /**
          * Check if three necessary banks exist otherwise will return null
@@ -1005,7 +1058,7 @@ public class TruthMatch extends ReconstructionEngine {
             int layerBit = DCStartBit + layer - 1;
 
             curHit.id = iHit;
-            curHit.detector = (byte) DetectorType.DC.getDetectorId();
+            curHit.detector = det;
             curHit.cid = (short) iHit;
 
             if (tbHitIDs.containsKey(curHit.id)) {
@@ -1014,16 +1067,11 @@ public class TruthMatch extends ReconstructionEngine {
                 curHit.pindex = -1;
             }
 
-            mcp.get((short) mchitsInDC.get(curHit.id).otid).MCLayersTrk |= 1L << layerBit;
+            MCPart part = mcp.get((short) mchits.get(det, curHit.id).otid);
+            part.MCLayersTrk |= 1L << layerBit;
             if (curHit.pindex >= 0) {
 
-                if (!mcp.get((short) mchitsInDC.get(curHit.id).otid).RecLayersTrk.containsKey((int) curHit.pindex)) {
-                    mcp.get((short) mchitsInDC.get(curHit.id).otid).RecLayersTrk.put((int) curHit.pindex, 0L);
-                }
-
-                Long tmp = mcp.get((short) mchitsInDC.get(curHit.id).otid).RecLayersTrk.get((int) curHit.pindex);
-                tmp |= 1L << layerBit;
-                mcp.get((short) mchitsInDC.get(curHit.id).otid).RecLayersTrk.put((int) curHit.pindex, tmp);
+                addRecLayer(part, curHit.pindex, layerBit);
 
                 //recp.get(curHit.pindex).RecLayersTrk |= 1L << layerBit;
             }
@@ -1319,10 +1367,10 @@ public class TruthMatch extends ReconstructionEngine {
      * @param cls: List of clusters for a given detector
      * @param Rechits_a : Map<clId, ListRecHis>, i.e. list of hits for each
      * cluster
-     * @param mchits : Map<hitn, mchit>, map of mc hits, where the Key is the
-     * "hitn"
+     * @param mchits : index of the mc hits, by detector and "hitn"
+     * @param detector : detector of the clusters
      */
-    void MatchClasters(List<RecCluster> cls, Map< Short, List<RecHit>> Rechits_a, Map<Integer, MCHit> mchits) {
+    void MatchClasters(List<RecCluster> cls, Map< Short, List<RecHit>> Rechits_a, MCHitIndex mchits, byte detector) {
 
         if (cls == null) {
             return;
@@ -1357,7 +1405,7 @@ public class TruthMatch extends ReconstructionEngine {
 
             for (RecHit curRecHit : recHits) {
 
-                MCHit mchit = mchits.get(curRecHit.id);
+                MCHit mchit = mchits.get(detector, curRecHit.id);
 
                 if (mchit != null) {
                     //cl.nHitMatched = (short) (cl.nHitMatched + (short) 1);
@@ -1654,6 +1702,19 @@ public class TruthMatch extends ReconstructionEngine {
         }
     }
 
+    /**
+     * Sets the bit of a layer in the word of the layers matched to the given
+     * rec particle
+     *
+     * @param part : the MC particle
+     * @param pindex : index of the rec particle
+     * @param layerBit : the bit of the layer
+     */
+    private void addRecLayer(MCPart part, short pindex, int layerBit) {
+        Long word = part.RecLayersTrk.get((int) pindex);
+        part.RecLayersTrk.put((int) pindex, (word == null ? 0L : word) | 1L << layerBit);
+    }
+
     /**
      * Returns the Key of the map that has the highest counts
      *
@@ -75,6 +75,11 @@ public class RICHEBEngine extends ReconstructionEngine {
 
     }*/
 
+    // ----------------
+    public RICHTool get_RICHTool() { return tool; }
+    // ----------------
+
+
     // ----------------
     public void testTraj() {
     // ----------------
@@ -146,6 +151,10 @@ public class RICHEBEngine extends ReconstructionEngine {
                   getConstantsManager().getConstants(run, "/calibration/rich/aerogel"),
                   getConstantsManager().getConstants(run, "/calibration/rich/misalignments") );
 
+        // optional lookup table of the photon propagation, generated by RICHRayTable
+        String rayTable = this.getEngineConfigString("rayTable");
+        if(iflag>0 && rayTable!=null) tool.load_RayTable(rayTable);
+
         return true;
 
     }
@@ -755,11 +755,8 @@ public class RICHEvent {
             photon.traced.set_theta((float) vpho_th);
             photon.traced.set_phi((float) vpho_phi);
 
-            ArrayList<RICHRay> rays = tool.RayTrace(photon.lab_emission, photon.ilay_emission, photon.ico_emission, vpho);
-            if(rays!=null) {
+            if(tool.RayTrace(photon.lab_emission, photon.ilay_emission, photon.ico_emission, vpho, photon.traced)) {
                 if(debugMode>=2) System.out.format(" Photon traced till PMT detection \n");
-                
-                photon.traced.set_raytracks(rays);
 
                 photon.set_meas_hit( photon.traced.get_hit() );
                 photon.set_meas_time( photon.get_start_time() + photon.traced.get_time() );
@@ -767,12 +764,12 @@ public class RICHEvent {
                 if(debugMode>=1)photon.traced.dump_raytrack(head);
 
                 // store in the event
-                if(rays.get(rays.size()-1).is_detected()){
+                if(photon.traced.is_detected()){
                     if(debugMode>=1)System.out.format(" --> detected \n");
                     photons.add(photon);
                     fac=1;
-                    if (photon.traced.get_rayrefle()>2)fac=2.;
-                    //if (photon.traced.get_rayrefle()>2)fac=4.;
+                    if (photon.traced.get_nrefle()>2)fac=2.;
+                    //if (photon.traced.get_nrefle()>2)fac=4.;
                     nk++;
                 }
             }
@@ -35,6 +35,9 @@ public class RICHLayer extends ArrayList<RICHComponent> {
     private Sphere3D tracking_sphere      = null;
     private Shape3D  nominal_plane        = null;
 
+    private RICHSurfaceBVH global_bvh     = null;
+    private RICHSurfaceBVH tracking_bvh   = null;
+
     private ArrayList<Integer> compo_list          = new ArrayList<Integer>();
     
     private RICHFrame local_frame = new RICHFrame();
@@ -202,6 +205,24 @@ public class RICHLayer extends ArrayList<RICHComponent> {
     public Shape3D get_GlobalSurf() { return global_surf; }
     // ----------------
 
+    // ----------------
+    public void build_BVH() { 
+    // ----------------
+    // to be called once the tracking surfaces are final
+
+        global_bvh   = global_surf==null   ? null : new RICHSurfaceBVH(global_surf);
+        tracking_bvh = tracking_surf==null ? null : new RICHSurfaceBVH(tracking_surf);
+    }
+
+    // ----------------
+    public RICHSurfaceBVH get_BVH(Shape3D plane) { 
+    // ----------------
+
+        if(global_bvh!=null && global_bvh.is_Valid(plane)) return global_bvh;
+        if(tracking_bvh!=null && tracking_bvh.is_Valid(plane)) return tracking_bvh;
+        return null;
+    }
+
     // ----------------
     public void set_TrackingSphere(Sphere3D sphere) { tracking_sphere = sphere; }
     // ----------------
@@ -684,7 +705,13 @@ public class RICHLayer extends ArrayList<RICHComponent> {
         List<Point3D> inters = new ArrayList<Point3D>();
         List<Integer> ifaces = new ArrayList<Integer>();
 
-        int nint = plane.intersection_with_faces(ray, inters, ifaces);
+        RICHSurfaceBVH bvh = this.get_BVH(plane);
+        int nint = 0;
+        if(bvh!=null){
+            nint = bvh.intersection_with_faces(ray, inters, ifaces);
+        }else{
+            nint = plane.intersection_with_faces(ray, inters, ifaces);
+        }
         if(debugMode>=1) {
             String ee="out";
             if(exit==0) ee="into";
@@ -87,6 +87,7 @@ public class RICHParticle {
 
     public Line3d direct_ray;
 
+
     private static double MRAD = 1000.;
     private static double RAD = 180./Math.PI;
 
@@ -648,11 +649,9 @@ public class RICHParticle {
                     double theta = par[0];
                     double phi = par[1];
                     Vector3d vpho = new Vector3d( Math.sin(theta)*Math.cos(phi), Math.sin(theta)*Math.sin(phi), Math.cos(theta));
-                    ArrayList<RICHRay> rays = tool.RayTrace(lab_emission, ilay_emission, ico_emission, vpho); 
                     double Function = 999;
                     Vector3d pmt_hit = new Vector3d(0.0, 0.0, 0.0);
-                    if(rays!=null){
-                        pmt_hit = tool.toVector3d(rays.get(rays.size()-1).end());
+                    if(tool.RayTrace_Hit(lab_emission, ilay_emission, ico_emission, vpho, pmt_hit)>=0){
                         Function = pmt_hit.distance(meas_hit);
                     }
 
@@ -688,12 +687,11 @@ public class RICHParticle {
             traced.set_EtaC((float) Math.acos(Cos_EtaC));
 
             Vector3d vmin = new Vector3d( Math.sin(Theta_Min)*Math.cos(Phi_Min), Math.sin(Theta_Min)*Math.sin(Phi_Min), Math.cos(Theta_Min));
-            ArrayList<RICHRay> raysmin = tool.RayTrace(lab_emission, ilay_emission, ico_emission, vmin);
-            if(raysmin!=null)traced.set_raytracks(raysmin);
+            tool.RayTrace(lab_emission, ilay_emission, ico_emission, vmin, traced);
 
             if(debugMode>=1){
                 traced.show_raytrack();
-                System.out.format("#### ETAC ref %8.4f  min %8.4f  path %8.2f  time %8.2f \n", EtaC_ref*MRAD, traced.get_EtaC()*MRAD, traced.get_raypath(), traced.get_raytime());
+                System.out.format("#### ETAC ref %8.4f  min %8.4f  path %8.2f  time %8.2f \n", EtaC_ref*MRAD, traced.get_EtaC()*MRAD, traced.get_path(), traced.get_time());
             }
 
         }else{
@@ -726,8 +724,7 @@ public class RICHParticle {
         double the_min    = trial_pho.lab_theta;
         Vector3d pmt_min  = trial_pho.meas_hit;
         int nrefle_min = trial_pho.traced.get_nrefle();
-        ArrayList<RICHRay> rays_min = new ArrayList(); 
-        rays_min = trial_pho.traced.get_raytracks();
+        boolean moved = false;
 
         Vector3d vec_dist = meas_hit.minus(pmt_min);
         double dist = Math.sqrt(vec_dist.x*vec_dist.x+vec_dist.y*vec_dist.y);
@@ -750,13 +747,12 @@ public class RICHParticle {
                 Vector3d vpho_dthe = new Vector3d( Math.sin(theta_dthe)*Math.cos(phi_min), Math.sin(theta_dthe)*Math.sin(phi_min), Math.cos(theta_dthe));
                 double naero = 1/(hadron.get_beta(get_CLASpid())*(Math.sin(Theta_P)* Math.sin(theta_dthe)*Math.cos(phi_min-Phi_P)+Math.cos(Theta_P)*Math.cos(theta_dthe)));
 
-                ArrayList<RICHRay> rays_dthe = tool.RayTrace(lab_emission, ilay_emission, ico_emission, vpho_dthe, naero);
+                Vector3d pmt_dthe = new Vector3d(0.0, 0.0, 0.0);
+                int nrefle_dthe = tool.RayTrace_Hit(lab_emission, ilay_emission, ico_emission, vpho_dthe, naero, pmt_dthe);
                 //ArrayList<RICHRay> rays_dthe = tool.RayTrace(lab_emission, ilay_emission, ico_emission, vpho_dthe);
-                if(rays_dthe!=null){
-                    int nrefle_dthe = get_rayrefle(rays_dthe);
+                if(nrefle_dthe>=0){
                     if(debugMode>=1) System.out.format("     test %2d  the %7.1f  nrfl %2d vs %2d ",nthe, theta_dthe*MRAD, nrefle_dthe, nrefle_min); 
                     if(nrefle_dthe==nrefle_min){
-                        Vector3d pmt_dthe = tool.toVector3d(rays_dthe.get(rays_dthe.size()-1).end());
                         Vector3d vers_dthe = pmt_dthe.minus(pmt_min);
                         dthe = (vec_dist.x*vers_dthe.x + vec_dist.y*vers_dthe.y) / (vers_dthe.x*vers_dthe.x + vers_dthe.y*vers_dthe.y) * nominal_sChAngle();
                         if(debugMode>=1) System.out.format("   --> dthe pos %7.2f %7.2f %7.2f  delta %7.1f (%8.2f %8.2f) \n", 
@@ -773,13 +769,12 @@ public class RICHParticle {
                 Vector3d vpho_dphi = new Vector3d( Math.sin(the_min)*Math.cos(phi_dphi), Math.sin(the_min)*Math.sin(phi_dphi), Math.cos(the_min));
                 double naero = 1/(hadron.get_beta(get_CLASpid())*(Math.sin(Theta_P)* Math.sin(the_min)*Math.cos(phi_dphi-Phi_P)+Math.cos(Theta_P)*Math.cos(the_min)));
 
-                ArrayList<RICHRay> rays_dphi = tool.RayTrace(lab_emission, ilay_emission, ico_emission, vpho_dphi, naero);
+                Vector3d pmt_dphi = new Vector3d(0.0, 0.0, 0.0);
+                int nrefle_dphi = tool.RayTrace_Hit(lab_emission, ilay_emission, ico_emission, vpho_dphi, naero, pmt_dphi);
                 //ArrayList<RICHRay> rays_dphi = tool.RayTrace(lab_emission, ilay_emission, ico_emission, vpho_dphi);
-                if(rays_dphi!=null){
-                    int nrefle_dphi = get_rayrefle(rays_dphi);
+                if(nrefle_dphi>=0){
                     if(debugMode>=1) System.out.format("     test %2d  phi %7.2f  nrfl %2d vs %2d ",nphi, phi_dphi*RAD, nrefle_dphi, nrefle_min); 
                     if(nrefle_dphi==nrefle_min){
-                        Vector3d pmt_dphi = tool.toVector3d(rays_dphi.get(rays_dphi.size()-1).end());
                         Vector3d vers_dphi = (pmt_dphi.minus(pmt_min));
                         dphi = (vec_dist.x*vers_dphi.x + vec_dist.y*vers_dphi.y) / (vers_dphi.x*vers_dphi.x + vers_dphi.y*vers_dphi.y) * nominal_sChAngle();
                         if(debugMode>=1) System.out.format("   --> dphi pos %7.2f %7.2f %7.2f  delta %7.2f (%8.2f %8.2f) \n", 
@@ -801,15 +796,17 @@ public class RICHParticle {
                     Vector3d vpho_min = new Vector3d( Math.sin(the_new)*Math.cos(phi_new), Math.sin(the_new)*Math.sin(phi_new), Math.cos(the_new));
                     double naero = 1/(hadron.get_beta(get_CLASpid())*(Math.sin(Theta_P)* Math.sin(the_new)*Math.cos(phi_new-Phi_P)+Math.cos(Theta_P)*Math.cos(the_new)));
 
-                    rays_min = tool.RayTrace(lab_emission, ilay_emission, ico_emission, vpho_min, naero);
+                    Vector3d pmt_new = new Vector3d(0.0, 0.0, 0.0);
+                    int nrefle_new = tool.RayTrace_Hit(lab_emission, ilay_emission, ico_emission, vpho_min, naero, pmt_new);
                     //rays_min = tool.RayTrace(lab_emission, ilay_emission, ico_emission, vpho_min);
-                    if(rays_min!=null){
-                        int nrefle_new = get_rayrefle(rays_min);
+                    if(nrefle_new>=0){
                         if(debugMode>=1) System.out.format("        test %2d  the %7.1f  phi %7.2f  nrfl %2d vs %2d ",nn, the_new*MRAD, phi_new*RAD, nrefle_new, nrefle_min); 
                         if(nrefle_new==nrefle_min){
                             the_min=the_new;
                             phi_min=phi_new;
-                            pmt_min = tool.toVector3d(rays_min.get(rays_min.size()-1).end());
+                            pmt_min = pmt_new;
+                            // the photon of the accepted step is traced once at the end
+                            moved = true;
                             vec_dist = meas_hit.minus(pmt_min);
                             dist = Math.sqrt(vec_dist.x*vec_dist.x+vec_dist.y*vec_dist.y);
                             Cos_EtaC = Math.sin(Theta_P)* Math.sin(the_min)*Math.cos(phi_min-Phi_P)+Math.cos(Theta_P)*Math.cos(the_min);
@@ -850,7 +847,12 @@ public class RICHParticle {
             traced.set_phi((float) phi_min);
             traced.set_aeron((float) n_tile);
             traced.set_EtaC((float) EtaCmin);
-            traced.set_raytracks(rays_min);
+            if(moved){
+                Vector3d vpho_min = new Vector3d( Math.sin(the_min)*Math.cos(phi_min), Math.sin(the_min)*Math.sin(phi_min), Math.cos(the_min));
+                tool.RayTrace(lab_emission, ilay_emission, ico_emission, vpho_min, n_tile, traced);
+            }else{
+                traced.copy_raypath(trial_pho.traced);
+            }
 
             if(debugMode>=1){
                 traced.show_raytrack();
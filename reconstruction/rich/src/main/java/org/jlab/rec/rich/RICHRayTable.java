@@ -0,0 +1,369 @@
+package org.jlab.rec.rich;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.jlab.geom.prim.Face3D;
+import org.jlab.geom.prim.Line3D;
+import org.jlab.geom.prim.Point3D;
+import org.jlab.geom.prim.Shape3D;
+import org.jlab.geom.prim.Vector3D;
+
+import eu.mihosoft.vrl.v3d.Vector3d;
+
+// ----------------
+public class RICHRayTable {
+// ----------------
+
+    /**
+     * Lookup table of the photon propagation from the aerogel exit to the
+     * MaPMT plane, generated offline by ray-tracing and memory-mapped at init.
+     *
+     * For every aerogel tile the table is a grid in the exit point (lab x,y
+     * over the tile) and the photon direction in air (slopes dx/dz, dy/dz).
+     * Each node stores the end point, the path length and optical path (length
+     * times refractive index, for the transit time) in air, the number of
+     * reflections and refractions, the type of the first interaction in air and
+     * a signature of the crossed optical components.  Being taken after the
+     * refraction at the aerogel exit, the table does not depend on the
+     * refractive index used for the emission: the aerogel segment is added
+     * by the caller.
+     * A lookup interpolates the 16 nodes around the point and fails, leaving
+     * the full ray-tracing to the caller, if any node is missing or if the
+     * nodes did not cross the same components (e.g. close to mirror edges).
+     *
+     * The file starts with a version and a checksum of the tracking
+     * geometry, and is rejected if they do not match the current ones.
+     */
+
+    public static final int MAGIC   = 0x52494348;     // "RICH"
+    public static final int VERSION = 3;
+
+    private static final int TILE_BYTES   = 40;
+    static final int NODE_BYTES           = 36;
+    static final int SIGNATURE_OFFSET     = 28;
+    private static final int VALID        = 1<<31;
+    private static final int DETECTED     = 1<<30;
+    private static final int NREFL_MASK   = 0xFF;
+    private static final int NREFRA_SHIFT = 8;
+
+    // ----------------
+    public static class Path {
+    // ----------------
+    // photon path from the aerogel exit to the MaPMT plane, as interpolated by lookup
+
+        public double  length;           // path length in air
+        public double  optical;          // path length times refractive index, i.e. transit time times c
+        public int     nrefra;           // number of refractions, including the aerogel exit
+        public int     firstrefle;       // type of the ray after the first interaction in air, as RICHSolution.get_FirstRefle
+        public boolean detected;         // ending into the MAPMT array
+    }
+
+    private final ByteBuffer buffer;
+    private final long  checksum;
+    private final int   nxy;
+    private final int   nt;
+    private final double tmax;
+
+    private final int      ntiles;
+    private final int      maxcompo;
+    private final int[]    tile_index;          // by ilay*maxcompo+ico, -1 if missing
+    private final double[] tile_range;          // xmin, xmax, ymin, ymax by tile
+    private final int      data_offset;
+
+    // ----------------
+    private RICHRayTable(ByteBuffer buffer) {
+    // ----------------
+
+        this.buffer = buffer;
+        checksum = buffer.getLong(8);
+        nxy      = buffer.getInt(16);
+        nt       = buffer.getInt(20);
+        tmax     = buffer.getDouble(24);
+        ntiles   = buffer.getInt(32);
+
+        int header = 36;
+        int maxlay = 0, maxco = 0;
+        for (int it=0; it<ntiles; it++){
+            maxlay = Math.max(maxlay, buffer.getInt(header+it*TILE_BYTES)+1);
+            maxco  = Math.max(maxco,  buffer.getInt(header+it*TILE_BYTES+4)+1);
+        }
+        maxcompo   = maxco;
+        tile_index = new int[maxlay*maxco];
+        tile_range = new double[4*ntiles];
+        Arrays.fill(tile_index, -1);
+        for (int it=0; it<ntiles; it++){
+            int pos = header+it*TILE_BYTES;
+            tile_index[buffer.getInt(pos)*maxco+buffer.getInt(pos+4)] = it;
+            for (int k=0; k<4; k++) tile_range[4*it+k] = buffer.getDouble(pos+8+8*k);
+        }
+        data_offset = header+ntiles*TILE_BYTES;
+
+    }
+
+    // ----------------
+    public static RICHRayTable load(String filename, long geochecksum) {
+    // ----------------
+    // map the table file, null if missing or not matching the current geometry
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if(channel.size()>Integer.MAX_VALUE){
+                System.out.format("RICHRayTable: table %s too large, ignored \n", filename);
+                return null;
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(buffer.getInt(0)!=MAGIC || buffer.getInt(4)!=VERSION){
+                System.out.format("RICHRayTable: table %s has wrong format or version, ignored \n", filename);
+                return null;
+            }
+            if(buffer.getLong(8)!=geochecksum){
+                System.out.format("RICHRayTable: table %s built for a different geometry, ignored \n", filename);
+                return null;
+            }
+            RICHRayTable table = new RICHRayTable(buffer);
+            System.out.format("RICHRayTable: loaded %s with %d tiles \n", filename, table.ntiles);
+            return table;
+        } catch (IOException e) {
+            System.out.format("RICHRayTable: cannot read table %s: %s \n", filename, e.getMessage());
+            return null;
+        }
+
+    }
+
+    // ----------------
+    public long get_Checksum() { return checksum; }
+    // ----------------
+
+    // ----------------
+    private static int node_Index(int nxy, int nt, int ix, int iy, int itx, int ity) {
+    // ----------------
+        return ((ix*nxy+iy)*nt+itx)*nt+ity;
+    }
+
+    // ----------------
+    private static double grid_Position(double value, double min, double max, int n) {
+    // ----------------
+    // fractional grid position, negative if out of range
+
+        if(!(max>min) || value<min || value>max) return -1;
+        return Math.min((value-min)/(max-min)*(n-1), n-1-1.e-9);
+    }
+
+    // ----------------
+    public int lookup(int ilay, int ico, double x, double y, Vector3D dir, Vector3d hit) {
+    // ----------------
+    // set hit to the end point and return the number of reflections, -1 (hit unchanged) if not available
+
+        return lookup(ilay, ico, x, y, dir, hit, null);
+    }
+
+    // ----------------
+    public int lookup(int ilay, int ico, double x, double y, Vector3D dir, Vector3d hit, Path path) {
+    // ----------------
+    // as above, also filling path if not null (unchanged if not available)
+
+        if(ilay<0 || ico<0 || ico>=maxcompo || ilay*maxcompo+ico>=tile_index.length) return -1;
+        int it = tile_index[ilay*maxcompo+ico];
+        if(it<0 || dir.z()<=0) return -1;
+
+        double gx = grid_Position(x, tile_range[4*it],   tile_range[4*it+1], nxy);
+        double gy = grid_Position(y, tile_range[4*it+2], tile_range[4*it+3], nxy);
+        double gtx = grid_Position(dir.x()/dir.z(), -tmax, tmax, nt);
+        double gty = grid_Position(dir.y()/dir.z(), -tmax, tmax, nt);
+        if(gx<0 || gy<0 || gtx<0 || gty<0) return -1;
+
+        int ix = (int) gx, iy = (int) gy, itx = (int) gtx, ity = (int) gty;
+        double fx = gx-ix, fy = gy-iy, ftx = gtx-itx, fty = gty-ity;
+        int base = data_offset + it*nxy*nxy*nt*nt*NODE_BYTES;
+
+        double hx = 0, hy = 0, hz = 0, length = 0, optical = 0;
+        int flags = 0;
+        long signature = 0;
+        for (int corner=0; corner<16; corner++){
+            int cx = corner>>3, cy = (corner>>2)&1, ctx = (corner>>1)&1, cty = corner&1;
+            int pos = base + node_Index(nxy, nt, ix+cx, iy+cy, itx+ctx, ity+cty)*NODE_BYTES;
+            int nflags = buffer.getInt(pos+20);
+            long nsignature = buffer.getLong(pos+SIGNATURE_OFFSET);
+            if((nflags & VALID)==0) return -1;
+            if(corner==0){
+                flags = nflags;
+                signature = nsignature;
+            }else if(nflags!=flags || nsignature!=signature){
+                return -1;
+            }
+            double w = (cx==1 ? fx : 1-fx) * (cy==1 ? fy : 1-fy) * (ctx==1 ? ftx : 1-ftx) * (cty==1 ? fty : 1-fty);
+            hx   += w*buffer.getFloat(pos);
+            hy   += w*buffer.getFloat(pos+4);
+            hz   += w*buffer.getFloat(pos+8);
+            if(path!=null){
+                length  += w*buffer.getFloat(pos+12);
+                optical += w*buffer.getFloat(pos+16);
+            }
+        }
+
+        hit.set(hx, hy, hz);
+        if(path!=null){
+            // same components at all nodes, hence the same interactions
+            path.length     = length;
+            path.optical    = optical;
+            path.nrefra     = (flags>>NREFRA_SHIFT) & NREFL_MASK;
+            path.firstrefle = buffer.getInt(base + node_Index(nxy, nt, ix, iy, itx, ity)*NODE_BYTES + 24);
+            path.detected   = (flags & DETECTED)!=0;
+        }
+        return flags & NREFL_MASK;
+
+    }
+
+    // ----------------
+    static double[] tile_Range(Shape3D surf) {
+    // ----------------
+    // xmin, xmax, ymin, ymax, zmin, zmax of the tile surface
+
+        double[] range = {Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int ifa=0; ifa<surf.size(); ifa++){
+            Face3D face = surf.face(ifa);
+            for (int ip=0; ip<3; ip++){
+                Point3D p = face.point(ip);
+                range[0] = Math.min(range[0], p.x());   range[1] = Math.max(range[1], p.x());
+                range[2] = Math.min(range[2], p.y());   range[3] = Math.max(range[3], p.y());
+                range[4] = Math.min(range[4], p.z());   range[5] = Math.max(range[5], p.z());
+            }
+        }
+        return range;
+    }
+
+    // ----------------
+    public static void generate(RICHTool tool, String filename, int nxy, int nt, double tmax) throws IOException {
+    // ----------------
+    // ray-trace the grid of every aerogel tile and write the table
+
+        int debugMode = 0;
+
+        ArrayList<int[]> tiles = new ArrayList<int[]>();
+        ArrayList<double[]> ranges = new ArrayList<double[]>();
+        for (int ilay=0; ilay<tool.get_nLayers(); ilay++){
+            RICHLayer layer = tool.get_Layer(ilay);
+            if(layer==null || layer.size()==0 || !layer.is_aerogel()) continue;
+            for (int ico=0; ico<layer.size(); ico++){
+                Shape3D surf = layer.get_TrackingSurf(ico);
+                if(surf==null || surf.size()==0) continue;
+                tiles.add(new int[]{ilay, ico});
+                ranges.add(tile_Range(surf));
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1<<20))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(tool.get_GeometryChecksum());
+            out.writeInt(nxy);
+            out.writeInt(nt);
+            out.writeDouble(tmax);
+            out.writeInt(tiles.size());
+            for (int it=0; it<tiles.size(); it++){
+                out.writeInt(tiles.get(it)[0]);
+                out.writeInt(tiles.get(it)[1]);
+                for (int k=0; k<4; k++) out.writeDouble(ranges.get(it)[k]);
+            }
+
+            ArrayList<RICHRay> rays = new ArrayList<RICHRay>();
+            for (int it=0; it<tiles.size(); it++){
+                int ilay = tiles.get(it)[0];
+                int ico  = tiles.get(it)[1];
+                double[] range = ranges.get(it);
+                RICHLayer layer = tool.get_Layer(ilay);
+                if(debugMode>=1)System.out.format("RICHRayTable: generate tile %3d %3d \n", ilay, ico);
+
+                for (int ix=0; ix<nxy; ix++){
+                    for (int iy=0; iy<nxy; iy++){
+
+                        // exit point of the tile at the grid (x,y)
+                        double x = range[0] + (range[1]-range[0])*ix/(nxy-1);
+                        double y = range[2] + (range[3]-range[2])*iy/(nxy-1);
+                        Line3D vertical = new Line3D(new Point3D(x, y, range[4]-10.), new Point3D(x, y, range[5]+10.));
+                        RICHIntersection exit = tool.find_AerogelExit(layer, vertical, ico);
+
+                        for (int itx=0; itx<nt; itx++){
+                            for (int ity=0; ity<nt; ity++){
+
+                                int flags = 0;
+                                int firstrefle = 0;
+                                long signature = 0;
+                                double length = 0, optical = 0;
+                                Point3D end = new Point3D(0., 0., 0.);
+                                if(exit!=null){
+                                    double tx = -tmax + 2*tmax*itx/(nt-1);
+                                    double ty = -tmax + 2*tmax*ity/(nt-1);
+                                    Point3D pos = exit.get_pos();
+
+                                    // same first ray and refracted ray as in RICHTool.RayTrace
+                                    RICHRay lastray = new RICHRay(pos, new Vector3D(tx, ty, 1.).asUnit().multiply(200));
+                                    lastray.set_type(20000+ilay*100+ico+1);
+                                    lastray.set_refind(RICHConstants.RICH_AIR_INDEX);
+                                    rays.clear();
+                                    rays.add(new RICHRay(pos, pos));
+                                    tool.trace_Optics(lastray, exit, rays);
+
+                                    // path and time summed as in RICHSolution, ray 0 standing for the aerogel segment
+                                    int nrefl = 0, nrefra = 0;
+                                    signature = 17;
+                                    for (int ir=1; ir<rays.size(); ir++){
+                                        RICHRay ray = rays.get(ir);
+                                        if(ray.get_type()/10000==1) nrefl++;
+                                        if(ray.get_type()/10000==2) nrefra++;
+                                        signature = 31*signature + ray.get_type();
+                                        length  += ray.direction().mag();
+                                        optical += ray.direction().mag()*ray.get_refind();
+                                    }
+                                    if(rays.size()>2) firstrefle = rays.get(2).get_type();
+                                    RICHRay last = rays.get(rays.size()-1);
+                                    end = last.end();
+                                    flags = VALID | (nrefra<<NREFRA_SHIFT) | nrefl;
+                                    if(last.is_detected()) flags |= DETECTED;
+                                }
+                                out.writeFloat((float) end.x());
+                                out.writeFloat((float) end.y());
+                                out.writeFloat((float) end.z());
+                                out.writeFloat((float) length);
+                                out.writeFloat((float) optical);
+                                out.writeInt(flags);
+                                out.writeInt(firstrefle);
+                                out.writeLong(signature);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+    }
+
+    // ----------------
+    public static void main(String[] args) throws IOException {
+    // ----------------
+    // RICHRayTable <output file> [grid points in x,y] [grid points in slope] [max slope]
+
+        if(args.length<1){
+            System.out.println("usage: RICHRayTable <output file> [nxy=5] [nt=48] [tmax=1.2]");
+            return;
+        }
+        int nxy     = args.length>1 ? Integer.parseInt(args[1]) : 5;
+        int nt      = args.length>2 ? Integer.parseInt(args[2]) : 48;
+        double tmax = args.length>3 ? Double.parseDouble(args[3]) : 1.2;
+
+        RICHEBEngine engine = new RICHEBEngine();
+        engine.init();
+        generate(engine.get_RICHTool(), args[0], nxy, nt, tmax);
+
+    }
+
+}
@@ -38,6 +38,8 @@ public class RICHSolution {
     private int   nrefle=0;                           //      Number of photon reflections 
     private int   nrefra=0;                           //      Number of photon refractions
     private float time=0;                             //      Transit time within the RICH (solution dependent)
+    private int   firstrefle=0;                       //      Type of the first interaction in air
+    private boolean detected=false;                   //      Photon ending into the MAPMT array
     private double machi2 = 0.0;                      //      chi2 of the hit-trajectory matching
     private Vector3d hit = new Vector3d(0,0,0);;      //      Impact point of photon on the PMT
 
@@ -132,7 +134,7 @@ public class RICHSolution {
     // ----------------
 
         if(raytracks.size()>2) return raytracks.get(2).get_type();
-        return 0;
+        return firstrefle;
 
     }
 
@@ -192,6 +194,10 @@ public class RICHSolution {
     public int get_nrefra() { return nrefra; }
     // ----------------
 
+    // ----------------
+    public boolean is_detected() { return detected; }
+    // ----------------
+
     // -------------
     public int get_nrays() { return raytracks.size(); }
     // -------------
@@ -376,6 +382,37 @@ public class RICHSolution {
         this.path = this.get_raypath();
         this.nrefle = this.get_rayrefle();
         this.nrefra = this.get_rayrefra();
+        this.firstrefle = this.get_FirstRefle();
+        this.detected = this.get_lastray().is_detected();
+    }
+
+    // ----------------
+    public void set_tablepath(Vector3d hit, float path, float time, int nrefle, int nrefra, int firstrefle, boolean detected){
+    // ----------------
+    // photon taken from the ray-tracing lookup table, without the detailed rays
+
+        this.hit  = hit;
+        this.time = time;
+        this.path = path;
+        this.nrefle = nrefle;
+        this.nrefra = nrefra;
+        this.firstrefle = firstrefle;
+        this.detected = detected;
+    }
+
+    // ----------------
+    public void copy_raypath(RICHSolution sol){
+    // ----------------
+    // photon path of another solution, with its rays if any
+
+        this.raytracks.addAll(sol.raytracks);
+        this.hit  = new Vector3d(sol.hit.x, sol.hit.y, sol.hit.z);
+        this.time = sol.time;
+        this.path = sol.path;
+        this.nrefle = sol.nrefle;
+        this.nrefra = sol.nrefra;
+        this.firstrefle = sol.firstrefle;
+        this.detected = sol.detected;
     }
 
     
@@ -0,0 +1,101 @@
+package org.jlab.rec.rich;
+
+import java.util.List;
+import org.jlab.geom.prim.BoundingBoxTree;
+import org.jlab.geom.prim.Face3D;
+import org.jlab.geom.prim.Line3D;
+import org.jlab.geom.prim.Point3D;
+import org.jlab.geom.prim.Shape3D;
+
+// ----------------
+public class RICHSurfaceBVH {
+// ----------------
+
+    /**
+     * Bounding volume hierarchy over the triangular faces of a RICH tracking
+     * surface, built once at layer initialization.
+     * The face boxes are indexed by a BoundingBoxTree; a query only tests
+     * the faces whose box is crossed by the (infinite) line and returns them
+     * in face order, so that the intersections are exactly the ones of
+     * Shape3D.intersection_with_faces.
+     */
+
+    private static final double EPS = 1.e-6;
+
+    private final Shape3D shape;
+    private final int     nfaces;
+    private final BoundingBoxTree tree;
+
+    private static final ThreadLocal<int[]> SCRATCH = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() { return new int[64]; }
+    };
+
+    // ----------------
+    public RICHSurfaceBVH(Shape3D shape) {
+    // ----------------
+
+        this.shape  = shape;
+        this.nfaces = shape.size();
+        double[] vertex = new double[9];
+        double[] boxes  = new double[6*nfaces];
+        int[]    faces  = new int[nfaces];
+
+        for (int ifa=0; ifa<nfaces; ifa++){
+            Face3D face = shape.face(ifa);
+            for (int ip=0; ip<3; ip++){
+                Point3D p = face.point(ip);
+                vertex[3*ip]   = p.x();
+                vertex[3*ip+1] = p.y();
+                vertex[3*ip+2] = p.z();
+            }
+            for (int ix=0; ix<3; ix++){
+                double lo = Math.min(vertex[ix], Math.min(vertex[3+ix], vertex[6+ix]));
+                double hi = Math.max(vertex[ix], Math.max(vertex[3+ix], vertex[6+ix]));
+                // pad the box to stay conservative against rounding
+                double pad = EPS*(1.+Math.abs(lo)+Math.abs(hi));
+                boxes[6*ifa+ix]   = lo-pad;
+                boxes[6*ifa+3+ix] = hi+pad;
+            }
+            faces[ifa] = ifa;
+        }
+        tree = new BoundingBoxTree(boxes, faces);
+
+    }
+
+    // ----------------
+    public Shape3D get_Shape() { return shape; }
+    // ----------------
+
+    // ----------------
+    public boolean is_Valid(Shape3D plane) { return plane==shape && plane.size()==nfaces; }
+    // ----------------
+
+    // ----------------
+    public int intersection_with_faces(Line3D line, List<Point3D> intersections, List<Integer> ifaces) {
+    // ----------------
+    // same as Shape3D.intersection_with_faces, testing only the faces crossed by the line
+
+        int[] faces = SCRATCH.get();
+        if(faces.length<nfaces){
+            faces = new int[nfaces];
+            SCRATCH.set(faces);
+        }
+
+        double ox = line.origin().x();
+        double oy = line.origin().y();
+        double oz = line.origin().z();
+        int nfound = tree.search(ox, oy, oz, line.end().x()-ox, line.end().y()-oy, line.end().z()-oz,
+                Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 0, faces, 0);
+
+        int count = 0;
+        for (int ii=0; ii<nfound; ii++){
+            int nint = shape.face(faces[ii]).intersection(line, intersections);
+            count += nint;
+            for (int jj=0; jj<nint; jj++) ifaces.add(faces[ii]);
+        }
+        return count;
+
+    }
+
+}
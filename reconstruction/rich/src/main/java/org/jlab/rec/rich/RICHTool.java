@@ -31,6 +31,7 @@ import org.jlab.geom.prim.Face3D;
 import org.jlab.geom.prim.Shape3D;   
 
 import org.jlab.utils.groups.IndexedTable;
+import org.jlab.clas.pdg.PhysicsConstants;
 
 
 /**
@@ -245,6 +246,14 @@ public class RICHTool{
 
     private RICHConstants reco_constants = new RICHConstants();
 
+    private RICHRayTable ray_table = null;
+
+    // rays of the photons ray-traced by RayTrace_Hit, reused per thread
+    private static final ThreadLocal<ArrayList<RICHRay>> HIT_RAYS = new ThreadLocal<ArrayList<RICHRay>>() {
+        @Override
+        protected ArrayList<RICHRay> initialValue() { return new ArrayList<RICHRay>(); }
+    };
+
     //------------------------------
     public void init_GeoConstants(int iflag, IndexedTable aeroConstants, IndexedTable misaConstants, IndexedTable paraConstants){
     //------------------------------
@@ -1228,6 +1237,9 @@ public class RICHTool{
 
             store_TrackingPlane(ilay);
 
+            // acceleration structure over the final (misaligned) surfaces
+            get_Layer(ilay).build_BVH();
+
         }
 
         
@@ -2266,6 +2278,53 @@ public class RICHTool{
      }
 
 
+    //------------------------------
+    public int get_nLayers(){ return opticlayers.size(); }
+    //------------------------------
+
+
+    //------------------------------
+    public long get_GeometryChecksum(){
+    //------------------------------
+    // hash of the tracking surfaces, to validate the ray-tracing lookup table
+
+        long hash = 17 + reco_constants.DO_CURVED_AERO;
+        for (RICHLayer layer: opticlayers){
+            for (int ico=-1; ico<layer.size(); ico++){
+                Shape3D surf = layer.get_TrackingSurf(ico);
+                if(surf==null) continue;
+                for (int ifa=0; ifa<surf.size(); ifa++){
+                    for (int ip=0; ip<3; ip++){
+                        Point3D p = surf.face(ifa).point(ip);
+                        hash = 31*hash + Double.doubleToLongBits(p.x());
+                        hash = 31*hash + Double.doubleToLongBits(p.y());
+                        hash = 31*hash + Double.doubleToLongBits(p.z());
+                    }
+                }
+            }
+        }
+        return hash;
+    }
+
+
+    //------------------------------
+    public boolean load_RayTable(String filename){
+    //------------------------------
+
+        ray_table = RICHRayTable.load(filename, get_GeometryChecksum());
+        return ray_table!=null;
+    }
+
+
+    //------------------------------
+    public RICHRayTable get_RayTable(){ return ray_table; }
+    //------------------------------
+
+    //------------------------------
+    public void set_RayTable(RICHRayTable table){ ray_table = table; }
+    //------------------------------
+
+
     //------------------------------
     public int get_LayerNumber(String slay){
     //------------------------------
@@ -3116,13 +3175,34 @@ public class RICHTool{
 
     }
 
+    // ----------------
+    public boolean RayTrace(Vector3d emission, int orilay, int orico, Vector3d vlab, ArrayList<RICHRay> raytracks) {
+    // ---------------- 
+
+        RICHLayer layer = get_Layer(orilay);
+        if(layer==null)return false;
+        return RayTrace(emission, orilay, orico, vlab, layer.get(orico).get_index(), raytracks);
+
+    }
+
     // ----------------
     public ArrayList<RICHRay> RayTrace(Vector3d emission, int orilay, int orico, Vector3d vlab, double naero) {
     // ---------------- 
     // return the hit position on the PMT plane of a photon emitted at emission with direction vlab
 
-        int debugMode = 0;
         ArrayList<RICHRay> raytracks = new ArrayList<RICHRay>();
+        if(!RayTrace(emission, orilay, orico, vlab, naero, raytracks)) return null;
+        return raytracks;
+
+    }
+
+    // ----------------
+    public boolean RayTrace(Vector3d emission, int orilay, int orico, Vector3d vlab, double naero, ArrayList<RICHRay> raytracks) {
+    // ---------------- 
+    // as above, filling the given (reused) list; false if the photon does not exit the aerogel
+
+        int debugMode = 0;
+        raytracks.clear();
 
         Point3D emi = toPoint3D(emission);
         Vector3D vdir = toVector3D(vlab);
@@ -3135,15 +3215,10 @@ public class RICHTool{
         }
 
         RICHLayer layer = get_Layer(orilay);
-        if(layer==null)return null;
+        if(layer==null)return false;
 
-        RICHIntersection first_intersection = null;
-        if(reco_constants.DO_CURVED_AERO==1){
-            first_intersection = layer.find_ExitCurved(lastray.asLine3D(), orico);
-        }else{
-            first_intersection = layer.find_Exit(lastray.asLine3D(), orico);
-        }
-        if(first_intersection==null)return null;   
+        RICHIntersection first_intersection = find_AerogelExit(layer, lastray.asLine3D(), orico);
+        if(first_intersection==null)return false;   
 
         if(debugMode>=1){
             System.out.format(" first inter : ");
@@ -3174,6 +3249,134 @@ public class RICHTool{
             lastray.showRay();
         }
 
+        trace_Optics(lastray, last_intersection, raytracks);
+
+        if(debugMode>=1) System.out.format(" --------------------------- \n");
+        //if(detected==true)return raytracks;
+        return true;
+        //return null;
+   }
+
+
+    // ----------------
+    public RICHIntersection find_AerogelExit(RICHLayer layer, Line3D ray, int orico) {
+    // ---------------- 
+
+        if(reco_constants.DO_CURVED_AERO==1){
+            return layer.find_ExitCurved(ray, orico);
+        }else{
+            return layer.find_Exit(ray, orico);
+        }
+    }
+
+
+    // ----------------
+    public int RayTrace_Hit(Vector3d emission, int orilay, int orico, Vector3d vlab, Vector3d hit) {
+    // ---------------- 
+
+        RICHLayer layer = get_Layer(orilay);
+        if(layer==null)return -1;
+        return RayTrace_Hit(emission, orilay, orico, vlab, layer.get(orico).get_index(), hit);
+
+    }
+
+
+    // ----------------
+    public int RayTrace_Hit(Vector3d emission, int orilay, int orico, Vector3d vlab, double naero, Vector3d hit) {
+    // ---------------- 
+    // set hit to the end point of the photon and return the number of mirror reflections, -1 if the photon
+    // does not exit the aerogel. Taken from the lookup table when available, otherwise ray-traced.
+
+        int nrefl = lookup_RayTable(emission, orilay, orico, vlab, naero, hit, null);
+        if(nrefl>=0) return nrefl;
+
+        ArrayList<RICHRay> raytracks = HIT_RAYS.get();
+        if(!RayTrace(emission, orilay, orico, vlab, naero, raytracks)) return -1;
+        Point3D end = raytracks.get(raytracks.size()-1).end();
+        hit.set(end.x(), end.y(), end.z());
+        nrefl = 0;
+        for (RICHRay ray : raytracks) {
+            if(ray.get_type()/10000 == 1) nrefl++;
+        }
+        return nrefl;
+
+    }
+
+
+    // ----------------
+    public boolean RayTrace(Vector3d emission, int orilay, int orico, Vector3d vlab, RICHSolution solution) {
+    // ---------------- 
+
+        RICHLayer layer = get_Layer(orilay);
+        if(layer==null)return false;
+        return RayTrace(emission, orilay, orico, vlab, layer.get(orico).get_index(), solution);
+
+    }
+
+
+    // ----------------
+    public boolean RayTrace(Vector3d emission, int orilay, int orico, Vector3d vlab, double naero, RICHSolution solution) {
+    // ---------------- 
+    // set hit, path, time and interactions of the photon in solution, false if the photon does not exit the aerogel.
+    // Taken from the lookup table when available (without the detailed rays), otherwise ray-traced.
+
+        RICHRayTable.Path path = new RICHRayTable.Path();
+        Vector3d hit = new Vector3d(0, 0, 0);
+        int nrefl = lookup_RayTable(emission, orilay, orico, vlab, naero, hit, path);
+        if(nrefl>=0){
+            solution.set_tablepath(hit, (float) path.length, (float) (path.optical/PhysicsConstants.speedOfLight()),
+                                   nrefl, path.nrefra, path.firstrefle, path.detected);
+            return true;
+        }
+
+        ArrayList<RICHRay> raytracks = RayTrace(emission, orilay, orico, vlab, naero);
+        if(raytracks==null) return false;
+        solution.set_raytracks(raytracks);
+        return true;
+
+    }
+
+
+    // ----------------
+    private int lookup_RayTable(Vector3d emission, int orilay, int orico, Vector3d vlab, double naero, Vector3d hit, RICHRayTable.Path path) {
+    // ---------------- 
+    // number of mirror reflections from the lookup table, -1 (to be ray-traced) if not available.
+    // The path, if not null, includes the aerogel segment from the emission
+
+        if(ray_table==null)return -1;
+        RICHLayer layer = get_Layer(orilay);
+        if(layer==null)return -1;
+
+        Point3D emi = toPoint3D(emission);
+        RICHRay ray = new RICHRay(emi, toVector3D(vlab).multiply(200));
+        RICHIntersection exit = find_AerogelExit(layer, ray.asLine3D(), orico);
+        if(exit==null)return -1;
+
+        // refraction at the aerogel exit, as in RayTrace
+        Point3D pos = exit.get_pos();
+        RICHRay oriray = new RICHRay(emi, pos);
+        exit.set_nin((float) naero);
+        RICHRay airray = OpticalRotation(new RICHRay(pos, oriray.direction().multiply(200)), exit);
+
+        int nrefl = ray_table.lookup(orilay, exit.get_component(), pos.x(), pos.y(), airray.direction(), hit, path);
+        if(nrefl>=0 && path!=null){
+            double aerogel = oriray.direction().mag();
+            path.length  += aerogel;
+            path.optical += aerogel*naero;
+        }
+        return nrefl;
+
+    }
+
+
+    // ----------------
+    public void trace_Optics(RICHRay lastray, RICHIntersection last_intersection, ArrayList<RICHRay> raytracks) {
+    // ---------------- 
+    // follow the ray leaving the aerogel through the mirrors till the MaPMT plane, appending the rays
+
+        int debugMode = 0;
+        RICHRay rayin = null;
+
         int jj = 1;
         int front_nrefl = 0;
         boolean detected = false;
@@ -3181,6 +3384,7 @@ public class RICHTool{
         while( detected == false && lost == false && raytracks.size()<10){
 
             Point3D last_ori  = lastray.origin();
+            Line3D last_line  = lastray.asLine3D();
             Point3D new_hit = null;
             RICHIntersection new_intersection = null;
             if(debugMode>=1)System.out.format(" ray-tracking step %d \n",jj);
@@ -3188,11 +3392,11 @@ public class RICHTool{
             if(last_intersection.get_layer()<4){
   
                 // planar mirrors
-                RICHIntersection test_intersection = get_Layer("mirror_bottom").find_Entrance(lastray.asLine3D(), -1);
-                if(test_intersection==null)test_intersection = get_Layer("mirror_left_L1").find_Entrance(lastray.asLine3D(), -1);
-                if(test_intersection==null)test_intersection = get_Layer("mirror_right_L1").find_Entrance(lastray.asLine3D(), -1);
-                if(test_intersection==null)test_intersection = get_Layer("mirror_left_L2").find_Entrance(lastray.asLine3D(), -1);
-                if(test_intersection==null)test_intersection = get_Layer("mirror_right_L2").find_Entrance(lastray.asLine3D(), -1);
+                RICHIntersection test_intersection = get_Layer("mirror_bottom").find_Entrance(last_line, -1);
+                if(test_intersection==null)test_intersection = get_Layer("mirror_left_L1").find_Entrance(last_line, -1);
+                if(test_intersection==null)test_intersection = get_Layer("mirror_right_L1").find_Entrance(last_line, -1);
+                if(test_intersection==null)test_intersection = get_Layer("mirror_left_L2").find_Entrance(last_line, -1);
+                if(test_intersection==null)test_intersection = get_Layer("mirror_right_L2").find_Entrance(last_line, -1);
                 if(test_intersection!=null){
                     if(debugMode>=1){
                         System.out.format(" test planar (z %7.2f, step %7.2f) : ",last_ori.z(), test_intersection.get_pos().distance(last_ori));
@@ -3206,7 +3410,7 @@ public class RICHTool{
 
                 // shperical mirrors
                 if(lastray.direction().costheta()>0){
-                    test_intersection = get_Layer("mirror_sphere").find_EntranceCurved(lastray.asLine3D(), -1);
+                    test_intersection = get_Layer("mirror_sphere").find_EntranceCurved(last_line, -1);
                     
                     if(test_intersection!=null){
                         if(debugMode>=1){
@@ -3222,7 +3426,7 @@ public class RICHTool{
                         if(debugMode>=1)System.out.format(" no sphere intersection \n");
                     }
 
-                    RICHIntersection pmt_inter = get_Layer("mapmts").find_Entrance(lastray.asLine3D(), -1);
+                    RICHIntersection pmt_inter = get_Layer("mapmts").find_Entrance(last_line, -1);
                     if(pmt_inter!=null) {
                         Point3D test_hit = pmt_inter.get_pos(); 
                         //if(test_hit.distance(last_ori)>RICHConstants.PHOTON_DISTMIN_TRACING){
@@ -3235,8 +3439,8 @@ public class RICHTool{
                         if(debugMode>=1)System.out.format(" no PMT plane intersection \n");
                     }
                 }else{
-                    test_intersection = get_Layer("mirror_front_B1").find_Entrance(lastray.asLine3D(), -1);
-                    if(test_intersection==null)test_intersection = get_Layer("mirror_front_B2").find_Entrance(lastray.asLine3D(), -1);
+                    test_intersection = get_Layer("mirror_front_B1").find_Entrance(last_line, -1);
+                    if(test_intersection==null)test_intersection = get_Layer("mirror_front_B2").find_Entrance(last_line, -1);
                     if(test_intersection!=null){
                         if(debugMode>=1){
                             System.out.format(" test front (z %7.2f, step %7.2f) : ",last_ori.z(), test_intersection.get_pos().distance(last_ori));
@@ -3268,7 +3472,7 @@ public class RICHTool{
                 Point3D point = new Point3D(0.0, 0.0, 0.0);;
                 new_hit = new Point3D(lastray.end());
                 Plane3D plane = toTriangle3D(get_Layer(get_LayerNumber("mapmts")).get_Face(0)).plane();
-                if(plane.intersection(lastray.asLine3D(), point)==1){ 
+                if(plane.intersection(last_line, point)==1){ 
                     double vers = lastray.direction().costheta();
                     double Delta_z = point.z()-lastray.origin().z();
                     if(debugMode>=1) System.out.format(" forced stop at PMT plane: Delta_z %7.3f vers %7.3f \n",Delta_z, vers);
@@ -3321,11 +3525,7 @@ public class RICHTool{
 
         }
 
-        if(debugMode>=1) System.out.format(" --------------------------- \n");
-        //if(detected==true)return raytracks;
-        return raytracks;
-        //return null;
-   }
+    }
 
 
     // ----------------
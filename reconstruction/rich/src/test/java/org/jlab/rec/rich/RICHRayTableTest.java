@@ -0,0 +1,319 @@
+package org.jlab.rec.rich;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.jlab.geom.prim.Line3D;
+import org.jlab.geom.prim.Point3D;
+import org.jlab.geom.prim.Shape3D;
+import org.jlab.geom.prim.Vector3D;
+
+import eu.mihosoft.vrl.v3d.Vector3d;
+
+/**
+ * Compares the ray-tracing lookup table with the ray-tracing of the same
+ * geometry, at the grid nodes and for random photons between them.
+ */
+public class RICHRayTableTest {
+
+    private static final int    NXY  = 2;
+    private static final int    NT   = 9;
+    private static final double TMAX = 0.4;
+
+    // interpolation between the nodes, in cm and ns:
+    private static final double HIT_TOLERANCE  = 0.5;
+    private static final double PATH_TOLERANCE = 0.5;
+    private static final double TIME_TOLERANCE = 0.05;
+
+    private static RICHTool tool = null;
+    private static File tableFile = null;
+
+    private static RICHTool getTool() {
+        if (tool == null) {
+            System.setProperty("CLAS12DIR", "../../");
+            RICHEBEngine engine = new RICHEBEngine();
+            engine.init();
+            tool = engine.get_RICHTool();
+        }
+        return tool;
+    }
+
+    private static File getTableFile() throws IOException {
+        if (tableFile == null) {
+            File file = File.createTempFile("RICHRayTable", ".dat");
+            file.deleteOnExit();
+            RICHRayTable.generate(getTool(), file.getPath(), NXY, NT, TMAX);
+            tableFile = file;
+        }
+        return tableFile;
+    }
+
+    /**
+     * @return copy of the table whose node signatures all differ from their
+     * neighbours, so that every lookup fails the signature check
+     */
+    private static File createMismatchedTable() throws IOException {
+        File file = File.createTempFile("RICHRayTable", ".dat");
+        file.deleteOnExit();
+        Files.copy(getTableFile().toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int nnodes = buffer.getInt(32)*NXY*NXY*NT*NT;
+            int offset = (int) channel.size() - nnodes*RICHRayTable.NODE_BYTES;
+            for (int i=0; i<nnodes; i++) {
+                int pos = offset + i*RICHRayTable.NODE_BYTES + RICHRayTable.SIGNATURE_OFFSET;
+                buffer.putLong(pos, buffer.getLong(pos) + i);
+            }
+            buffer.force();
+        }
+        return file;
+    }
+
+    /**
+     * @return random photon direction from the tile, within the table slopes
+     */
+    private static Vector3d randomDirection(Random rand) {
+        double theta = 0.3*rand.nextDouble();
+        double phi = 2*Math.PI*rand.nextDouble();
+        return new Vector3d(Math.sin(theta)*Math.cos(phi), Math.sin(theta)*Math.sin(phi), Math.cos(theta));
+    }
+
+    @Test
+    public void testTableNodes() throws IOException {
+        RICHTool tool = getTool();
+        File file = getTableFile();
+        RICHRayTable table = RICHRayTable.load(file.getPath(), tool.get_GeometryChecksum());
+        assertNotNull(table);
+        assertNull(RICHRayTable.load(file.getPath(), tool.get_GeometryChecksum()+1));
+
+        // at the grid nodes the table gives back the traced hit, reflections and path in air:
+        int nfound = 0;
+        ArrayList<RICHRay> rays = new ArrayList<RICHRay>();
+        Vector3d hit = new Vector3d(0, 0, 0);
+        RICHRayTable.Path path = new RICHRayTable.Path();
+        for (int ilay=0; ilay<tool.get_nLayers(); ilay++) {
+            RICHLayer layer = tool.get_Layer(ilay);
+            if (layer==null || layer.size()==0 || !layer.is_aerogel()) continue;
+            for (int ico=0; ico<layer.size(); ico++) {
+                Shape3D surf = layer.get_TrackingSurf(ico);
+                if (surf==null || surf.size()==0) continue;
+                double[] range = RICHRayTable.tile_Range(surf);
+                for (int ix=0; ix<NXY; ix++) {
+                    for (int iy=0; iy<NXY; iy++) {
+                        double x = range[0] + (range[1]-range[0])*ix/(NXY-1);
+                        double y = range[2] + (range[3]-range[2])*iy/(NXY-1);
+                        for (int itx=0; itx<NT; itx++) {
+                            for (int ity=0; ity<NT; ity++) {
+                                Line3D vertical = new Line3D(new Point3D(x, y, range[4]-10.), new Point3D(x, y, range[5]+10.));
+                                RICHIntersection exit = tool.find_AerogelExit(layer, vertical, ico);
+                                if (exit==null) continue;
+                                Point3D pos = exit.get_pos();
+                                Vector3D dir = new Vector3D(-TMAX + 2*TMAX*itx/(NT-1), -TMAX + 2*TMAX*ity/(NT-1), 1.).asUnit();
+
+                                int nrefl = table.lookup(ilay, ico, pos.x(), pos.y(), dir, hit, path);
+                                if (nrefl<0) continue;
+
+                                RICHRay lastray = new RICHRay(pos, dir.multiply(200));
+                                lastray.set_type(20000+ilay*100+ico+1);
+                                lastray.set_refind(RICHConstants.RICH_AIR_INDEX);
+                                rays.clear();
+                                rays.add(new RICHRay(pos, pos));
+                                tool.trace_Optics(lastray, exit, rays);
+                                Point3D end = rays.get(rays.size()-1).end();
+                                int ntraced = 0;
+                                double length = 0, optical = 0;
+                                for (RICHRay ray : rays) {
+                                    if (ray.get_type()/10000 == 1) ntraced++;
+                                    length  += ray.direction().mag();
+                                    optical += ray.direction().mag()*ray.get_refind();
+                                }
+
+                                assertEquals(ntraced, nrefl);
+                                assertEquals(end.x(), hit.x, 1e-3);
+                                assertEquals(end.y(), hit.y, 1e-3);
+                                assertEquals(end.z(), hit.z, 1e-3);
+                                assertEquals(length, path.length, 1e-3);
+                                assertEquals(optical, path.optical, 1e-3);
+                                assertEquals(rays.get(rays.size()-1).is_detected(), path.detected);
+                                nfound++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue(nfound > 0);
+    }
+
+    @Test
+    public void testRayTraceHit() {
+        // without a table, the hit and reflections are those of the full ray-tracing:
+        RICHTool tool = getTool();
+        assertNull(tool.get_RayTable());
+        Random rand = new Random(36);
+        int ntraced = 0;
+        for (int ilay=0; ilay<tool.get_nLayers(); ilay++) {
+            RICHLayer layer = tool.get_Layer(ilay);
+            if (layer==null || layer.size()==0 || !layer.is_aerogel()) continue;
+            for (int ico=0; ico<layer.size(); ico++) {
+                Shape3D surf = layer.get_TrackingSurf(ico);
+                if (surf==null || surf.size()==0) continue;
+                double[] range = RICHRayTable.tile_Range(surf);
+                Vector3d emission = new Vector3d((range[0]+range[1])/2, (range[2]+range[3])/2, (range[4]+range[5])/2);
+                for (int i=0; i<10; i++) {
+                    double theta = 0.4*rand.nextDouble();
+                    double phi = 2*Math.PI*rand.nextDouble();
+                    Vector3d vlab = new Vector3d(Math.sin(theta)*Math.cos(phi), Math.sin(theta)*Math.sin(phi), Math.cos(theta));
+                    Vector3d hit = new Vector3d(0, 0, 0);
+                    int nrefl = tool.RayTrace_Hit(emission, ilay, ico, vlab, hit);
+                    ArrayList<RICHRay> rays = tool.RayTrace(emission, ilay, ico, vlab);
+                    if (rays==null) {
+                        assertEquals(-1, nrefl);
+                        continue;
+                    }
+                    int nexpected = 0;
+                    for (RICHRay ray : rays) if (ray.get_type()/10000 == 1) nexpected++;
+                    Point3D end = rays.get(rays.size()-1).end();
+                    assertEquals(nexpected, nrefl);
+                    assertEquals(end.x(), hit.x, 0);
+                    assertEquals(end.y(), hit.y, 0);
+                    assertEquals(end.z(), hit.z, 0);
+                    ntraced++;
+                }
+            }
+        }
+        assertTrue(ntraced > 0);
+    }
+
+    @Test
+    public void testRayTraceTable() throws IOException {
+        // between the nodes, the photons taken from the table match the full ray-tracing:
+        RICHTool tool = getTool();
+        tool.set_RayTable(RICHRayTable.load(getTableFile().getPath(), tool.get_GeometryChecksum()));
+        assertNotNull(tool.get_RayTable());
+        try {
+            Random rand = new Random(36);
+            int ntable = 0;
+            for (int ilay=0; ilay<tool.get_nLayers(); ilay++) {
+                RICHLayer layer = tool.get_Layer(ilay);
+                if (layer==null || layer.size()==0 || !layer.is_aerogel()) continue;
+                for (int ico=0; ico<layer.size(); ico++) {
+                    Shape3D surf = layer.get_TrackingSurf(ico);
+                    if (surf==null || surf.size()==0) continue;
+                    double[] range = RICHRayTable.tile_Range(surf);
+                    for (int i=0; i<20; i++) {
+                        Vector3d emission = new Vector3d(
+                                range[0] + (range[1]-range[0])*(0.25+0.5*rand.nextDouble()),
+                                range[2] + (range[3]-range[2])*(0.25+0.5*rand.nextDouble()),
+                                (range[4]+range[5])/2);
+                        Vector3d vlab = randomDirection(rand);
+
+                        ArrayList<RICHRay> rays = tool.RayTrace(emission, ilay, ico, vlab);
+                        RICHSolution photon = new RICHSolution();
+                        boolean exits = tool.RayTrace(emission, ilay, ico, vlab, photon);
+                        Vector3d hit = new Vector3d(0, 0, 0);
+                        int nrefl = tool.RayTrace_Hit(emission, ilay, ico, vlab, hit);
+                        if (rays==null) {
+                            assertFalse(exits);
+                            assertEquals(-1, nrefl);
+                            continue;
+                        }
+                        assertTrue(exits);
+                        RICHSolution traced = new RICHSolution();
+                        traced.set_raytracks(rays);
+                        if (photon.get_nrays()==0) ntable++;
+
+                        assertEquals(traced.get_nrefle(), nrefl);
+                        assertEquals(traced.get_hit().x, hit.x, HIT_TOLERANCE);
+                        assertEquals(traced.get_hit().y, hit.y, HIT_TOLERANCE);
+                        assertEquals(traced.get_hit().z, hit.z, HIT_TOLERANCE);
+
+                        assertEquals(traced.get_nrefle(), photon.get_nrefle());
+                        assertEquals(traced.get_nrefra(), photon.get_nrefra());
+                        assertEquals(traced.get_FirstRefle(), photon.get_FirstRefle());
+                        assertEquals(traced.is_detected(), photon.is_detected());
+                        assertEquals(traced.get_hit().x, photon.get_hit().x, HIT_TOLERANCE);
+                        assertEquals(traced.get_hit().y, photon.get_hit().y, HIT_TOLERANCE);
+                        assertEquals(traced.get_hit().z, photon.get_hit().z, HIT_TOLERANCE);
+                        assertEquals(traced.get_path(), photon.get_path(), PATH_TOLERANCE);
+                        assertEquals(traced.get_time(), photon.get_time(), TIME_TOLERANCE);
+                    }
+                }
+            }
+            assertTrue(ntable > 0);
+        }
+        finally {
+            tool.set_RayTable(null);
+        }
+    }
+
+    @Test
+    public void testSignatureFallback() throws IOException {
+        // photons whose nodes crossed different components are fully ray-traced:
+        RICHTool tool = getTool();
+        RICHRayTable table = RICHRayTable.load(getTableFile().getPath(), tool.get_GeometryChecksum());
+        RICHRayTable mismatched = RICHRayTable.load(createMismatchedTable().getPath(), tool.get_GeometryChecksum());
+        assertNotNull(table);
+        assertNotNull(mismatched);
+        try {
+            Random rand = new Random(36);
+            int nfallback = 0;
+            for (int ilay=0; ilay<tool.get_nLayers(); ilay++) {
+                RICHLayer layer = tool.get_Layer(ilay);
+                if (layer==null || layer.size()==0 || !layer.is_aerogel()) continue;
+                for (int ico=0; ico<layer.size(); ico++) {
+                    Shape3D surf = layer.get_TrackingSurf(ico);
+                    if (surf==null || surf.size()==0) continue;
+                    double[] range = RICHRayTable.tile_Range(surf);
+                    Vector3d emission = new Vector3d((range[0]+range[1])/2, (range[2]+range[3])/2, (range[4]+range[5])/2);
+                    for (int i=0; i<10; i++) {
+                        Vector3d vlab = randomDirection(rand);
+                        ArrayList<RICHRay> rays = tool.RayTrace(emission, ilay, ico, vlab);
+                        if (rays==null) continue;
+
+                        // found in the original table:
+                        tool.set_RayTable(table);
+                        RICHSolution photon = new RICHSolution();
+                        assertTrue(tool.RayTrace(emission, ilay, ico, vlab, photon));
+                        if (photon.get_nrays()>0) continue;
+
+                        tool.set_RayTable(mismatched);
+                        photon = new RICHSolution();
+                        assertTrue(tool.RayTrace(emission, ilay, ico, vlab, photon));
+                        Vector3d hit = new Vector3d(0, 0, 0);
+                        int nrefl = tool.RayTrace_Hit(emission, ilay, ico, vlab, hit);
+
+                        RICHSolution traced = new RICHSolution();
+                        traced.set_raytracks(rays);
+                        assertEquals(rays.size(), photon.get_nrays());
+                        assertEquals(traced.get_nrefle(), nrefl);
+                        assertEquals(traced.get_hit().x, hit.x, 0);
+                        assertEquals(traced.get_hit().y, hit.y, 0);
+                        assertEquals(traced.get_hit().z, hit.z, 0);
+                        assertEquals(traced.get_hit().x, photon.get_hit().x, 0);
+                        assertEquals(traced.get_hit().y, photon.get_hit().y, 0);
+                        assertEquals(traced.get_hit().z, photon.get_hit().z, 0);
+                        assertEquals(traced.get_path(), photon.get_path(), 0);
+                        assertEquals(traced.get_time(), photon.get_time(), 0);
+                        assertEquals(traced.is_detected(), photon.is_detected());
+                        nfallback++;
+                    }
+                }
+            }
+            assertTrue(nfallback > 0);
+        }
+        finally {
+            tool.set_RayTable(null);
+        }
+    }
+}
@@ -7,11 +7,10 @@
 package org.jlab.rec.rtpc.hit;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
 import org.jlab.detector.calib.utils.ConstantsManager;
 
 
@@ -19,7 +18,6 @@ public class TrackFinder {
     
     private TrackUtils tutil = new TrackUtils();
     private TrackMap TIDMap = new TrackMap();
-    private List<Integer> TIDList;
     private Track track;
     private ADCMap ADCMap;
     private List<Integer> PadList;
@@ -28,10 +26,10 @@ public class TrackFinder {
     private double adcthresh = 0; 
     private int padloopsize;// = PadList.size();
     private boolean padSorted = false; 
-    private List<Integer> padTIDlist = new ArrayList<>();
+    private int[] padTIDlist;       //TIDs assigned to the pad
+    private int npadTIDs = 0;
     private List<Integer> padlist; 
     private int pad = 0;
-    private double adc = 0; 
     private int timeadjlimit = 4; 
     private int parenttid = -1;
     private String method = "phiz";
@@ -43,6 +41,34 @@ public class TrackFinder {
     private double TFtotaltracktimeflag = 5000;
     private double TFtotalpadtimeflag = 1000;
     
+    /*
+     * Sparse event content: the above threshold (time, pad) samples sorted by
+     * time and then by position in PadList, the pads of PadList with samples
+     * and, for each of them, the pads which pass comparePads
+     */
+    private int nsamples = 0;
+    private int[] sampletime;
+    private int[] samplepad;        //index in the list of pads with samples
+    private int[] padnum;           //pad number of each pad with samples
+    private int[][] neighbours;     //compatible pads, as indices
+    private int[][] neighbourpads;  //compatible pads, as sorted pad numbers
+
+    /*
+     * Track entries of each (time slice, pad) to find the tracks which can
+     * accept a sample without looping over all of them, and TID bookkeeping
+     */
+    private int[] entryhead;
+    private int[] entrynext;
+    private int[] entrytid;
+    private int nentries = 0;
+    private int[] tidroot;          //TID a track was merged into
+    private int[] tidcreated;       //sample which created the track
+    private int[] tidprobetime;     //time of the last candidate check
+    private int[] tidprobecount;    //candidate checks at this time
+    private int[] tidstamp;
+    private int[] candidates;
+    private int[] opentids;         //tracks without a full time window yet
+    private int nopentids = 0;
 
     public TrackFinder(HitParameters params, boolean cosmic) {
         /*	
@@ -63,76 +89,121 @@ public class TrackFinder {
         TrigWindSize = params.get_TrigWindSize();
         padloopsize = PadList.size();
         
+        findSamples();
+        findNeighbours(params, cosmic);
+        
+        int nslices = (TrigWindSize + StepSize - 1)/StepSize;
+        entryhead = new int[nslices*padnum.length];
+        Arrays.fill(entryhead, -1);
+        entrynext = new int[nsamples];
+        entrytid = new int[nsamples];
+        tidroot = new int[nsamples + 1];
+        tidcreated = new int[nsamples + 1];
+        tidprobetime = new int[nsamples + 1];
+        tidprobecount = new int[nsamples + 1];
+        tidstamp = new int[nsamples + 1];
+        candidates = new int[nsamples + 1];
+        padTIDlist = new int[nsamples + 1];
+        opentids = new int[nsamples + 1];
+        
         /*
          * Main Algorithm
+         *
+         * The samples are visited in the order of the time and pad loops, and
+         * only the tracks with the same or a compatible pad in the checked
+         * time slices are tested: the others can not accept the sample.
          */
-        TIMELOOP: //Loop over all times
-        for(int time = 0; time < TrigWindSize; time += StepSize) { //Steps of 120 up to TrigWindSize = 10000
-
-            PADLOOP: //Loop over all pads
-            for(int padindex = 0; padindex < padloopsize; padindex++) {
-                padSorted = false;  //Flag to be set when the pad is assigned to a track
-                padTIDlist.clear(); //List of all TIDs assigned to the pad starts empty
-                pad = PadList.get(padindex);	
-                adc = ADCMap.getADC(pad,time);
-                
-                
-
-                if(adc > adcthresh) { //pad adc threshold check
-
-                    PadVector PadVec = params.get_padvector(pad); //initializes the x,y,z,phi for pad
-                    TIDList = TIDMap.getAllTrackIDs(); //Retrieve list of all available TIDs
-
-                    TIDLOOP: //Loop over all Track IDs 
-                    for(int tid : TIDList) {
-                        track = TIDMap.getTrack(tid); //Get track with current tid
-
-                        TIMECHECKLOOP: //Loop over current and former times
-                        for(int timecheck = time; timecheck > 0 && timecheck >= time - timeadjlimit*StepSize; timecheck -= StepSize) {
-                            padlist = track.getTimeSlice(timecheck); //Get pads assigned to current time slice
-                            if(!padlist.contains(pad)) { //Ensures pad isn't already assigned here
-                                PADCHECKLOOP: //Loop over pads 
-                                for(int checkpad : padlist) {		
-                                    PadVector checkpadvec = params.get_padvector(checkpad);	
-                                    if(tutil.comparePads(PadVec, checkpadvec, method, cosmic, zthresh, zthreshgap, phithresh, phithreshgap)) { //compares the position of two pads
-                                        track.addPad(time, pad);			//assign pad to track
-                                        padSorted = true;				//flag set
-                                        padTIDlist.add(tid);				//track the TID assigned
-                                        break TIMECHECKLOOP;                            //no need to continue checking previous times
-                                    } //END PAD COMPARE
-
-                                } //END PADCHECKLOOP
-
-                            } else {//pad is somehow in this time slice already so lets go ahead and add it to the current time slice
-                                    track.addPad(time, pad);
-                                    padSorted = true;
-                                    padTIDlist.add(tid);
-                                    break TIMECHECKLOOP;
-                            }
+        int firstsample = 0;
+        SAMPLELOOP: //Loop over all above threshold samples
+        for(int sample = 0; sample < nsamples; sample++) {
+            int time = sampletime[sample];
+            if(sample > 0 && time != sampletime[sample-1]) {
+                closeTimeSlice(sampletime[sample-1], firstsample, sample);
+                firstsample = sample;
+            }
+            
+            padSorted = false;  //Flag to be set when the pad is assigned to a track
+            npadTIDs = 0;       //List of all TIDs assigned to the pad starts empty
+            int padindex = samplepad[sample];
+            pad = padnum[padindex];
+            int slice = time/StepSize;
+            
+            int ncandidates = 0;
+            for(int checkslice = slice; checkslice > 0 && checkslice >= slice - timeadjlimit; checkslice--) {
+                ncandidates = findCandidates(checkslice, padindex, sample, ncandidates);
+                for(int checkpadindex : neighbours[padindex]) {
+                    ncandidates = findCandidates(checkslice, checkpadindex, sample, ncandidates);
+                }
+            }
 
-                        } //END TIMECHECKLOOP 
+            TIDLOOP: //Loop over the candidate Track IDs 
+            for(int c = 0; c < ncandidates; c++) {
+                int tid = candidates[c];
+                if(tidprobetime[tid] != time) {
+                    tidprobetime[tid] = time;
+                    tidprobecount[tid] = 0;
+                }
+                tidprobecount[tid]++;
+                track = TIDMap.getTrack(tid); //Get track with current tid
 
-                    } //END TIDLOOP 
+                TIMECHECKLOOP: //Loop over current and former times
+                for(int timecheck = time; timecheck > 0 && timecheck >= time - timeadjlimit*StepSize; timecheck -= StepSize) {
+                    padlist = track.getTimeSlice(timecheck); //Get pads assigned to current time slice
+                    if(!padlist.contains(pad)) { //Ensures pad isn't already assigned here
+                        PADCHECKLOOP: //Loop over pads 
+                        for(int checkpad : padlist) {		
+                            if(Arrays.binarySearch(neighbourpads[padindex], checkpad) >= 0) { //compares the position of two pads
+                                track.addPad(time, pad);			//assign pad to track
+                                padSorted = true;				//flag set
+                                padTIDlist[npadTIDs++] = tid;			//track the TID assigned
+                                break TIMECHECKLOOP;                            //no need to continue checking previous times
+                            } //END PAD COMPARE
 
-                    if(!padSorted) { //we need a new TID if we get here, the pad was never assigned an ID
-                            TIDMap.addTrack(new Track(time,pad));
-                    }
+                        } //END PADCHECKLOOP
 
-                    if(padTIDlist.size()>1) { //if a pad gets more than 1 ID let's merge the IDs	
-                        for(int tidtemp : padTIDlist) {
-                            if(tidtemp == padTIDlist.get(0)) {
-                                parenttid = padTIDlist.get(0);
-                            } else {
-                                TIDMap.mergeTracks(parenttid, tidtemp); 
-                            }
-                        }						
+                    } else {//pad is somehow in this time slice already so lets go ahead and add it to the current time slice
+                            track.addPad(time, pad);
+                            padSorted = true;
+                            padTIDlist[npadTIDs++] = tid;
+                            break TIMECHECKLOOP;
                     }
 
-                } //END ADC THRESH CHECK
+                } //END TIMECHECKLOOP 
+
+            } //END TIDLOOP 
 
-            } //END PADLOOP
+            if(!padSorted) { //we need a new TID if we get here, the pad was never assigned an ID
+                    TIDMap.addTrack(new Track(time,pad));
+                    int tid = TIDMap.getLastTrackID();
+                    tidroot[tid] = tid;
+                    tidcreated[tid] = sample;
+                    opentids[nopentids++] = tid;
+                    addEntry(slice, padindex, tid);
+                    continue;
+            }
+
+            if(npadTIDs>1) { //if a pad gets more than 1 ID let's merge the IDs	
+                //the track map is in TID order, i.e. the order the tracks were created
+                Arrays.sort(padTIDlist, 0, npadTIDs);
+                parenttid = padTIDlist[0];
+                for(int i = 1; i < npadTIDs; i++) {
+                    int tidtemp = padTIDlist[i];
+                    openTimeWindow(tidtemp, time, firstsample, sample + 1);
+                    TIDMap.mergeTracks(parenttid, tidtemp); 
+                    tidroot[tidtemp] = parenttid;
+                }						
+            }
+            addEntry(slice, padindex, padTIDlist[0]);
 
-        } //END TIMELOOP
+        } //END SAMPLELOOP
+        if(nsamples > 0) {
+            int lasttime = sampletime[nsamples-1];
+            closeTimeSlice(lasttime, firstsample, nsamples);
+            //every track with a later sample was last checked at the last time
+            for(int tid = 1; tid <= TIDMap.getLastTrackID() && lasttime > 0; tid++) {
+                if(tidroot[tid] == tid && tidcreated[tid] < nsamples - 1) TIDMap.getTrack(tid).getTimeSlice(lasttime);
+            }
+        }
         
         //END MAIN ALGORITHM
 
@@ -205,5 +276,158 @@ public class TrackFinder {
         params.set_trackmap(TIDMap);
 
     }       
+    
+    /*
+     * Collects the above threshold samples of the time and pad loops, sorted
+     * by time slice and then by pad index
+     */
+    private void findSamples() {
+        int nslices = (TrigWindSize + StepSize - 1)/StepSize;
+        int[] slicecount = new int[nslices + 1];
+        int[] slices = new int[256];
+        int[] padindices = new int[256];
+        int[] padindexmap = new int[padloopsize];
+        int npads = 0;
+        int n = 0;
+        padnum = new int[padloopsize];
+        for(int padindex = 0; padindex < padloopsize; padindex++) {
+            int p = PadList.get(padindex);
+            double[] adcs = ADCMap.getADCMap().get(p);
+            padindexmap[padindex] = -1;
+            for(int slice = 0; slice < nslices; slice++) {
+                if(adcs[slice*StepSize] > adcthresh) {
+                    if(padindexmap[padindex] < 0) {
+                        padindexmap[padindex] = npads;
+                        padnum[npads++] = p;
+                    }
+                    if(n == slices.length) {
+                        slices = Arrays.copyOf(slices, 2*n);
+                        padindices = Arrays.copyOf(padindices, 2*n);
+                    }
+                    slices[n] = slice;
+                    padindices[n] = padindexmap[padindex];
+                    slicecount[slice + 1]++;
+                    n++;
+                }
+            }
+        }
+        padnum = Arrays.copyOf(padnum, npads);
+        for(int slice = 0; slice < nslices; slice++) slicecount[slice + 1] += slicecount[slice];
+        nsamples = n;
+        sampletime = new int[n];
+        samplepad = new int[n];
+        for(int i = 0; i < n; i++) {
+            int sample = slicecount[slices[i]]++;
+            sampletime[sample] = slices[i]*StepSize;
+            samplepad[sample] = padindices[i];
+        }
+    }
+    
+    /*
+     * Neighbour table of the pads with samples: comparePads is evaluated once
+     * per pair of pads within the z window, in both orders
+     */
+    private void findNeighbours(HitParameters params, boolean cosmic) {
+        int npads = padnum.length;
+        double zwindow = tutil.zWindow(method, cosmic, zthresh, zthreshgap);
+        List<List<Integer>> nblist = new ArrayList<>();
+        Integer[] zorder = new Integer[npads];
+        double[] z = new double[npads];
+        for(int i = 0; i < npads; i++) {
+            nblist.add(new ArrayList<>());
+            zorder[i] = i;
+            z[i] = params.get_padvector(padnum[i]).z();
+        }
+        Arrays.sort(zorder, Comparator.comparingDouble(i -> z[i]));
+        for(int i = 0; i < npads; i++) {
+            int p1 = zorder[i];
+            PadVector v1 = params.get_padvector(padnum[p1]);
+            for(int j = i + 1; j < npads && z[zorder[j]] - z[p1] <= zwindow; j++) {
+                int p2 = zorder[j];
+                PadVector v2 = params.get_padvector(padnum[p2]);
+                if(padnum[p1] == padnum[p2] || tutil.comparePads(v1, v2, method, cosmic, zthresh, zthreshgap, phithresh, phithreshgap)) {
+                    nblist.get(p1).add(p2);
+                }
+                if(padnum[p1] == padnum[p2] || tutil.comparePads(v2, v1, method, cosmic, zthresh, zthreshgap, phithresh, phithreshgap)) {
+                    nblist.get(p2).add(p1);
+                }
+            }
+        }
+        neighbours = new int[npads][];
+        neighbourpads = new int[npads][];
+        for(int i = 0; i < npads; i++) {
+            List<Integer> l = nblist.get(i);
+            neighbours[i] = new int[l.size()];
+            neighbourpads[i] = new int[l.size()];
+            for(int j = 0; j < l.size(); j++) {
+                neighbours[i][j] = l.get(j);
+                neighbourpads[i][j] = padnum[l.get(j)];
+            }
+            Arrays.sort(neighbourpads[i]);
+        }
+    }
+    
+    private void addEntry(int slice, int padindex, int tid) {
+        int index = slice*padnum.length + padindex;
+        entrytid[nentries] = tid;
+        entrynext[nentries] = entryhead[index];
+        entryhead[index] = nentries++;
+    }
+    
+    private int findCandidates(int slice, int padindex, int sample, int ncandidates) {
+        for(int entry = entryhead[slice*padnum.length + padindex]; entry >= 0; entry = entrynext[entry]) {
+            int tid = findRoot(entrytid[entry]);
+            if(tidstamp[tid] != sample + 1) {
+                tidstamp[tid] = sample + 1;
+                candidates[ncandidates++] = tid;
+            }
+        }
+        return ncandidates;
+    }
+    
+    private int findRoot(int tid) {
+        while(tidroot[tid] != tid) {
+            tidroot[tid] = tidroot[tidroot[tid]];
+            tid = tidroot[tid];
+        }
+        return tid;
+    }
+    
+    /*
+     * Checking a track at a given time creates its empty time slices down to
+     * timeadjlimit slices before: do the same for a track which was skipped
+     * at least once by the samples [firstsample, endsample) of this time
+     */
+    private boolean openTimeWindow(int tid, int time, int firstsample, int endsample) {
+        int nchecks = endsample - Math.max(firstsample, tidcreated[tid] + 1);
+        int ncandidates = tidprobetime[tid] == time ? tidprobecount[tid] : 0;
+        if(nchecks > ncandidates) {
+            Track t = TIDMap.getTrack(tid);
+            for(int timecheck = time; timecheck > 0 && timecheck >= time - timeadjlimit*StepSize; timecheck -= StepSize) {
+                t.getTimeSlice(timecheck);
+            }
+            return true;
+        }
+        return false;
+    }
+    
+    /*
+     * Of the empty time slices, only the first and the last enter the total
+     * track time flag. Once a track got its full time window, later checks
+     * can not create an earlier slice, so only the tracks which were always
+     * found among the candidates are visited again. The last slice is added
+     * after the last time.
+     */
+    private void closeTimeSlice(int time, int firstsample, int endsample) {
+        int nkept = 0;
+        for(int i = 0; i < nopentids; i++) {
+            int tid = opentids[i];
+            if(tidroot[tid] != tid) continue;
+            if(tidcreated[tid] + 1 >= endsample || !openTimeWindow(tid, time, firstsample, endsample)) {
+                opentids[nkept++] = tid;
+            }
+        }
+        nopentids = nkept;
+    }
 	
 }
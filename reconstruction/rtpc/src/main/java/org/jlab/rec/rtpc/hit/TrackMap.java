@@ -2,16 +2,15 @@ package org.jlab.rec.rtpc.hit;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 public class TrackMap {
 	
-    private HashMap<Integer,Track> _map;
+    private LinkedHashMap<Integer,Track> _map;
     private int _trackID = 0; 
 
     public TrackMap() {
-        _map = new HashMap<Integer,Track>();
+        _map = new LinkedHashMap<Integer,Track>();
     }
 
     public void addTrack(Track t) {
@@ -35,11 +34,7 @@ public class TrackMap {
     }
 
     public List<Integer> getAllTrackIDs() {
-        List<Integer> l = new ArrayList<Integer>();
-        for(int i : _map.keySet()) {
-                if(!l.contains(i)) { l.add(i);}
-        }
-        return l; 
+        return new ArrayList<Integer>(_map.keySet()); 
     }
 
     public int getLastTrackID() {
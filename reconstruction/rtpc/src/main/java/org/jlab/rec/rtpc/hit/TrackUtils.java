@@ -30,6 +30,18 @@ public class TrackUtils {
         else return false;
     }	
 
+    /*
+     * Largest z difference for which comparePads can return true, used to
+     * preselect the pad pairs to compare
+     */
+    public double zWindow(String Method, boolean cosmic, double dz, double dzgap) {
+        if(Method == "phiz") {
+            if(cosmic) return 200;
+            return Math.max(dz, dzgap);
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
     private boolean ellipseMethod(PadVector p1, PadVector p2) {
         double p1x = p1.x(); 
         double p1y = p1.y();
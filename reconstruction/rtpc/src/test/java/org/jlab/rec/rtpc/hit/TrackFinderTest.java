@@ -0,0 +1,163 @@
+package org.jlab.rec.rtpc.hit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the track finder against the original loop over all times, pads
+ * and track IDs, on random events with crossing tracks and noise.
+ */
+public class TrackFinderTest {
+
+    private static final int STEP = 120;
+
+    /**
+     * Reference: every pad above threshold is compared with every track,
+     * merging the tracks which accept the same pad, then the short tracks
+     * are removed and the crossing ones flagged.
+     */
+    private static TrackMap referenceTracks(HitParameters params, boolean cosmic) {
+        TrackUtils tutil = new TrackUtils();
+        TrackMap map = new TrackMap();
+        ADCMap adcmap = params.get_ADCMap();
+        List<Integer> padlist = params.get_PadList();
+        int timeadjlimit = params.get_timeadjlimit();
+        for (int time=0; time<params.get_TrigWindSize(); time+=STEP) {
+            for (int pad : padlist) {
+                if (adcmap.getADC(pad,time) <= params.get_adcthresh()) continue;
+                PadVector vec = params.get_padvector(pad);
+                List<Integer> tids = new ArrayList<>();
+                for (int tid : map.getAllTrackIDs()) {
+                    Track track = map.getTrack(tid);
+                    TIMECHECK:
+                    for (int check=time; check>0 && check>=time-timeadjlimit*STEP; check-=STEP) {
+                        List<Integer> pads = track.getTimeSlice(check);
+                        if (pads.contains(pad)) {
+                            track.addPad(time, pad);
+                            tids.add(tid);
+                            break;
+                        }
+                        for (int checkpad : pads) {
+                            if (tutil.comparePads(vec, params.get_padvector(checkpad), "phiz", cosmic,
+                                    params.get_zthreshTF(), params.get_zthreshTFgap(),
+                                    params.get_phithreshTF(), params.get_phithreshTFgap())) {
+                                track.addPad(time, pad);
+                                tids.add(tid);
+                                break TIMECHECK;
+                            }
+                        }
+                    }
+                }
+                if (tids.isEmpty()) map.addTrack(new Track(time, pad));
+                for (int i=1; i<tids.size(); i++) map.mergeTracks(tids.get(0), tids.get(i));
+            }
+        }
+        for (int tid : map.getAllTrackIDs()) {
+            if (map.getTrack(tid).uniquePadCountTotal() < params.get_minhitspertrack()) map.removeTrack(tid);
+        }
+        if (!cosmic) {
+            for (int tid : map.getAllTrackIDs()) {
+                Track track = map.getTrack(tid);
+                for (int pad : track.uniquePadList()) {
+                    Set<Integer> padtimes = track.PadTimeList(pad);
+                    if (Collections.max(padtimes)-Collections.min(padtimes) > params.get_TFtotalpadtimeflag()) {
+                        track.flagTrack();
+                        break;
+                    }
+                }
+                List<Integer> times = track.getAllTimeSlices();
+                Collections.sort(times);
+                if (times.get(times.size()-1)-times.get(0) > params.get_TFtotaltracktimeflag()) track.flagTrack();
+                TIMES:
+                for (int time : times) {
+                    List<Integer> pads = track.getTimeSlice(time);
+                    pads.sort((p1,p2) -> Double.compare(params.get_padvector(p2).z(), params.get_padvector(p1).z()));
+                    for (int i=1; i<pads.size(); i++) {
+                        if (!tutil.comparePads(params.get_padvector(pads.get(i-1)), params.get_padvector(pads.get(i)), "phiz", cosmic,
+                                params.get_zthreshTF(), params.get_zthreshTFgap(),
+                                params.get_phithreshTF(), params.get_phithreshTFgap())) {
+                            track.flagTrack();
+                            break TIMES;
+                        }
+                    }
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Pads of the non-empty time slices, first and last time slice and flag
+     * of each track.
+     */
+    private static String dump(TrackMap map) {
+        StringBuilder sb = new StringBuilder();
+        for (int tid : map.getAllTrackIDs()) {
+            Track track = map.getTrack(tid);
+            List<Integer> times = track.getAllTimeSlices();
+            Collections.sort(times);
+            sb.append(tid).append(track.isTrackFlagged() ? " F " : " - ");
+            sb.append(times.get(0)).append(':').append(times.get(times.size()-1));
+            for (int time : times) {
+                List<Integer> pads = track.getTimeSlice(time);
+                if (!pads.isEmpty()) sb.append(' ').append(time).append(pads);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static HitParameters randomEvent(long seed, int ntracks, int nnoise) {
+        Random rand = new Random(seed);
+        ADCMap adcmap = new ADCMap();
+        List<Integer> padlist = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        for (int itrack=0; itrack<ntracks; itrack++) {
+            int row = rand.nextInt(180);
+            int col = rand.nextInt(96);
+            int time = rand.nextInt(9000);
+            int length = 5+rand.nextInt(40);
+            for (int k=0; k<length; k++) {
+                // a random walk in the pad plane, mostly forward in time:
+                row = Math.floorMod(row+rand.nextInt(3)-1, 180);
+                col = Math.min(95, Math.max(0, col+rand.nextInt(3)-1));
+                time = Math.min(9599, Math.max(0, time+rand.nextInt(241)-60));
+                int pad = row*96+col+1;
+                for (int dt=-2*STEP; dt<=2*STEP; dt+=STEP) {
+                    int t = (time/STEP)*STEP+dt;
+                    if (t>=0 && t<9600) adcmap.addSignal(pad, t, 200+rand.nextInt(800));
+                }
+                if (seen.add(pad)) padlist.add(pad);
+            }
+        }
+        for (int i=0; i<nnoise; i++) {
+            int pad = 1+rand.nextInt(180*96);
+            adcmap.addSignal(pad, STEP*rand.nextInt(80), rand.nextInt(1000));
+            if (seen.add(pad)) padlist.add(pad);
+        }
+        HitParameters params = new HitParameters();
+        params.set_ADCMap(adcmap);
+        params.set_PadList(padlist);
+        return params;
+    }
+
+    @Test
+    public void testTrackFinder() {
+        for (int event=0; event<60; event++) {
+            final boolean cosmic = event%10==9;
+            final int ntracks = 1+event%12;
+            final int nnoise = event%20*20;
+            HitParameters params = randomEvent(event, ntracks, nnoise);
+            new TrackFinder(params, cosmic);
+            TrackMap expected = referenceTracks(randomEvent(event, ntracks, nnoise), cosmic);
+            assertEquals("event "+event, dump(expected), dump(params.get_trackmap()));
+        }
+    }
+}
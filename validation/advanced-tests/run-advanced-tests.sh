@@ -54,6 +54,9 @@ export JAVA_OPTS="-Djava.util.logging.config.file=$PWD/../../etc/logging/debug.p
 
 # run decoder
 $COAT/bin/decoder -t -0.5 -s 0.0 -i ./twoTrackEvents_809_raw.evio -o ./twoTrackEvents_809.hipo -c 2
+if [ $? != 0 ] ; then echo "decoder failure" ; exit 1 ; fi
+$COAT/bin/decoder -t -0.5 -s 0.0 -i ./twoTrackEvents_809_raw.evio -o ./twoTrackEvents_809_j4.hipo -c 2 -j 4
+if [ $? != 0 ] ; then echo "multi-threaded decoder failure" ; exit 1 ; fi
 
 # run reconstruction with clara
 echo "set inputDir $PWD/" > cook.clara
@@ -74,6 +77,13 @@ $CLARA_HOME/bin/clara-shell cook.clara
 javac -cp $classPath src/kpptracking/KppTrackingTest.java 
 if [ $? != 0 ] ; then echo "KppTrackingTest compilation failure" ; exit 1 ; fi
 
+javac -cp $classPath src/decoder/DecoderThreadsTest.java
+if [ $? != 0 ] ; then echo "DecoderThreadsTest compilation failure" ; exit 1 ; fi
+
+# compare single and multi-threaded decoder output
+java -DCLAS12DIR="$COAT" -Xmx1536m -Xms1024m -cp $classPath org.junit.runner.JUnitCore decoder.DecoderThreadsTest
+if [ $? != 0 ] ; then echo "DecoderThreadsTest unit test failure" ; exit 1 ; else echo "DecoderThreadsTest passed unit tests" ; fi
+
 # run KppTracking junit tests
 java -DCLAS12DIR="$COAT" -Xmx1536m -Xms1024m -cp $classPath org.junit.runner.JUnitCore kpptracking.KppTrackingTest
 if [ $? != 0 ] ; then echo "KppTracking unit test failure" ; exit 1 ; else echo "KppTracking passed unit tests" ; fi
@@ -0,0 +1,153 @@
+package decoder;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.jlab.detector.decode.CLASDecoder4;
+import org.jlab.detector.helicity.HelicityState;
+import org.jlab.io.evio.EvioDataEvent;
+import org.jlab.io.evio.EvioSource;
+import org.jlab.jnp.hipo4.data.Bank;
+import org.jlab.jnp.hipo4.data.Event;
+import org.jlab.jnp.hipo4.io.HipoReader;
+import org.jlab.jnp.hipo4.io.HipoWriterSorted;
+import org.jlab.utils.system.ClasUtilsFile;
+
+/**
+ * Compares the output of the decoder run with one and with several threads
+ * against the sequential per-event decoding loop, which the decoder used
+ * before decoding and sequencing were split, event by event.
+ */
+public class DecoderThreadsTest {
+
+    private static final String INPUT = "twoTrackEvents_809_raw.evio";
+    private static final String REFERENCE = "twoTrackEvents_809_ref.hipo";
+
+    /**
+     * Decodes the input as the decoder did with the options of
+     * run-advanced-tests.sh, every bank created right after its event.
+     */
+    private static void writeReference(float torus, float solenoid) {
+
+        CLASDecoder4 decoder = new CLASDecoder4(false);
+
+        HipoWriterSorted writer = new HipoWriterSorted();
+        writer.setCompressionType(2);
+        writer.getSchemaFactory().initFromDirectory(ClasUtilsFile.getResourceDir("CLAS12DIR", "etc/bankdefs/hipo4"));
+
+        Bank  rawScaler = new Bank(writer.getSchemaFactory().getSchema("RAW::scaler"));
+        Bank rawRunConf = new Bank(writer.getSchemaFactory().getSchema("RUN::config"));
+        Bank helicityAdc = new Bank(writer.getSchemaFactory().getSchema("HEL::adc"));
+        Event scalerEvent = new Event();
+
+        writer.open(REFERENCE);
+
+        EvioSource reader = new EvioSource();
+        reader.open(INPUT);
+        HelicityState prevHelicity = new HelicityState();
+        int counter = 0;
+
+        while (reader.hasEvent()) {
+            EvioDataEvent event = (EvioDataEvent) reader.getNextEvent();
+
+            Event decodedEvent = decoder.getDataEvent(event);
+
+            Bank header = decoder.createHeaderBank(-1, counter, torus, solenoid);
+            if (header != null) decodedEvent.write(header);
+            Bank trigger = decoder.createTriggerBank();
+            if (trigger != null) decodedEvent.write(trigger);
+            Bank onlineHelicity = decoder.createOnlineHelicityBank();
+            if (onlineHelicity != null) decodedEvent.write(onlineHelicity);
+            Bank decodedHelicity = decoder.createHelicityDecoderBank(event);
+            if (decodedHelicity != null) decodedEvent.write(decodedHelicity);
+
+            Bank epics = decoder.createEpicsBank();
+
+            decodedEvent.read(rawScaler);
+            decodedEvent.read(rawRunConf);
+            decodedEvent.read(helicityAdc);
+
+            Bank helicityFlip = null;
+            if (helicityAdc.getRows() > 0) {
+                HelicityState thisHelicity = HelicityState.createFromFadcBank(helicityAdc);
+                if (!thisHelicity.isValid() || !thisHelicity.equals(prevHelicity)) {
+                    helicityFlip = decoder.createHelicityFlipBank(decodedEvent, thisHelicity);
+                    prevHelicity = thisHelicity;
+                }
+            }
+
+            if (rawScaler.getRows() > 0 || epics != null || helicityFlip != null) {
+                scalerEvent.reset();
+                if (rawScaler.getRows() > 0) scalerEvent.write(rawScaler);
+                if (rawRunConf.getRows() > 0) scalerEvent.write(rawRunConf);
+                Bank[] scalers = decoder.createReconScalerBanks(decodedEvent);
+                if (scalers != null) {
+                    for (Bank b : scalers) {
+                        decodedEvent.write(b);
+                        scalerEvent.write(b);
+                    }
+                }
+                if (epics != null) {
+                    decodedEvent.write(epics);
+                    scalerEvent.write(epics);
+                }
+                if (helicityFlip != null) {
+                    decodedEvent.write(helicityFlip);
+                    scalerEvent.write(helicityFlip);
+                }
+                writer.addEvent(scalerEvent, 1);
+            }
+
+            writer.addEvent(decodedEvent, 0);
+            counter++;
+        }
+        writer.close();
+    }
+
+    /**
+     * @return number of events, identical byte by byte in both files
+     */
+    private static int assertSameEvents(String expectedFile, String file) {
+
+        HipoReader expected = new HipoReader();
+        expected.open(expectedFile);
+        HipoReader actual = new HipoReader();
+        actual.open(file);
+
+        Event expectedEvent = new Event();
+        Event actualEvent = new Event();
+
+        int count = 0;
+        while (expected.hasNext()) {
+            assertTrue(file + ": missing event " + count, actual.hasNext());
+            expected.nextEvent(expectedEvent);
+            actual.nextEvent(actualEvent);
+            assertEquals(file + ": event " + count, expectedEvent.getEventBufferSize(), actualEvent.getEventBufferSize());
+            ByteBuffer a = expectedEvent.getEventBuffer();
+            ByteBuffer b = actualEvent.getEventBuffer();
+            for (int i = 0; i < expectedEvent.getEventBufferSize(); i++) {
+                assertEquals(file + ": event " + count + " byte " + i, a.get(i), b.get(i));
+            }
+            count++;
+        }
+        assertFalse(file + ": extra events", actual.hasNext());
+        return count;
+    }
+
+    @Test
+    public void testDecoderThreads() {
+
+        writeReference(-0.5f, 0.0f);
+
+        int single = assertSameEvents(REFERENCE, "twoTrackEvents_809.hipo");
+        int multi = assertSameEvents(REFERENCE, "twoTrackEvents_809_j4.hipo");
+
+        System.out.println("\nDecoder with 1 and 4 threads: " + single + " and " + multi
+                + " events identical to the sequential decoding");
+        assertTrue(single > 0);
+        assertEquals(single, multi);
+    }
+
+}